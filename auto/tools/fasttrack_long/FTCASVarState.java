@@ -0,0 +1,113 @@
+// AUTO-GENERATED --- DO NOT EDIT DIRECTLY 
+/******************************************************************************
+ *
+ * Copyright (c) 2016, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ ******************************************************************************/
+
+package tools.fasttrack_long;
+
+import rr.error.ErrorMessage;
+import rr.state.ShadowVar;
+import sun.misc.Unsafe;
+import tools.util.LongEpoch;
+import tools.util.LongVectorClock;
+
+/*
+ * The lock-free counterpart of FTVarState, used by FastTrackTool when run with -updaters=CAS.
+ *
+ * The W and R epochs are packed into the single long WR (write in the high half, read in the low
+ * half) and are updated together with cas(), so the exclusive read and write rules need no monitor.
+ * The inherited values field follows the FTVarState rules, with "this" as the lock:
+ * - WR may be CASed with or without the lock held, but R only moves to READ_SHARED (and
+ *   values is only filled in) with the lock held. Once R == READ_SHARED, it never changes again.
+ * - values[i] is only written by thread i with the lock held, and only read without the lock by
+ *   thread i.
+ * - Writes to a READ_SHARED location take the lock to compare against values.
+ *
+ * Requires LongEpoch.PAIR_FITS_IN_LONG, so FT2L always uses FTVarState.
+ */
+public class FTCASVarState extends LongVectorClock implements ShadowVar {
+
+    protected volatile long WR;
+
+    public FTCASVarState(boolean isWrite, long/* epoch */ epoch) {
+        if (isWrite) {
+            WR = pack(epoch, LongEpoch.ZERO);
+        } else {
+            WR = pack(LongEpoch.ZERO, epoch);
+        }
+    }
+
+    public static long pack(long/* epoch */ w, long/* epoch */ r) {
+        return (((long) w) << 32) | (((long) r) & 0xFFFFFFFFL);
+    }
+
+    public static long/* epoch */ W(long wr) {
+        return (int) (wr >>> 32);
+    }
+
+    public static long/* epoch */ R(long wr) {
+        return (int) wr;
+    }
+
+    public final boolean cas(long expected, long wr) {
+        return unsafe.compareAndSwapLong(this, wrOffset, expected, wr);
+    }
+
+    @Override
+    public synchronized void makeCV(int len) {
+        super.makeCV(len);
+    }
+
+    @Override
+    public synchronized Object snapshot() {
+        final long wr = WR;
+        return ErrorMessage.format("[W=%s R=%s V=%s]", LongEpoch.toString(W(wr)),
+                LongEpoch.toString(R(wr)), new LongVectorClock(this));
+    }
+
+    @Override
+    public synchronized String toString() {
+        final long wr = WR;
+        return String.format("[W=%s R=%s V=%s]", LongEpoch.toString(W(wr)), LongEpoch.toString(R(wr)),
+                super.toString());
+    }
+
+    private static final Unsafe unsafe = Unsafe.getUnsafe();
+    private static final long wrOffset;
+
+    static {
+        try {
+            wrOffset = unsafe.objectFieldOffset(FTCASVarState.class.getDeclaredField("WR"));
+        } catch (Exception ex) {
+            throw new Error(ex);
+        }
+    }
+}
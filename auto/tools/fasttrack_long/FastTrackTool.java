@@ -0,0 +1,1184 @@
+// AUTO-GENERATED --- DO NOT EDIT DIRECTLY 
+/******************************************************************************
+ *
+ * Copyright (c) 2016, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ ******************************************************************************/
+
+package tools.fasttrack_long;
+
+import acme.util.Assert;
+import acme.util.Util;
+import acme.util.Yikes;
+import acme.util.count.AggregateCounter;
+import acme.util.count.ThreadLocalCounter;
+import acme.util.decorations.Decoration;
+import acme.util.decorations.DecorationFactory;
+import acme.util.decorations.DecorationFactory.Type;
+import acme.util.decorations.DefaultValue;
+import acme.util.decorations.NullDefault;
+import acme.util.io.XMLWriter;
+import acme.util.option.CommandLine;
+import rr.RRMain;
+import rr.annotations.Abbrev;
+import rr.barrier.BarrierEvent;
+import rr.barrier.BarrierListener;
+import rr.barrier.BarrierMonitor;
+import rr.error.ErrorMessage;
+import rr.error.ErrorMessages;
+import rr.event.AccessEvent;
+import rr.event.AccessEvent.Kind;
+import rr.event.AcquireEvent;
+import rr.event.ArrayAccessEvent;
+import rr.event.ClassAccessedEvent;
+import rr.event.ClassInitializedEvent;
+import rr.event.FieldAccessEvent;
+import rr.event.JoinEvent;
+import rr.event.NewThreadEvent;
+import rr.event.ReleaseEvent;
+import rr.event.StartEvent;
+import rr.event.VolatileAccessEvent;
+import rr.event.WaitEvent;
+import rr.instrument.classes.ArrayAllocSiteTracker;
+import rr.meta.AccessInfo;
+import rr.meta.ArrayAccessInfo;
+import rr.meta.ClassInfo;
+import rr.meta.FieldInfo;
+import rr.meta.MetaDataInfoMaps;
+import rr.meta.OperationInfo;
+import rr.state.ShadowLock;
+import rr.state.ShadowThread;
+import rr.state.ShadowVar;
+import rr.state.ShadowVolatile;
+import rr.state.WordArrayState;
+import rr.state.update.Updaters;
+import rr.tool.RR;
+import rr.tool.Tool;
+import tools.util.AdaptiveLongVectorClock;
+import tools.util.LongEpoch;
+import tools.util.LongVectorClock;
+
+/*
+ * A revised FastTrack Tool. This makes several improvements over the original: - Simpler
+ * synchronization scheme for VarStates. (The old optimistic scheme no longer has a performance
+ * benefit and was hard to get right.) - Rephrased rules to: - include a Read-Shared-Same-LongEpoch
+ * test. - eliminate an unnecessary update on joins (this was just for the proof). - remove the
+ * Read-Shared to Exclusive transition. The last change makes the correctness argument easier and
+ * that transition had little to no performance impact in practice. - Properly replays events when
+ * the fast paths detect an error in all cases. - Supports long epochs for larger clock values. -
+ * Handles tid reuse more precisely. The performance over the JavaGrande and DaCapo benchmarks is
+ * more or less identical to the old implementation (within ~1% overall in our tests).
+ */
+@Abbrev("FT2L")
+public class FastTrackTool extends Tool implements BarrierListener<FTBarrierState> {
+
+    private static final boolean COUNT_OPERATIONS = RRMain.slowMode();
+    private static final int INIT_VECTOR_CLOCK_SIZE = 4;
+    private static final int INIT_CLASS_BITS_SIZE = 4;
+
+    // WordArrayState words hold a packed W/R pair, as FTCASVarState does.
+    private static final boolean COMPACT_ARRAYS = LongEpoch.PAIR_FITS_IN_LONG;
+
+    public final ErrorMessage<FieldInfo> fieldErrors = ErrorMessages
+            .makeFieldErrorMessage("FastTrack");
+    public final ErrorMessage<ArrayAccessInfo> arrayErrors = ErrorMessages
+            .makeArrayErrorMessage("FastTrack");
+
+    private final LongVectorClock maxLongEpochPerTid = new LongVectorClock(INIT_VECTOR_CLOCK_SIZE);
+
+    // CS636: Every class object would have a vector clock. classInitTime is the Decoration which
+    // stores ClassInfo (as a key) and corresponding vector clock for that class (as a value).
+    // guarded by classInitTime
+    public static final Decoration<ClassInfo, LongVectorClock> classInitTime = MetaDataInfoMaps
+            .getClasses().makeDecoration("FastTrack:ClassInitTime", Type.MULTIPLE,
+                    new DefaultValue<ClassInfo, LongVectorClock>() {
+                        public LongVectorClock get(ClassInfo st) {
+                            return new LongVectorClock(INIT_VECTOR_CLOCK_SIZE);
+                        }
+                    });
+
+    // Use FTCASVarState for new locations. Set in init(), once -updaters has been processed.
+    private boolean casVarStates;
+
+    public static LongVectorClock getClassInitTime(ClassInfo ci) {
+        synchronized (classInitTime) {
+            return classInitTime.get(ci);
+        }
+    }
+
+    public FastTrackTool(final String name, final Tool next, CommandLine commandLine) {
+        super(name, next, commandLine);
+        new BarrierMonitor<FTBarrierState>(this, new DefaultValue<Object, FTBarrierState>() {
+            public FTBarrierState get(Object k) {
+                return new FTBarrierState(k, INIT_VECTOR_CLOCK_SIZE);
+            }
+        });
+    }
+
+    /*
+     * Shadow State: St.E -- epoch decoration on ShadowThread - Thread-local. Never access from a
+     * different thread St.V -- LongVectorClock decoration on ShadowThread - Thread-local while thread
+     * is running. - The thread starting t may access st.V before the start. - Any thread joining on
+     * t may read st.V after the join. Sm.V -- FTLockState decoration on ShadowLock - See
+     * FTLockState for synchronization rules. Sx.R,Sx.W,Sx.V -- FTVarState objects - See FTVarState
+     * for synchronization rules. Svx.V -- FTVolatileState decoration on ShadowVolatile (serves same
+     * purpose as L for volatiles) - See FTVolatileState for synchronization rules. Sb.V --
+     * FTBarrierState decoration on Barriers - See FTBarrierState for synchronization rules.
+     */
+
+    // invariant: st.E == st.V(st.tid)
+    protected static long/* epoch */ ts_get_E(ShadowThread st) {
+        Assert.panic("Bad");
+        return -1;
+    }
+
+    protected static void ts_set_E(ShadowThread st, long/* epoch */ e) {
+        Assert.panic("Bad");
+    }
+
+    protected static LongVectorClock ts_get_V(ShadowThread st) {
+        Assert.panic("Bad");
+        return null;
+    }
+
+    protected static void ts_set_V(ShadowThread st, LongVectorClock V) {
+        Assert.panic("Bad");
+    }
+
+    protected void maxAndIncLongEpochAndCV(ShadowThread st, LongVectorClock other, OperationInfo info) {
+        final int tid = st.getTid();
+        final LongVectorClock tV = ts_get_V(st);
+        tV.max(other);
+        tV.tick(tid);
+        ts_set_E(st, tV.get(tid));
+    }
+
+    protected void maxLongEpochAndCV(ShadowThread st, LongVectorClock other, OperationInfo info) {
+        final int tid = st.getTid();
+        final LongVectorClock tV = ts_get_V(st);
+        tV.max(other);
+        ts_set_E(st, tV.get(tid));
+    }
+
+    protected void maxLongEpochAndCV(ShadowThread st, AdaptiveLongVectorClock other, OperationInfo info) {
+        final int tid = st.getTid();
+        final LongVectorClock tV = ts_get_V(st);
+        tV.max(other);
+        ts_set_E(st, tV.get(tid));
+    }
+
+    protected void incLongEpochAndCV(ShadowThread st, OperationInfo info) {
+        final int tid = st.getTid();
+        final LongVectorClock tV = ts_get_V(st);
+        tV.tick(tid);
+        ts_set_E(st, tV.get(tid));
+    }
+
+    static final Decoration<ShadowLock, FTLockState> lockVs = ShadowLock.makeDecoration(
+            "FastTrack:ShadowLock", DecorationFactory.Type.MULTIPLE,
+            new DefaultValue<ShadowLock, FTLockState>() {
+                public FTLockState get(final ShadowLock lock) {
+                    return new FTLockState(lock);
+                }
+            });
+
+    // only call when ld.peer() is held
+    static final FTLockState getV(final ShadowLock ld) {
+        return lockVs.get(ld);
+    }
+
+    static final Decoration<ShadowVolatile, FTVolatileState> volatileVs = ShadowVolatile
+            .makeDecoration("FastTrack:shadowVolatile", DecorationFactory.Type.MULTIPLE,
+                    new DefaultValue<ShadowVolatile, FTVolatileState>() {
+                        public FTVolatileState get(final ShadowVolatile vol) {
+                            return new FTVolatileState(vol);
+                        }
+                    });
+
+    // only call when we are in an event handler for the volatile field.
+    protected static final FTVolatileState getV(final ShadowVolatile ld) {
+        return volatileVs.get(ld);
+    }
+
+    @Override
+    public void init() {
+        super.init();
+        casVarStates = Updaters.updateOptions.get() == Updaters.UpdateMode.CAS
+                && LongEpoch.PAIR_FITS_IN_LONG;
+    }
+
+    @Override
+    public ShadowVar makeShadowVar(final AccessEvent event) {
+        if (event.getKind() == Kind.VOLATILE) {
+            final ShadowThread st = event.getThread();
+            final FTVolatileState volV = getV(((VolatileAccessEvent) event).getShadowVolatile());
+            volV.max(ts_get_V(st));
+            return super.makeShadowVar(event);
+        } else if (COMPACT_ARRAYS && event.getKind() == Kind.ARRAY
+                && ((ArrayAccessEvent) event).getArrayState() instanceof WordArrayState) {
+            return WordArrayState.WORDS;
+        } else if (casVarStates) {
+            return new FTCASVarState(event.isWrite(), ts_get_E(event.getThread()));
+        } else {
+            return new FTVarState(event.isWrite(), ts_get_E(event.getThread()));
+        }
+    }
+
+    @Override
+    public void create(NewThreadEvent event) {
+        final ShadowThread st = event.getThread();
+
+        if (ts_get_V(st) == null) {
+            final int tid = st.getTid();
+            final LongVectorClock tV = new LongVectorClock(INIT_VECTOR_CLOCK_SIZE);
+            ts_set_V(st, tV);
+            synchronized (maxLongEpochPerTid) {
+                final long/* epoch */ epoch = maxLongEpochPerTid.get(tid) + 1;
+                tV.set(tid, epoch);
+                ts_set_E(st, epoch);
+            }
+            incLongEpochAndCV(st, null);
+            Util.log("Initial E for " + tid + ": " + LongEpoch.toString(ts_get_E(st)));
+        }
+
+        super.create(event);
+    }
+
+    @Override
+    public void acquire(final AcquireEvent event) {
+        final ShadowThread st = event.getThread();
+        final FTLockState lockV = getV(event.getLock());
+
+        maxLongEpochAndCV(st, lockV, event.getInfo());
+
+        super.acquire(event);
+        if (COUNT_OPERATIONS)
+            acquire.inc(st.getTid());
+    }
+
+    @Override
+    public void release(final ReleaseEvent event) {
+        final ShadowThread st = event.getThread();
+        final LongVectorClock tV = ts_get_V(st);
+        final FTLockState lockV = getV(event.getLock());
+
+        lockV.max(tV);
+        incLongEpochAndCV(st, event.getInfo());
+
+        super.release(event);
+        if (COUNT_OPERATIONS)
+            release.inc(st.getTid());
+    }
+
+    static FTVarState ts_get_badVarState(ShadowThread st) {
+        Assert.panic("Bad");
+        return null;
+    }
+
+    static void ts_set_badVarState(ShadowThread st, FTVarState v) {
+        Assert.panic("Bad");
+    }
+
+    protected static ShadowVar getOriginalOrBad(ShadowVar original, ShadowThread st) {
+        final FTVarState savedState = ts_get_badVarState(st);
+        if (savedState != null) {
+            ts_set_badVarState(st, null);
+            return savedState;
+        } else {
+            return original;
+        }
+    }
+
+    // Bitset of ClassInfo ids whose init time this thread has already joined.
+    // Thread-local: only read and written by the owning thread.
+    protected static long[] ts_get_classInitJoined(ShadowThread st) {
+        Assert.panic("Bad");
+        return null;
+    }
+
+    protected static void ts_set_classInitJoined(ShadowThread st, long[] bits) {
+        Assert.panic("Bad");
+    }
+
+    /*
+     * The init time of a class never changes once another thread can see the class, so each thread
+     * only needs to join it once. Only call from the slow path, before any race checks.
+     */
+    protected void joinClassInitTime(final ShadowThread st, final ClassInfo owner,
+            final OperationInfo info) {
+        final int id = owner.getId();
+        long[] bits = ts_get_classInitJoined(st);
+        if (bits != null && (id >> 6) < bits.length && (bits[id >> 6] & (1L << id)) != 0) {
+            return;
+        }
+        synchronized (classInitTime) {
+            maxLongEpochAndCV(st, classInitTime.get(owner), info); // won't change current epoch
+        }
+        if (bits == null || (id >> 6) >= bits.length) {
+            final long[] newBits = new long[Math.max((id >> 6) + 1,
+                    bits == null ? INIT_CLASS_BITS_SIZE : bits.length * 2)];
+            if (bits != null) {
+                System.arraycopy(bits, 0, newBits, 0, bits.length);
+            }
+            bits = newBits;
+            ts_set_classInitJoined(st, bits);
+        }
+        bits[id >> 6] |= 1L << id;
+    }
+
+    protected void joinClassInitTime(final AccessEvent event, final ShadowThread st) {
+        if (event.getTarget() == null && event.getKind() == Kind.FIELD) {
+            // CS636: Static variable
+            joinClassInitTime(st, ((FieldAccessEvent) event).getInfo().getField().getOwner(),
+                    event.getAccessInfo());
+        }
+    }
+
+    /*
+     * Hot path: no metadata lookups, locks, or allocation happen before the same-epoch checks in
+     * read/write. Static accesses join the owning class's init time in the slow path only, which
+     * is sound because the same-epoch paths perform no race checks.
+     */
+    @Override
+    public void access(final AccessEvent event) {
+        final ShadowThread st = event.getThread();
+        final ShadowVar shadow = getOriginalOrBad(event.getOriginalShadow(), st);
+
+        if (shadow instanceof FTVarState) {
+            final FTVarState sx = (FTVarState) shadow;
+            if (event.isWrite()) {
+                write(event, st, sx);
+            } else {
+                read(event, st, sx);
+            }
+        } else if (shadow == WordArrayState.WORDS) {
+            final ArrayAccessEvent aae = (ArrayAccessEvent) event;
+            final WordArrayState as = (WordArrayState) aae.getArrayState();
+            final int index = aae.getIndex();
+            if (!as.inBounds(index)) {
+                // the JVM throws once we return. Skip it, as FineArrayState does.
+                Yikes.yikes("Bad shadow array access: out of bounds.");
+            } else if (event.isWrite()) {
+                write(aae, st, as, index);
+            } else {
+                read(aae, st, as, index);
+            }
+        } else if (shadow instanceof FTCASVarState) {
+            final FTCASVarState sx = (FTCASVarState) shadow;
+            if (event.isWrite()) {
+                write(event, st, sx);
+            } else {
+                read(event, st, sx);
+            }
+        } else {
+            super.access(event);
+        }
+    }
+
+    // Counters for relative frequencies of each rule
+    private static final ThreadLocalCounter readSameLongEpoch = new ThreadLocalCounter("FT",
+            "Read Same LongEpoch", RR.maxTidOption.get());
+    private static final ThreadLocalCounter readSharedSameLongEpoch = new ThreadLocalCounter("FT",
+            "ReadShared Same LongEpoch", RR.maxTidOption.get());
+    private static final ThreadLocalCounter readExclusive = new ThreadLocalCounter("FT",
+            "Read Exclusive", RR.maxTidOption.get());
+    private static final ThreadLocalCounter readShare = new ThreadLocalCounter("FT", "Read Share",
+            RR.maxTidOption.get());
+    private static final ThreadLocalCounter readShared = new ThreadLocalCounter("FT", "Read Shared",
+            RR.maxTidOption.get());
+    private static final ThreadLocalCounter writeReadError = new ThreadLocalCounter("FT",
+            "Write-Read Error", RR.maxTidOption.get());
+    private static final ThreadLocalCounter writeSameLongEpoch = new ThreadLocalCounter("FT",
+            "Write Same LongEpoch", RR.maxTidOption.get());
+    private static final ThreadLocalCounter writeExclusive = new ThreadLocalCounter("FT",
+            "Write Exclusive", RR.maxTidOption.get());
+    private static final ThreadLocalCounter writeShared = new ThreadLocalCounter("FT",
+            "Write Shared", RR.maxTidOption.get());
+    private static final ThreadLocalCounter writeWriteError = new ThreadLocalCounter("FT",
+            "Write-Write Error", RR.maxTidOption.get());
+    private static final ThreadLocalCounter readWriteError = new ThreadLocalCounter("FT",
+            "Read-Write Error", RR.maxTidOption.get());
+    private static final ThreadLocalCounter sharedWriteError = new ThreadLocalCounter("FT",
+            "Shared-Write Error", RR.maxTidOption.get());
+    private static final ThreadLocalCounter acquire = new ThreadLocalCounter("FT", "Acquire",
+            RR.maxTidOption.get());
+    private static final ThreadLocalCounter release = new ThreadLocalCounter("FT", "Release",
+            RR.maxTidOption.get());
+    private static final ThreadLocalCounter fork = new ThreadLocalCounter("FT", "Fork",
+            RR.maxTidOption.get());
+    private static final ThreadLocalCounter join = new ThreadLocalCounter("FT", "Join",
+            RR.maxTidOption.get());
+    private static final ThreadLocalCounter barrier = new ThreadLocalCounter("FT", "Barrier",
+            RR.maxTidOption.get());
+    private static final ThreadLocalCounter wait = new ThreadLocalCounter("FT", "Wait",
+            RR.maxTidOption.get());
+    private static final ThreadLocalCounter vol = new ThreadLocalCounter("FT", "Volatile",
+            RR.maxTidOption.get());
+
+    private static final ThreadLocalCounter other = new ThreadLocalCounter("FT", "Other",
+            RR.maxTidOption.get());
+
+    static {
+        AggregateCounter reads = new AggregateCounter("FT", "Total Reads", readSameLongEpoch,
+                readSharedSameLongEpoch, readExclusive, readShare, readShared, writeReadError);
+        AggregateCounter writes = new AggregateCounter("FT", "Total Writes", writeSameLongEpoch,
+                writeExclusive, writeShared, writeWriteError, readWriteError, sharedWriteError);
+        AggregateCounter accesses = new AggregateCounter("FT", "Total Access Ops", reads, writes);
+        new AggregateCounter("FT", "Total Ops", accesses, acquire, release, fork, join, barrier,
+                wait, vol, other);
+    }
+
+    protected void read(final AccessEvent event, final ShadowThread st, final FTVarState sx) {
+        final long/* epoch */ e = ts_get_E(st);
+
+        /* optional */ {
+            final long/* epoch */ r = sx.R;
+            if (r == e) {
+                if (COUNT_OPERATIONS)
+                    readSameLongEpoch.inc(st.getTid());
+                return;
+            } else if (r == LongEpoch.READ_SHARED && sx.get(st.getTid()) == e) {
+                if (COUNT_OPERATIONS)
+                    readSharedSameLongEpoch.inc(st.getTid());
+                return;
+            }
+        }
+
+        joinClassInitTime(event, st);
+
+        synchronized (sx) {
+            final LongVectorClock tV = ts_get_V(st);
+            final long/* epoch */ r = sx.R;
+            final long/* epoch */ w = sx.W;
+            final int wTid = LongEpoch.tid(w);
+            final int tid = st.getTid();
+
+            if (wTid != tid && !LongEpoch.leq(w, tV.get(wTid))) {
+                if (COUNT_OPERATIONS)
+                    writeReadError.inc(tid);
+                error(event, sx, "Write-Read Race", "Write by ", wTid, "Read by ", tid);
+                // best effort recovery:
+                return;
+            }
+
+            if (r != LongEpoch.READ_SHARED) {
+                final int rTid = LongEpoch.tid(r);
+                if (rTid == tid || LongEpoch.leq(r, tV.get(rTid))) {
+                    if (COUNT_OPERATIONS)
+                        readExclusive.inc(tid);
+                    sx.R = e;
+                } else {
+                    if (COUNT_OPERATIONS)
+                        readShare.inc(tid);
+                    int initSize = Math.max(Math.max(rTid, tid), INIT_VECTOR_CLOCK_SIZE);
+                    sx.makeCV(initSize);
+                    sx.set(rTid, r);
+                    sx.set(tid, e);
+                    sx.R = LongEpoch.READ_SHARED;
+                }
+            } else {
+                if (COUNT_OPERATIONS)
+                    readShared.inc(tid);
+                sx.set(tid, e);
+            }
+        }
+    }
+
+    // CS636: Commented the method to prevent inlining of the read barrier
+    // public static boolean readFastPath(final ShadowVar shadow, final ShadowThread st) {
+    // if (shadow instanceof FTVarState) {
+    // final FTVarState sx = ((FTVarState) shadow);
+
+    // final long/* epoch */ e = ts_get_E(st);
+
+    // /* optional */ {
+    // final long/* epoch */ r = sx.R;
+    // if (r == e) {
+    // if (COUNT_OPERATIONS)
+    // readSameLongEpoch.inc(st.getTid());
+    // return true;
+    // } else if (r == LongEpoch.READ_SHARED && sx.get(st.getTid()) == e) {
+    // if (COUNT_OPERATIONS)
+    // readSharedSameLongEpoch.inc(st.getTid());
+    // return true;
+    // }
+    // }
+
+    // synchronized (sx) {
+    // final int tid = st.getTid();
+    // final LongVectorClock tV = ts_get_V(st);
+    // final long/* epoch */ r = sx.R;
+    // final long/* epoch */ w = sx.W;
+    // final int wTid = LongEpoch.tid(w);
+    // if (wTid != tid && !LongEpoch.leq(w, tV.get(wTid))) {
+    // ts_set_badVarState(st, sx);
+    // return false;
+    // }
+
+    // if (r != LongEpoch.READ_SHARED) {
+    // final int rTid = LongEpoch.tid(r);
+    // if (rTid == tid || LongEpoch.leq(r, tV.get(rTid))) {
+    // if (COUNT_OPERATIONS)
+    // readExclusive.inc(tid);
+    // sx.R = e;
+    // } else {
+    // if (COUNT_OPERATIONS)
+    // readShare.inc(tid);
+    // int initSize = Math.max(Math.max(rTid, tid), INIT_VECTOR_CLOCK_SIZE);
+    // sx.makeCV(initSize);
+    // sx.set(rTid, r);
+    // sx.set(tid, e);
+    // sx.R = LongEpoch.READ_SHARED;
+    // }
+    // } else {
+    // if (COUNT_OPERATIONS)
+    // readShared.inc(tid);
+    // sx.set(tid, e);
+    // }
+    // return true;
+    // }
+    // } else {
+    // return false;
+    // }
+    // }
+
+    /***/
+
+    protected void write(final AccessEvent event, final ShadowThread st, final FTVarState sx) {
+        final long/* epoch */ e = ts_get_E(st);
+
+        /* optional */ {
+            final long/* epoch */ w = sx.W;
+            if (w == e) {
+                if (COUNT_OPERATIONS)
+                    writeSameLongEpoch.inc(st.getTid());
+                return;
+            }
+        }
+
+        joinClassInitTime(event, st);
+
+        synchronized (sx) {
+            final long/* epoch */ w = sx.W;
+            final int wTid = LongEpoch.tid(w);
+            final int tid = st.getTid();
+            final LongVectorClock tV = ts_get_V(st);
+
+            if (wTid != tid /* optimization */ && !LongEpoch.leq(w, tV.get(wTid))) {
+                if (COUNT_OPERATIONS)
+                    writeWriteError.inc(tid);
+                error(event, sx, "Write-Write Race", "Write by ", wTid, "Write by ", tid);
+            }
+
+            final long/* epoch */ r = sx.R;
+            if (r != LongEpoch.READ_SHARED) {
+                final int rTid = LongEpoch.tid(r);
+                if (rTid != tid /* optimization */ && !LongEpoch.leq(r, tV.get(rTid))) {
+                    if (COUNT_OPERATIONS)
+                        readWriteError.inc(tid);
+                    error(event, sx, "Read-Write Race", "Read by ", rTid, "Write by ", tid);
+                } else {
+                    if (COUNT_OPERATIONS)
+                        writeExclusive.inc(tid);
+                }
+            } else {
+                if (sx.anyGt(tV)) {
+                    for (int prevReader = sx.nextGt(tV, 0); prevReader > -1; prevReader = sx
+                            .nextGt(tV, prevReader + 1)) {
+                        error(event, sx, "Read(Shared)-Write Race", "Read by ", prevReader,
+                                "Write by ", tid);
+                    }
+                    if (COUNT_OPERATIONS)
+                        sharedWriteError.inc(tid);
+                } else {
+                    if (COUNT_OPERATIONS)
+                        writeShared.inc(tid);
+                }
+            }
+            sx.W = e;
+        }
+    }
+
+    // CS636: Commented the method to prevent inlining of the read barrier
+    // only count events when returning true;
+    // public static boolean writeFastPath(final ShadowVar shadow, final ShadowThread st) {
+    // if (shadow instanceof FTVarState) {
+    // final FTVarState sx = ((FTVarState) shadow);
+
+    // final long/* epoch */ E = ts_get_E(st);
+
+    // /* optional */ {
+    // final long/* epoch */ w = sx.W;
+    // if (w == E) {
+    // if (COUNT_OPERATIONS)
+    // writeSameLongEpoch.inc(st.getTid());
+    // return true;
+    // }
+    // }
+
+    // synchronized (sx) {
+    // final int tid = st.getTid();
+    // final long/* epoch */ w = sx.W;
+    // final int wTid = LongEpoch.tid(w);
+    // final LongVectorClock tV = ts_get_V(st);
+
+    // if (wTid != tid && !LongEpoch.leq(w, tV.get(wTid))) {
+    // ts_set_badVarState(st, sx);
+    // return false;
+    // }
+
+    // final long/* epoch */ r = sx.R;
+    // if (r != LongEpoch.READ_SHARED) {
+    // final int rTid = LongEpoch.tid(r);
+    // if (rTid != tid && !LongEpoch.leq(r, tV.get(rTid))) {
+    // ts_set_badVarState(st, sx);
+    // return false;
+    // }
+    // if (COUNT_OPERATIONS)
+    // writeExclusive.inc(tid);
+    // } else {
+    // if (sx.anyGt(tV)) {
+    // ts_set_badVarState(st, sx);
+    // return false;
+    // }
+    // if (COUNT_OPERATIONS)
+    // writeShared.inc(tid);
+    // }
+    // sx.W = E;
+    // return true;
+    // }
+    // } else {
+    // return false;
+    // }
+    // }
+
+    /*
+     * read and write for FTCASVarState (-updaters=CAS). The rules are the same as above, but the
+     * exclusive cases commit with a CAS on sx.WR and start over if it fails, so they never block.
+     * Only the move into READ_SHARED and accesses to READ_SHARED locations synchronize on sx.
+     * Races are reported after the CAS succeeds, so a retry never reports one twice.
+     */
+    protected void read(final AccessEvent event, final ShadowThread st, final FTCASVarState sx) {
+        final long/* epoch */ e = ts_get_E(st);
+
+        /* optional */ {
+            final long/* epoch */ r = FTCASVarState.R(sx.WR);
+            if (r == e) {
+                if (COUNT_OPERATIONS)
+                    readSameLongEpoch.inc(st.getTid());
+                return;
+            } else if (r == LongEpoch.READ_SHARED && sx.get(st.getTid()) == e) {
+                if (COUNT_OPERATIONS)
+                    readSharedSameLongEpoch.inc(st.getTid());
+                return;
+            }
+        }
+
+        joinClassInitTime(event, st);
+
+        final LongVectorClock tV = ts_get_V(st);
+        final int tid = st.getTid();
+        while (true) {
+            final long wr = sx.WR;
+            final long/* epoch */ r = FTCASVarState.R(wr);
+
+            if (r == LongEpoch.READ_SHARED) {
+                synchronized (sx) {
+                    // R is final once READ_SHARED, and W only changes under the lock.
+                    final long/* epoch */ w = FTCASVarState.W(sx.WR);
+                    final int wTid = LongEpoch.tid(w);
+                    if (wTid != tid && !LongEpoch.leq(w, tV.get(wTid))) {
+                        if (COUNT_OPERATIONS)
+                            writeReadError.inc(tid);
+                        error(event, sx, "Write-Read Race", "Write by ", wTid, "Read by ", tid);
+                        return;
+                    }
+                    if (COUNT_OPERATIONS)
+                        readShared.inc(tid);
+                    sx.set(tid, e);
+                }
+                return;
+            }
+
+            final long/* epoch */ w = FTCASVarState.W(wr);
+            final int wTid = LongEpoch.tid(w);
+            if (wTid != tid && !LongEpoch.leq(w, tV.get(wTid))) {
+                if (COUNT_OPERATIONS)
+                    writeReadError.inc(tid);
+                error(event, sx, "Write-Read Race", "Write by ", wTid, "Read by ", tid);
+                // best effort recovery:
+                return;
+            }
+
+            final int rTid = LongEpoch.tid(r);
+            if (rTid == tid || LongEpoch.leq(r, tV.get(rTid))) {
+                if (sx.cas(wr, FTCASVarState.pack(w, e))) {
+                    if (COUNT_OPERATIONS)
+                        readExclusive.inc(tid);
+                    return;
+                }
+            } else {
+                synchronized (sx) {
+                    if (sx.WR == wr) {
+                        int initSize = Math.max(Math.max(rTid, tid), INIT_VECTOR_CLOCK_SIZE);
+                        sx.makeCV(initSize);
+                        sx.set(rTid, r);
+                        sx.set(tid, e);
+                        if (sx.cas(wr, FTCASVarState.pack(w, LongEpoch.READ_SHARED))) {
+                            if (COUNT_OPERATIONS)
+                                readShare.inc(tid);
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    protected void write(final AccessEvent event, final ShadowThread st, final FTCASVarState sx) {
+        final long/* epoch */ e = ts_get_E(st);
+
+        /* optional */ {
+            final long/* epoch */ w = FTCASVarState.W(sx.WR);
+            if (w == e) {
+                if (COUNT_OPERATIONS)
+                    writeSameLongEpoch.inc(st.getTid());
+                return;
+            }
+        }
+
+        joinClassInitTime(event, st);
+
+        final LongVectorClock tV = ts_get_V(st);
+        final int tid = st.getTid();
+        while (true) {
+            final long wr = sx.WR;
+            final long/* epoch */ r = FTCASVarState.R(wr);
+
+            if (r == LongEpoch.READ_SHARED) {
+                synchronized (sx) {
+                    final long/* epoch */ w = FTCASVarState.W(sx.WR);
+                    final int wTid = LongEpoch.tid(w);
+                    if (wTid != tid /* optimization */ && !LongEpoch.leq(w, tV.get(wTid))) {
+                        if (COUNT_OPERATIONS)
+                            writeWriteError.inc(tid);
+                        error(event, sx, "Write-Write Race", "Write by ", wTid, "Write by ", tid);
+                    }
+                    if (sx.anyGt(tV)) {
+                        for (int prevReader = sx.nextGt(tV, 0); prevReader > -1; prevReader = sx
+                                .nextGt(tV, prevReader + 1)) {
+                            error(event, sx, "Read(Shared)-Write Race", "Read by ", prevReader,
+                                    "Write by ", tid);
+                        }
+                        if (COUNT_OPERATIONS)
+                            sharedWriteError.inc(tid);
+                    } else {
+                        if (COUNT_OPERATIONS)
+                            writeShared.inc(tid);
+                    }
+                    // no CAS needed: once READ_SHARED, WR only changes under the lock.
+                    sx.WR = FTCASVarState.pack(e, LongEpoch.READ_SHARED);
+                }
+                return;
+            }
+
+            final long/* epoch */ w = FTCASVarState.W(wr);
+            final int wTid = LongEpoch.tid(w);
+            final int rTid = LongEpoch.tid(r);
+            final boolean writeRace = wTid != tid /* optimization */
+                    && !LongEpoch.leq(w, tV.get(wTid));
+            final boolean readRace = rTid != tid /* optimization */
+                    && !LongEpoch.leq(r, tV.get(rTid));
+
+            if (sx.cas(wr, FTCASVarState.pack(e, r))) {
+                if (writeRace) {
+                    if (COUNT_OPERATIONS)
+                        writeWriteError.inc(tid);
+                    error(event, sx, "Write-Write Race", "Write by ", wTid, "Write by ", tid);
+                }
+                if (readRace) {
+                    if (COUNT_OPERATIONS)
+                        readWriteError.inc(tid);
+                    error(event, sx, "Read-Write Race", "Read by ", rTid, "Write by ", tid);
+                } else {
+                    if (COUNT_OPERATIONS)
+                        writeExclusive.inc(tid);
+                }
+                return;
+            }
+        }
+    }
+
+    /*
+     * read and write for indices of a WordArrayState (-array=COMPACT or BLOCK). An index's word
+     * packs its W and R epochs as FTCASVarState.WR does, and the exclusive rules update it with
+     * casWord. When an index becomes READ_SHARED, its word's R is set to READ_SHARED and an FTVarState
+     * holding W and the read clock is installed for it, both with the lock on the array state
+     * held. From then on, the FTVarState paths above handle that index and the word's W is stale,
+     * so R must be checked before W.
+     */
+    protected void read(final ArrayAccessEvent event, final ShadowThread st,
+            final WordArrayState as, final int index) {
+        final long/* epoch */ e = ts_get_E(st);
+        final LongVectorClock tV = ts_get_V(st);
+        final int tid = st.getTid();
+        while (true) {
+            final long wr = as.getWord(index);
+            final long/* epoch */ r = FTCASVarState.R(wr);
+            if (r == e) {
+                if (COUNT_OPERATIONS)
+                    readSameLongEpoch.inc(tid);
+                return;
+            }
+            if (r == LongEpoch.READ_SHARED) {
+                read(event, st, inflated(as, index));
+                return;
+            }
+
+            final long/* epoch */ w = FTCASVarState.W(wr);
+            final int wTid = LongEpoch.tid(w);
+            if (wTid != tid && !LongEpoch.leq(w, tV.get(wTid))) {
+                if (COUNT_OPERATIONS)
+                    writeReadError.inc(tid);
+                error(event, snapshot(wr), "Write-Read Race", "Write by ", wTid, "Read by ", tid);
+                // best effort recovery:
+                return;
+            }
+
+            final int rTid = LongEpoch.tid(r);
+            if (rTid == tid || LongEpoch.leq(r, tV.get(rTid))) {
+                if (as.casWord(index, wr, FTCASVarState.pack(w, e))) {
+                    if (COUNT_OPERATIONS)
+                        readExclusive.inc(tid);
+                    return;
+                }
+            } else {
+                synchronized (as) {
+                    if (as.casWord(index, wr, FTCASVarState.pack(w, LongEpoch.READ_SHARED))) {
+                        final FTVarState sx = new FTVarState(true, w);
+                        int initSize = Math.max(Math.max(rTid, tid), INIT_VECTOR_CLOCK_SIZE);
+                        sx.makeCV(initSize);
+                        sx.set(rTid, r);
+                        sx.set(tid, e);
+                        sx.R = LongEpoch.READ_SHARED;
+                        if (!as.putState(index, null, sx)) {
+                            Assert.panic("Index of compact array inflated twice: " + index);
+                        }
+                        if (COUNT_OPERATIONS)
+                            readShare.inc(tid);
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    protected void write(final ArrayAccessEvent event, final ShadowThread st,
+            final WordArrayState as, final int index) {
+        final long/* epoch */ e = ts_get_E(st);
+        final LongVectorClock tV = ts_get_V(st);
+        final int tid = st.getTid();
+        while (true) {
+            final long wr = as.getWord(index);
+            final long/* epoch */ r = FTCASVarState.R(wr);
+            if (r == LongEpoch.READ_SHARED) {
+                write(event, st, inflated(as, index));
+                return;
+            }
+            final long/* epoch */ w = FTCASVarState.W(wr);
+            if (w == e) {
+                if (COUNT_OPERATIONS)
+                    writeSameLongEpoch.inc(tid);
+                return;
+            }
+
+            final int wTid = LongEpoch.tid(w);
+            final int rTid = LongEpoch.tid(r);
+            final boolean writeRace = wTid != tid /* optimization */
+                    && !LongEpoch.leq(w, tV.get(wTid));
+            final boolean readRace = rTid != tid /* optimization */
+                    && !LongEpoch.leq(r, tV.get(rTid));
+
+            if (as.casWord(index, wr, FTCASVarState.pack(e, r))) {
+                if (writeRace) {
+                    if (COUNT_OPERATIONS)
+                        writeWriteError.inc(tid);
+                    error(event, snapshot(wr), "Write-Write Race", "Write by ", wTid, "Write by ",
+                            tid);
+                }
+                if (readRace) {
+                    if (COUNT_OPERATIONS)
+                        readWriteError.inc(tid);
+                    error(event, snapshot(wr), "Read-Write Race", "Read by ", rTid, "Write by ",
+                            tid);
+                } else {
+                    if (COUNT_OPERATIONS)
+                        writeExclusive.inc(tid);
+                }
+                return;
+            }
+        }
+    }
+
+    // The FTVarState of an index whose word says READ_SHARED.
+    protected static FTVarState inflated(final WordArrayState as, final int index) {
+        ShadowVar sx = as.getState(index);
+        if (sx == null) {
+            // the inflating thread holds the lock until the state is installed.
+            synchronized (as) {
+                sx = as.getState(index);
+            }
+        }
+        return (FTVarState) sx;
+    }
+
+    // The W/R state in a word, for error messages.
+    private static FTVarState snapshot(final long wr) {
+        final FTVarState sx = new FTVarState(true, FTCASVarState.W(wr));
+        sx.R = FTCASVarState.R(wr);
+        return sx;
+    }
+
+    /*****/
+
+    @Override
+    public void volatileAccess(final VolatileAccessEvent event) {
+        final ShadowThread st = event.getThread();
+        final FTVolatileState volV = getV((event).getShadowVolatile());
+
+        if (event.isWrite()) {
+            final LongVectorClock tV = ts_get_V(st);
+            volV.max(tV);
+            incLongEpochAndCV(st, event.getAccessInfo());
+        } else {
+            maxLongEpochAndCV(st, volV, event.getAccessInfo());
+        }
+
+        super.volatileAccess(event);
+        if (COUNT_OPERATIONS)
+            vol.inc(st.getTid());
+    }
+
+    // st forked su
+    @Override
+    public void preStart(final StartEvent event) {
+        final ShadowThread st = event.getThread();
+        final ShadowThread su = event.getNewThread();
+        final LongVectorClock tV = ts_get_V(st);
+
+        /*
+         * Safe to access su.V, because u has not started yet. This will give us exclusive access to
+         * it. There may be a race if two or more threads race are starting u, but of course, a
+         * second attempt to start u will crash... RR guarantees that the forked thread will
+         * synchronize with thread t before it does anything else.
+         */
+        maxAndIncLongEpochAndCV(su, tV, event.getInfo());
+        incLongEpochAndCV(st, event.getInfo());
+
+        super.preStart(event);
+        if (COUNT_OPERATIONS)
+            fork.inc(st.getTid());
+    }
+
+    @Override
+    public void stop(ShadowThread st) {
+        synchronized (maxLongEpochPerTid) {
+            maxLongEpochPerTid.set(st.getTid(), ts_get_E(st));
+        }
+        super.stop(st);
+        if (COUNT_OPERATIONS)
+            other.inc(st.getTid());
+    }
+
+    // t joined on u
+    @Override
+    public void postJoin(final JoinEvent event) {
+        final ShadowThread st = event.getThread();
+        final ShadowThread su = event.getJoiningThread();
+
+        // move our clock ahead. Safe to access su.V, as above, when
+        // lock is held and u is not running. Also, RR guarantees
+        // this thread has sync'd with u.
+
+        maxLongEpochAndCV(st, ts_get_V(su), event.getInfo());
+        // no need to inc su's clock here -- that was just for
+        // the proof in the original FastTrack rules.
+
+        super.postJoin(event);
+        if (COUNT_OPERATIONS)
+            join.inc(st.getTid());
+    }
+
+    @Override
+    public void preWait(WaitEvent event) {
+        final ShadowThread st = event.getThread();
+        final FTLockState lockV = getV(event.getLock());
+        lockV.max(ts_get_V(st)); // we hold lock, so no need to sync here...
+        incLongEpochAndCV(st, event.getInfo());
+        super.preWait(event);
+        if (COUNT_OPERATIONS)
+            wait.inc(st.getTid());
+    }
+
+    @Override
+    public void postWait(WaitEvent event) {
+        final ShadowThread st = event.getThread();
+        final FTLockState lockV = getV(event.getLock());
+        maxLongEpochAndCV(st, lockV, event.getInfo()); // we hold lock here
+        super.postWait(event);
+        if (COUNT_OPERATIONS)
+            wait.inc(st.getTid());
+    }
+
+    public static String toString(final ShadowThread td) {
+        return String.format("[tid=%-2d   C=%s   E=%s]", td.getTid(), ts_get_V(td),
+                LongEpoch.toString(ts_get_E(td)));
+    }
+
+    // toString(td), formatted by the error reporter from a copy of td's clock.
+    private static Object snapshot(final ShadowThread td) {
+        return ErrorMessage.format("[tid=%-2d   C=%s   E=%s]", td.getTid(), ts_get_V(td),
+                LongEpoch.toString(ts_get_E(td)));
+    }
+
+    private final Decoration<ShadowThread, LongVectorClock> vectorClockForBarrierEntry = ShadowThread
+            .makeDecoration("FT:barrier", DecorationFactory.Type.MULTIPLE,
+                    new NullDefault<ShadowThread, LongVectorClock>());
+
+    public void preDoBarrier(BarrierEvent<FTBarrierState> event) {
+        final ShadowThread st = event.getThread();
+        final FTBarrierState barrierObj = event.getBarrier();
+        synchronized (barrierObj) {
+            final LongVectorClock barrierV = barrierObj.enterBarrier();
+            barrierV.max(ts_get_V(st));
+            vectorClockForBarrierEntry.set(st, barrierV);
+        }
+        if (COUNT_OPERATIONS)
+            barrier.inc(st.getTid());
+    }
+
+    public void postDoBarrier(BarrierEvent<FTBarrierState> event) {
+        final ShadowThread st = event.getThread();
+        final FTBarrierState barrierObj = event.getBarrier();
+        synchronized (barrierObj) {
+            final LongVectorClock barrierV = vectorClockForBarrierEntry.get(st);
+            barrierObj.stopUsingOldLongVectorClock(barrierV);
+            maxAndIncLongEpochAndCV(st, barrierV, null);
+        }
+        if (COUNT_OPERATIONS)
+            barrier.inc(st.getTid());
+    }
+
+    ///
+
+    @Override
+    public void classInitialized(ClassInitializedEvent event) {
+        final ShadowThread st = event.getThread();
+        final LongVectorClock tV = ts_get_V(st);
+        synchronized (classInitTime) {
+            LongVectorClock initTime = classInitTime.get(event.getRRClass());
+            initTime.copy(tV);
+        }
+        incLongEpochAndCV(st, null);
+        super.classInitialized(event);
+        if (COUNT_OPERATIONS)
+            other.inc(st.getTid());
+    }
+
+    @Override
+    public void classAccessed(ClassAccessedEvent event) {
+        final ShadowThread st = event.getThread();
+        joinClassInitTime(st, event.getRRClass(), null);
+        if (COUNT_OPERATIONS)
+            other.inc(st.getTid());
+    }
+
+    @Override
+    public void printXML(XMLWriter xml) {
+        for (ShadowThread td : ShadowThread.getThreads()) {
+            xml.print("thread", toString(td));
+        }
+    }
+
+    protected void error(final AccessEvent ae, final ShadowVar x, final String description,
+            final String prevOp, final int prevTid, final String curOp, final int curTid) {
+
+        if (ae instanceof FieldAccessEvent) {
+            fieldError((FieldAccessEvent) ae, x, description, prevOp, prevTid, curOp, curTid);
+        } else {
+            arrayError((ArrayAccessEvent) ae, x, description, prevOp, prevTid, curOp, curTid);
+        }
+    }
+
+    protected void arrayError(final ArrayAccessEvent aae, final ShadowVar sx,
+            final String description, final String prevOp, final int prevTid, final String curOp,
+            final int curTid) {
+        final ShadowThread st = aae.getThread();
+        final Object target = aae.getTarget();
+
+        if (arrayErrors.stillLooking(aae.getInfo())) {
+            arrayErrors.error(st, aae.getInfo(), "Alloc Site", ArrayAllocSiteTracker.get(target),
+                    "Shadow State", sx, "Current Thread", snapshot(st), "Array",
+                    Util.objectToIdentityString(target) + "[" + aae.getIndex() + "]", "Message",
+                    description, "Previous Op", prevOp + " " + ShadowThread.get(prevTid),
+                    "Currrent Op", curOp + " " + ShadowThread.get(curTid), "Stack",
+                    ShadowThread.stackDumpForErrorMessage(st));
+        }
+        Assert.assertTrue(prevTid != curTid);
+
+        aae.getArrayState().specialize();
+
+        if (!arrayErrors.stillLooking(aae.getInfo())) {
+            advance(aae);
+        }
+    }
+
+    protected void fieldError(final FieldAccessEvent fae, final ShadowVar sx,
+            final String description, final String prevOp, final int prevTid, final String curOp,
+            final int curTid) {
+        final FieldInfo fd = fae.getInfo().getField();
+        final ShadowThread st = fae.getThread();
+        final Object target = fae.getTarget();
+
+        if (fieldErrors.stillLooking(fd)) {
+            fieldErrors.error(st, fd, "Shadow State", sx, "Current Thread", snapshot(st), "Class",
+                    (target == null ? fd.getOwner() : target.getClass()), "Field",
+                    Util.objectToIdentityString(target) + "." + fd, "Message", description,
+                    "Previous Op", prevOp + " " + ShadowThread.get(prevTid), "Currrent Op",
+                    curOp + " " + ShadowThread.get(curTid), "Stack",
+                    ShadowThread.stackDumpForErrorMessage(st));
+        }
+
+        Assert.assertTrue(prevTid != curTid);
+
+        if (!fieldErrors.stillLooking(fd)) {
+            advance(fae);
+        }
+    }
+}
@@ -0,0 +1,684 @@
+// AUTO-GENERATED --- DO NOT EDIT DIRECTLY 
+/******************************************************************************
+ *
+ * Copyright (c) 2016, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ ******************************************************************************/
+
+package tools.fasttrack_long;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import acme.util.Assert;
+import acme.util.Util;
+import acme.util.option.CommandLine;
+import acme.util.option.CommandLineOption;
+import rr.RRMain;
+import rr.annotations.Abbrev;
+import rr.error.ErrorMessage;
+import rr.error.ErrorMessages;
+import rr.meta.ArrayAccessInfo;
+import rr.meta.ClassInfo;
+import rr.meta.FieldAccessInfo;
+import rr.meta.FieldInfo;
+import rr.meta.MetaDataInfoMaps;
+import rr.replay.RRReplay;
+import rr.replay.TraceAnalyzer;
+import rr.replay.TraceReader;
+import rr.state.ArrayStateFactory;
+import rr.state.ShadowThread;
+import rr.tool.Tool;
+import tools.util.LongEpoch;
+import tools.util.LongVectorClock;
+
+/*
+ * FT2 for a trace recorded with -tool=LOG, with the accesses checked in parallel:
+ *
+ * rrrun -tool=FT2P events.rrlog
+ *
+ * A sequential pass over the trace applies FT2's rules for the synchronization events only, and
+ * files each access, with the clock its thread had at that point, into one of several partitions
+ * chosen by the field or array index it touches. The partitions are then checked on a fork-join
+ * pool of -availableProcessors threads, each with its own FTVarStates and FT2's read and write
+ * rules. All accesses to a location are in one partition, in trace order, so the races found are
+ * the ones FT2 finds when replaying the trace. Only which of them come first, and so which are
+ * printed when a declaration has more than -maxWarn, may differ. Traces have no stacks or
+ * allocation sites, so the reports have neither.
+ *
+ * The trace is processed in windows of -ft2pWindow accesses: once that many are filed, the
+ * sequential pass stops until the pool has checked them, and then drops them and the clocks they
+ * were made at. So the buffered accesses and clocks are bounded by the window, whatever the length
+ * of the trace. The FTVarStates carry over from one window to the next, and, as under FT2, there
+ * is one for each location accessed so far.
+ *
+ * On a running program, FT2P just passes events on.
+ */
+@Abbrev("FT2P")
+public class ParallelFastTrackTool extends Tool implements TraceAnalyzer {
+
+    private static final int INIT_VECTOR_CLOCK_SIZE = 4;
+
+    // Partitions per pool thread, so that a few hot locations do not leave the others idle.
+    private static final int PARTITIONS_PER_THREAD = 8;
+
+    public static final CommandLineOption<Integer> windowOption = CommandLine.makeInteger(
+            "ft2pWindow", 1 << 20, CommandLineOption.Kind.EXPERIMENTAL,
+            "Number of accesses FT2P buffers before checking them and freeing their clocks.");
+
+    public final ErrorMessage<FieldInfo> fieldErrors = ErrorMessages
+            .makeFieldErrorMessage("FastTrack");
+    public final ErrorMessage<ArrayAccessInfo> arrayErrors = ErrorMessages
+            .makeArrayErrorMessage("FastTrack");
+
+    /*
+     * Everything below is written by the sequential pass only, and only read once the partitions
+     * are handed to the pool.
+     */
+
+    private ThreadState[] threads = new ThreadState[16];
+    private ShadowThread[] shadowThreads = new ShadowThread[16];
+    private LongVectorClock[] locks = new LongVectorClock[1024];
+    private final HashMap<Long, LongVectorClock> volatiles = new HashMap<Long, LongVectorClock>();
+    private final HashMap<Integer, FTBarrierState> barriers = new HashMap<Integer, FTBarrierState>();
+    private LongVectorClock[] classInitTimes = new LongVectorClock[64];
+
+    // The key ids of ACCESS and ARRAY_ACCESS events, resolved.
+    private FieldAccessInfo[] fieldKeys = new FieldAccessInfo[64];
+    private ArrayAccessInfo[] arrayKeys = new ArrayAccessInfo[64];
+
+    // The clocks the accesses in the current window were made at.
+    private final ArrayList<LongVectorClock> clocks = new ArrayList<LongVectorClock>();
+
+    private Partition[] partitions;
+
+    // Accesses filed in the current window, and windows checked so far.
+    private int pending;
+    private int windows;
+
+    private static final class ThreadState {
+        final int tid;
+        final LongVectorClock V = new LongVectorClock(INIT_VECTOR_CLOCK_SIZE);
+
+        // Index of a copy of V in clocks, or -1 if V has changed since the last one or the window
+        // it was made in has been checked.
+        int clock = -1;
+
+        // ClassInfo ids whose init time has been joined, as in FT2.
+        long[] classInitJoined = new long[1];
+
+        LongVectorClock barrierV;
+
+        ThreadState(int tid) {
+            this.tid = tid;
+            V.set(tid, LongEpoch.tick(LongEpoch.make(tid, 0)));
+            V.tick(tid);
+        }
+    }
+
+    /*
+     * The accesses to one partition's locations in the current window, in trace order. A field
+     * access is four ints: tid, clock, key, and target. An array access is five: tid, clock, ~key,
+     * target, and index. Fields and array indices have separate FTVarState maps, since both are
+     * keyed by two ints. The maps are kept from window to window.
+     */
+    private static final class Partition {
+        int[] log = new int[256];
+        int size;
+
+        final HashMap<Long, FTVarState> fields = new HashMap<Long, FTVarState>();
+        final HashMap<Long, FTVarState> indices = new HashMap<Long, FTVarState>();
+
+        void add(int tid, int clock, int key, int target) {
+            if (size + 4 > log.length) {
+                log = Arrays.copyOf(log, log.length * 2);
+            }
+            log[size++] = tid;
+            log[size++] = clock;
+            log[size++] = key;
+            log[size++] = target;
+        }
+
+        void add(int tid, int clock, int key, int target, int index) {
+            if (size + 5 > log.length) {
+                log = Arrays.copyOf(log, log.length * 2);
+            }
+            log[size++] = tid;
+            log[size++] = clock;
+            log[size++] = ~key;
+            log[size++] = target;
+            log[size++] = index;
+        }
+    }
+
+    public ParallelFastTrackTool(final String name, final Tool next, CommandLine commandLine) {
+        super(name, next, commandLine);
+        commandLine.add(windowOption);
+    }
+
+    public void analyze(RRReplay replay) throws Exception {
+        final int poolSize = Math.max(1, RRMain.availableProcessorsOption.get());
+        partitions = new Partition[poolSize * PARTITIONS_PER_THREAD];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition();
+        }
+
+        final long start = System.currentTimeMillis();
+        final ForkJoinPool pool = new ForkJoinPool(poolSize);
+        final long events;
+        try {
+            events = sync(replay, pool);
+            checkWindow(pool);
+        } finally {
+            pool.shutdown();
+        }
+        Util.logf("FT2P: %d events, %d windows of up to %d accesses, %d partitions, %d threads "
+                + "(%d ms)", events, windows, windowOption.get(), partitions.length, poolSize,
+                System.currentTimeMillis() - start);
+    }
+
+    /*
+     * Check the accesses of the current window on the pool, then drop them and their clocks.
+     */
+    private void checkWindow(ForkJoinPool pool) {
+        if (pending == 0) {
+            return;
+        }
+        final ArrayList<Check> checks = new ArrayList<Check>(partitions.length);
+        for (Partition p : partitions) {
+            if (p.size > 0) {
+                checks.add(new Check(p));
+            }
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(checks);
+            }
+        });
+        for (Partition p : partitions) {
+            p.size = 0;
+        }
+        clocks.clear();
+        for (ThreadState t : threads) {
+            if (t != null) {
+                t.clock = -1;
+            }
+        }
+        pending = 0;
+        windows++;
+    }
+
+    /*
+     * The sequential pass. FT2's rules for synchronization, with each access filed under the
+     * clock its thread had when it was made, and checked once a window's worth are filed.
+     */
+    private long sync(RRReplay replay, ForkJoinPool pool) {
+        final TraceReader in = replay.getTrace();
+        final boolean trackArrays = ArrayStateFactory.arrayOption
+                .get() != ArrayStateFactory.ArrayMode.NONE;
+        final int window = Math.max(1, windowOption.get());
+        long events = 0;
+        TraceReader.Cursor c;
+        while ((c = in.next()) != null) {
+            events++;
+            if (pending >= window) {
+                checkWindow(pool);
+            }
+            switch (c.event()) {
+                case THREAD: {
+                    c.readThread();
+                    break;
+                }
+                case CREATE: {
+                    thread(replay, c.readId());
+                    break;
+                }
+                case STOP: {
+                    c.readId();
+                    break;
+                }
+                case ACCESS: {
+                    final int key = c.readId();
+                    final int target = c.readObject();
+                    final FieldInfo fd = fieldKey(replay, key).getField();
+                    final ThreadState t = thread(replay, c.thread());
+                    if (target == 0) {
+                        joinClassInitTime(t, fd.getOwner());
+                    }
+                    partition(fd.getId(), target).add(t.tid, clock(t), key, target);
+                    pending++;
+                    break;
+                }
+                case ARRAY_ACCESS: {
+                    final int key = c.readId();
+                    final int target = c.readObject();
+                    final int index = c.readIndex();
+                    if (trackArrays) {
+                        arrayKey(replay, key);
+                        final ThreadState t = thread(replay, c.thread());
+                        partition(target, index).add(t.tid, clock(t), key, target, index);
+                        pending++;
+                    }
+                    break;
+                }
+                case VOLATILE_ACCESS: {
+                    final FieldAccessInfo fad = replay.getFieldAccess(c.readId());
+                    final int target = c.readObject();
+                    final ThreadState t = thread(replay, c.thread());
+                    final Long loc = location(fad.getField().getId(), target);
+                    LongVectorClock volV = volatiles.get(loc);
+                    if (volV == null) {
+                        // FT2 joins the first accessor's clock when it makes the shadow state.
+                        volV = new LongVectorClock(INIT_VECTOR_CLOCK_SIZE);
+                        volV.max(t.V);
+                        volatiles.put(loc, volV);
+                    }
+                    if (fad.isWrite()) {
+                        volV.max(t.V);
+                        incLongEpochAndCV(t);
+                    } else {
+                        maxLongEpochAndCV(t, volV);
+                    }
+                    break;
+                }
+                case ACQUIRE: {
+                    c.readId();
+                    final LongVectorClock lockV = lock(c.readObject());
+                    maxLongEpochAndCV(thread(replay, c.thread()), lockV);
+                    break;
+                }
+                case RELEASE: {
+                    c.readId();
+                    final LongVectorClock lockV = lock(c.readObject());
+                    final ThreadState t = thread(replay, c.thread());
+                    lockV.max(t.V);
+                    incLongEpochAndCV(t);
+                    break;
+                }
+                case ENTER: {
+                    c.readId();
+                    c.readObject();
+                    break;
+                }
+                case EXIT:
+                case PRESLEEP:
+                case POSTSLEEP:
+                case QUIT: {
+                    break;
+                }
+                case PRESTART: {
+                    final ThreadState u = thread(replay, c.readId());
+                    final ThreadState t = thread(replay, c.thread());
+                    maxAndIncLongEpochAndCV(u, t.V);
+                    incLongEpochAndCV(t);
+                    break;
+                }
+                case POSTSTART: {
+                    thread(replay, c.readId());
+                    break;
+                }
+                case PREJOIN: {
+                    c.readId();
+                    c.readId();
+                    break;
+                }
+                case POSTJOIN: {
+                    c.readId();
+                    final ThreadState u = thread(replay, c.readId());
+                    maxLongEpochAndCV(thread(replay, c.thread()), u.V);
+                    break;
+                }
+                case PRENOTIFY:
+                case POSTNOTIFY: {
+                    c.readObject();
+                    c.readBoolean();
+                    break;
+                }
+                case PREWAIT: {
+                    c.readId();
+                    final LongVectorClock lockV = lock(c.readObject());
+                    final ThreadState t = thread(replay, c.thread());
+                    lockV.max(t.V);
+                    incLongEpochAndCV(t);
+                    break;
+                }
+                case POSTWAIT: {
+                    c.readId();
+                    final LongVectorClock lockV = lock(c.readObject());
+                    maxLongEpochAndCV(thread(replay, c.thread()), lockV);
+                    break;
+                }
+                case PREBARRIER: {
+                    final FTBarrierState b = barrier(c.readObject());
+                    c.readId();
+                    final ThreadState t = thread(replay, c.thread());
+                    t.barrierV = b.enterBarrier();
+                    t.barrierV.max(t.V);
+                    break;
+                }
+                case POSTBARRIER: {
+                    final FTBarrierState b = barrier(c.readObject());
+                    c.readId();
+                    final ThreadState t = thread(replay, c.thread());
+                    b.stopUsingOldLongVectorClock(t.barrierV);
+                    maxAndIncLongEpochAndCV(t, t.barrierV);
+                    break;
+                }
+                case CLASS_INITIALIZED: {
+                    final ClassInfo rrClass = MetaDataInfoMaps.getClass(in.string(c.readId()));
+                    final ThreadState t = thread(replay, c.thread());
+                    classInitTime(rrClass).copy(t.V);
+                    incLongEpochAndCV(t);
+                    break;
+                }
+                case FREE: {
+                    final int id = c.readId();
+                    if (id < locks.length) {
+                        locks[id] = null;
+                    }
+                    break;
+                }
+                default:
+                    throw new RuntimeException("Bad Event " + c.event());
+            }
+        }
+        return events;
+    }
+
+    private void maxAndIncLongEpochAndCV(ThreadState t, LongVectorClock other) {
+        t.V.max(other);
+        t.V.tick(t.tid);
+        t.clock = -1;
+    }
+
+    private void maxLongEpochAndCV(ThreadState t, LongVectorClock other) {
+        t.V.max(other);
+        t.clock = -1;
+    }
+
+    private void incLongEpochAndCV(ThreadState t) {
+        t.V.tick(t.tid);
+        t.clock = -1;
+    }
+
+    private void joinClassInitTime(ThreadState t, ClassInfo owner) {
+        final int id = owner.getId();
+        if ((id >> 6) >= t.classInitJoined.length) {
+            t.classInitJoined = Arrays.copyOf(t.classInitJoined,
+                    Math.max((id >> 6) + 1, t.classInitJoined.length * 2));
+        } else if ((t.classInitJoined[id >> 6] & (1L << id)) != 0) {
+            return;
+        }
+        maxLongEpochAndCV(t, classInitTime(owner));
+        t.classInitJoined[id >> 6] |= 1L << id;
+    }
+
+    private int clock(ThreadState t) {
+        if (t.clock == -1) {
+            t.clock = clocks.size();
+            clocks.add(new LongVectorClock(t.V));
+        }
+        return t.clock;
+    }
+
+    private ThreadState thread(RRReplay replay, int tid) {
+        if (tid >= threads.length) {
+            threads = Arrays.copyOf(threads, Math.max(tid + 1, threads.length * 2));
+            shadowThreads = Arrays.copyOf(shadowThreads, threads.length);
+        }
+        ThreadState t = threads[tid];
+        if (t == null) {
+            Assert.assertTrue(tid <= LongEpoch.MAX_TID,
+                    "Trace has more threads than -maxTid allows: " + tid);
+            t = threads[tid] = new ThreadState(tid);
+            shadowThreads[tid] = replay.getThread(tid);
+        }
+        return t;
+    }
+
+    private LongVectorClock lock(int id) {
+        if (id >= locks.length) {
+            locks = Arrays.copyOf(locks, Math.max(id + 1, locks.length * 2));
+        }
+        LongVectorClock lockV = locks[id];
+        if (lockV == null) {
+            lockV = locks[id] = new LongVectorClock(INIT_VECTOR_CLOCK_SIZE);
+        }
+        return lockV;
+    }
+
+    private FTBarrierState barrier(int id) {
+        FTBarrierState b = barriers.get(id);
+        if (b == null) {
+            b = new FTBarrierState(id, INIT_VECTOR_CLOCK_SIZE);
+            barriers.put(id, b);
+        }
+        return b;
+    }
+
+    private LongVectorClock classInitTime(ClassInfo rrClass) {
+        final int id = rrClass.getId();
+        if (id >= classInitTimes.length) {
+            classInitTimes = Arrays.copyOf(classInitTimes,
+                    Math.max(id + 1, classInitTimes.length * 2));
+        }
+        LongVectorClock initTime = classInitTimes[id];
+        if (initTime == null) {
+            initTime = classInitTimes[id] = new LongVectorClock(INIT_VECTOR_CLOCK_SIZE);
+        }
+        return initTime;
+    }
+
+    private FieldAccessInfo fieldKey(RRReplay replay, int key) {
+        if (key >= fieldKeys.length) {
+            fieldKeys = Arrays.copyOf(fieldKeys, Math.max(key + 1, fieldKeys.length * 2));
+        }
+        FieldAccessInfo fad = fieldKeys[key];
+        if (fad == null) {
+            fad = fieldKeys[key] = replay.getFieldAccess(key);
+        }
+        return fad;
+    }
+
+    private ArrayAccessInfo arrayKey(RRReplay replay, int key) {
+        if (key >= arrayKeys.length) {
+            arrayKeys = Arrays.copyOf(arrayKeys, Math.max(key + 1, arrayKeys.length * 2));
+        }
+        ArrayAccessInfo aad = arrayKeys[key];
+        if (aad == null) {
+            aad = arrayKeys[key] = replay.getArrayAccess(key);
+        }
+        return aad;
+    }
+
+    private static Long location(int hi, int lo) {
+        return ((long) hi << 32) | (lo & 0xffffffffL);
+    }
+
+    private Partition partition(int hi, int lo) {
+        int h = hi * 0x9E3779B9 + lo;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return partitions[(h & 0x7fffffff) % partitions.length];
+    }
+
+    /*
+     * FT2's read and write rules for one partition's accesses in the current window.
+     */
+    private final class Check extends RecursiveAction {
+        private final Partition p;
+
+        Check(Partition p) {
+            this.p = p;
+        }
+
+        @Override
+        protected void compute() {
+            final int[] log = p.log;
+            int i = 0;
+            while (i < p.size) {
+                final int tid = log[i];
+                final LongVectorClock tV = clocks.get(log[i + 1]);
+                final int key = log[i + 2];
+                final int target = log[i + 3];
+                if (key >= 0) {
+                    i += 4;
+                    final FieldAccessInfo fad = fieldKeys[key];
+                    final FieldInfo fd = fad.getField();
+                    if (!fieldErrors.stillLooking(fd)) {
+                        continue;
+                    }
+                    final Long loc = location(fd.getId(), target);
+                    final FTVarState sx = p.fields.get(loc);
+                    if (sx == null) {
+                        p.fields.put(loc, new FTVarState(fad.isWrite(), tV.get(tid)));
+                    } else if (fad.isWrite()) {
+                        write(fad, null, target, 0, sx, tid, tV);
+                    } else {
+                        read(fad, null, target, 0, sx, tid, tV);
+                    }
+                } else {
+                    final int index = log[i + 4];
+                    i += 5;
+                    final ArrayAccessInfo aad = arrayKeys[~key];
+                    if (!arrayErrors.stillLooking(aad)) {
+                        continue;
+                    }
+                    final Long loc = location(target, index);
+                    final FTVarState sx = p.indices.get(loc);
+                    if (sx == null) {
+                        p.indices.put(loc, new FTVarState(aad.isWrite(), tV.get(tid)));
+                    } else if (aad.isWrite()) {
+                        write(null, aad, target, index, sx, tid, tV);
+                    } else {
+                        read(null, aad, target, index, sx, tid, tV);
+                    }
+                }
+            }
+        }
+    }
+
+    // One of fad and aad is non-null.
+    private void read(final FieldAccessInfo fad, final ArrayAccessInfo aad, final int target,
+            final int index, final FTVarState sx, final int tid, final LongVectorClock tV) {
+        final long/* epoch */ e = tV.get(tid);
+        final long/* epoch */ r = sx.R;
+        if (r == e) {
+            return;
+        } else if (r == LongEpoch.READ_SHARED && sx.get(tid) == e) {
+            return;
+        }
+
+        final long/* epoch */ w = sx.W;
+        final int wTid = LongEpoch.tid(w);
+        if (wTid != tid && !LongEpoch.leq(w, tV.get(wTid))) {
+            error(fad, aad, target, index, sx, tid, tV, "Write-Read Race", "Write by ", wTid,
+                    "Read by ");
+            return;
+        }
+
+        if (r != LongEpoch.READ_SHARED) {
+            final int rTid = LongEpoch.tid(r);
+            if (rTid == tid || LongEpoch.leq(r, tV.get(rTid))) {
+                sx.R = e;
+            } else {
+                int initSize = Math.max(Math.max(rTid, tid), INIT_VECTOR_CLOCK_SIZE);
+                sx.makeCV(initSize);
+                sx.set(rTid, r);
+                sx.set(tid, e);
+                sx.R = LongEpoch.READ_SHARED;
+            }
+        } else {
+            sx.set(tid, e);
+        }
+    }
+
+    private void write(final FieldAccessInfo fad, final ArrayAccessInfo aad, final int target,
+            final int index, final FTVarState sx, final int tid, final LongVectorClock tV) {
+        final long/* epoch */ e = tV.get(tid);
+        final long/* epoch */ w = sx.W;
+        if (w == e) {
+            return;
+        }
+
+        final int wTid = LongEpoch.tid(w);
+        if (wTid != tid /* optimization */ && !LongEpoch.leq(w, tV.get(wTid))) {
+            error(fad, aad, target, index, sx, tid, tV, "Write-Write Race", "Write by ", wTid,
+                    "Write by ");
+        }
+
+        final long/* epoch */ r = sx.R;
+        if (r != LongEpoch.READ_SHARED) {
+            final int rTid = LongEpoch.tid(r);
+            if (rTid != tid /* optimization */ && !LongEpoch.leq(r, tV.get(rTid))) {
+                error(fad, aad, target, index, sx, tid, tV, "Read-Write Race", "Read by ", rTid,
+                        "Write by ");
+            }
+        } else if (sx.anyGt(tV)) {
+            for (int prevReader = sx.nextGt(tV, 0); prevReader > -1; prevReader = sx.nextGt(tV,
+                    prevReader + 1)) {
+                error(fad, aad, target, index, sx, tid, tV, "Read(Shared)-Write Race", "Read by ",
+                        prevReader, "Write by ");
+            }
+        }
+        sx.W = e;
+    }
+
+    private void error(final FieldAccessInfo fad, final ArrayAccessInfo aad, final int target,
+            final int index, final FTVarState sx, final int tid, final LongVectorClock tV,
+            final String description, final String prevOp, final int prevTid,
+            final String curOp) {
+        final ShadowThread st = shadowThreads[tid];
+        final Object currentThread = ErrorMessage.format("[tid=%-2d   C=%s   E=%s]", tid, tV,
+                LongEpoch.toString(tV.get(tid)));
+        if (fad != null) {
+            final FieldInfo fd = fad.getField();
+            fieldErrors.error(st, fd, "Shadow State", sx, "Current Thread", currentThread, "Class",
+                    fd.getOwner(), "Field", objectToString(target) + "." + fd, "Message",
+                    description, "Previous Op", prevOp + " " + shadowThreads[prevTid],
+                    "Currrent Op", curOp + " " + st);
+        } else {
+            arrayErrors.error(st, aad, "Shadow State", sx, "Current Thread", currentThread,
+                    "Array", objectToString(target) + "[" + index + "]", "Message", description,
+                    "Previous Op", prevOp + " " + shadowThreads[prevTid], "Currrent Op",
+                    curOp + " " + st);
+        }
+    }
+
+    // As ReplayObject and ReplayArray print themselves.
+    private static String objectToString(int target) {
+        return target == 0 ? "null" : "@" + target;
+    }
+}
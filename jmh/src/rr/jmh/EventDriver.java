@@ -0,0 +1,290 @@
+/******************************************************************************
+ *
+ * Copyright (c) 2016, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ ******************************************************************************/
+
+package rr.jmh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import rr.meta.AcquireInfo;
+import rr.meta.ArrayAccessInfo;
+import rr.meta.ClassInfo;
+import rr.meta.FieldAccessInfo;
+import rr.meta.FieldInfo;
+import rr.meta.MetaDataInfoMaps;
+import rr.meta.MethodInfo;
+import rr.meta.ReleaseInfo;
+import rr.meta.SourceLocation;
+import rr.state.ShadowThread;
+import rr.state.ShadowVar;
+import rr.state.update.AbstractFieldUpdater;
+import rr.tool.RREventGenerator;
+
+/*
+ * A synthetic, race-free event stream fed straight into RREventGenerator, so that a benchmark
+ * measures the tool chain rather than instrumentation or the target program.
+ *
+ * The schedule is precomputed from a fixed seed. Each event picks a thread, and then a field read,
+ * a field write, an array read, or an array write. With probability sharing the access goes to a
+ * shared cell or array element; otherwise it goes to one owned by the thread. With probability
+ * lockDensity the access is wrapped in an acquire/release of a lock from a small pool. All
+ * ShadowThreads are driven from the calling thread.
+ *
+ * Shared locations are read and written, so the tools see read-shared state and check writes
+ * against it, but the stream stays race-free: reporting a race needs the ShadowThread's own Java
+ * thread (HappensBeforeTool asks for the locks it holds). Each thread has a hand-off lock. Before
+ * a shared access, the thread acquires the hand-off lock of every thread whose access it must
+ * follow, just after that thread released it: a write follows every access since the last write,
+ * and a read follows the last write. Shared reads by different threads stay unordered. The
+ * hand-offs are computed on the schedule repeated, since run() replays it, and are counted as part
+ * of the access they precede. (LockSetTool still warns about shared data, which is not guarded by
+ * a common lock.)
+ */
+final class EventDriver {
+
+    /** Events per call to run(). */
+    static final int OPS = 4096;
+
+    private static final int CELLS_PER_THREAD = 16;
+    private static final int SHARED_CELLS = 64;
+    private static final int ARRAY_LENGTH = 64;
+    private static final int LOCKS = 8;
+
+    private static final int READ = 0;
+    private static final int WRITE = 1;
+    private static final int ARRAY_READ = 2;
+    private static final int ARRAY_WRITE = 3;
+
+    /** The instrumented object: a single field holding its shadow. */
+    static final class Cell {
+        volatile ShadowVar shadow;
+    }
+
+    private static final AtomicReferenceFieldUpdater<Cell, ShadowVar> SHADOW = AtomicReferenceFieldUpdater
+            .newUpdater(Cell.class, ShadowVar.class, "shadow");
+
+    private static final class CellUpdater extends AbstractFieldUpdater {
+        @Override
+        public ShadowVar getState(Object o) {
+            return ((Cell) o).shadow;
+        }
+
+        @Override
+        public boolean putState(Object o, ShadowVar expectedGS, ShadowVar newGS) {
+            return SHADOW.compareAndSet((Cell) o, expectedGS, newGS);
+        }
+    }
+
+    // Metadata ids, shared by every driver in the JVM.
+    private static int readId, writeId, arrayReadId, arrayWriteId, acquireId, releaseId;
+    private static boolean metaDataReady;
+
+    private static synchronized void makeMetaData() {
+        if (metaDataReady) {
+            return;
+        }
+        final ClassInfo cell = MetaDataInfoMaps.getClass("rr/jmh/Cell");
+        final MethodInfo run = MetaDataInfoMaps.getMethod(cell, "run", "()V");
+        final FieldInfo field = MetaDataInfoMaps.getField(cell, "shadow", "I");
+        field.setUpdater(new CellUpdater());
+        final SourceLocation loc = new SourceLocation("Cell.java", run, 1, 0);
+        final FieldAccessInfo read = MetaDataInfoMaps.makeFieldAccess(loc, run, false, field);
+        final FieldAccessInfo write = MetaDataInfoMaps.makeFieldAccess(loc, run, true, field);
+        final ArrayAccessInfo arrayRead = MetaDataInfoMaps.makeArrayAccess(loc, run, false);
+        final ArrayAccessInfo arrayWrite = MetaDataInfoMaps.makeArrayAccess(loc, run, true);
+        final AcquireInfo acquire = MetaDataInfoMaps.makeAcquire(loc, run);
+        final ReleaseInfo release = MetaDataInfoMaps.makeRelease(loc, run);
+        readId = read.getId();
+        writeId = write.getId();
+        arrayReadId = arrayRead.getId();
+        arrayWriteId = arrayWrite.getId();
+        acquireId = acquire.getId();
+        releaseId = release.getId();
+        metaDataReady = true;
+    }
+
+    private final ShadowThread[] threads;
+    private final Object[] locks;
+    private final Object[] handOffLocks;
+
+    // The schedule: per event, the thread, the kind, the target, the array index (or -1 for a
+    // field), and the lock (or null).
+    private final ShadowThread[] thread = new ShadowThread[OPS];
+    private final int[] kind = new int[OPS];
+    private final Object[] target = new Object[OPS];
+    private final int[] index = new int[OPS];
+    private final Object[] lock = new Object[OPS];
+    private final int[][] handOffs = new int[OPS][];
+
+    EventDriver(int threadCount, double sharing, double lockDensity, long seed) {
+        makeMetaData();
+        final Random random = new Random(seed);
+
+        threads = new ShadowThread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = ShadowThread.make(new Thread("RRBench-" + t), null);
+        }
+        locks = new Object[LOCKS];
+        for (int l = 0; l < LOCKS; l++) {
+            locks[l] = new Object();
+        }
+        handOffLocks = new Object[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            handOffLocks[t] = new Object();
+        }
+
+        final Cell[] shared = newCells(SHARED_CELLS);
+        final int[] sharedArray = new int[ARRAY_LENGTH];
+        final Cell[][] owned = new Cell[threadCount][];
+        final int[][] ownedArray = new int[threadCount][];
+        for (int t = 0; t < threadCount; t++) {
+            owned[t] = newCells(CELLS_PER_THREAD);
+            ownedArray[t] = new int[ARRAY_LENGTH];
+        }
+
+        // per event, the thread's index and the shared location (cells, then array elements), or -1.
+        final int[] tid = new int[OPS];
+        final int[] location = new int[OPS];
+        for (int i = 0; i < OPS; i++) {
+            final int t = random.nextInt(threadCount);
+            final boolean isShared = random.nextDouble() < sharing;
+            tid[i] = t;
+            thread[i] = threads[t];
+            kind[i] = random.nextInt(4);
+            if (kind[i] == READ || kind[i] == WRITE) {
+                index[i] = -1;
+                if (isShared) {
+                    location[i] = random.nextInt(SHARED_CELLS);
+                    target[i] = shared[location[i]];
+                } else {
+                    location[i] = -1;
+                    target[i] = owned[t][random.nextInt(CELLS_PER_THREAD)];
+                }
+            } else {
+                index[i] = random.nextInt(ARRAY_LENGTH);
+                location[i] = isShared ? SHARED_CELLS + index[i] : -1;
+                target[i] = isShared ? sharedArray : ownedArray[t];
+            }
+            lock[i] = random.nextDouble() < lockDensity ? locks[random.nextInt(LOCKS)] : null;
+        }
+        makeHandOffs(threadCount, tid, location);
+    }
+
+    /*
+     * Fill in handOffs from the threads that accessed each shared location since its last write,
+     * and its last writer. The first pass only sets up the state left by a previous run().
+     */
+    private void makeHandOffs(int threadCount, int[] tid, int[] location) {
+        final boolean[][] since = new boolean[SHARED_CELLS + ARRAY_LENGTH][threadCount];
+        final int[] lastWriter = new int[SHARED_CELLS + ARRAY_LENGTH];
+        Arrays.fill(lastWriter, -1);
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < OPS; i++) {
+                final int loc = location[i];
+                if (loc < 0) {
+                    continue;
+                }
+                final int t = tid[i];
+                final boolean[] accessed = since[loc];
+                final ArrayList<Integer> from = new ArrayList<Integer>();
+                if (kind[i] == WRITE || kind[i] == ARRAY_WRITE) {
+                    for (int u = 0; u < threadCount; u++) {
+                        if (u != t && accessed[u]) {
+                            from.add(u);
+                        }
+                    }
+                    Arrays.fill(accessed, false);
+                    lastWriter[loc] = t;
+                } else if (lastWriter[loc] >= 0 && !accessed[t]) {
+                    from.add(lastWriter[loc]);
+                }
+                accessed[t] = true;
+                handOffs[i] = null;
+                if (!from.isEmpty()) {
+                    handOffs[i] = new int[from.size()];
+                    for (int j = 0; j < from.size(); j++) {
+                        handOffs[i][j] = from.get(j);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Cell[] newCells(int n) {
+        final Cell[] cells = new Cell[n];
+        for (int i = 0; i < n; i++) {
+            cells[i] = new Cell();
+        }
+        return cells;
+    }
+
+    /** Feed the whole schedule to RREventGenerator once. */
+    void run() {
+        for (int i = 0; i < OPS; i++) {
+            final ShadowThread td = thread[i];
+            final int[] from = handOffs[i];
+            if (from != null) {
+                for (int u : from) {
+                    final Object h = handOffLocks[u];
+                    RREventGenerator.acquire(h, acquireId, threads[u]);
+                    RREventGenerator.release(h, releaseId, threads[u]);
+                    RREventGenerator.acquire(h, acquireId, td);
+                    RREventGenerator.release(h, releaseId, td);
+                }
+            }
+            final Object l = lock[i];
+            if (l != null) {
+                RREventGenerator.acquire(l, acquireId, td);
+            }
+            final Object x = target[i];
+            switch (kind[i]) {
+                case READ:
+                    RREventGenerator.readAccess(x, ((Cell) x).shadow, readId, td);
+                    break;
+                case WRITE:
+                    RREventGenerator.writeAccess(x, ((Cell) x).shadow, writeId, td);
+                    break;
+                case ARRAY_READ:
+                    RREventGenerator.arrayRead(x, index[i], arrayReadId, td);
+                    break;
+                default:
+                    RREventGenerator.arrayWrite(x, index[i], arrayWriteId, td);
+                    break;
+            }
+            if (l != null) {
+                RREventGenerator.release(l, releaseId, td);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/******************************************************************************
+ *
+ * Copyright (c) 2016, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ ******************************************************************************/
+
+package rr.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Cost per event of the RREventGenerator entry points (readAccess, writeAccess, arrayRead,
+ * arrayWrite, acquire, release) for each tool, over a synthetic race-free schedule (see
+ * EventDriver). Parameters:
+ *
+ *   tool         N (EmptyTool, the dispatch baseline), FT2, HB, or LS
+ *   threads      number of ShadowThreads the events are spread over
+ *   sharing      fraction of accesses to shared data, which is read and written
+ *   lockDensity  fraction of accesses wrapped in an acquire/release
+ *
+ * Each fork hosts one tool. As with rrrun, the JVM needs the agent and the RoadRunner classes on
+ * the boot class path; the paths are relative, so run from RR_HOME. Reported times are per access;
+ * lock operations, including EventDriver's hand-offs, are counted as part of the access.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xbootclasspath/p:classes:jars/java-cup-11a.jar",
+        "-javaagent:build/jar/rragent.jar" })
+public class EventGeneratorBenchmark {
+
+    @Param({ "N", "FT2", "HB", "LS" })
+    public String tool;
+
+    @Param({ "1", "4", "16" })
+    public int threads;
+
+    @Param({ "0.0", "0.1", "0.5" })
+    public double sharing;
+
+    @Param({ "0.0", "0.1", "0.5" })
+    public double lockDensity;
+
+    private EventDriver driver;
+
+    @Setup
+    public void setup() {
+        RRHarness.init(tool, Math.max(16, threads + 1));
+        driver = new EventDriver(threads, sharing, lockDensity, 636);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EventDriver.OPS)
+    public void events() {
+        driver.run();
+    }
+}
@@ -0,0 +1,86 @@
+/******************************************************************************
+ *
+ * Copyright (c) 2016, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ ******************************************************************************/
+
+package rr.jmh;
+
+import rr.RRMain;
+import rr.tool.RR;
+
+/*
+ * Boots RoadRunner inside a benchmark JVM without running a target program, in the same way
+ * RRReplay drives a tool: options are processed as for rrrun, the tool chain is built, and events
+ * are then fed to RREventGenerator by hand.
+ *
+ * The JVM must be started with -javaagent:build/jar/rragent.jar so that the ShadowThread fields
+ * used by the tools (ts_get_X/ts_set_X) exist. This class must not touch ShadowThread: the agent
+ * only adds those fields if the tool is registered before ShadowThread is loaded.
+ */
+public final class RRHarness {
+
+    private static String current;
+
+    private RRHarness() {
+    }
+
+    // Map the short names used as benchmark parameters to tool classes.
+    static String toolClass(String tool) {
+        if (tool.equals("N")) {
+            return "rr.simple.EmptyTool";
+        } else if (tool.equals("FT2")) {
+            return "tools.fasttrack.FastTrackTool";
+        } else if (tool.equals("HB")) {
+            return "tools.hb.HappensBeforeTool";
+        } else if (tool.equals("LS")) {
+            return "tools.eraser.LockSetTool";
+        } else {
+            return tool;
+        }
+    }
+
+    /*
+     * Set up RoadRunner for the given tool. RR state is global, so a JVM can only host one tool;
+     * JMH forks a fresh JVM per parameter combination.
+     */
+    public static synchronized void init(String tool, int maxTid) {
+        if (current != null) {
+            if (!current.equals(tool)) {
+                throw new IllegalStateException(
+                        "RoadRunner already initialized with " + current + ", not " + tool);
+            }
+            return;
+        }
+        RRMain.processArgs(new String[] { "-tool=" + toolClass(tool), "-maxTid=" + maxTid,
+                "-maxWarn=0", "-noxml", "-field=FINE", "-array=FINE", "RRBench" });
+        RR.startUp();
+        current = tool;
+    }
+}
@@ -0,0 +1,275 @@
+/******************************************************************************
+ *
+ * Copyright (c) 2016, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ ******************************************************************************/
+
+package rr.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import rr.tool.RR;
+import tools.util.Epoch;
+import tools.util.VectorClock;
+
+/*
+ * Compares the VectorClock join and comparison kernels against the original code, which unrolled
+ * the first eight entries (reproduced verbatim below in LegacyVectorClock), for clocks of various
+ * widths.
+ *
+ * Both clocks have the same width, and other dominates this, so anyGt scans every entry. After the
+ * first call, max and legacyMax join two equal clocks, which still visits every entry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorClockBenchmark {
+
+    @Param({ "8", "16", "64", "128", "256", "512", "1024" })
+    public int width;
+
+    private VectorClock thisV;
+    private VectorClock otherV;
+    private LegacyVectorClock thisL;
+    private LegacyVectorClock otherL;
+
+    static {
+        // must happen before Epoch is initialized.
+        RR.maxTidOption.set(1024);
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        thisV = new VectorClock(width);
+        otherV = new VectorClock(width);
+        for (int i = 0; i < width; i++) {
+            thisV.set(i, Epoch.make(i, 1 + (i % 7)));
+            otherV.set(i, Epoch.make(i, 10 + (i % 5)));
+        }
+        thisL = new LegacyVectorClock(thisV);
+        otherL = new LegacyVectorClock(otherV);
+    }
+
+    @Benchmark
+    public VectorClock max() {
+        thisV.max(otherV);
+        return thisV;
+    }
+
+    @Benchmark
+    public LegacyVectorClock legacyMax() {
+        thisL.max(otherL);
+        return thisL;
+    }
+
+    @Benchmark
+    public boolean anyGt() {
+        return thisV.anyGt(otherV);
+    }
+
+    @Benchmark
+    public boolean legacyAnyGt() {
+        return thisL.anyGt(otherL);
+    }
+
+    @Benchmark
+    public VectorClock copy() {
+        thisV.copy(otherV);
+        return thisV;
+    }
+
+    /*
+     * max and anyGt as VectorClock had them before the kernels were rewritten. Only the argument
+     * types differ.
+     */
+    static final class LegacyVectorClock {
+        private static final int FAST = 8;
+
+        protected volatile int/* epoch */[] values;
+
+        LegacyVectorClock(VectorClock v) {
+            values = new int/* epoch */[v.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = v.get(i);
+            }
+        }
+
+        // requires: exclusive access to this.
+        private static void clearFrom(int/* epoch */[] values, int pos) {
+            for (int i = pos; i < values.length; i++) {
+                values[i] = Epoch.make(i, 0);
+            }
+        }
+
+        // requires: exclusive access to this
+        final private void ensureCapacity(int len) {
+            int curLength = values.length;
+            if (curLength < len) {
+                int/* epoch */[] b = new int/* epoch */[len];
+                for (int i = 0; i < curLength; i++) {
+                    b[i] = values[i];
+                }
+                clearFrom(b, curLength);
+                values = b;
+            }
+        }
+
+        // requires: exclusive access to this and other
+        final public void max(LegacyVectorClock other) {
+            int/* epoch */[] otherValues = other.values;
+            ensureCapacity(otherValues.length);
+            int/* epoch */[] thisValues = this.values;
+
+            // thisValues.length >= otherValues.length
+            // otherValues.length..thisValues.length-1: stays the same.
+            switch (otherValues.length) {
+                default:
+                    slowMax(other); // max 8..otherValues
+                case 8:
+                    if (Epoch.leq(thisValues[7], otherValues[7]))
+                        thisValues[7] = otherValues[7];
+                case 7:
+                    if (Epoch.leq(thisValues[6], otherValues[6]))
+                        thisValues[6] = otherValues[6];
+                case 6:
+                    if (Epoch.leq(thisValues[5], otherValues[5]))
+                        thisValues[5] = otherValues[5];
+                case 5:
+                    if (Epoch.leq(thisValues[4], otherValues[4]))
+                        thisValues[4] = otherValues[4];
+                case 4:
+                    if (Epoch.leq(thisValues[3], otherValues[3]))
+                        thisValues[3] = otherValues[3];
+                case 3:
+                    if (Epoch.leq(thisValues[2], otherValues[2]))
+                        thisValues[2] = otherValues[2];
+                case 2:
+                    if (Epoch.leq(thisValues[1], otherValues[1]))
+                        thisValues[1] = otherValues[1];
+                case 1:
+                    if (Epoch.leq(thisValues[0], otherValues[0]))
+                        thisValues[0] = otherValues[0];
+                case 0:
+            }
+
+        }
+
+        // requires: exclusive access to this, other
+        // srcValues.length <= dstValues.length
+        final private void slowMax(LegacyVectorClock src) {
+            int/* epoch */[] srcValues = src.values;
+            int/* epoch */[] dstValues = this.values;
+            for (int i = FAST; i < srcValues.length; i++) {
+                if (Epoch.leq(dstValues[i], srcValues[i]))
+                    dstValues[i] = srcValues[i];
+            }
+        }
+
+        /* Return true if any entry in this.values is greater than in other.values. */
+        // requires: exclusive access to this and other
+        final public boolean anyGt(LegacyVectorClock other) {
+            // other.ensureCapacity(this.values.length);
+            int/* epoch */[] thisValues = this.values;
+            int/* epoch */[] otherValues = other.values;
+
+            int thisLen = thisValues.length;
+            int otherLen = otherValues.length;
+            int min = Math.min(thisLen, otherLen);
+            switch (min) {
+                default:
+                    if (slowAnyGt(thisValues, otherValues, min))
+                        return true; // handle 8..min
+                case 8:
+                    if (!Epoch.leq(thisValues[7], otherValues[7]))
+                        return true;
+                case 7:
+                    if (!Epoch.leq(thisValues[6], otherValues[6]))
+                        return true;
+                case 6:
+                    if (!Epoch.leq(thisValues[5], otherValues[5]))
+                        return true;
+                case 5:
+                    if (!Epoch.leq(thisValues[4], otherValues[4]))
+                        return true;
+                case 4:
+                    if (!Epoch.leq(thisValues[3], otherValues[3]))
+                        return true;
+                case 3:
+                    if (!Epoch.leq(thisValues[2], otherValues[2]))
+                        return true;
+                case 2:
+                    if (!Epoch.leq(thisValues[1], otherValues[1]))
+                        return true;
+                case 1:
+                    if (!Epoch.leq(thisValues[0], otherValues[0]))
+                        return true;
+                case 0:
+            }
+
+            // handle min..thisLen
+            for (int i = min; i < thisLen; i++) {
+                if (thisValues[i] != Epoch.make(i, 0))
+                    return true;
+            }
+
+            // handle thisLen..otherLen
+            // our values are t@0 -> so never greater than other values.
+
+            return false;
+        }
+
+        /*
+         * Return true if any entry in ca1 is greater than in c2a. requires: min <= ca1.length, min <=
+         * ca2.length requires: exclusive access to ca1 and ca2
+         */
+        final private static boolean slowAnyGt(int/* epoch */[] ca1, int/* epoch */[] ca2, int len) {
+            for (int i = FAST; i < len; i++) {
+                if (!Epoch.leq(ca1[i], ca2[i]))
+                    return true;
+            }
+            return false;
+        }
+    }
+}
@@ -74,3 +74,10 @@ sed -i.bak -e "s/int\/\* epoch \*\//long\/* epoch *\//g" auto/tools/util/LongEpo
 sed -i.bak -e "s/Integer\/\* epoch \*\//Long\/* epoch *\//g" auto/tools/util/LongEpoch.java
 sed -i.bak -e "s/Epoch/LongEpoch/g" auto/tools/util/LongEpoch.java
 rm auto/tools/util/*.bak
+
+echo "// AUTO-GENERATED --- DO NOT EDIT DIRECTLY " >auto/tools/util/AdaptiveLongVectorClock.java
+cat src/tools/util/AdaptiveVectorClock.java >>auto/tools/util/AdaptiveLongVectorClock.java
+sed -i.bak -e "s/int\/\* epoch \*\//long\/* epoch *\//g" auto/tools/util/AdaptiveLongVectorClock.java
+sed -i.bak -e "s/VectorClock/LongVectorClock/g" auto/tools/util/AdaptiveLongVectorClock.java
+sed -i.bak -e "s/Epoch/LongEpoch/g" auto/tools/util/AdaptiveLongVectorClock.java
+rm auto/tools/util/*.bak
@@ -41,18 +41,22 @@ package acme.util;
 import java.lang.ref.WeakReference;
 import java.util.Vector;
 
-import acme.util.identityhash.ConcurrentIdentityHashMap;
-import acme.util.identityhash.WeakIdentityHashMap;
+import acme.util.identityhash.ConcurrentWeakIdentityHashMap;
 
 /**
  * A generic, threadsafe lookup table that knows how to allocate an entry
  * for a key that has not been looked up before.  This uses weak refs for
  * keys so that dead keys/values are automatically reclaimed.
+ *
+ * Entries for collected keys are expunged incrementally as the table is
+ * updated, and by a background thread that drains each table's reference
+ * queue.  Live entries are never discarded, so a key always maps to the
+ * same value.  The null key is supported (e.g. for static fields).
  */
 public abstract class WeakResourceManager<K,V> {
 
-	private final WeakIdentityHashMap<K,V> attic = new WeakIdentityHashMap<K,V>();
-	private final ConcurrentIdentityHashMap<K,V> table = new ConcurrentIdentityHashMap<K,V>();
+	private final ConcurrentWeakIdentityHashMap<K,V> table = new ConcurrentWeakIdentityHashMap<K,V>();
+	private volatile V nullValue;
 
 	private static final Vector<WeakReference<WeakResourceManager<?,?>>> managers = new Vector<WeakReference<WeakResourceManager<?,?>>>();
 
@@ -61,16 +65,15 @@ public abstract class WeakResourceManager<K,V> {
 	}
 
 	static {
-		new Thread("Weak Resource Cleaner") {
+		Thread cleaner = new Thread("Weak Resource Cleaner") {
 			public void run() {
 				while (true) {
 					try {
-						Thread.sleep(5000);
+						Thread.sleep(1000);
 					} catch (Exception e) {
 						Assert.panic(e);
 					}
-					Util.log("Cleaning...");
-					
+
 					// remove gc'd
 					synchronized (managers) {
 						for (int i = managers.size() - 1; i >= 0; i--) {
@@ -80,34 +83,47 @@ public abstract class WeakResourceManager<K,V> {
 						}
 					}
 					
-					// clear each
+					// expunge dead entries from each
 					for (int i = 0; i < managers.size(); i++) {
 						WeakReference<WeakResourceManager<?,?>> manager = managers.get(i);
 						WeakResourceManager<?,?> ptr = manager.get();
 						if (ptr != null) {
-							synchronized(ptr) {
-								ptr.table.clear();
-							}
+							ptr.table.expungeStaleEntries();
 						}
 					}
 				}
 			}
-		}.start();
+		};
+		cleaner.setDaemon(true);
+		cleaner.start();
 	}
 
 	public V get(K key) {
+		if (key == null) {
+			return getNull();
+		}
 		int hash = Util.identityHashCode(key);
 		V v = table.get(key, hash);
 		if (v == null) {
 			synchronized (this) {
 				v = table.get(key, hash);
 				if (v == null) {
-					v = attic.get(key);
-					if (v == null) {
-						v = make(key);
-						attic.put(key, v);
-					}
-					table.put(key, v);
+					v = make(key);
+					table.putIfAbsent(key, v, hash);
+				}
+			}
+		}
+		return v;
+	}
+
+	private V getNull() {
+		V v = nullValue;
+		if (v == null) {
+			synchronized (this) {
+				v = nullValue;
+				if (v == null) {
+					v = make(null);
+					nullValue = v;
 				}
 			}
 		}
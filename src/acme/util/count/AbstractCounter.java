@@ -40,6 +40,8 @@ package acme.util.count;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
 
 import acme.util.Assert;
@@ -80,10 +82,19 @@ public abstract class AbstractCounter implements Comparable<AbstractCounter> {
 		Assert.panic("Not Implemented");
 		return 0;
 	}
+
+	/** True if getCount is implemented and only grows, so that it can be sampled for a rate. */
+	public boolean hasCount() {
+		return false;
+	}
 	
 	private String fullRep() {
 		return (group == null ? name : group + ": " + name);
 	}
+
+	public final String getFullName() {
+		return fullRep();
+	}
 	
 	@Override
 	public final String toString() {
@@ -95,6 +106,11 @@ public abstract class AbstractCounter implements Comparable<AbstractCounter> {
 		out.printInsideScopeWithFixedWidths("counter", "name", String.format("\"%s\"", fullRep()), -60, "value", get(), -5);
 	}
 
+	/** A copy of the list of all counters, in creation order.  Does not block counter updates. */
+	public static List<AbstractCounter> getAll() {
+		return new ArrayList<AbstractCounter>(all);
+	}
+
 	/** Print all counters to the given output stream, sorted by group */
 	public static void printCounters(PrintStream out) {
 		java.util.Collections.sort(all);
@@ -71,4 +71,9 @@ public class AggregateCounter extends AbstractCounter {
         long sum = this.getCount();
         return String.format("%,d", sum);
     }
+
+    @Override
+    public boolean hasCount() {
+        return true;
+    }
 }
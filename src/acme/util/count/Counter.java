@@ -40,15 +40,15 @@ package acme.util.count;
 
 
 /**
- * A simple integer counter.
+ * A simple integer counter.  Updates are striped (see StripedLong), so
+ * counters bumped from many threads do not serialize on one word.
  */
 public class Counter extends AbstractCounter {
 
-	protected long count;
+	protected final StripedLong count = new StripedLong();
 	
 	public Counter(String group, String name) {
 		super(group, name);
-		count = 0;
 	}
 	
 	public Counter(String name) {
@@ -56,19 +56,24 @@ public class Counter extends AbstractCounter {
 	}
 	
 	final public void inc() {
-		count++;
+		count.inc();
 	}
 	
 	final public void add(long n) {
-		count+=n;
+		count.add(n);
 	}
 	
 	@Override
 	public String get() {
-		return String.format("%,d",count);
+		return String.format("%,d",count.sum());
 	}	
 	
 	public long getCount() {
-		return count;
+		return count.sum();
+	}
+
+	@Override
+	public boolean hasCount() {
+		return true;
 	}
 }
@@ -0,0 +1,158 @@
+/******************************************************************************
+ *
+ * Copyright (c) 2010, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ ******************************************************************************/
+
+package acme.util.count;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A Timer that also records the distribution of the intervals it sees. Intervals are binned into
+ * log-linear buckets (8 per power of two, so each bucket is within 12.5% of the values in it), and
+ * each stripe of threads gets its own bucket array, allocated on first use. get() adds the p50,
+ * p99, and max intervals, in nanoseconds, to the usual Timer fields.
+ */
+final public class HistogramTimer extends AbstractCounter {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final StripedLong totalTime = new StripedLong();
+    private final StripedLong count = new StripedLong();
+    private final AtomicLong max = new AtomicLong();
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<AtomicLongArray>(
+            StripedLong.STRIPES);
+
+    public HistogramTimer(String group, String name) {
+        super(group, name);
+    }
+
+    public HistogramTimer(String name) {
+        this(null, name);
+    }
+
+    public final long start() {
+        return System.nanoTime();
+    }
+
+    final public long stop(long startTime) {
+        long endTime = System.nanoTime();
+        long elapsed = endTime - startTime;
+        if (elapsed < 0) elapsed = 0;
+        totalTime.add(elapsed);
+        count.inc();
+        buckets().getAndIncrement(bucket(elapsed));
+        long m;
+        while (elapsed > (m = max.get()) && !max.compareAndSet(m, elapsed)) {
+            // retry
+        }
+        return elapsed;
+    }
+
+    private AtomicLongArray buckets() {
+        int i = StripedLong.stripe();
+        AtomicLongArray b = stripes.get(i);
+        if (b == null) {
+            stripes.compareAndSet(i, null, new AtomicLongArray(BUCKETS));
+            b = stripes.get(i);
+        }
+        return b;
+    }
+
+    /** Values below SUB_BUCKETS get a bucket each; above, the top SUB_BITS + 1 bits pick one. */
+    static int bucket(long ns) {
+        if (ns < SUB_BUCKETS) return (int) ns;
+        int msb = 63 - Long.numberOfLeadingZeros(ns);
+        int sub = (int) (ns >>> (msb - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (msb - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /** The largest value that falls into bucket b. */
+    static long highest(int b) {
+        if (b < SUB_BUCKETS) return b;
+        int shift = b / SUB_BUCKETS - 1;
+        long low = ((long) (SUB_BUCKETS + b % SUB_BUCKETS)) << shift;
+        return low + (1L << shift) - 1;
+    }
+
+    /**
+     * The bucket bound at or below which the given fraction of the recorded intervals fall. Never
+     * reports more than the max.
+     */
+    public long percentile(double p) {
+        long[] merged = new long[BUCKETS];
+        long n = 0;
+        for (int s = 0; s < stripes.length(); s++) {
+            AtomicLongArray b = stripes.get(s);
+            if (b == null) continue;
+            for (int i = 0; i < BUCKETS; i++) {
+                long c = b.get(i);
+                merged[i] += c;
+                n += c;
+            }
+        }
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(p * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += merged[i];
+            if (seen >= rank) return Math.min(highest(i), max.get());
+        }
+        return max.get();
+    }
+
+    @Override
+    public String get() {
+        double totalTime = (this.totalTime.sum()) / 1000000;
+        long count = this.count.sum();
+        if (count > 0) {
+            return String.format(
+                    "<total>%g</total> <count>%d</count> <ave>%g</ave> <p50ns>%d</p50ns> <p99ns>%d</p99ns> <maxns>%d</maxns>",
+                    totalTime, count, totalTime / count, percentile(0.50), percentile(0.99),
+                    max.get());
+        } else {
+            return String.format("<total>%g</total> <count>%d</count> ", totalTime, count);
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public boolean hasCount() {
+        return true;
+    }
+}
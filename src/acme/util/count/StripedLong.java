@@ -0,0 +1,107 @@
+/******************************************************************************
+
+Copyright (c) 2010, Cormac Flanagan (University of California, Santa Cruz)
+                    and Stephen Freund (Williams College) 
+
+All rights reserved.  
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+
+    * Neither the names of the University of California, Santa Cruz
+      and Williams College nor the names of its contributors may be
+      used to endorse or promote products derived from this software
+      without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************************/
+
+package acme.util.count;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A long sum that threads can update without contending on one word.
+ * Updates go to a single base word until a CAS on it fails; after that,
+ * each thread adds into one of a small set of cells, picked by its id and
+ * spaced a cache line apart.  sum() adds up the base and the cells, so it
+ * is only exact when no updates are in flight.
+ */
+public final class StripedLong {
+
+	/** longs per cell, so that neighbouring cells sit on different cache lines. */
+	private static final int STRIDE = 8;
+
+	static final int STRIPES;
+	static {
+		int n = 2;
+		int cpus = Runtime.getRuntime().availableProcessors();
+		while (n < 2 * cpus && n < 64) n <<= 1;
+		STRIPES = n;
+	}
+
+	private final AtomicLong base = new AtomicLong();
+	private volatile AtomicLongArray cells;
+
+	public void add(long n) {
+		AtomicLongArray cs = cells;
+		if (cs == null) {
+			long b = base.get();
+			if (base.compareAndSet(b, b + n)) return;
+			cs = cells();
+		}
+		cs.getAndAdd(index(), n);
+	}
+
+	public void inc() {
+		add(1);
+	}
+
+	public long sum() {
+		long sum = base.get();
+		AtomicLongArray cs = cells;
+		if (cs != null) {
+			for (int i = 1; i <= STRIPES; i++) {
+				sum += cs.get(i * STRIDE);
+			}
+		}
+		return sum;
+	}
+
+	/** Index of the calling thread's cell; the first line is left as padding. */
+	private static int index() {
+		return (stripe() + 1) * STRIDE;
+	}
+
+	static int stripe() {
+		return (int)Thread.currentThread().getId() & (STRIPES - 1);
+	}
+
+	private synchronized AtomicLongArray cells() {
+		if (cells == null) {
+			cells = new AtomicLongArray((STRIPES + 2) * STRIDE);
+		}
+		return cells;
+	}
+}
@@ -78,4 +78,8 @@ final public class ThreadLocalCounter extends AbstractCounter {
 		return String.format("%,10d", total());
 	}
 
+	@Override
+	public boolean hasCount() {
+		return true;
+	}
 }
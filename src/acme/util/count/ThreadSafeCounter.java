@@ -40,35 +40,40 @@ package acme.util.count;
 
 
 /**
- * A simple integer counter.
+ * A thread-safe integer counter.  Updates are striped across cells (see
+ * StripedLong) rather than taken under the counter's lock.
  */
 public class ThreadSafeCounter extends AbstractCounter {
 
-	protected long count;
+	protected final StripedLong count = new StripedLong();
 	
 	public ThreadSafeCounter(String group, String name) {
 		super(group, name);
-		count = 0;
 	}
 	
 	public ThreadSafeCounter(String name) {
 		this(null, name);
 	}
 	
-	final synchronized public void inc() {
-		count++;
+	final public void inc() {
+		count.inc();
 	}
 	
-	final synchronized  public void add(long n) {
-		count+=n;
+	final public void add(long n) {
+		count.add(n);
 	}
 	
 	@Override
-	public final synchronized String get() {
-		return String.format("%,d",count);
+	public final String get() {
+		return String.format("%,d",count.sum());
 	}	
 	
-	public final synchronized long getCount() {
-		return count;
+	public final long getCount() {
+		return count.sum();
+	}
+
+	@Override
+	public boolean hasCount() {
+		return true;
 	}
 }
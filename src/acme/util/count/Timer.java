@@ -34,16 +34,16 @@ package acme.util.count;
 
 /**
  * A counter that works like a stopwatch. Call start followed by stop, and it adds the interval to
- * the total time. Can be used multiple times in a row.
+ * the total time. Can be used multiple times in a row. The total and count are striped (see
+ * StripedLong), so stop does not serialize threads timing the same event.
  */
 final public class Timer extends AbstractCounter {
 
-    private long totalTime;
-    private int count = 0;
+    private final StripedLong totalTime = new StripedLong();
+    private final StripedLong count = new StripedLong();
 
     public Timer(String group, String name) {
         super(group, name);
-        totalTime = 0;
     }
 
     public Timer(String name) {
@@ -54,17 +54,18 @@ final public class Timer extends AbstractCounter {
         return System.nanoTime();
     }
 
-    final public synchronized long stop(long startTime) {
+    final public long stop(long startTime) {
         long endTime = System.nanoTime();
         long elapsed = endTime - startTime;
-        totalTime += elapsed;
-        count++;
+        totalTime.add(elapsed);
+        count.inc();
         return elapsed;
     }
 
     @Override
     public String get() {
-        double totalTime = (this.totalTime) / 1000000;
+        double totalTime = (this.totalTime.sum()) / 1000000;
+        long count = this.count.sum();
         if (count > 0) {
             return String.format("<total>%g</total> <count>%d</count> <ave>%g</ave>", totalTime,
                     count, totalTime / count);
@@ -72,4 +73,14 @@ final public class Timer extends AbstractCounter {
             return String.format("<total>%g</total> <count>%d</count> ", totalTime, count);
         }
     }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public boolean hasCount() {
+        return true;
+    }
 }
@@ -64,29 +64,36 @@ public final class Decoration<T extends Decoratable, V> implements Serializable
         this.defaultValue = defaultValue;
     }
 
+    /*
+     * Reads of a value already set take no lock. Making a default value and growing an object's
+     * array of values both happen with the object's lock held, so that two threads decorating
+     * the same object at once (e.g., while instrumenting two classes that share a superclass)
+     * neither make two default values nor lose a value set in the array being replaced.
+     */
     public final V get(final T n) {
         final Object[] vs = n.decorations;
-        try {
-            V v = (V) vs[slot];
+        if (slot < vs.length) {
+            final V v = (V) vs[slot];
+            if (v != null) {
+                return v;
+            }
+        }
+        synchronized (n) {
+            final Object[] current = n.decorations;
+            V v = slot < current.length ? (V) current[slot] : null;
             if (v == null) {
-                set(n, v = defaultValue.get(n));
+                v = defaultValue.get(n);
+                set(n, v);
             }
             return v;
-        } catch (Exception e) {
-            V v = null;
-            set(n, v = defaultValue.get(n));
-            return v;
         }
     }
 
     public final void set(final T n, final V val) {
-        try {
-            final Object[] v = n.decorations;
-            v[slot] = val;
-        } catch (Exception e) {
+        synchronized (n) {
             Object[] v = n.decorations;
             if (slot >= v.length) {
-                Object[] _new = new Object[factory.allocated()];
+                Object[] _new = new Object[Math.max(factory.allocated(), slot + 1)];
                 System.arraycopy(v, 0, _new, 0, v.length);
                 v = n.decorations = _new;
             }
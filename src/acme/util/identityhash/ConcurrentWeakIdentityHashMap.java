@@ -0,0 +1,246 @@
+/******************************************************************************
+ * 
+ * Copyright (c) 2010, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ ******************************************************************************/
+
+package acme.util.identityhash;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent hash table with weak, identity-compared keys. Retrievals do not lock and do not
+ * allocate. Updates lock one segment of the table.
+ *
+ * Entries whose keys have been collected are removed incrementally: the garbage collector posts
+ * them to a ReferenceQueue, and each update (or a call to expungeStaleEntries) drains a bounded
+ * number of them, locking only the segment each one lives in. The table is never cleared as a
+ * whole, so values stay attached to live keys for as long as the keys are reachable.
+ *
+ * Callers supply the hash (normally Util.identityHashCode(key)) so that it can be computed once
+ * per lookup. Null keys and null values are not supported.
+ */
+public class ConcurrentWeakIdentityHashMap<K, V> {
+
+    private static final int SEGMENTS = 16;
+    private static final int SEGMENT_SHIFT = 28;
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+    private static final int MAX_SEGMENT_CAPACITY = 1 << 26;
+
+    /** Upper bound on stale entries removed by one update, to keep each update short. */
+    private static final int EXPUNGE_BATCH = 64;
+
+    static final class Entry<K, V> extends WeakReference<K> {
+        final int hash;
+        final V value;
+        final Entry<K, V> next;
+
+        Entry(K key, int hash, V value, Entry<K, V> next, ReferenceQueue<? super K> queue) {
+            super(key, queue);
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Chains are immutable: removals copy the prefix of a chain, and resizing copies the live
+     * entries into a new table, so readers can traverse a stale table without locking.
+     */
+    @SuppressWarnings("serial")
+    static final class Segment<K, V> extends ReentrantLock {
+        volatile Entry<K, V>[] table;
+        int count;
+
+        @SuppressWarnings("unchecked")
+        Segment() {
+            table = (Entry<K, V>[]) new Entry[INITIAL_SEGMENT_CAPACITY];
+        }
+
+        V get(Object key, int hash) {
+            final Entry<K, V>[] tab = table;
+            for (Entry<K, V> e = tab[hash & (tab.length - 1)]; e != null; e = e.next) {
+                if (e.hash == hash && e.get() == key) {
+                    return e.value;
+                }
+            }
+            return null;
+        }
+
+        V putIfAbsent(K key, V value, int hash, ReferenceQueue<K> queue) {
+            Entry<K, V>[] tab = table;
+            if (count >= tab.length - (tab.length >>> 2) && tab.length < MAX_SEGMENT_CAPACITY) {
+                tab = rehash(tab, queue);
+            }
+            final int i = hash & (tab.length - 1);
+            final Entry<K, V> first = tab[i];
+            for (Entry<K, V> e = first; e != null; e = e.next) {
+                if (e.hash == hash && e.get() == key) {
+                    return e.value;
+                }
+            }
+            tab[i] = new Entry<K, V>(key, hash, value, first, queue);
+            count++;
+            table = tab; // publish
+            return null;
+        }
+
+        /** Drops collected entries while copying, so a resize also doubles as a sweep. */
+        @SuppressWarnings("unchecked")
+        private Entry<K, V>[] rehash(Entry<K, V>[] oldTable, ReferenceQueue<K> queue) {
+            final Entry<K, V>[] newTable = (Entry<K, V>[]) new Entry[oldTable.length << 1];
+            final int mask = newTable.length - 1;
+            int n = 0;
+            for (Entry<K, V> e : oldTable) {
+                for (; e != null; e = e.next) {
+                    final K key = e.get();
+                    if (key != null) {
+                        final int i = e.hash & mask;
+                        newTable[i] = new Entry<K, V>(key, e.hash, e.value, newTable[i], queue);
+                        n++;
+                    }
+                }
+            }
+            count = n;
+            table = newTable;
+            return newTable;
+        }
+
+        /** Remove the given entry if it is still in the table. */
+        void remove(Entry<K, V> dead, ReferenceQueue<K> queue) {
+            final Entry<K, V>[] tab = table;
+            final int i = dead.hash & (tab.length - 1);
+            final Entry<K, V> first = tab[i];
+            Entry<K, V> e = first;
+            while (e != null && e != dead) {
+                e = e.next;
+            }
+            if (e == null) {
+                return; // already dropped by a rehash
+            }
+            Entry<K, V> newFirst = dead.next;
+            for (Entry<K, V> p = first; p != dead; p = p.next) {
+                final K key = p.get();
+                if (key != null) {
+                    newFirst = new Entry<K, V>(key, p.hash, p.value, newFirst, queue);
+                } else {
+                    count--;
+                }
+            }
+            tab[i] = newFirst;
+            count--;
+            table = tab; // publish
+        }
+    }
+
+    private final Segment<K, V>[] segments;
+    private final ReferenceQueue<K> queue = new ReferenceQueue<K>();
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentWeakIdentityHashMap() {
+        segments = (Segment<K, V>[]) new Segment[SEGMENTS];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment<K, V>();
+        }
+    }
+
+    /**
+     * Spread the identity hash so that the segment (high bits) and bucket (low bits) selections
+     * are independent.
+     */
+    private static int spread(int h) {
+        h += (h << 15) ^ 0xffffcd7d;
+        h ^= (h >>> 10);
+        h += (h << 3);
+        h ^= (h >>> 6);
+        h += (h << 2) + (h << 14);
+        return h ^ (h >>> 16);
+    }
+
+    private Segment<K, V> segmentFor(int hash) {
+        return segments[hash >>> SEGMENT_SHIFT];
+    }
+
+    /**
+     * Return the value for key, or null if there is none.
+     */
+    public V get(Object key, int hash) {
+        hash = spread(hash);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    /**
+     * Map key to value unless it is already mapped, and return the previous value (or null if
+     * value was added).
+     */
+    public V putIfAbsent(K key, V value, int hash) {
+        expungeStaleEntries();
+        hash = spread(hash);
+        final Segment<K, V> s = segmentFor(hash);
+        s.lock();
+        try {
+            return s.putIfAbsent(key, value, hash, queue);
+        } finally {
+            s.unlock();
+        }
+    }
+
+    /**
+     * Remove a bounded number of entries whose keys have been collected. Each removal locks only
+     * the segment holding that entry.
+     */
+    @SuppressWarnings("unchecked")
+    public void expungeStaleEntries() {
+        Reference<? extends K> r;
+        for (int n = 0; n < EXPUNGE_BATCH && (r = queue.poll()) != null; n++) {
+            final Entry<K, V> e = (Entry<K, V>) r;
+            final Segment<K, V> s = segmentFor(e.hash);
+            s.lock();
+            try {
+                s.remove(e, queue);
+            } finally {
+                s.unlock();
+            }
+        }
+    }
+
+    /**
+     * Approximate number of entries, including any whose keys were collected but not yet expunged.
+     */
+    public int size() {
+        int n = 0;
+        for (Segment<K, V> s : segments) {
+            n += s.count;
+        }
+        return n;
+    }
+}
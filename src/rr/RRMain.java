@@ -48,6 +48,7 @@ import acme.util.option.CommandLineOption;
 import acme.util.time.TimedStmt;
 import rr.instrument.Instrumentor;
 import rr.instrument.classes.CloneFixer;
+import rr.instrument.classes.ShadowLockInserter;
 import rr.instrument.classes.ThreadDataThunkInserter;
 import rr.loader.InstrumentingDefineClassLoader;
 import rr.meta.InstrumentationFilter;
@@ -237,9 +238,11 @@ public class RRMain {
         cl.add(rr.tool.RR.valuesOption);
         cl.add(ThreadDataThunkInserter.noConstructorOption);
         cl.add(CloneFixer.noCloneOption);
+        cl.add(ShadowLockInserter.shadowLockFieldOption);
         cl.add(rr.tool.RR.noEnterOption);
         cl.add(rr.tool.RR.noShutdownHookOption);
         cl.add(Instrumentor.dumpClassOption);
+        cl.add(rr.loader.ClassCache.classCacheOption);
         cl.add(InstrumentingDefineClassLoader.sanityOption);
         cl.add(Instrumentor.fancyOption);
         cl.add(Instrumentor.verifyOption);
@@ -252,7 +255,10 @@ public class RRMain {
         cl.add(rr.tool.RR.xmlFileOption);
         cl.add(rr.tool.RR.noxmlOption);
         cl.add(rr.tool.RR.stackOption);
+        cl.add(rr.tool.RR.shadowStackOption);
+        cl.add(rr.tool.RR.maxStacksOption);
         cl.add(rr.tool.RR.pulseOption);
+        cl.add(rr.tool.RR.metricsPortOption);
         cl.add(rr.tool.RR.noTidGCOption);
         cl.add(rr.tool.RREventGenerator.noJoinOption);
         cl.add(rr.tool.RREventGenerator.indicesToWatch);
@@ -274,11 +280,13 @@ public class RRMain {
         cl.add(rr.tool.RR.maxTidOption);
         cl.add(rr.RRMain.availableProcessorsOption);
         cl.add(rr.error.ErrorMessage.maxWarnOption);
+        cl.add(rr.error.ErrorMessage.errorQueueOption);
 
         cl.addOrderConstraint(rr.tool.RR.classPathOption, rr.tool.RR.toolOption);
         cl.addOrderConstraint(rr.tool.RR.toolPathOption, rr.tool.RR.toolOption);
         cl.addOrderConstraint(rr.tool.RR.toolOption, rr.tool.RR.toolOption);
         cl.addOrderConstraint(rr.barrier.BarrierMonitor.noBarrier, rr.tool.RR.toolOption);
+        cl.addOrderConstraint(rr.tool.RR.shadowStackOption, rr.tool.RR.toolOption);
 
         int n = cl.apply(argv);
 
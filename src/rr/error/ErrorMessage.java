@@ -41,12 +41,18 @@ package rr.error;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import rr.meta.MetaDataInfo;
+import rr.meta.SourceLocation;
 import rr.state.ShadowThread;
+import rr.tool.RR;
 import acme.util.Assert;
 import acme.util.Util;
-import acme.util.collections.IntIntMap;
 import acme.util.option.CommandLine;
 import acme.util.option.CommandLineOption;
 
@@ -54,27 +60,36 @@ import acme.util.option.CommandLineOption;
  * An error message reporter for a specific syntactic category (field, method, etc.).  A summary 
  * of the reported errors will appear in the XML at the end of a run.
  * <p>
+ * The thread reporting an error only claims a slot in the per-declaration count (an atomic
+ * update) and queues an immutable Report.  Formatting and printing happen on the "RR Error
+ * Reporter" thread.  If the queue is full, the report is dropped, but it still counts towards
+ * the totals and the XML summary.  Use -errorQueue=0 to print reports on the reporting thread. 
+ * <p>
  * See sample tools for examples.  
  */
 public class ErrorMessage<T extends MetaDataInfo> {
 
-	private static int totalNumberOfErrors = 0;
-	private static int totalNumberOfDistinctErrors = 0;
+	private static final AtomicInteger totalNumberOfErrors = new AtomicInteger();
+	private static final AtomicInteger totalNumberOfDistinctErrors = new AtomicInteger();
+	private static final AtomicInteger droppedReports = new AtomicInteger();
 
 	public static CommandLineOption<Integer> maxWarnOption = 
 		CommandLine.makeInteger("maxWarn", 100, CommandLineOption.Kind.STABLE, "Maximum number of warnings of each type that will be printed for a specific declaration/operation.");
 
+	public static CommandLineOption<Integer> errorQueueOption = 
+		CommandLine.makeInteger("errorQueue", 1024, CommandLineOption.Kind.EXPERIMENTAL, "Number of error reports that may wait to be printed by the background reporter before new ones are dropped.  0 prints each report on the thread that found the error.");
+
 	/** General name for this type of error */
 	protected final String type;
 
 	/** Number of errors reported in total. */
-	protected int counter;
+	protected final AtomicInteger counter = new AtomicInteger();
 
 	/** Number of errors reported for each meta data element, kept by id. */
-	protected final IntIntMap counters = new IntIntMap();
+	protected final Counts counters = new Counts();
 
 	/** Max number of errors of this type before they are suppressed in the output. */
-	protected int limit = -1;  // -1 for eLimit, >= 0 for specific limit
+	protected volatile int limit = -1;  // -1 for eLimit, >= 0 for specific limit
 
 	/**
 	 * type: Generic name for this type of error.
@@ -83,11 +98,11 @@ public class ErrorMessage<T extends MetaDataInfo> {
 		this.type = type;
 	}
 
-	private void defaultStart(ShadowThread cur, PrintWriter tmp) {
+	private void defaultStart(int tid, PrintWriter tmp) {
 		tmp.println();
 		tmp.println("=====================================================================");
 		tmp.printf("%s Error\n\n", type);
-		tmp.printf("%15s: %-5d\n","Thread", cur.getTid());
+		tmp.printf("%15s: %-5d\n","Thread", tid);
 	}
 
 	private void defaultEnd(PrintWriter tmp) {
@@ -136,44 +151,32 @@ public class ErrorMessage<T extends MetaDataInfo> {
 							"Cur Op CV", 	cv,
 							"Stack",		ShadowThread.stackDumpForErrorMessage(thread));
 		</pre>
+	 * Values that may change after the call (shadow state, clocks, ...) are copied by their
+	 * ErrorSnapshot.snapshot(), or converted to strings if they have none, before this returns.
+	 * All formatting of copies and other values is left to the reporter thread.  The stack is
+	 * recorded only for the first -maxStacks errors on t.
 	 */
-	public synchronized void error(ShadowThread cur, T t, Object... extraData) {
+	public void error(ShadowThread cur, T t, Object... extraData) {
 		try {
-			if (stillLooking(t)) {			
-				StringWriter sw = new StringWriter();
-				PrintWriter pw = new PrintWriter(sw);
-				counter++;
-				defaultStart(cur, pw);
-
-				if (t != null) {
-					synchronized(ErrorMessage.class) {
-						if (count(t) == 0) {
-							totalNumberOfDistinctErrors++;
-						}
-						counters.inc(t.getId());
-					}
-					pw.printf("%15s: %s\n","Blame", t);
-					pw.printf("%15s: %d    (max: %d)\n", "Count", 
-							counters.get(t.getId()), getMax());
+			int count = 0;
+			if (t != null) {
+				count = counters.incIfLess(t.getId(), getMax());
+				if (count == 0) {
+					return;
+				}
+				if (count == 1) {
+					totalNumberOfDistinctErrors.incrementAndGet();
 				}
-				printExtra(pw, extraData);
-				defaultEnd(pw);
-				Util.error(sw.toString());
-				totalNumberOfErrors++;
 			}
+			counter.incrementAndGet();
+			totalNumberOfErrors.incrementAndGet();
+			final boolean recordStack = t == null || count <= RR.maxStacksOption.get();
+			submit(new Report(this, cur.getTid(), t, count, getMax(), snapshot(extraData, recordStack)));
 		} catch (Throwable e) {
 			Assert.panic(e);
 		}
 	}
 
-	private void printExtra(PrintWriter pw, Object... extra) {
-		Assert.assertTrue(extra.length % 2 == 0, "Passing wrong number of info pieces to error message");
-		for (int i = 0; i < extra.length; i+=2) {
-			pw.printf("%15s: %s\n", extra[i], 
-					extra[i+1] == null ? "null" : extra[i+1].toString().replaceAll("\n","\n                 "));
-		}
-	}
-
 	/**
 	 * Report an error attributed to multiple syntactic locations.
 	 */
@@ -183,38 +186,250 @@ public class ErrorMessage<T extends MetaDataInfo> {
 			if (stillLooking(t)) report = true;
 		}
 		if (report) {
-			StringWriter sw = new StringWriter();
-			PrintWriter pw = new PrintWriter(sw);
-			counter++;
-			defaultStart(cur, pw);
-
+			counter.incrementAndGet();
 			String blame = "";
 			for (T t : ts) {
 				if (blame.length() > 0) blame += " -- ";
 				blame += t;
 				counters.inc(t.getId());
 			}
-			pw.printf("%15s: %s\n","Blame", blame);
+			submit(new Report(this, cur.getTid(), blame, 0, 0, snapshot(extraData, true)));
+		}
+	}
+
+	/**
+	 * Objects that cannot change are kept as they are, ErrorSnapshots are copied, and everything
+	 * else is turned into a string now.  ErrorStacks are recorded, or left out if recordStack is
+	 * false.
+	 */
+	private static Object[] snapshot(Object[] extra, boolean recordStack) {
+		Assert.assertTrue(extra.length % 2 == 0, "Passing wrong number of info pieces to error message");
+		final Object[] copy = new Object[extra.length];
+		for (int i = 0; i < extra.length; i++) {
+			final Object o = extra[i];
+			if (o instanceof ErrorStack) {
+				copy[i] = recordStack ? ((ErrorStack) o).capture() : ErrorStack.omitted();
+			} else {
+				copy[i] = snapshot(o);
+			}
+		}
+		return copy;
+	}
+
+	private static Object snapshot(Object o) {
+		if (o == null || o instanceof String || o instanceof Number || o instanceof Boolean
+				|| o instanceof Character || o instanceof Enum || o instanceof Class
+				|| o instanceof MetaDataInfo || o instanceof SourceLocation || o instanceof Formatted) {
+			return o;
+		} else if (o instanceof ErrorSnapshot) {
+			return ((ErrorSnapshot) o).snapshot();
+		} else {
+			return o.toString();
+		}
+	}
+
+	/**
+	 * String.format(format, args), done when the result is printed by the reporter thread.  The
+	 * args are copied now, as for ErrorMessage.error.  For building an ErrorSnapshot or an extra
+	 * value out of several pieces of changing state.
+	 */
+	public static Object format(String format, Object... args) {
+		final Object[] copy = new Object[args.length];
+		for (int i = 0; i < args.length; i++) {
+			copy[i] = snapshot(args[i]);
+		}
+		return new Formatted(format, copy);
+	}
+
+	private static final class Formatted {
+		private final String format;
+		private final Object[] args;
+
+		Formatted(String format, Object[] args) {
+			this.format = format;
+			this.args = args;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(format, args);
+		}
+	}
+
+	private void printExtra(PrintWriter pw, Object... extra) {
+		for (int i = 0; i < extra.length; i+=2) {
+			pw.printf("%15s: %s\n", extra[i], 
+					extra[i+1] == null ? "null" : extra[i+1].toString().replaceAll("\n","\n                 "));
+		}
+	}
+
+	/**
+	 * One error, as queued for the reporter thread.
+	 */
+	private static final class Report {
+		final ErrorMessage<?> message;
+		final int tid;
+		final Object blame;
+		final int count;
+		final int max;
+		final Object[] extra;
+
+		Report(ErrorMessage<?> message, int tid, Object blame, int count, int max, Object[] extra) {
+			this.message = message;
+			this.tid = tid;
+			this.blame = blame;
+			this.count = count;
+			this.max = max;
+			this.extra = extra;
+		}
 
-			printExtra(pw, extraData);
-			defaultEnd(pw);
+		void print() {
+			StringWriter sw = new StringWriter();
+			PrintWriter pw = new PrintWriter(sw);
+			message.defaultStart(tid, pw);
+			if (blame != null) {
+				pw.printf("%15s: %s\n","Blame", blame);
+				if (count > 0) {
+					pw.printf("%15s: %d    (max: %d)\n", "Count", count, max);
+				}
+			}
+			message.printExtra(pw, extra);
+			message.defaultEnd(pw);
 			Util.error(sw.toString());
 		}
 	}
 
+	private static volatile BlockingQueue<Report> queue;
+	private static final AtomicInteger pending = new AtomicInteger();
+
+	private static void submit(Report report) {
+		BlockingQueue<Report> q = queue;
+		if (q == null) {
+			if (errorQueueOption.get() <= 0) {
+				report.print();
+				return;
+			}
+			q = startReporter();
+		}
+		pending.incrementAndGet();
+		if (!q.offer(report)) {
+			pending.decrementAndGet();
+			if (droppedReports.getAndIncrement() == 0) {
+				Util.log("Error report queue is full.  Dropping reports until it drains.");
+			}
+		}
+	}
+
+	private static synchronized BlockingQueue<Report> startReporter() {
+		if (queue == null) {
+			final BlockingQueue<Report> q = new ArrayBlockingQueue<Report>(errorQueueOption.get());
+			Thread reporter = new Thread("RR Error Reporter") {
+				@Override
+				public void run() {
+					while (true) {
+						try {
+							q.take().print();
+						} catch (InterruptedException e) {
+							continue;
+						} catch (Throwable e) {
+							Assert.panic(e);
+						}
+						pending.decrementAndGet();
+					}
+				}
+			};
+			reporter.setDaemon(true);
+			reporter.start();
+			queue = q;
+		}
+		return queue;
+	}
+
+	/**
+	 * Print all queued reports before returning.  Called on shutdown, before the summary.
+	 */
+	public static void flush() {
+		final BlockingQueue<Report> q = queue;
+		if (q == null) {
+			return;
+		}
+		for (Report r = q.poll(); r != null; r = q.poll()) {
+			r.print();
+			pending.decrementAndGet();
+		}
+		// wait for the one the reporter may be printing.
+		while (pending.get() > 0) {
+			Thread.yield();
+		}
+	}
 
 	/** 
 	 * Total number of errors reported.
 	 */
 	public static int getTotalNumberOfErrors() {
-		return totalNumberOfErrors;
+		return totalNumberOfErrors.get();
 	}
 
 	/**
 	 * Number of syntactic elements on which errors were reported.
 	 */
 	public static int getTotalNumberOfDistinctErrors() {
-		return totalNumberOfDistinctErrors;
+		return totalNumberOfDistinctErrors.get();
+	}
+
+	/**
+	 * Number of reports not printed because the queue was full.
+	 */
+	public static int getNumberOfDroppedReports() {
+		return droppedReports.get();
 	}
 
+	/**
+	 * Per-id counts, in fixed chunks of AtomicIntegerArrays that are created on first use
+	 * and never move, so updates need no lock.
+	 */
+	protected static final class Counts {
+		private static final int CHUNK_BITS = 10;
+		private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+		private static final int CHUNKS = 1 << 14;
+
+		private final AtomicReferenceArray<AtomicIntegerArray> chunks = new AtomicReferenceArray<AtomicIntegerArray>(CHUNKS);
+
+		private AtomicIntegerArray chunk(int id, boolean create) {
+			final int c = id >>> CHUNK_BITS;
+			if (c >= CHUNKS) {
+				Assert.panic("ErrorMessage: id too large: " + id);
+			}
+			AtomicIntegerArray a = chunks.get(c);
+			if (a == null && create) {
+				chunks.compareAndSet(c, null, new AtomicIntegerArray(CHUNK_SIZE));
+				a = chunks.get(c);
+			}
+			return a;
+		}
+
+		public int get(int id) {
+			final AtomicIntegerArray a = chunk(id, false);
+			return a == null ? 0 : a.get(id & (CHUNK_SIZE - 1));
+		}
+
+		public void inc(int id) {
+			chunk(id, true).incrementAndGet(id & (CHUNK_SIZE - 1));
+		}
+
+		/** Increment the count for id if it is less than max.  Returns the new count, or 0 if not. */
+		public int incIfLess(int id, int max) {
+			final AtomicIntegerArray a = chunk(id, true);
+			final int i = id & (CHUNK_SIZE - 1);
+			while (true) {
+				final int n = a.get(i);
+				if (n >= max) {
+					return 0;
+				}
+				if (a.compareAndSet(i, n, n + 1)) {
+					return n + 1;
+				}
+			}
+		}
+	}
 }
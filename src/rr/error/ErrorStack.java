@@ -0,0 +1,129 @@
+/******************************************************************************
+
+Copyright (c) 2010, Cormac Flanagan (University of California, Santa Cruz)
+                    and Stephen Freund (Williams College) 
+
+All rights reserved.  
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+
+ * Neither the names of the University of California, Santa Cruz
+      and Williams College nor the names of its contributors may be
+      used to endorse or promote products derived from this software
+      without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ ******************************************************************************/
+
+package rr.error;
+
+import rr.event.MethodEvent;
+import rr.meta.InvokeInfo;
+import rr.meta.MetaDataInfoMaps;
+import rr.meta.MethodInfo;
+import rr.state.ShadowThread;
+import rr.tool.RR;
+import acme.util.StackDump;
+
+/**
+ * The stack of a thread that found an error, as returned by 
+ * ShadowThread.stackDumpForErrorMessage.  Nothing is recorded until ErrorMessage.error 
+ * calls capture() on the same thread, and only for the first -maxStacks errors on each 
+ * declaration/operation.
+ * <p>
+ * With -shadowStacks, the stack is copied from the thread's stack of MethodEvents as pairs of 
+ * MethodInfo and InvokeInfo ids, and the names are only looked up when the report is printed.
+ * With -stacks, the JVM stack is dumped as a String right away, as before.
+ */
+public final class ErrorStack {
+
+	private final ShadowThread thread;
+
+	public ErrorStack(ShadowThread thread) {
+		this.thread = thread;
+	}
+
+	/**
+	 * Record the stack now.  Must be called by the thread itself.
+	 */
+	public Object capture() {
+		if (RR.stackOption.get()) {
+			return StackDump.stackDump(thread.getThread(), RR.toolCode);
+		} else if (RR.shadowStackOption.get()) {
+			final int depth = thread.getBlockDepth();
+			final int ids[] = new int[2 * depth];
+			for (int i = 0; i < depth; i++) {
+				final MethodEvent me = thread.getBlock(i);
+				final InvokeInfo invoke = me.getInvokeInfo();
+				ids[2 * i] = me.getInfo().getId();
+				ids[2 * i + 1] = invoke == null ? InvokeInfo.NULL_ID : invoke.getId();
+			}
+			return new Frames(ids);
+		} else {
+			return "Use -stacks or -shadowStacks to show stacks...";
+		}
+	}
+
+	/**
+	 * Used when the stack is not recorded because of -maxStacks.
+	 */
+	public static String omitted() {
+		return "Not recorded: more than " + RR.maxStacksOption.get() + " stacks for this location (see -maxStacks)...";
+	}
+
+	@Override
+	public String toString() {
+		return capture().toString();
+	}
+
+	/**
+	 * A recorded -shadowStacks stack: the MethodInfo id of each frame, outermost first, 
+	 * each followed by the InvokeInfo id of the call that entered it.
+	 */
+	private static final class Frames {
+		private final int ids[];
+
+		Frames(int ids[]) {
+			this.ids = ids;
+		}
+
+		@Override
+		public String toString() {
+			if (ids.length == 0) {
+				return "No method events recorded (-noEnter?)...";
+			}
+			final StringBuilder sb = new StringBuilder();
+			for (int i = ids.length - 2; i >= 0; i -= 2) {
+				final MethodInfo method = MetaDataInfoMaps.getMethods().get(ids[i]);
+				if (sb.length() > 0) sb.append("\n");
+				sb.append("at ").append(method.getOwner().getName()).append(".").append(method.getName());
+				// the location in this frame is that of the call to the frame above it.
+				if (i + 3 < ids.length && ids[i + 3] != InvokeInfo.NULL_ID) {
+					sb.append(" (").append(MetaDataInfoMaps.getInvokes().get(ids[i + 3]).getLoc()).append(")");
+				}
+			}
+			return sb.toString();
+		}
+	}
+}
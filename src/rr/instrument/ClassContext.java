@@ -39,13 +39,22 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package rr.instrument;
 
 import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
 
 import rr.meta.ClassInfo;
+import rr.meta.MethodInfo;
 
 public class ClassContext implements Serializable {
 
 	protected final ClassInfo rrClass;
 	protected String fileName;
+
+	// Set if instrumenting the class defined other classes for it (see SpecialMethods), which a
+	// run loading it from rr.loader.ClassCache would not define.
+	protected boolean definesClasses;
+
+	// Contexts for this class's methods, including the thunks added for them.
+	protected final ConcurrentHashMap<MethodInfo, MethodContext> methods = new ConcurrentHashMap<MethodInfo, MethodContext>();
 	
 	public ClassContext(ClassInfo rrClass) {
 		this.rrClass = rrClass;
@@ -62,6 +71,26 @@ public class ClassContext implements Serializable {
 	public void setFileName(String fileName) {
 		this.fileName = fileName;
 	}
+
+	public boolean definesClasses() {
+		return definesClasses;
+	}
+
+	public void setDefinesClasses() {
+		this.definesClasses = true;
+	}
+
+	public MethodContext getMethodContext(MethodInfo m) {
+		MethodContext c = methods.get(m);
+		if (c == null) {
+			final MethodContext fresh = new MethodContext(m);
+			c = methods.putIfAbsent(m, fresh);
+			if (c == null) {
+				c = fresh;
+			}
+		}
+		return c;
+	}
 	
 	
 }
@@ -93,16 +93,16 @@ public class Constants {
 	
 	private static final Method READ_ACCESS_METHOD = new Method("readAccess", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, GUARD_STATE_TYPE, Type.INT_TYPE, THREAD_STATE_TYPE });
 	private static final Method WRITE_ACCESS_METHOD = new Method("writeAccess", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, GUARD_STATE_TYPE, Type.INT_TYPE, THREAD_STATE_TYPE });
-	private static final Method VOLATILE_READ_ACCESS_METHOD = new Method("volatileReadAccess", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, GUARD_STATE_TYPE, Type.INT_TYPE, THREAD_STATE_TYPE });
-	private static final Method VOLATILE_WRITE_ACCESS_METHOD = new Method("volatileWriteAccess", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, GUARD_STATE_TYPE, Type.INT_TYPE, THREAD_STATE_TYPE });
+	private static final Method VOLATILE_READ_ACCESS_METHOD = new Method("volatileReadAccess", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, GUARD_STATE_TYPE, Type.INT_TYPE, THREAD_STATE_TYPE, SHADOW_VOL_TYPE });
+	private static final Method VOLATILE_WRITE_ACCESS_METHOD = new Method("volatileWriteAccess", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, GUARD_STATE_TYPE, Type.INT_TYPE, THREAD_STATE_TYPE, SHADOW_VOL_TYPE });
 
 	public static final Method SHADOW_VOL_GET_METHOD = new Method("get", SHADOW_VOL_TYPE, new Type[] { OBJECT_TYPE, Type.INT_TYPE });
 
 	// for multiple classloaders...
 	private static final Method READ_ACCESS_METHOD_ML = new Method("readAccessML", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, GUARD_STATE_TYPE, Type.INT_TYPE, THREAD_STATE_TYPE });
 	private static final Method WRITE_ACCESS_METHOD_ML = new Method("writeAccessML", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, GUARD_STATE_TYPE, Type.INT_TYPE, THREAD_STATE_TYPE });
-	private static final Method VOLATILE_READ_ACCESS_METHOD_ML = new Method("volatileReadAccessML", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, GUARD_STATE_TYPE, Type.INT_TYPE, THREAD_STATE_TYPE });
-	private static final Method VOLATILE_WRITE_ACCESS_METHOD_ML = new Method("volatileWriteAccessML", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, GUARD_STATE_TYPE, Type.INT_TYPE, THREAD_STATE_TYPE });
+	private static final Method VOLATILE_READ_ACCESS_METHOD_ML = new Method("volatileReadAccessML", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, GUARD_STATE_TYPE, Type.INT_TYPE, THREAD_STATE_TYPE, SHADOW_VOL_TYPE });
+	private static final Method VOLATILE_WRITE_ACCESS_METHOD_ML = new Method("volatileWriteAccessML", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, GUARD_STATE_TYPE, Type.INT_TYPE, THREAD_STATE_TYPE, SHADOW_VOL_TYPE });
 
 	public static final Method READ_ARRAY_METHOD = new Method("arrayRead", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, Type.INT_TYPE, Type.INT_TYPE, THREAD_STATE_TYPE });
 	public static final Method READ_ARRAY_WITH_UPDATER_METHOD = new Method("arrayRead", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, Type.INT_TYPE, Type.INT_TYPE, THREAD_STATE_TYPE, Type.getType(AbstractArrayState.class) });
@@ -143,6 +143,7 @@ public class Constants {
 	protected static final String THUNK_SUFFIX = SUFFIX + "_Update_";
 	protected static final String ORIGINAL_CODE_SUFFIX = SUFFIX + "_Original_";
 	protected static final String SYNCHRONIZED_THUNK_SUFFIX = SUFFIX + "_Sync_";
+	protected static final String SHADOW_VOLATILE_SUFFIX = SUFFIX + "_Volatile_";
 
 	
 	public static boolean isSyntheticName(String name) {
@@ -150,6 +151,14 @@ public class Constants {
 	}
 	
 
+	public static String getShadowVolatileFieldName(String name) {
+		return PREFIX + name + SHADOW_VOLATILE_SUFFIX;
+	}
+
+	public static String getShadowLockFieldName() {
+		return PREFIX + "shadowLock";
+	}
+
 	public static String getShadowFieldName(String owner, String name, boolean isStatic, boolean isVolatile) {
 		if (Instrumentor.fieldOption.get() == Instrumentor.FieldMode.FINE || isStatic || isVolatile) {
 			return PREFIX + name;
@@ -35,12 +35,10 @@ package rr.instrument;
 import java.io.File;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import acme.util.Assert;
-import acme.util.count.Timer;
-import acme.util.decorations.Decoration;
-import acme.util.decorations.DecorationFactory;
-import acme.util.decorations.DefaultValue;
+import acme.util.count.HistogramTimer;
 import acme.util.option.CommandLine;
 import acme.util.option.CommandLineOption;
 import acme.util.option.Option;
@@ -53,6 +51,7 @@ import rr.instrument.classes.InterfaceThunkInserter;
 import rr.instrument.classes.InterruptFixer;
 import rr.instrument.classes.JVMVersionNumberFixer;
 import rr.instrument.classes.NativeMethodSanityChecker;
+import rr.instrument.classes.ShadowLockInserter;
 import rr.instrument.classes.SyncAndMethodThunkInserter;
 import rr.instrument.classes.ThreadDataThunkInserter;
 import rr.instrument.classes.ToolSpecificClassVisitorFactory;
@@ -105,25 +104,33 @@ public class Instrumentor {
     public static final Option<Boolean> useTestAcquireOption = new Option<Boolean>(
             "Use TestAcquires", false);
 
-    private static final Timer insTime = new Timer("Time", "Instrumenter");
-
-    public static final Decoration<ClassInfo, ClassContext> classContext = MetaDataInfoMaps
-            .getClasses().makeDecoration("class instrument context", DecorationFactory.Type.SINGLE,
-                    new DefaultValue<ClassInfo, ClassContext>() {
-                        public ClassContext get(ClassInfo rrClass) {
-                            return new ClassContext(rrClass);
-                        }
-                    });
+    private static final HistogramTimer insTime = new HistogramTimer("Time", "Instrumenter");
+
+    /*
+     * Each class being loaded has its own context, made the first time MetaDataBuilder or a
+     * visitor below asks for it. Classes are instrumented by the threads that load them, in
+     * parallel, and only the thread loading a class uses its context (see
+     * InstrumentingDefineClassLoader.define).
+     */
+    private static final ConcurrentHashMap<ClassInfo, ClassContext> classContexts = new ConcurrentHashMap<ClassInfo, ClassContext>();
+
+    public static ClassContext getClassContext(ClassInfo rrClass) {
+        ClassContext c = classContexts.get(rrClass);
+        if (c == null) {
+            final ClassContext fresh = new ClassContext(rrClass);
+            c = classContexts.putIfAbsent(rrClass, fresh);
+            if (c == null) {
+                c = fresh;
+            }
+        }
+        return c;
+    }
 
-    public static final Decoration<MethodInfo, MethodContext> methodContext = MetaDataInfoMaps
-            .getMethods().makeDecoration("method instrument context", DecorationFactory.Type.SINGLE,
-                    new DefaultValue<MethodInfo, MethodContext>() {
-                        public MethodContext get(MethodInfo m) {
-                            return new MethodContext(m);
-                        }
-                    });
+    public static MethodContext getMethodContext(MethodInfo m) {
+        return getClassContext(m.getOwner()).getMethodContext(m);
+    }
 
-    public static synchronized ClassWriter instrument(final LoaderContext loader, ClassReader cr) {
+    public static ClassWriter instrument(final LoaderContext loader, ClassReader cr) {
         long start = insTime.start();
 
         try {
@@ -167,7 +174,7 @@ public class Instrumentor {
                 fileName = fileName.substring(0, fileName.indexOf("$"));
             }
             fileName += ".java";
-            final ClassContext ctxt = classContext.get(currentClass);
+            final ClassContext ctxt = getClassContext(currentClass);
             ctxt.setFileName(fileName);
 
             // This visitor will attempt to record the source file name.
@@ -194,6 +201,9 @@ public class Instrumentor {
             if ((cr.getAccess() & (Opcodes.ACC_INTERFACE)) == 0) {
 
                 ClassVisitor cv1 = new NativeMethodSanityChecker(cv0);
+                if (ShadowLockInserter.shadowLockFieldOption.get()) {
+                    cv1 = new ShadowLockInserter(cv1);
+                }
                 cv1 = new GuardStateInserter(cv1);
                 cv1 = new InterruptFixer(cv1);
                 cv1 = new CloneFixer(cv1);
@@ -231,7 +241,7 @@ public class Instrumentor {
         }
     }
 
-    public static synchronized void sanityCheck(LoaderContext loaderContext,
+    public static void sanityCheck(LoaderContext loaderContext,
             ClassReader classReader) {
         long start = insTime.start();
         try {
@@ -65,7 +65,7 @@ public class MethodContext implements Serializable {
 	}
 
 	public ClassContext getClassContext() {
-		return Instrumentor.classContext.get(method.getOwner());
+		return Instrumentor.getClassContext(method.getOwner());
 	}
 	
 	public int getAccess() {
@@ -81,7 +81,7 @@ public class MethodContext implements Serializable {
 	}
 
 	public String getFileName() {
-		return Instrumentor.classContext.get(method.getOwner()).getFileName();
+		return Instrumentor.getClassContext(method.getOwner()).getFileName();
 	}
 	
 	public int getNextFreeVar(int size) {
@@ -159,13 +159,20 @@ public class ClassInitNotifier extends RRClassAdapter {
 
 		}
 	}
+	// Indexed by ClassInfo id, so that the ids in instrumented code stay valid when it is loaded
+	// from the class cache along with the class's meta data.
 	private static final MetaDataAllocator<StaticInitInfo> classes = new MetaDataAllocator<StaticInitInfo>(new StaticInitInfo[0]);
 
 	public static StaticInitInfo getClass(String className) {		
 		StaticInitInfo x = classes.get(MetaDataInfoKeys.getClassKey(className));
 		if (x == null) {
-			x = new StaticInitInfo(classes.size(), className);
-			classes.put(x);
+			synchronized (classes) {
+				x = classes.get(MetaDataInfoKeys.getClassKey(className));
+				if (x == null) {
+					x = new StaticInitInfo(MetaDataInfoMaps.getClass(className).getId(), className);
+					classes.put(x);
+				}
+			}
 		} 
 		return x;
 	}
@@ -173,6 +180,9 @@ public class ClassInitNotifier extends RRClassAdapter {
 
 	public static final void __$rr_static_access(int id) {
 		StaticInitInfo info = classes.get(id);
+		if (info == null) {
+			info = getClass(MetaDataInfoMaps.getClasses().get(id).getName());
+		}
 		ShadowThread td = ShadowThread.getCurrentShadowThread();
 		int tid = td.getTid();
 		if (!info.done[tid]) {
@@ -46,7 +46,10 @@ import rr.org.objectweb.asm.Opcodes;
 
 import rr.instrument.Constants;
 import rr.loader.LoaderContext;
+import rr.state.ShadowLock;
+import rr.state.ShadowLockHolder;
 import rr.state.ShadowVar;
+import rr.state.ShadowVolatile;
 import acme.util.Assert;
 import acme.util.count.Counter;
 import acme.util.option.CommandLine;
@@ -104,8 +107,20 @@ public class CloneFixer extends RRClassAdapter {
 				} catch (Exception e) {
 					Assert.panic(e);
 				}
+			} else if (Constants.isSyntheticName(name) && f.getType() == rr.state.ShadowVolatile.class && ((f.getModifiers() & Opcodes.ACC_STATIC) == 0)) {
+				try {
+					final ShadowVolatile shadowVolatile = (ShadowVolatile)f.get(o);
+					if (shadowVolatile != null && !shadowVolatile.isTarget(o)) {
+						f.set(o, null);
+					}
+				} catch (Exception e) {
+					Assert.panic(e);
+				}
 			}
 		}
+		if (o instanceof ShadowLockHolder) {
+			ShadowLock.cloned((ShadowLockHolder)o);
+		}
 		cloneCount.inc();
 		return o;
 	}
@@ -94,6 +94,46 @@ public class GuardStateInserter extends RRClassAdapter implements Opcodes {
 		}
 	}
 
+	/*
+	 * Push the ShadowVolatile for a volatile field.  It is cached in a synthetic field next
+	 * to the volatile, so only the first access looks it up in ShadowVolatile's table (which
+	 * makes racing threads agree on one).  Statics use a null target, as the event generator does. 
+	 */
+	public void visitGetShadowVolatile(RRMethodAdapter mv, String owner, String name, boolean isStatic, int fadIdVar) {
+		final Type ownerType = Type.getObjectType(owner);
+		final String shadowVolatileFieldName = Constants.getShadowVolatileFieldName(name);
+		final Label done = new Label();
+		if (isStatic) {
+			mv.getStatic(ownerType, shadowVolatileFieldName, Constants.SHADOW_VOL_TYPE);
+		} else {
+			mv.visitVarInsn(ALOAD, 0);
+			mv.getField(ownerType, shadowVolatileFieldName, Constants.SHADOW_VOL_TYPE);
+		}
+		// shadow_vol
+		mv.dup();
+		mv.ifNonNull(done);
+		mv.pop();
+		if (isStatic) {
+			mv.visitInsn(ACONST_NULL);
+		} else {
+			mv.visitVarInsn(ALOAD, 0);
+		}
+		// target
+		mv.visitVarInsn(ILOAD, fadIdVar);
+		// target fadid
+		mv.invokeStatic(Constants.SHADOW_VOL_TYPE, Constants.SHADOW_VOL_GET_METHOD);
+		// shadow_vol
+		mv.dup();
+		if (isStatic) {
+			mv.putStatic(ownerType, shadowVolatileFieldName, Constants.SHADOW_VOL_TYPE);
+		} else {
+			mv.visitVarInsn(ALOAD, 0);
+			mv.swap();
+			mv.putField(ownerType, shadowVolatileFieldName, Constants.SHADOW_VOL_TYPE);
+		}
+		mv.visitLabel(done);
+	}
+
 	protected void addPutMethod(final int access, final FieldInfo field) {
 		ClassInfo rrClass = this.getCurrentClass();
 		final String name = field.getName();
@@ -120,13 +160,11 @@ public class GuardStateInserter extends RRClassAdapter implements Opcodes {
 			//
 			Label start = new Label(), end = new Label(), handler = new Label();
 			if (isVolatile) {
-				mv.visitVarInsn(ALOAD, 0);
-				// this
-				mv.visitVarInsn(ILOAD, 1 + valueSize);
-				// this fadid
-				mv.invokeStatic(Constants.SHADOW_VOL_TYPE, Constants.SHADOW_VOL_GET_METHOD);
+				visitGetShadowVolatile(mv, rrClass.getName(), name, false, 1 + valueSize);
 				// shadow_vol
 				mv.dup();
+				mv.visitVarInsn(ASTORE, 6);
+				mv.dup();
 				// shadow_vol shadow_vol
 				mv.monitorEnter();
 				mv.visitLabel(start);
@@ -154,7 +192,12 @@ public class GuardStateInserter extends RRClassAdapter implements Opcodes {
 				}
 				mv.visitVarInsn(ASMUtil.storeInstr(desc), 1);
 			} else {
-				mv.invokeStatic(Constants.MANAGER_TYPE, isVolatile ? Constants.getVOLATILE_WRITE_ACCESS_METHOD() : Constants.getWRITE_ACCESS_METHOD());
+				if (isVolatile) {
+					mv.visitVarInsn(ALOAD, 6);
+					mv.invokeStatic(Constants.MANAGER_TYPE, Constants.getVOLATILE_WRITE_ACCESS_METHOD());
+				} else {
+					mv.invokeStatic(Constants.MANAGER_TYPE, Constants.getWRITE_ACCESS_METHOD());
+				}
 			}
 
 			mv.visitLabel(success);
@@ -168,11 +211,8 @@ public class GuardStateInserter extends RRClassAdapter implements Opcodes {
 				mv.monitorExit();
 				mv.goTo(end);
 				mv.visitLabel(handler);
-				mv.visitVarInsn(ALOAD, 0);
-				// this
-				mv.visitVarInsn(ILOAD, 1 + valueSize);
-				// this fadid
-				mv.invokeStatic(Constants.SHADOW_VOL_TYPE, Constants.SHADOW_VOL_GET_METHOD);
+				mv.visitVarInsn(ALOAD, 6);
+				// shadow_vol
 				mv.monitorExit();
 				mv.visitInsn(ATHROW);
 				mv.visitLabel(end);
@@ -214,13 +254,11 @@ public class GuardStateInserter extends RRClassAdapter implements Opcodes {
 
 			Label start = new Label(), end = new Label(), handler = new Label();
 			if (isVolatile) {
-				mv.visitVarInsn(ALOAD, 0);
-				// this
-				mv.visitVarInsn(ILOAD, 1);
-				// this fadid
-				mv.invokeStatic(Constants.SHADOW_VOL_TYPE, Constants.SHADOW_VOL_GET_METHOD);
+				visitGetShadowVolatile(mv, rrClass.getName(), name, false, 1);
 				// shadow_vol
 				mv.dup();
+				mv.visitVarInsn(ASTORE, 6);
+				mv.dup();
 				// shadow_vol shadow_vol
 				mv.monitorEnter();
 				mv.visitLabel(start);
@@ -242,8 +280,12 @@ public class GuardStateInserter extends RRClassAdapter implements Opcodes {
 				}
 				mv.visitInsn(ASMUtil.returnInstr(desc));
 			} else {
-				mv.invokeStatic(Constants.MANAGER_TYPE,
-						isVolatile ? Constants.getVOLATILE_READ_ACCESS_METHOD() : Constants.getREAD_ACCESS_METHOD());
+				if (isVolatile) {
+					mv.visitVarInsn(ALOAD, 6);
+					mv.invokeStatic(Constants.MANAGER_TYPE, Constants.getVOLATILE_READ_ACCESS_METHOD());
+				} else {
+					mv.invokeStatic(Constants.MANAGER_TYPE, Constants.getREAD_ACCESS_METHOD());
+				}
 			}
 			mv.visitLabel(success);
 
@@ -257,11 +299,8 @@ public class GuardStateInserter extends RRClassAdapter implements Opcodes {
 				mv.monitorExit();
 				mv.goTo(end);
 				mv.visitLabel(handler);
-				mv.visitVarInsn(ALOAD, 0);
-				// this
-				mv.visitVarInsn(ILOAD, 1);
-				// this fadid
-				mv.invokeStatic(Constants.SHADOW_VOL_TYPE, Constants.SHADOW_VOL_GET_METHOD);
+				mv.visitVarInsn(ALOAD, 6);
+				// shadow_vol
 				mv.monitorExit();
 				mv.visitInsn(ATHROW);
 				mv.visitLabel(end);
@@ -301,13 +340,11 @@ public class GuardStateInserter extends RRClassAdapter implements Opcodes {
 
 			Label start = new Label(), end = new Label(), handler = new Label();
 			if (isVolatile) {
-				mv.visitLdcInsn(Type.getObjectType(rrClass.getName()));
-				// this
-				mv.visitVarInsn(ILOAD, 0 + valueSize);
-				// this fadid
-				mv.invokeStatic(Constants.SHADOW_VOL_TYPE, Constants.SHADOW_VOL_GET_METHOD);
+				visitGetShadowVolatile(mv, rrClass.getName(), name, true, 0 + valueSize);
 				// shadow_vol
 				mv.dup();
+				mv.visitVarInsn(ASTORE, 6);
+				mv.dup();
 				// shadow_vol shadow_vol
 				mv.monitorEnter();
 				mv.visitLabel(start);
@@ -328,7 +365,12 @@ public class GuardStateInserter extends RRClassAdapter implements Opcodes {
 				}
 				mv.visitVarInsn(ASMUtil.storeInstr(desc), 0);
 			} else {
-				mv.invokeStatic(Constants.MANAGER_TYPE, isVolatile ? Constants.getVOLATILE_WRITE_ACCESS_METHOD() : Constants.getWRITE_ACCESS_METHOD());
+				if (isVolatile) {
+					mv.visitVarInsn(ALOAD, 6);
+					mv.invokeStatic(Constants.MANAGER_TYPE, Constants.getVOLATILE_WRITE_ACCESS_METHOD());
+				} else {
+					mv.invokeStatic(Constants.MANAGER_TYPE, Constants.getWRITE_ACCESS_METHOD());
+				}
 			}
 			mv.visitLabel(success);
 			mv.visitVarInsn(ASMUtil.loadInstr(desc), 0);
@@ -339,11 +381,8 @@ public class GuardStateInserter extends RRClassAdapter implements Opcodes {
 				mv.monitorExit();
 				mv.goTo(end);
 				mv.visitLabel(handler);
-				mv.visitLdcInsn(Type.getObjectType(rrClass.getName()));
-				// this
-				mv.visitVarInsn(ILOAD, 0 + valueSize);
-				// this fadid
-				mv.invokeStatic(Constants.SHADOW_VOL_TYPE, Constants.SHADOW_VOL_GET_METHOD);
+				mv.visitVarInsn(ALOAD, 6);
+				// shadow_vol
 				mv.monitorExit();
 				mv.visitInsn(ATHROW);
 				mv.visitLabel(end);
@@ -384,13 +423,11 @@ public class GuardStateInserter extends RRClassAdapter implements Opcodes {
 
 			Label start = new Label(), end = new Label(), handler = new Label();
 			if (isVolatile) {
-				mv.visitLdcInsn(Type.getObjectType(rrClass.getName()));
-				// this
-				mv.visitVarInsn(ILOAD, 0);
-				// this fadid
-				mv.invokeStatic(Constants.SHADOW_VOL_TYPE, Constants.SHADOW_VOL_GET_METHOD);
+				visitGetShadowVolatile(mv, rrClass.getName(), name, true, 0);
 				// shadow_vol
 				mv.dup();
+				mv.visitVarInsn(ASTORE, 6);
+				mv.dup();
 				// shadow_vol shadow_vol
 				mv.monitorEnter();
 				mv.visitLabel(start);
@@ -411,7 +448,12 @@ public class GuardStateInserter extends RRClassAdapter implements Opcodes {
 				}
 				mv.visitInsn(ASMUtil.returnInstr(desc));
 			} else {	
-				mv.invokeStatic(Constants.MANAGER_TYPE, isVolatile ? Constants.getVOLATILE_READ_ACCESS_METHOD() : Constants.getREAD_ACCESS_METHOD());
+				if (isVolatile) {
+					mv.visitVarInsn(ALOAD, 6);
+					mv.invokeStatic(Constants.MANAGER_TYPE, Constants.getVOLATILE_READ_ACCESS_METHOD());
+				} else {
+					mv.invokeStatic(Constants.MANAGER_TYPE, Constants.getREAD_ACCESS_METHOD());
+				}
 			}
 
 			mv.visitLabel(success);
@@ -422,11 +464,8 @@ public class GuardStateInserter extends RRClassAdapter implements Opcodes {
 				mv.monitorExit();
 				mv.goTo(end);
 				mv.visitLabel(handler);
-				mv.visitLdcInsn(Type.getObjectType(rrClass.getName()));
-				// this
-				mv.visitVarInsn(ILOAD, 0);
-				// this fadid
-				mv.invokeStatic(Constants.SHADOW_VOL_TYPE, Constants.SHADOW_VOL_GET_METHOD);
+				mv.visitVarInsn(ALOAD, 6);
+				// shadow_vol
 				mv.monitorExit();
 				mv.visitInsn(ATHROW);
 				mv.visitLabel(end);
@@ -460,6 +499,9 @@ public class GuardStateInserter extends RRClassAdapter implements Opcodes {
 					String shadowFieldName = Constants.getShadowFieldName(currentClassName, name, isStatic, isVolatile);
 					cv.visitField(ASMUtil.makePublic(access | ACC_TRANSIENT), shadowFieldName, Constants.GUARD_STATE_TYPE.getDescriptor(), null, null);
 				}
+				if (isVolatile) {
+					cv.visitField(ASMUtil.makePublic(access | ACC_TRANSIENT), Constants.getShadowVolatileFieldName(name), Constants.SHADOW_VOL_TYPE.getDescriptor(), null, null);
+				}
 			}
 
 			final int publicAccess = ASMUtil.makePublic(access);
@@ -61,7 +61,7 @@ public class RRClassAdapter extends ClassVisitor {
 
 	@Override
 	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-		this.context = Instrumentor.classContext.get(MetaDataInfoMaps.getClass(name));
+		this.context = Instrumentor.getClassContext(MetaDataInfoMaps.getClass(name));
 		this.version = version;
 		super.visit(version, access, name, signature, superName, interfaces);
 	}
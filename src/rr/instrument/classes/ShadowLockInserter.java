@@ -0,0 +1,123 @@
+/******************************************************************************
+
+	Copyright (c) 2010, Cormac Flanagan (University of California, Santa Cruz)
+                    and Stephen Freund (Williams College) 
+
+All rights reserved.  
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+
+ * Neither the names of the University of California, Santa Cruz
+      and Williams College nor the names of its contributors may be
+      used to endorse or promote products derived from this software
+      without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+ ******************************************************************************/
+
+package rr.instrument.classes;
+
+import java.util.Arrays;
+
+import rr.org.objectweb.asm.ClassVisitor;
+import rr.org.objectweb.asm.MethodVisitor;
+import rr.org.objectweb.asm.Opcodes;
+
+import rr.instrument.Constants;
+import rr.meta.ClassInfo;
+import rr.meta.InstrumentationFilter;
+import rr.meta.MetaDataInfoMaps;
+import rr.meta.MethodInfo;
+import acme.util.option.CommandLine;
+import acme.util.option.CommandLineOption;
+
+/*
+ * Used for -shadowLockField.  The top-most instrumented class in each hierarchy
+ * gets a hidden field for its ShadowLock and implements ShadowLockHolder, so that 
+ * acquires and releases on its instances (synchronized blocks and methods alike) 
+ * find their ShadowLock with one field load rather than a weak table lookup.
+ * Subclasses inherit both.  Objects of other classes still use the table.
+ */
+public class ShadowLockInserter extends RRClassAdapter implements Opcodes {
+
+	public static final CommandLineOption<Boolean> shadowLockFieldOption = CommandLine.makeBoolean("shadowLockField", false, CommandLineOption.Kind.EXPERIMENTAL, "Store the ShadowLock for instances of instrumented classes in a hidden field, instead of a weak table.");
+
+	private static final String HOLDER = "rr/state/ShadowLockHolder";
+	private static final String SHADOW_LOCK_DESC = "Lrr/state/ShadowLock;";
+
+	private boolean addHolder;
+
+	public ShadowLockInserter(ClassVisitor cv) {
+		super(cv);
+	}
+
+	@Override
+	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+		ClassInfo superClass = MetaDataInfoMaps.getClass(name).getSuperClass();
+		addHolder = superClass == null || !InstrumentationFilter.shouldInstrument(superClass);
+		if (addHolder) {
+			if (interfaces == null) {
+				interfaces = new String[] { HOLDER };
+			} else if (!Arrays.asList(interfaces).contains(HOLDER)) {
+				interfaces = Arrays.copyOf(interfaces, interfaces.length + 1);
+				interfaces[interfaces.length - 1] = HOLDER;
+			}
+		}
+		super.visit(version, access, name, signature, superName, interfaces);
+	}
+
+	private MethodVisitor makeMethod(ClassInfo rrClass, String name, String desc) {
+		MethodInfo method = MetaDataInfoMaps.getMethod(rrClass, name, desc);
+		method.setFlags(false, false, false);
+		return cv.visitMethod(ACC_PUBLIC, name, desc, null, null);
+	}
+
+	@Override
+	public void visitEnd() {
+		if (addHolder) {
+			final ClassInfo rrClass = this.getCurrentClass();
+			final String owner = rrClass.getName();
+			final String field = Constants.getShadowLockFieldName();
+			cv.visitField(ACC_PUBLIC | ACC_VOLATILE | ACC_TRANSIENT, field, SHADOW_LOCK_DESC, null, null);
+
+			MethodVisitor mv = makeMethod(rrClass, "__$rr_getShadowLock", "()" + SHADOW_LOCK_DESC);
+			mv.visitCode();
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, owner, field, SHADOW_LOCK_DESC);
+			mv.visitInsn(ARETURN);
+			mv.visitMaxs(1, 1);
+			mv.visitEnd();
+
+			mv = makeMethod(rrClass, "__$rr_setShadowLock", "(" + SHADOW_LOCK_DESC + ")V");
+			mv.visitCode();
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitFieldInsn(PUTFIELD, owner, field, SHADOW_LOCK_DESC);
+			mv.visitInsn(RETURN);
+			mv.visitMaxs(2, 2);
+			mv.visitEnd();
+		}
+		super.visitEnd();
+	}
+}
@@ -113,8 +113,8 @@ public class SyncAndMethodThunkInserter extends RRClassAdapter implements Opcode
 			final String desc2 = desc; // ASMUtil.addThreadDataToDescriptor(desc);
 			final MethodInfo newMethod = MetaDataInfoMaps.getMethod(owner, newName, desc2);
 			newMethod.setFlags(method.isStatic(), false, method.isSynchronized());
-			final int maxVar = Instrumentor.methodContext.get(method).getMaxVar();
-			Instrumentor.methodContext.get(newMethod).setFirstFreeVar(maxVar+1);
+			final int maxVar = Instrumentor.getMethodContext(method).getMaxVar();
+			Instrumentor.getMethodContext(newMethod).setFirstFreeVar(maxVar+1);
 			MethodVisitor mv = cv.visitMethod(access & ~ACC_SYNCHRONIZED,
 					newName,
 					desc2,
@@ -158,7 +158,7 @@ public class SyncAndMethodThunkInserter extends RRClassAdapter implements Opcode
 			final MethodInfo method = MetaDataInfoMaps.getMethod(MetaDataInfoMaps.getClass(owner), name, desc);
 			boolean shouldInstrument = InstrumentationFilter.shouldInstrument(method);
 			boolean isSync   = (access & ACC_SYNCHRONIZED) != 0;
-			int maxLocals = Instrumentor.methodContext.get(method).getMaxVar();
+			int maxLocals = Instrumentor.getMethodContext(method).getMaxVar();
 
 			if (isSync || shouldInstrument) {
 				if (isSync && shouldInstrument) {
@@ -202,7 +202,7 @@ public class SyncAndMethodThunkInserter extends RRClassAdapter implements Opcode
 		private void createSyncThunk(int access, String name, String desc, String signature, String[] exceptions, String wrappedMethodName, int maxLocals) {
 			final MethodInfo method = MetaDataInfoMaps.getMethod(MetaDataInfoMaps.getClass(owner), name, desc);
 			method.setFlags((access & ACC_STATIC) != 0, false, false);
-			Instrumentor.methodContext.get(method).setFirstFreeVar(maxLocals + 1);
+			Instrumentor.getMethodContext(method).setFirstFreeVar(maxLocals + 1);
 
 			MethodVisitor omv = cvForThunks.visitMethod(access, name, desc, signature, exceptions);
 			RRMethodAdapter mv = new RRMethodAdapter(omv, method);
@@ -278,7 +278,7 @@ public class SyncAndMethodThunkInserter extends RRClassAdapter implements Opcode
 		private void createMethodThunk(int access, String name, String desc, String signature, String[] exceptions, String wrappedMethodName, int maxLocals) {
 			final MethodInfo method = MetaDataInfoMaps.getMethod(MetaDataInfoMaps.getClass(owner), name, desc);
 			method.setFlags((access & ACC_STATIC) != 0, false, method.isSynchronized());
-			Instrumentor.methodContext.get(method).setFirstFreeVar(maxLocals + 1);
+			Instrumentor.getMethodContext(method).setFirstFreeVar(maxLocals + 1);
 			
 			MethodVisitor omv = cvForThunks.visitMethod(access, name, desc, signature, exceptions);
 			RRMethodAdapter mv = new RRMethodAdapter(omv, method);
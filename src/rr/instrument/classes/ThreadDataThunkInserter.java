@@ -104,14 +104,14 @@ public class ThreadDataThunkInserter extends RRClassAdapter implements Opcodes {
 			String newDesc;
 			String newName;
 			MethodInfo newMethod;
-			final int maxVar = Instrumentor.methodContext.get(method).getMaxVar();
+			final int maxVar = Instrumentor.getMethodContext(method).getMaxVar();
 
 			if (InstrumentationFilter.supportsThreadStateParam(method)) {
 				newDesc = ASMUtil.addThreadDataToDescriptor(desc);
 				newName = Constants.getThreadLocalName(name);
 				newMethod = MetaDataInfoMaps.getMethod(owner, newName, newDesc);
 				newMethod.setFlags(method);
-				Instrumentor.methodContext.get(newMethod).setFirstFreeVar(maxVar+1);
+				Instrumentor.getMethodContext(newMethod).setFirstFreeVar(maxVar+1);
 				createThreadDataThunk(access, name, desc, newDesc, signature, exceptions);
 			} else {
 				newDesc = desc;
@@ -39,6 +39,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package rr.instrument.hooks;
 
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import rr.org.objectweb.asm.ClassWriter;
 import rr.org.objectweb.asm.Opcodes;
@@ -48,6 +49,7 @@ import rr.org.objectweb.asm.commons.Method;
 
 import rr.instrument.ASMUtil;
 import rr.instrument.Constants;
+import rr.instrument.Instrumentor;
 import rr.instrument.methods.RRMethodAdapter;
 import rr.loader.Loader;
 import rr.meta.InstrumentationFilter;
@@ -58,7 +60,7 @@ import acme.util.Util;
 public class SpecialMethods implements Opcodes {
 
 	protected static Vector<SpecialMethodCallBack> hooks = new Vector<SpecialMethodCallBack>();
-	private static int thunkCount;
+	private static final AtomicInteger thunkCount = new AtomicInteger();
 	
 	public static SpecialMethodCallBack addHook(String classPattern, String methodString, SpecialMethodListener listener) {
 		SpecialMethodCallBack hook = new SpecialMethodCallBack(classPattern, methodString);
@@ -131,7 +133,7 @@ public class SpecialMethods implements Opcodes {
 		Util.logf("Creating listener specific replacement for %s", method);
 
 		final Type thunkType;
-		String className = "__$rr_TSRThunk_" + enclosing.getOwner().getName().replace('/', '_') + "_" + thunkCount++;
+		String className = "__$rr_TSRThunk_" + enclosing.getOwner().getName().replace('/', '_') + "_" + thunkCount.getAndIncrement();
 		thunkType = Type.getObjectType(className);
 		Method invokeMethod = new Method("invoke", method.getDescriptor());
 		invokeMethod = new Method("invoke", ASMUtil.addTypeToDescriptor(invokeMethod.getDescriptor(), Type.getObjectType(method.getOwner().getName().replace('.','/')), 0));
@@ -176,6 +178,7 @@ public class SpecialMethods implements Opcodes {
 		byte[] byteArray = cw.toByteArray();
 		Loader.writeToFileCache("tsr", className, byteArray);
 		Loader.loaderForClass(gen.getMethod().getOwner().getName()).defineClass(className, byteArray);
+		Instrumentor.getClassContext(enclosing.getOwner()).setDefinesClasses();
 		return true;
 
 	}
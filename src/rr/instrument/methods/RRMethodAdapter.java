@@ -205,7 +205,7 @@ public class RRMethodAdapter extends MethodVisitor implements Opcodes {
     protected int bci = -1;
 
     public RRMethodAdapter(final MethodVisitor mv, final MethodInfo m) {
-        this(mv, Instrumentor.methodContext.get(m));
+        this(mv, Instrumentor.getMethodContext(m));
     }
 
     public RRMethodAdapter(final MethodVisitor mv, final MethodContext context) {
@@ -0,0 +1,336 @@
+/******************************************************************************
+ * 
+ * Copyright (c) 2010, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ ******************************************************************************/
+
+package rr.loader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+import acme.util.Assert;
+import acme.util.Util;
+import acme.util.count.Counter;
+import acme.util.io.URLUtils;
+import acme.util.option.CommandLine;
+import acme.util.option.CommandLineOption;
+import acme.util.option.Option;
+import rr.RRMain;
+import rr.instrument.Instrumentor;
+import rr.instrument.classes.CloneFixer;
+import rr.instrument.classes.ShadowLockInserter;
+import rr.instrument.classes.ThreadDataThunkInserter;
+import rr.instrument.methods.ThreadDataInstructionAdapter;
+import rr.meta.ClassInfo;
+import rr.meta.InstrumentationFilter;
+import rr.meta.MetaDataAllocator;
+import rr.meta.MetaDataFragment;
+import rr.meta.MetaDataInfoMaps;
+import rr.state.ArrayStateFactory;
+import rr.state.agent.ThreadStateExtensionAgent;
+import rr.state.update.Updaters;
+import rr.tool.RR;
+
+/**
+ * An on-disk cache of instrumented classes, so that a run only instruments the classes that
+ * changed since an earlier run with the same tools and instrumentation options.
+ *
+ * Entries live in a directory named by a hash of those options (and of RoadRunner's own code),
+ * and each is named by a hash of the original class file.  An entry holds the instrumented class
+ * and the MetaDataFragment made while instrumenting it.  Instrumented code refers to meta data
+ * by id, so the directory also keeps the id every meta data key had at the end of the last run.
+ * Those ids are reserved in the allocators when the cache is opened, and an entry is only used if
+ * its fragment can be restored with the same ids.
+ */
+public class ClassCache {
+
+    public static final CommandLineOption<String> classCacheOption = CommandLine.makeString(
+            "classCache",
+            Util.getenv("RR_CLASS_CACHE", System.getProperty("user.home") + "/.rr/classes"),
+            CommandLineOption.Kind.STABLE,
+            "Directory for the cache of instrumented classes.  An empty name turns the cache off.");
+
+    private static final int MAGIC = 0x52524343; // RRCC
+    private static final int VERSION = 1;
+
+    private static final Counter hits = new Counter("ClassCache", "Hits");
+    private static final Counter misses = new Counter("ClassCache", "Misses");
+    private static final Counter stale = new Counter("ClassCache", "Stale");
+
+    private static boolean opened;
+    private static File dir;
+
+    /*
+     * The options that change how classes are instrumented.
+     */
+    private static Option<?>[] fingerprintOptions() {
+        return new Option<?>[] { RR.toolOption, RR.nofastPathOption, RR.valuesOption,
+                RR.noEnterOption, RRMain.noInstrumentOption, RRMain.instrumentOption,
+                InstrumentationFilter.classesToWatch, InstrumentationFilter.fieldsToWatch,
+                InstrumentationFilter.methodsToWatch, InstrumentationFilter.linesToWatch,
+                InstrumentationFilter.methodsSupportThreadStateParam,
+                InstrumentationFilter.noOpsOption, ThreadDataThunkInserter.noConstructorOption,
+                CloneFixer.noCloneOption, ShadowLockInserter.shadowLockFieldOption,
+                ThreadStateExtensionAgent.noDecorationInline,
+                Instrumentor.fieldOption, Instrumentor.trackArraySitesOption,
+                Instrumentor.trackReflectionOption, Instrumentor.verifyOption,
+                ArrayStateFactory.arrayOption,
+                Updaters.updateOptions, rr.barrier.BarrierMonitor.noBarrier,
+                ThreadDataInstructionAdapter.callSitesOption };
+    }
+
+    /**
+     * The cache directory for this run's options, or null if the cache is off. The first call
+     * reserves the ids recorded there.
+     */
+    private static synchronized File open() {
+        if (opened) {
+            return dir;
+        }
+        opened = true;
+        final String root = classCacheOption.get();
+        // -meta brings in ids from elsewhere, and -fancy builds in ids of its own.
+        if (root.equals("") || MetaDataInfoMaps.metaOption.get() != null
+                || Instrumentor.fancyOption.get()) {
+            return null;
+        }
+        try {
+            final MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update((VERSION + ";" + System.getProperty("java.version") + ";" + codeStamp())
+                    .getBytes("UTF-8"));
+            for (Option<?> o : fingerprintOptions()) {
+                md.update((";" + o.getId() + "=" + o.get()).getBytes("UTF-8"));
+            }
+            final File d = new File(root, toHex(md.digest()));
+            if (!d.isDirectory() && !d.mkdirs()) {
+                Assert.warn("Cannot make class cache directory %s", d);
+                return null;
+            }
+            readIds(new File(d, "ids"));
+            Util.logf("Class cache: %s", d);
+            dir = d;
+        } catch (Exception e) {
+            Assert.warn("Class cache disabled: %s", e);
+        }
+        return dir;
+    }
+
+    /*
+     * When RoadRunner or its tools were last built: the jar or class root holding the
+     * instrumentor, and each entry of -toolpath.  The tools matter too, since the fast paths
+     * instrumented code calls depend on which tools implement them (see RR).
+     */
+    private static long codeStamp() throws IOException {
+        long t = 0;
+        final String self = "rr/instrument/Instrumentor.class";
+        final URL u = ClassLoader.getSystemResource(self);
+        if (u == null) {
+            // unknown
+        } else if (u.getProtocol().equals("jar")) {
+            final URL jar = ((JarURLConnection) u.openConnection()).getJarFileURL();
+            t = new File(jar.getPath()).lastModified();
+        } else if (u.getProtocol().equals("file")) {
+            final String path = u.getPath();
+            t = lastModified(new File(path.substring(0, path.length() - self.length())));
+        }
+        for (URL p : URLUtils.getURLArrayFromString(System.getProperty("user.dir"),
+                RR.toolPathOption.get())) {
+            if (p.getProtocol().equals("file")) {
+                t = Math.max(t, lastModified(new File(p.getPath())));
+            }
+        }
+        return t;
+    }
+
+    private static long lastModified(File f) {
+        long t = f.lastModified();
+        final File[] fs = f.listFiles();
+        if (fs != null) {
+            for (File g : fs) {
+                t = Math.max(t, lastModified(g));
+            }
+        }
+        return t;
+    }
+
+    private static String toHex(byte[] b) {
+        final StringBuilder s = new StringBuilder();
+        for (byte x : b) {
+            s.append(String.format("%02x", x & 0xff));
+        }
+        return s.toString();
+    }
+
+    private static File entryFile(File d, byte[] bytes) throws Exception {
+        return new File(d, toHex(MessageDigest.getInstance("SHA-1").digest(bytes)));
+    }
+
+    /**
+     * Start recording the meta data that instrumenting a class makes, if the cache is on.
+     */
+    public static MetaDataFragment startRecording() {
+        return open() == null ? null : MetaDataFragment.start();
+    }
+
+    /**
+     * The cached instrumented version of bytes, with its meta data restored, or null.
+     */
+    public static byte[] load(LoaderContext loader, ClassInfo rrClass, byte[] bytes) {
+        final File d = open();
+        if (d == null) {
+            return null;
+        }
+        try {
+            final File f = entryFile(d, bytes);
+            if (!f.exists()) {
+                misses.inc();
+                return null;
+            }
+            final DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(f)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION
+                        || !in.readUTF().equals(rrClass.getName())) {
+                    stale.inc();
+                    return null;
+                }
+                final byte[] code = new byte[in.readInt()];
+                in.readFully(code);
+                MetaDataBuilder.preLoadFully(loader, bytes);
+                // Instrumenting resolved these classes through the loader; so do we.
+                for (String name : MetaDataFragment.readClassNames(in)) {
+                    try {
+                        loader.getRRClass(name);
+                    } catch (ClassNotFoundException e) {
+                        // as it was when instrumenting
+                    }
+                }
+                if (!MetaDataFragment.restore(in)) {
+                    stale.inc();
+                    return null;
+                }
+                hits.inc();
+                return code;
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            Assert.warn("Cannot read cached class %s: %s", rrClass.getName(), e);
+            return null;
+        }
+    }
+
+    public static void store(ClassInfo rrClass, byte[] bytes, byte[] code,
+            MetaDataFragment fragment) {
+        final File d = open();
+        if (d == null) {
+            return;
+        }
+        try {
+            final File tmp = File.createTempFile("entry", ".tmp", d);
+            final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(rrClass.getName());
+            out.writeInt(code.length);
+            out.write(code);
+            fragment.write(out);
+            out.close();
+            if (!tmp.renameTo(entryFile(d, bytes))) {
+                tmp.delete();
+            }
+        } catch (Exception e) {
+            Assert.warn("Cannot cache class %s: %s", rrClass.getName(), e);
+        }
+    }
+
+    private static void readIds(File f) throws IOException {
+        if (!f.exists()) {
+            return;
+        }
+        final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(f)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            for (MetaDataAllocator<?> a : MetaDataInfoMaps.getAllocators()) {
+                final int n = in.readInt();
+                for (int i = 0; i < n; i++) {
+                    a.reserve(in.readUTF(), in.readInt());
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Record every meta data id, for the entries written in this run. Called at shutdown.
+     */
+    public static synchronized void save() {
+        if (dir == null) {
+            return;
+        }
+        try {
+            final File tmp = File.createTempFile("ids", ".tmp", dir);
+            final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (MetaDataAllocator<?> a : MetaDataInfoMaps.getAllocators()) {
+                final HashMap<String, Integer> ids = a.getIds();
+                out.writeInt(ids.size());
+                for (Map.Entry<String, Integer> e : ids.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeInt(e.getValue());
+                }
+            }
+            out.close();
+            if (!tmp.renameTo(new File(dir, "ids"))) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            Assert.warn("Cannot save class cache ids: %s", e);
+        }
+    }
+}
@@ -6,9 +6,11 @@ import acme.util.option.CommandLine;
 import acme.util.option.CommandLineOption;
 import acme.util.time.TimedExpr;
 import rr.RRMain;
+import rr.instrument.ClassContext;
+import rr.instrument.Instrumentor;
 import rr.meta.ClassInfo;
-import rr.meta.FieldInfo;
 import rr.meta.InstrumentationFilter;
+import rr.meta.MetaDataFragment;
 import rr.meta.MetaDataInfoMaps;
 import rr.org.objectweb.asm.ClassReader;
 import rr.org.objectweb.asm.ClassWriter;
@@ -20,7 +22,13 @@ public class InstrumentingDefineClassLoader implements DefineClassListener {
             CommandLineOption.Kind.EXPERIMENTAL,
             "Check whether uninstrumented classes contain synchronization operations that will be ignored.");
 
-    public synchronized byte[] define(ClassLoader definingLoader, final String name,
+    /*
+     * Called by each thread loading a class, with no lock held, so that independent classes are
+     * instrumented in parallel. Filling in metadata takes MetaDataBuilder.lock. The context lock
+     * is only held by threads defining classes with the same name (through different loaders),
+     * which share one ClassInfo and so one context.
+     */
+    public byte[] define(ClassLoader definingLoader, final String name,
             final byte[] bytes) {
         final LoaderContext currentLoader = Loader.get(definingLoader);
         final String internalName = name.replace('.', '/');
@@ -44,16 +52,15 @@ public class InstrumentingDefineClassLoader implements DefineClassListener {
             } else {
                 Loader.instrumentedFiles.add(name);
 
-                byte[] bytes2 = Loader.readFromFileCache("classes", rrClass.getName());
-                if (bytes2 != null) {
-                    Util.logf("Found cached version of %s", name);
-                    MetaDataBuilder.preLoadFully(currentLoader, new ClassReader(bytes2));
-                    for (FieldInfo f : rrClass.getFields()) {
-                        if (InstrumentationFilter.shouldInstrument(f)) {
-                            f.getUpdater();
-                        }
-                    }
-                    return bytes2;
+                final byte[] cached;
+                synchronized (Instrumentor.getClassContext(rrClass)) {
+                    cached = ClassCache.load(currentLoader, rrClass, bytes);
+                }
+                if (cached != null) {
+                    if (RRMain.slowMode())
+                        Util.log("Found cached version of " + name);
+                    Loader.writeToFileCache("classes", rrClass.getName(), cached);
+                    return cached;
                 }
                 try {
                     return Util.eval(new TimedExpr<byte[]>("Instrumenting " + name + " (Loader="
@@ -61,10 +68,26 @@ public class InstrumentingDefineClassLoader implements DefineClassListener {
                             + definingLoader.getClass() + ")") {
                         @Override
                         public byte[] run() {
-                            MetaDataBuilder.preLoadFully(currentLoader, bytes);
-                            final ClassWriter instrument = currentLoader.instrument(internalName,
-                                    bytes);
-                            byte[] bytes2 = instrument.toByteArray();
+                            final long start = System.nanoTime();
+                            byte[] bytes2;
+                            final ClassContext context = Instrumentor.getClassContext(rrClass);
+                            final MetaDataFragment fragment = ClassCache.startRecording();
+                            synchronized (context) {
+                                try {
+                                    MetaDataBuilder.preLoadFully(currentLoader, bytes);
+                                    final ClassWriter instrument = currentLoader
+                                            .instrument(internalName, bytes);
+                                    bytes2 = instrument.toByteArray();
+                                } finally {
+                                    if (fragment != null) {
+                                        fragment.stop();
+                                    }
+                                }
+                            }
+                            Loader.instrumented(name, System.nanoTime() - start);
+                            if (fragment != null && !context.definesClasses()) {
+                                ClassCache.store(rrClass, bytes, bytes2, fragment);
+                            }
                             Loader.writeToFileCache("classes", rrClass.getName(), bytes2);
                             return bytes2;
                         }
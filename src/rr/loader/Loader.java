@@ -99,6 +99,34 @@ public class Loader {
     protected static final Vector<String> skippedFiles = new Vector<String>();
     protected static final Vector<String> sanityCheckedFiles = new Vector<String>();
 
+    // The classes that took longest to instrument, and how long, slowest first.
+    private static final int SLOWEST = 20;
+    private static final String[] slowestNames = new String[SLOWEST];
+    private static final long[] slowestNanos = new long[SLOWEST];
+    private static volatile long slowestCutoff;
+
+    /**
+     * Record that instrumenting the class took the given time.
+     */
+    public static void instrumented(String name, long nanos) {
+        if (nanos <= slowestCutoff) {
+            return;
+        }
+        synchronized (slowestNames) {
+            int i = SLOWEST - 1;
+            if (nanos <= slowestNanos[i]) {
+                return;
+            }
+            for (; i > 0 && slowestNanos[i - 1] < nanos; i--) {
+                slowestNanos[i] = slowestNanos[i - 1];
+                slowestNames[i] = slowestNames[i - 1];
+            }
+            slowestNanos[i] = nanos;
+            slowestNames[i] = name;
+            slowestCutoff = slowestNanos[SLOWEST - 1];
+        }
+    }
+
     public static void printXML(XMLWriter xml) {
         String r = "";
 
@@ -125,6 +153,13 @@ public class Loader {
         }
         xml.print("sanityChecked", r + "");
         xml.print("sanityCheckedNum", sanityCheckedFiles.size() + "");
+
+        synchronized (slowestNames) {
+            for (int i = 0; i < SLOWEST && slowestNames[i] != null; i++) {
+                xml.printInsideScope("slowInstrument", "class", slowestNames[i], "ms",
+                        String.format("%.3f", slowestNanos[i] / 1e6));
+            }
+        }
     }
 
     public static final void writeToFileCache(String prefix, String className, byte b[]) {
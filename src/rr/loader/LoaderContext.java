@@ -125,6 +125,16 @@ public class LoaderContext {
 	private Hashtable<String,URL> cache = new Hashtable<String, URL>();
 
 	public ClassInfo getRRClass(final String className) throws ClassNotFoundException {
+		final ClassInfo known = MetaDataInfoMaps.getClass(className);
+		if (!className.startsWith("[") && known.stateAtLeast(ClassInfo.State.PRELOADED)) {
+			return known;
+		}
+		synchronized (MetaDataBuilder.lock) {
+			return getRRClassLocked(className);
+		}
+	}
+
+	private ClassInfo getRRClassLocked(final String className) throws ClassNotFoundException {
 		try {
 			ClassInfo rrClass = MetaDataInfoMaps.getClass(className);
 			if (className.startsWith("[")) {
@@ -58,6 +58,14 @@ import acme.util.Yikes;
 
 public class MetaDataBuilder {
 
+	/*
+	 * ClassInfos are filled in from class files, and move through their states, only with this
+	 * held (see also LoaderContext.getRRClass), since filling in one class preloads its supertypes
+	 * and the classes it refers to.  It also guards preLoad.  Instrumenting a class needs it only
+	 * to find classes it has not seen yet.
+	 */
+	static final Object lock = new Object();
+
 	static private Stack<String> preLoad = new Stack<String>();
 
 	private static class MetaDataClassVisitor extends ClassVisitor {
@@ -151,7 +159,7 @@ public class MetaDataBuilder {
 		@Override
 		public void visitMaxs(int maxStack, int maxLocals) {
 			super.visitMaxs(maxStack, maxLocals);
-			Instrumentor.methodContext.get(method).setFirstFreeVar(maxLocals);
+			Instrumentor.getMethodContext(method).setFirstFreeVar(maxLocals);
 		}
 
 		@Override
@@ -197,8 +205,10 @@ public class MetaDataBuilder {
 	}
 
 	public static void preLoad(LoaderContext c, ClassReader in) {
-		MetaDataClassVisitor mcv = new MetaDataClassVisitor(c, true);
-		in.accept(mcv, 0);
+		synchronized (lock) {
+			MetaDataClassVisitor mcv = new MetaDataClassVisitor(c, true);
+			in.accept(mcv, 0);
+		}
 	}
 
 	public static void preLoadFully(final LoaderContext c, final byte b[])  {
@@ -206,16 +216,18 @@ public class MetaDataBuilder {
 	}
 
 	public static void preLoadFully(final LoaderContext c, final ClassReader in)  {
-		MetaDataClassVisitor mcv = new MetaDataClassVisitor(c, false);
-		in.accept(mcv, 0);
-
-		while (!preLoad.isEmpty()) {
-			final String pop = preLoad.pop();
-			try {
-				ClassInfo r = c.getRRClass(pop);
-			} catch (ClassNotFoundException e) {
-				Yikes.yikes("Failed to load class " + pop + ".  Hopefully just because RR is more eager in loading than JVM...");
-				MetaDataInfoMaps.getClass(pop).setState(State.COMPLETE);
+		synchronized (lock) {
+			MetaDataClassVisitor mcv = new MetaDataClassVisitor(c, false);
+			in.accept(mcv, 0);
+
+			while (!preLoad.isEmpty()) {
+				final String pop = preLoad.pop();
+				try {
+					ClassInfo r = c.getRRClass(pop);
+				} catch (ClassNotFoundException e) {
+					Yikes.yikes("Failed to load class " + pop + ".  Hopefully just because RR is more eager in loading than JVM...");
+					MetaDataInfoMaps.getClass(pop).setState(State.COMPLETE);
+				}
 			}
 		}
 	}
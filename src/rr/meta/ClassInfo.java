@@ -49,7 +49,7 @@ public class ClassInfo extends MetaDataInfo implements Comparable<ClassInfo> {
 
 	public static enum State { FRESH, IN_PRELOAD, PRELOADED, COMPLETE }
 
-	protected State state;
+	protected volatile State state;
 	protected boolean isClass;
 	protected final boolean isSynthetic;
 	protected final String name;
@@ -112,7 +112,7 @@ public class ClassInfo extends MetaDataInfo implements Comparable<ClassInfo> {
 		return (this.getState().compareTo(s) == 0);
 	}
 
-	public void addField(FieldInfo x) {
+	public synchronized void addField(FieldInfo x) {
 		if (superClass != null) {
 			superClass.assertStateAtLeast(State.PRELOADED);
 		}
@@ -179,7 +179,7 @@ public class ClassInfo extends MetaDataInfo implements Comparable<ClassInfo> {
 	}
 
 	private Set<ClassInfo> supers;
-	public Set<ClassInfo> getSuperTypes() {
+	public synchronized Set<ClassInfo> getSuperTypes() {
 		assertStateAtLeast(State.PRELOADED);
 		if (supers == null) {
 			supers = new HashSet<ClassInfo>();
@@ -204,14 +204,14 @@ public class ClassInfo extends MetaDataInfo implements Comparable<ClassInfo> {
 		this.state = state;
 	}
 
-	public void addInterface(ClassInfo i) {
+	public synchronized void addInterface(ClassInfo i) {
 		if (!interfaces.contains(i)) {
 			assertStateAtMost(State.IN_PRELOAD);
 			interfaces.add(i);	
 		}
 	}
 
-	public void addMethod(MethodInfo x) {
+	public synchronized void addMethod(MethodInfo x) {
 		if (!methods.contains(x)) {
 			methods.add(x); 
 		} 
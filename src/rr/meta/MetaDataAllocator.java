@@ -55,10 +55,17 @@ import acme.util.decorations.SingletonValue;
 
 public class MetaDataAllocator<S extends MetaDataInfo> implements Iterable<S>, Serializable {
 
-	protected S mapById[];
+	// put() fills an entry's slot before publishing the entry in map, so a thread that found an
+	// entry (or its id) through map also sees its slot, even in an array grown since.
+	protected volatile S mapById[];
 	protected final ConcurrentHashMap<String, S> map = new ConcurrentHashMap<String,S>();
 	protected final DecorationFactory<S> decorations = new DecorationFactory<S>();
 
+	// Ids handed out to keys by earlier runs, which instrumented code loaded from the class
+	// cache still refers to.  Fresh keys get ids past all of them.  See nextId().
+	protected final HashMap<String, Integer> reservedIds = new HashMap<String, Integer>();
+	protected int nextId;
+
 	private static <T> T[] copyOf(T[] original, int newLength) {
 		T[] copy = (T[]) java.lang.reflect.Array.newInstance(original.getClass().getComponentType(), newLength);
 		System.arraycopy(original, 0, copy, 0,
@@ -70,7 +77,7 @@ public class MetaDataAllocator<S extends MetaDataInfo> implements Iterable<S>, S
 		mapById = copyOf(bogusArray, 128);
 	}
 
-	public synchronized S get(final String key) {
+	public S get(final String key) {
 		return map.get(key);
 	}
 
@@ -83,15 +90,75 @@ public class MetaDataAllocator<S extends MetaDataInfo> implements Iterable<S>, S
 		return map.size();
 	}
 
-	private synchronized void resize(final int n) {
-		mapById = copyOf(mapById, n);
+	/**
+	 * The id for a new entry with the given key: the one reserved for it, if any, or else the
+	 * first id no entry or reservation uses.  Like put(), call with the lock on this allocator.
+	 */
+	public synchronized int nextId(final String key) {
+		final Integer id = reservedIds.get(key);
+		return id != null ? id : nextId;
+	}
+
+	/**
+	 * Reserve id for key, unless this run has already used either for something else.
+	 */
+	public synchronized void reserve(final String key, final int id) {
+		if (map.containsKey(key) || (id < mapById.length && mapById[id] != null)) {
+			return;
+		}
+		reservedIds.put(key, id);
+		if (id >= nextId) {
+			nextId = id + 1;
+		}
+	}
+
+	/**
+	 * Keep fresh entries from taking ids below n, which a meta data file has handed out.
+	 */
+	public synchronized void reserveIdsBelow(final int n) {
+		if (n > nextId) {
+			nextId = n;
+		}
 	}
 
+	/**
+	 * True if an entry for key with the given id is here already, or may be put.
+	 */
+	public synchronized boolean canRestore(final String key, final int id) {
+		final S s = map.get(key);
+		if (s != null) {
+			return s.id == id;
+		}
+		final Integer reserved = reservedIds.get(key);
+		return reserved != null && reserved == id && (id >= mapById.length || mapById[id] == null);
+	}
+
+	/**
+	 * Every key's id, counting those only reserved.
+	 */
+	public synchronized HashMap<String, Integer> getIds() {
+		final HashMap<String, Integer> ids = new HashMap<String, Integer>(reservedIds);
+		for (S s : map.values()) {
+			ids.put(s.getKey(), s.id);
+		}
+		return ids;
+	}
+
+	/**
+	 * Callers allocating a new entry must hold the lock on this allocator from the lookup that
+	 * missed until put(), so that no two entries get the same key or id.  See MetaDataInfoMaps.
+	 */
 	public synchronized S put(final S t) {
 		if (t.id >= mapById.length) {
-			resize(t.id * 2);
+			final S[] a = copyOf(mapById, t.id * 2);
+			a[t.id] = t;
+			mapById = a;
+		} else {
+			mapById[t.id] = t;
+		}
+		if (t.id >= nextId) {
+			nextId = t.id + 1;
 		}
-		mapById[t.id] = t;
 		return map.put(t.getKey(), t);
 	}
 
@@ -0,0 +1,464 @@
+/******************************************************************************
+ *
+ * Copyright (c) 2010, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ ******************************************************************************/
+
+package rr.meta;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import acme.util.Assert;
+
+/**
+ * The rr.meta file that MetaDataInfoMaps.dump() writes and -meta reads.  The file is mapped into
+ * memory, and opening it only reads the class names; the rest of a class's meta data, with its
+ * fields, methods, and their operations, is made when MetaDataInfoMaps first asks for the class.
+ *
+ * Layout, in big-endian ints:
+ *
+ *   header:   MAGIC, VERSION, the next free id of each allocator, #strings, #classes
+ *   strings:  #strings + 1 offsets into the UTF-8 bytes that follow them
+ *   index:    for each class, its name (a string index) and the file offset of its record
+ *   records:  one per class (see writeClass)
+ *
+ * Decorations are not kept: tools compute them again in the run that reads the file.
+ */
+public class MetaDataFile {
+
+    private static final int MAGIC = 0x52524d44; // RRMD
+    private static final int VERSION = 1;
+
+    private static final byte ACQUIRE = 0, RELEASE = 1, START = 2, WAIT = 3, JOIN = 4,
+            INTERRUPT = 5, FIELD_ACCESS = 6, ARRAY_ACCESS = 7, INVOKE = 8;
+
+    private final ByteBuffer in;
+    private final int stringOffsets;
+    private final int stringData;
+    private final String[] strings;
+
+    // Record offsets of the classes not yet read.
+    private final HashMap<String, Integer> records = new HashMap<String, Integer>();
+
+    // Classes read by the current getClass call, published once they are all complete.
+    private final HashMap<String, ClassInfo> pending = new HashMap<String, ClassInfo>();
+    private int depth;
+
+    private MetaDataFile(ByteBuffer in, MetaDataAllocator<?>[] allocators) throws IOException {
+        this.in = in;
+        if (in.getInt(0) != MAGIC || in.getInt(4) != VERSION) {
+            throw new IOException("not a version " + VERSION + " meta data file");
+        }
+        in.position(8);
+        for (MetaDataAllocator<?> a : allocators) {
+            a.reserveIdsBelow(in.getInt());
+        }
+        strings = new String[in.getInt()];
+        final int classes = in.getInt();
+        stringOffsets = in.position();
+        stringData = stringOffsets + 4 * (strings.length + 1);
+        int p = stringData + in.getInt(stringOffsets + 4 * strings.length);
+        for (int i = 0; i < classes; i++, p += 8) {
+            records.put(string(in.getInt(p)), in.getInt(p + 4));
+        }
+    }
+
+    public static MetaDataFile open(String file, MetaDataAllocator<?>[] allocators)
+            throws IOException {
+        final RandomAccessFile f = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel c = f.getChannel();
+            return new MetaDataFile(c.map(FileChannel.MapMode.READ_ONLY, 0, c.size()), allocators);
+        } finally {
+            f.close();
+        }
+    }
+
+    private String string(int i) {
+        if (i < 0) {
+            return null;
+        }
+        String s = strings[i];
+        if (s == null) {
+            final int start = in.getInt(stringOffsets + 4 * i);
+            final byte[] b = new byte[in.getInt(stringOffsets + 4 * (i + 1)) - start];
+            final ByteBuffer d = in.duplicate();
+            d.position(stringData + start);
+            d.get(b);
+            try {
+                s = new String(b, "UTF-8").intern();
+            } catch (IOException e) {
+                Assert.panic(e);
+            }
+            strings[i] = s;
+        }
+        return s;
+    }
+
+    /**
+     * The class, with its members and operations, if the file has it and no earlier call made
+     * it. Called without the lock on any allocator.
+     */
+    synchronized ClassInfo getClass(String name) {
+        ClassInfo c = pending.get(name);
+        if (c != null) {
+            return c;
+        }
+        final Integer record = records.remove(name);
+        if (record == null) {
+            return MetaDataInfoMaps.getClasses().get(MetaDataInfoKeys.getClassKey(name));
+        }
+        depth++;
+        try {
+            c = readClass(record);
+        } finally {
+            if (--depth == 0) {
+                final MetaDataAllocator<ClassInfo> classes = MetaDataInfoMaps.getClasses();
+                for (ClassInfo x : pending.values()) {
+                    classes.put(x);
+                }
+                pending.clear();
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Read every class not yet read, before writing the meta data out again.
+     */
+    synchronized void readAll() {
+        for (String name : new ArrayList<String>(records.keySet())) {
+            getClass(name);
+        }
+    }
+
+    /*
+     * A class's own fields and methods are made before anything that may read another class,
+     * since that class's operations may refer to them.
+     */
+    private ClassInfo readClass(int p) {
+        in.position(p);
+        final int id = in.getInt();
+        final String name = string(in.getInt());
+        final ClassInfo.State state = ClassInfo.State.values()[in.get()];
+        final byte flags = in.get();
+        final String superName = string(in.getInt());
+        final String interfaces[] = new String[in.getInt()];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = string(in.getInt());
+        }
+        final ClassInfo c = new ClassInfo(id, SourceLocation.NULL, name, (flags & 2) != 0);
+        c.isClass = (flags & 1) != 0;
+        pending.put(name, c);
+
+        final MetaDataAllocator<FieldInfo> fields = MetaDataInfoMaps.getFields();
+        for (int i = in.getInt(); i > 0; i--) {
+            final int fieldId = in.getInt();
+            final String fieldName = string(in.getInt());
+            final String desc = string(in.getInt());
+            final byte b = in.get();
+            final FieldInfo f = new FieldInfo(fieldId, SourceLocation.NULL, c, fieldName, desc,
+                    (b & 8) != 0);
+            f.setFlags((b & 1) != 0, (b & 2) != 0, (b & 4) != 0);
+            c.fields.add(f);
+            fields.put(f);
+        }
+        final MetaDataAllocator<MethodInfo> methods = MetaDataInfoMaps.getMethods();
+        final ArrayList<MethodInfo> ms = new ArrayList<MethodInfo>();
+        for (int i = in.getInt(); i > 0; i--) {
+            final int methodId = in.getInt();
+            final String methodName = string(in.getInt());
+            final String desc = string(in.getInt());
+            final byte b = in.get();
+            final MethodInfo m = new MethodInfo(methodId, SourceLocation.NULL, c, methodName, desc,
+                    (b & 16) != 0);
+            if ((b & 1) != 0) {
+                m.setFlags((b & 2) != 0, (b & 4) != 0, (b & 8) != 0);
+            }
+            c.methods.add(m);
+            methods.put(m);
+            ms.add(m);
+        }
+        final int ops = in.position();
+
+        if (superName != null) {
+            c.superClass = MetaDataInfoMaps.getClass(superName);
+        }
+        for (String i : interfaces) {
+            c.interfaces.add(MetaDataInfoMaps.getClass(i));
+        }
+        c.setState(state);
+
+        in.position(ops);
+        for (int i = in.getInt(); i > 0; i--) {
+            readOp(ms);
+        }
+        return c;
+    }
+
+    private MethodInfo readMethod() {
+        final String owner = string(in.getInt());
+        final String name = string(in.getInt());
+        final String desc = string(in.getInt());
+        return owner == null ? null
+                : MetaDataInfoMaps.getMethod(MetaDataInfoMaps.getClass(owner), name, desc);
+    }
+
+    private FieldInfo readField() {
+        final String owner = string(in.getInt());
+        final String name = string(in.getInt());
+        final String desc = string(in.getInt());
+        return owner == null ? null
+                : MetaDataInfoMaps.getField(MetaDataInfoMaps.getClass(owner), name, desc);
+    }
+
+    /*
+     * Reading another class moves the position, so each op is read from a saved position.
+     */
+    private void readOp(ArrayList<MethodInfo> ms) {
+        final byte kind = in.get();
+        final MethodInfo enclosing = ms.get(in.getInt());
+        final int id = in.getInt();
+        final String file = string(in.getInt());
+        int p = in.position();
+        final MethodInfo locMethod = readMethod();
+        p += 12;
+        final int line = in.getInt(p);
+        final int offset = in.getInt(p + 4);
+        p += 8;
+        final SourceLocation loc = new SourceLocation(file, locMethod, line, offset);
+        switch (kind) {
+            case ACQUIRE:
+                MetaDataInfoMaps.getAcquires().put(new AcquireInfo(id, loc, enclosing));
+                break;
+            case RELEASE:
+                MetaDataInfoMaps.getReleases().put(new ReleaseInfo(id, loc, enclosing));
+                break;
+            case START:
+                MetaDataInfoMaps.getStarts().put(new StartInfo(id, loc, enclosing));
+                break;
+            case WAIT:
+                MetaDataInfoMaps.getWaits().put(new WaitInfo(id, loc, enclosing));
+                break;
+            case JOIN:
+                MetaDataInfoMaps.getJoins().put(new JoinInfo(id, loc, enclosing));
+                break;
+            case INTERRUPT:
+                MetaDataInfoMaps.getInterrupts().put(new InterruptInfo(id, loc, enclosing));
+                break;
+            case ARRAY_ACCESS:
+                MetaDataInfoMaps.getArrayAccesses()
+                        .put(new ArrayAccessInfo(id, loc, enclosing, in.get(p++) != 0));
+                break;
+            case FIELD_ACCESS: {
+                final boolean isWrite = in.get(p++) != 0;
+                in.position(p);
+                final FieldInfo field = readField();
+                p += 12;
+                MetaDataInfoMaps.getFieldAccesses()
+                        .put(new FieldAccessInfo(id, loc, enclosing, isWrite, field));
+                break;
+            }
+            default: {
+                in.position(p);
+                final MethodInfo method = readMethod();
+                p += 12;
+                MetaDataInfoMaps.getInvokes().put(new InvokeInfo(id, loc, method, enclosing));
+                break;
+            }
+        }
+        in.position(p);
+    }
+
+    /*
+     * Writing.
+     */
+
+    private static class Strings {
+        final LinkedHashMap<String, Integer> ids = new LinkedHashMap<String, Integer>();
+
+        int get(String s) {
+            if (s == null) {
+                return -1;
+            }
+            Integer i = ids.get(s);
+            if (i == null) {
+                i = ids.size();
+                ids.put(s, i);
+            }
+            return i;
+        }
+    }
+
+    public static void write(String file, MetaDataAllocator<?>[] allocators) throws IOException {
+        final Strings strings = new Strings();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream records = new DataOutputStream(bytes);
+        final LinkedHashMap<Integer, Integer> index = new LinkedHashMap<Integer, Integer>();
+        for (ClassInfo c : MetaDataInfoMaps.getClasses()) {
+            index.put(strings.get(c.getName()), records.size());
+            writeClass(records, strings, c);
+        }
+
+        final ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+        final int offsets[] = new int[strings.ids.size() + 1];
+        int i = 0;
+        for (String s : strings.ids.keySet()) {
+            offsets[i++] = stringBytes.size();
+            stringBytes.write(s.getBytes("UTF-8"));
+        }
+        offsets[i] = stringBytes.size();
+
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (MetaDataAllocator<?> a : allocators) {
+                synchronized (a) {
+                    out.writeInt(a.nextId);
+                }
+            }
+            out.writeInt(strings.ids.size());
+            out.writeInt(index.size());
+            for (int o : offsets) {
+                out.writeInt(o);
+            }
+            stringBytes.writeTo(out);
+            final int base = out.size() + 8 * index.size();
+            for (Map.Entry<Integer, Integer> e : index.entrySet()) {
+                out.writeInt(e.getKey());
+                out.writeInt(base + e.getValue());
+            }
+            bytes.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /*
+     * id, name, state, flags (isClass, isSynthetic), super class, interfaces; fields: id, name,
+     * descriptor, flags (final, volatile, static, synthetic); methods: id, name, descriptor, flags
+     * (set, static, native, synchronized, synthetic); operations: kind, method index, id, source
+     * location, and kind-specific parts. Classes, fields, and methods are names and descriptors
+     * given as string indices, or -1 for none.
+     */
+    private static void writeClass(DataOutputStream out, Strings strings, ClassInfo c)
+            throws IOException {
+        final ClassInfo.State state = c.getState() == ClassInfo.State.IN_PRELOAD
+                ? ClassInfo.State.FRESH : c.getState();
+        out.writeInt(c.getId());
+        out.writeInt(strings.get(c.getName()));
+        out.writeByte(state.ordinal());
+        out.writeByte((c.isClass ? 1 : 0) | (c.isSynthetic() ? 2 : 0));
+        out.writeInt(c.superClass == null ? -1 : strings.get(c.superClass.getName()));
+        final Object[] interfaces = c.interfaces.toArray();
+        out.writeInt(interfaces.length);
+        for (Object x : interfaces) {
+            out.writeInt(strings.get(((ClassInfo) x).getName()));
+        }
+
+        final Object[] fields = c.fields.toArray();
+        out.writeInt(fields.length);
+        for (Object x : fields) {
+            final FieldInfo f = (FieldInfo) x;
+            out.writeInt(f.getId());
+            out.writeInt(strings.get(f.getName()));
+            out.writeInt(strings.get(f.getDescriptor()));
+            out.writeByte((f.isFinal() ? 1 : 0) | (f.isVolatile() ? 2 : 0)
+                    | (f.isStatic() ? 4 : 0) | (f.isSynthetic() ? 8 : 0));
+        }
+
+        final Object[] methods = c.methods.toArray();
+        final ArrayList<OperationInfo> ops = new ArrayList<OperationInfo>();
+        final ArrayList<Integer> enclosing = new ArrayList<Integer>();
+        out.writeInt(methods.length);
+        for (int i = 0; i < methods.length; i++) {
+            final MethodInfo m = (MethodInfo) methods[i];
+            out.writeInt(m.getId());
+            out.writeInt(strings.get(m.getName()));
+            out.writeInt(strings.get(m.getDescriptor()));
+            out.writeByte(m.flagsSet ? 1 | (m.isStatic ? 2 : 0) | (m.isNative ? 4 : 0)
+                    | (m.isSynchronized ? 8 : 0) | (m.isSynthetic() ? 16 : 0)
+                    : (m.isSynthetic() ? 16 : 0));
+            for (Object op : m.ops.toArray()) {
+                ops.add((OperationInfo) op);
+                enclosing.add(i);
+            }
+        }
+
+        out.writeInt(ops.size());
+        for (int i = 0; i < ops.size(); i++) {
+            final OperationInfo op = ops.get(i);
+            out.writeByte(op instanceof AcquireInfo ? ACQUIRE
+                    : op instanceof ReleaseInfo ? RELEASE
+                    : op instanceof StartInfo ? START
+                    : op instanceof WaitInfo ? WAIT
+                    : op instanceof JoinInfo ? JOIN
+                    : op instanceof InterruptInfo ? INTERRUPT
+                    : op instanceof FieldAccessInfo ? FIELD_ACCESS
+                    : op instanceof ArrayAccessInfo ? ARRAY_ACCESS
+                    : INVOKE);
+            out.writeInt(enclosing.get(i));
+            out.writeInt(op.getId());
+            final SourceLocation loc = op.getLoc();
+            out.writeInt(strings.get(loc.getFile()));
+            writeMethod(out, strings, loc.getMethod());
+            out.writeInt(loc.getLine());
+            out.writeInt(loc.getOffset());
+            if (op instanceof AccessInfo) {
+                out.writeByte(((AccessInfo) op).isWrite() ? 1 : 0);
+            }
+            if (op instanceof FieldAccessInfo) {
+                final FieldInfo f = ((FieldAccessInfo) op).getField();
+                out.writeInt(f == null ? -1 : strings.get(f.getOwner().getName()));
+                out.writeInt(f == null ? -1 : strings.get(f.getName()));
+                out.writeInt(f == null ? -1 : strings.get(f.getDescriptor()));
+            } else if (op instanceof InvokeInfo) {
+                writeMethod(out, strings, ((InvokeInfo) op).getMethod());
+            }
+        }
+    }
+
+    private static void writeMethod(DataOutputStream out, Strings strings, MethodInfo m)
+            throws IOException {
+        out.writeInt(m == null ? -1 : strings.get(m.getOwner().getName()));
+        out.writeInt(m == null ? -1 : strings.get(m.getName()));
+        out.writeInt(m == null ? -1 : strings.get(m.getDescriptor()));
+    }
+}
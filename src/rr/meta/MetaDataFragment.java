@@ -0,0 +1,346 @@
+/******************************************************************************
+ *
+ * Copyright (c) 2010, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ ******************************************************************************/
+
+package rr.meta;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+
+/**
+ * The meta data that instrumenting one class made or looked up, recorded so that a later run
+ * loading the instrumented class from rr.loader.ClassCache can make the same entries again, with
+ * the same ids, which the instrumented code has built in.
+ *
+ * A thread records between start() and stop(): every MetaDataInfoMaps lookup it makes in between
+ * adds the entry returned.
+ */
+public class MetaDataFragment {
+
+    private static final byte CLASS = 0, FIELD = 1, METHOD = 2, ACQUIRE = 3, RELEASE = 4,
+            START = 5, WAIT = 6, JOIN = 7, INTERRUPT = 8, FIELD_ACCESS = 9, ARRAY_ACCESS = 10,
+            INVOKE = 11;
+
+    private static final ThreadLocal<MetaDataFragment> current = new ThreadLocal<MetaDataFragment>();
+
+    private final MetaDataFragment outer;
+    private final LinkedHashSet<MetaDataInfo> infos = new LinkedHashSet<MetaDataInfo>();
+
+    private MetaDataFragment(MetaDataFragment outer) {
+        this.outer = outer;
+    }
+
+    public static MetaDataFragment start() {
+        final MetaDataFragment f = new MetaDataFragment(current.get());
+        current.set(f);
+        return f;
+    }
+
+    public void stop() {
+        current.set(outer);
+    }
+
+    static <T extends MetaDataInfo> T touch(T x) {
+        final MetaDataFragment f = current.get();
+        if (f != null) {
+            f.infos.add(x);
+        }
+        return x;
+    }
+
+    /**
+     * Names of the classes whose entries are in the fragment.
+     */
+    public static Iterable<String> readClassNames(DataInputStream in) throws IOException {
+        final LinkedHashSet<String> names = new LinkedHashSet<String>();
+        final int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            names.add(in.readUTF());
+        }
+        return names;
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        final LinkedHashSet<String> names = new LinkedHashSet<String>();
+        for (MetaDataInfo x : infos) {
+            if (x instanceof ClassInfo) {
+                names.add(((ClassInfo) x).getName());
+            }
+        }
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+        out.writeInt(infos.size());
+        for (MetaDataInfo x : infos) {
+            if (x instanceof ClassInfo) {
+                out.writeByte(CLASS);
+                out.writeInt(x.getId());
+                out.writeUTF(((ClassInfo) x).getName());
+            } else if (x instanceof FieldInfo) {
+                out.writeByte(FIELD);
+                out.writeInt(x.getId());
+                writeField(out, (FieldInfo) x);
+            } else if (x instanceof MethodInfo) {
+                final MethodInfo m = (MethodInfo) x;
+                out.writeByte(METHOD);
+                out.writeInt(x.getId());
+                writeMethod(out, m);
+                out.writeByte(m.flagsSet ? 1 | (m.isStatic ? 2 : 0) | (m.isNative ? 4 : 0)
+                        | (m.isSynchronized ? 8 : 0) : 0);
+            } else {
+                final OperationInfo op = (OperationInfo) x;
+                out.writeByte(op instanceof AcquireInfo ? ACQUIRE
+                        : op instanceof ReleaseInfo ? RELEASE
+                        : op instanceof StartInfo ? START
+                        : op instanceof WaitInfo ? WAIT
+                        : op instanceof JoinInfo ? JOIN
+                        : op instanceof InterruptInfo ? INTERRUPT
+                        : op instanceof FieldAccessInfo ? FIELD_ACCESS
+                        : op instanceof ArrayAccessInfo ? ARRAY_ACCESS
+                        : INVOKE);
+                out.writeInt(x.getId());
+                final SourceLocation loc = op.getLoc();
+                out.writeUTF(loc.getFile());
+                writeMethod(out, loc.getMethod());
+                out.writeInt(loc.getLine());
+                out.writeInt(loc.getOffset());
+                writeMethod(out, op.getEnclosing());
+                if (op instanceof AccessInfo) {
+                    out.writeBoolean(((AccessInfo) op).isWrite());
+                }
+                if (op instanceof FieldAccessInfo) {
+                    writeField(out, ((FieldAccessInfo) op).getField());
+                } else if (op instanceof InvokeInfo) {
+                    writeMethod(out, ((InvokeInfo) op).getMethod());
+                }
+            }
+        }
+    }
+
+    private static void writeField(DataOutputStream out, FieldInfo f) throws IOException {
+        out.writeBoolean(f != null);
+        if (f != null) {
+            out.writeUTF(f.getOwner().getName());
+            out.writeUTF(f.getName());
+            out.writeUTF(f.getDescriptor());
+        }
+    }
+
+    private static void writeMethod(DataOutputStream out, MethodInfo m) throws IOException {
+        out.writeBoolean(m != null);
+        if (m != null) {
+            out.writeUTF(m.getOwner().getName());
+            out.writeUTF(m.getName());
+            out.writeUTF(m.getDescriptor());
+        }
+    }
+
+    private static FieldInfo readField(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        final ClassInfo owner = MetaDataInfoMaps.getClass(in.readUTF());
+        return MetaDataInfoMaps.getField(owner, in.readUTF(), in.readUTF());
+    }
+
+    private static MethodInfo readMethod(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        final ClassInfo owner = MetaDataInfoMaps.getClass(in.readUTF());
+        return MetaDataInfoMaps.getMethod(owner, in.readUTF(), in.readUTF());
+    }
+
+    /**
+     * Make the entries of a fragment written by write(), after its class names are read. Returns
+     * false, leaving the rest unread, at the first entry that cannot have its recorded id in this
+     * run.
+     */
+    public static boolean restore(DataInputStream in) throws IOException {
+        final int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            if (!restoreOne(in)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean restoreOne(DataInputStream in) throws IOException {
+        final byte kind = in.readByte();
+        final int id = in.readInt();
+        switch (kind) {
+            case CLASS:
+                return MetaDataInfoMaps.getClass(in.readUTF()).getId() == id;
+            case FIELD:
+                return readField(in).getId() == id;
+            case METHOD: {
+                final MethodInfo m = readMethod(in);
+                final int flags = in.readByte();
+                if ((flags & 1) != 0 && !m.flagsSet) {
+                    m.setFlags((flags & 2) != 0, (flags & 4) != 0, (flags & 8) != 0);
+                }
+                return m.getId() == id;
+            }
+        }
+        final String file = in.readUTF();
+        final SourceLocation loc = new SourceLocation(file, readMethod(in), in.readInt(),
+                in.readInt());
+        final MethodInfo enclosing = readMethod(in);
+        switch (kind) {
+            case ACQUIRE: {
+                final MetaDataAllocator<AcquireInfo> a = MetaDataInfoMaps.getAcquires();
+                synchronized (a) {
+                    final String key = MetaDataInfoKeys.getLockKey(loc, true);
+                    if (!a.canRestore(key, id)) {
+                        return false;
+                    }
+                    if (a.get(key) == null) {
+                        a.put(new AcquireInfo(id, loc, enclosing));
+                    }
+                }
+                return true;
+            }
+            case RELEASE: {
+                final MetaDataAllocator<ReleaseInfo> a = MetaDataInfoMaps.getReleases();
+                synchronized (a) {
+                    final String key = MetaDataInfoKeys.getLockKey(loc, false);
+                    if (!a.canRestore(key, id)) {
+                        return false;
+                    }
+                    if (a.get(key) == null) {
+                        a.put(new ReleaseInfo(id, loc, enclosing));
+                    }
+                }
+                return true;
+            }
+            case START: {
+                final MetaDataAllocator<StartInfo> a = MetaDataInfoMaps.getStarts();
+                synchronized (a) {
+                    final String key = MetaDataInfoKeys.getStartKey(loc);
+                    if (!a.canRestore(key, id)) {
+                        return false;
+                    }
+                    if (a.get(key) == null) {
+                        a.put(new StartInfo(id, loc, enclosing));
+                    }
+                }
+                return true;
+            }
+            case WAIT: {
+                final MetaDataAllocator<WaitInfo> a = MetaDataInfoMaps.getWaits();
+                synchronized (a) {
+                    final String key = MetaDataInfoKeys.getWaitKey(loc);
+                    if (!a.canRestore(key, id)) {
+                        return false;
+                    }
+                    if (a.get(key) == null) {
+                        a.put(new WaitInfo(id, loc, enclosing));
+                    }
+                }
+                return true;
+            }
+            case JOIN: {
+                final MetaDataAllocator<JoinInfo> a = MetaDataInfoMaps.getJoins();
+                synchronized (a) {
+                    final String key = MetaDataInfoKeys.getJoinKey(loc);
+                    if (!a.canRestore(key, id)) {
+                        return false;
+                    }
+                    if (a.get(key) == null) {
+                        a.put(new JoinInfo(id, loc, enclosing));
+                    }
+                }
+                return true;
+            }
+            case INTERRUPT: {
+                final MetaDataAllocator<InterruptInfo> a = MetaDataInfoMaps.getInterrupts();
+                synchronized (a) {
+                    final String key = MetaDataInfoKeys.getInterruptKey(loc);
+                    if (!a.canRestore(key, id)) {
+                        return false;
+                    }
+                    if (a.get(key) == null) {
+                        a.put(new InterruptInfo(id, loc, enclosing));
+                    }
+                }
+                return true;
+            }
+            case FIELD_ACCESS: {
+                final boolean isWrite = in.readBoolean();
+                final FieldInfo field = readField(in);
+                final MetaDataAllocator<FieldAccessInfo> a = MetaDataInfoMaps.getFieldAccesses();
+                synchronized (a) {
+                    final String key = MetaDataInfoKeys.getFieldAccessKey(loc, enclosing, field,
+                            isWrite);
+                    if (!a.canRestore(key, id)) {
+                        return false;
+                    }
+                    if (a.get(key) == null) {
+                        a.put(new FieldAccessInfo(id, loc, enclosing, isWrite, field));
+                    }
+                }
+                return true;
+            }
+            case ARRAY_ACCESS: {
+                final boolean isWrite = in.readBoolean();
+                final MetaDataAllocator<ArrayAccessInfo> a = MetaDataInfoMaps.getArrayAccesses();
+                synchronized (a) {
+                    final String key = MetaDataInfoKeys.getArrayAccessKey(loc, isWrite);
+                    if (!a.canRestore(key, id)) {
+                        return false;
+                    }
+                    if (a.get(key) == null) {
+                        a.put(new ArrayAccessInfo(id, loc, enclosing, isWrite));
+                    }
+                }
+                return true;
+            }
+            default: {
+                final MethodInfo method = readMethod(in);
+                final MetaDataAllocator<InvokeInfo> a = MetaDataInfoMaps.getInvokes();
+                synchronized (a) {
+                    final String key = MetaDataInfoKeys.getInvokeKey(loc, method);
+                    if (!a.canRestore(key, id)) {
+                        return false;
+                    }
+                    if (a.get(key) == null) {
+                        a.put(new InvokeInfo(id, loc, method, enclosing));
+                    }
+                }
+                return true;
+            }
+        }
+    }
+}
@@ -32,10 +32,6 @@
 
 package rr.meta;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 
 import acme.util.Assert;
@@ -67,58 +63,39 @@ public class MetaDataInfoMaps {
 
     private static final GlobalMetaDataInfoDecorations globalDecorations;
 
-    static final private <T extends MetaDataInfo> MetaDataAllocator<T> read(final String name,
-            final ObjectInputStream in) throws Exception {
-        return Util.log(new TimedExpr<MetaDataAllocator<T>>("Loading " + name + "...") {
-            @Override
-            public MetaDataAllocator<T> run() throws Exception {
-                return (MetaDataAllocator<T>) in.readObject();
-            }
-        });
-    }
+    // The -meta file, from which classes are read as they are first asked for.
+    private static final MetaDataFile file;
 
     static {
+        classes = new MetaDataAllocator<ClassInfo>(new ClassInfo[0]);
+        fields = new MetaDataAllocator<FieldInfo>(new FieldInfo[0]);
+        methods = new MetaDataAllocator<MethodInfo>(new MethodInfo[0]);
+        acquires = new MetaDataAllocator<AcquireInfo>(new AcquireInfo[0]);
+        releases = new MetaDataAllocator<ReleaseInfo>(new ReleaseInfo[0]);
+        starts = new MetaDataAllocator<StartInfo>(new StartInfo[0]);
+        waits = new MetaDataAllocator<WaitInfo>(new WaitInfo[0]);
+        joins = new MetaDataAllocator<JoinInfo>(new JoinInfo[0]);
+        interrupts = new MetaDataAllocator<InterruptInfo>(new InterruptInfo[0]);
+        fieldAccesses = new MetaDataAllocator<FieldAccessInfo>(new FieldAccessInfo[0]);
+        arrayAccesses = new MetaDataAllocator<ArrayAccessInfo>(new ArrayAccessInfo[0]);
+        invokes = new MetaDataAllocator<InvokeInfo>(new InvokeInfo[0]);
+
+        opDecorations = new DecorationFactory<OperationInfo>();
+        globalDecorations = new GlobalMetaDataInfoDecorations();
+
         String s = metaOption.get();
         if (s == null) {
             Util.logf("Creating Fresh Meta Data");
-            classes = new MetaDataAllocator<ClassInfo>(new ClassInfo[0]);
-            fields = new MetaDataAllocator<FieldInfo>(new FieldInfo[0]);
-            methods = new MetaDataAllocator<MethodInfo>(new MethodInfo[0]);
-            acquires = new MetaDataAllocator<AcquireInfo>(new AcquireInfo[0]);
-            releases = new MetaDataAllocator<ReleaseInfo>(new ReleaseInfo[0]);
-            starts = new MetaDataAllocator<StartInfo>(new StartInfo[0]);
-            waits = new MetaDataAllocator<WaitInfo>(new WaitInfo[0]);
-            joins = new MetaDataAllocator<JoinInfo>(new JoinInfo[0]);
-            interrupts = new MetaDataAllocator<InterruptInfo>(new InterruptInfo[0]);
-            fieldAccesses = new MetaDataAllocator<FieldAccessInfo>(new FieldAccessInfo[0]);
-            arrayAccesses = new MetaDataAllocator<ArrayAccessInfo>(new ArrayAccessInfo[0]);
-            invokes = new MetaDataAllocator<InvokeInfo>(new InvokeInfo[0]);
-
-            opDecorations = new DecorationFactory<OperationInfo>();
-            globalDecorations = new GlobalMetaDataInfoDecorations();
-
+            file = null;
         } else {
+            final String name = s + "/rr.meta";
             try {
-                final String file = s + "/rr.meta";
-                Util.logf("Loading Meta Data from %s...", file);
-                ObjectInputStream in = new ObjectInputStream(new FileInputStream(file));
-                classes = read("classes", in);
-                fields = read("fields", in);
-                methods = read("methods", in);
-                acquires = read("acquires", in);
-                releases = read("releases", in);
-                starts = read("starts", in);
-                waits = read("waits", in);
-                joins = read("joins", in);
-                interrupts = read("interrupts", in);
-                fieldAccesses = read("field accesses", in);
-                arrayAccesses = read("array accesses", in);
-                invokes = read("invokes", in);
-
-                Util.log("decorations...");
-                opDecorations = (DecorationFactory<OperationInfo>) in.readObject();
-                globalDecorations = (GlobalMetaDataInfoDecorations) in.readObject();
-                in.close();
+                file = Util.log(new TimedExpr<MetaDataFile>("Opening Meta Data " + name) {
+                    @Override
+                    public MetaDataFile run() throws Exception {
+                        return MetaDataFile.open(name, getAllocators());
+                    }
+                });
             } catch (Exception e) {
                 Assert.panic(e);
                 throw new RuntimeException(e);
@@ -128,22 +105,10 @@ public class MetaDataInfoMaps {
 
     public static void dump(String file) {
         try {
-            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file));
-            out.writeObject(getClasses());
-            out.writeObject(getFields());
-            out.writeObject(getMethods());
-            out.writeObject(getAcquires());
-            out.writeObject(getReleases());
-            out.writeObject(getStarts());
-            out.writeObject(getWaits());
-            out.writeObject(getJoins());
-            out.writeObject(getInterrupts());
-            out.writeObject(getFieldAccesses());
-            out.writeObject(getArrayAccesses());
-            out.writeObject(getInvokes());
-            out.writeObject(getOpDecorations());
-            out.writeObject(getGlobalDecorations());
-            out.close();
+            if (MetaDataInfoMaps.file != null) {
+                MetaDataInfoMaps.file.readAll();
+            }
+            MetaDataFile.write(file, getAllocators());
         } catch (Exception e) {
             Assert.panic(e);
         }
@@ -208,41 +173,72 @@ public class MetaDataInfoMaps {
         }
     }
 
+    /*
+     * Classes are loaded, and so instrumented, by several threads at once. Each allocator is
+     * locked from a lookup that misses until the new entry is put, so that two threads never make
+     * different entries for one key, or entries with the same id. Lookups that hit take no lock.
+     */
+
     public static MethodInfo getMethod(ClassInfo rrType, String name, String signature) {
         Assert.assertTrue(signature != null);
-        MethodInfo x = getMethods().get(MetaDataInfoKeys.getMethodKey(rrType, name, signature));
+        final MetaDataAllocator<MethodInfo> methods = getMethods();
+        final String key = MetaDataInfoKeys.getMethodKey(rrType, name, signature);
+        MethodInfo x = methods.get(key);
         if (x == null) {
-            boolean isSynthetic = Constants.isSyntheticName(name);
-            x = new MethodInfo(getMethods().size(), SourceLocation.NULL, rrType, name, signature,
-                    isSynthetic);
-            getMethods().put(x);
+            synchronized (methods) {
+                x = methods.get(key);
+                if (x == null) {
+                    boolean isSynthetic = Constants.isSyntheticName(name);
+                    x = new MethodInfo(methods.nextId(key), SourceLocation.NULL, rrType, name,
+                            signature, isSynthetic);
+                    methods.put(x);
+                }
+            }
         }
         rrType.addMethod(x);
 
-        return x;
+        return MetaDataFragment.touch(x);
     }
 
     public static ClassInfo getClass(String className) {
-        ClassInfo x = getClasses().get(MetaDataInfoKeys.getClassKey(className));
+        final MetaDataAllocator<ClassInfo> classes = getClasses();
+        final String key = MetaDataInfoKeys.getClassKey(className);
+        ClassInfo x = classes.get(key);
+        if (x == null && file != null) {
+            // not under the allocator's lock, since reading a class makes other entries
+            x = file.getClass(className);
+        }
         if (x == null) {
-            // System.err.println("NOT FOUND:" + className);
-            boolean isSynthetic = Constants.isSyntheticName(className);
-            x = new ClassInfo(getClasses().size(), SourceLocation.NULL, className, isSynthetic);
-            getClasses().put(x);
+            synchronized (classes) {
+                x = classes.get(key);
+                if (x == null) {
+                    // System.err.println("NOT FOUND:" + className);
+                    boolean isSynthetic = Constants.isSyntheticName(className);
+                    x = new ClassInfo(classes.nextId(key), SourceLocation.NULL, className, isSynthetic);
+                    classes.put(x);
+                }
+            }
         }
-        return x;
+        return MetaDataFragment.touch(x);
     }
 
     public static FieldInfo getField(ClassInfo rrClass, String name, String descriptor) {
-        FieldInfo x = getFields().get(MetaDataInfoKeys.getFieldKey(rrClass, name, descriptor));
+        final MetaDataAllocator<FieldInfo> fields = getFields();
+        final String key = MetaDataInfoKeys.getFieldKey(rrClass, name, descriptor);
+        FieldInfo x = fields.get(key);
         if (x == null) {
-            boolean isSynthetic = Constants.isSyntheticName(name);
-            x = new FieldInfo(getFields().size(), SourceLocation.NULL, rrClass, name, descriptor,
-                    isSynthetic);
-            getFields().put(x);
+            synchronized (fields) {
+                x = fields.get(key);
+                if (x == null) {
+                    boolean isSynthetic = Constants.isSyntheticName(name);
+                    x = new FieldInfo(fields.nextId(key), SourceLocation.NULL, rrClass, name, descriptor,
+                            isSynthetic);
+                    fields.put(x);
+                }
+            }
         }
         rrClass.addField(x);
-        return x;
+        return MetaDataFragment.touch(x);
     }
 
     public static FieldInfo getField(String key) {
@@ -252,129 +248,176 @@ public class MetaDataInfoMaps {
     }
 
     public static AcquireInfo makeAcquire(SourceLocation loc, MethodInfo enclosing) {
-        AcquireInfo a;
-        while (true) {
-            a = getAcquires().get(MetaDataInfoKeys.getLockKey(loc, true));
-            if (a == null)
-                break;
-            // CS636: Include method information
-            loc = new SourceLocation(loc.getFile(), loc.getMethod(), loc.getLine(),
-                    loc.getOffset() + 1);
-            // Yikes.yikes("making bogus loc");
-        }
-        a = new AcquireInfo(getAcquires().size(), loc, enclosing);
-        getAcquires().put(a);
+        final MetaDataAllocator<AcquireInfo> acquires = getAcquires();
+        synchronized (acquires) {
+            AcquireInfo a;
+            String key;
+            while (true) {
+                key = MetaDataInfoKeys.getLockKey(loc, true);
+                a = acquires.get(key);
+                if (a == null)
+                    break;
+                // CS636: Include method information
+                loc = new SourceLocation(loc.getFile(), loc.getMethod(), loc.getLine(),
+                        loc.getOffset() + 1);
+                // Yikes.yikes("making bogus loc");
+            }
+            a = new AcquireInfo(acquires.nextId(key), loc, enclosing);
+            acquires.put(a);
 
-        return a;
+            return MetaDataFragment.touch(a);
+        }
     }
 
     public static ReleaseInfo makeRelease(SourceLocation loc, MethodInfo enclosing) {
-        ReleaseInfo a;
-        while (true) {
-            a = getReleases().get(MetaDataInfoKeys.getLockKey(loc, false));
-            if (a == null)
-                break;
-            // CS636: Include method info
-            loc = new SourceLocation(loc.getFile(), loc.getMethod(), loc.getLine(),
-                    loc.getOffset() + 1);
-            // Yikes.yikes("making bogus loc");
+        final MetaDataAllocator<ReleaseInfo> releases = getReleases();
+        synchronized (releases) {
+            ReleaseInfo a;
+            String key;
+            while (true) {
+                key = MetaDataInfoKeys.getLockKey(loc, false);
+                a = releases.get(key);
+                if (a == null)
+                    break;
+                // CS636: Include method info
+                loc = new SourceLocation(loc.getFile(), loc.getMethod(), loc.getLine(),
+                        loc.getOffset() + 1);
+                // Yikes.yikes("making bogus loc");
+            }
+            a = new ReleaseInfo(releases.nextId(key), loc, enclosing);
+            releases.put(a);
+            return MetaDataFragment.touch(a);
         }
-        a = new ReleaseInfo(getReleases().size(), loc, enclosing);
-        getReleases().put(a);
-        return a;
     }
 
     public static ArrayAccessInfo makeArrayAccess(SourceLocation loc, MethodInfo enclosing,
             boolean isWrite) {
-        ArrayAccessInfo a;
+        final MetaDataAllocator<ArrayAccessInfo> arrayAccesses = getArrayAccesses();
         // CS636: Include method info
         loc = new SourceLocation(loc.getFile(), loc.getMethod(), loc.getLine(), loc.getOffset());
-        while (true) {
-            a = getArrayAccesses().get(MetaDataInfoKeys.getArrayAccessKey(loc, isWrite));
-            if (a == null)
-                break;
-            // CS636: Include method info
-            loc = new SourceLocation(loc.getFile(), loc.getMethod(), loc.getLine(),
-                    loc.getOffset() + 1);
-            // Yikes.yikes("making bogus loc");
+        synchronized (arrayAccesses) {
+            ArrayAccessInfo a;
+            String key;
+            while (true) {
+                key = MetaDataInfoKeys.getArrayAccessKey(loc, isWrite);
+                a = arrayAccesses.get(key);
+                if (a == null)
+                    break;
+                // CS636: Include method info
+                loc = new SourceLocation(loc.getFile(), loc.getMethod(), loc.getLine(),
+                        loc.getOffset() + 1);
+                // Yikes.yikes("making bogus loc");
+            }
+            a = new ArrayAccessInfo(arrayAccesses.nextId(key), loc, enclosing, isWrite);
+            arrayAccesses.put(a);
+            return MetaDataFragment.touch(a);
         }
-        a = new ArrayAccessInfo(getArrayAccesses().size(), loc, enclosing, isWrite);
-        getArrayAccesses().put(a);
-        return a;
     }
 
     public static FieldAccessInfo makeFieldAccess(SourceLocation loc, MethodInfo enclosing,
             boolean isWrite, FieldInfo field) {
-        FieldAccessInfo a;
+        final MetaDataAllocator<FieldAccessInfo> fieldAccesses = getFieldAccesses();
         // CS636: Include method info
         loc = new SourceLocation(loc.getFile(), loc.getMethod(), loc.getLine(), loc.getOffset());
-        while (true) {
-            a = getFieldAccesses()
-                    .get(MetaDataInfoKeys.getFieldAccessKey(loc, enclosing, field, isWrite));
-            if (a == null)
-                break;
-            // CS636: Include method info
-            loc = new SourceLocation(loc.getFile(), loc.getMethod(), loc.getLine(),
-                    loc.getOffset() + 1);
-            // Yikes.yikes("making bogus loc");
+        synchronized (fieldAccesses) {
+            FieldAccessInfo a;
+            String key;
+            while (true) {
+                key = MetaDataInfoKeys.getFieldAccessKey(loc, enclosing, field, isWrite);
+                a = fieldAccesses.get(key);
+                if (a == null)
+                    break;
+                // CS636: Include method info
+                loc = new SourceLocation(loc.getFile(), loc.getMethod(), loc.getLine(),
+                        loc.getOffset() + 1);
+                // Yikes.yikes("making bogus loc");
+            }
+            a = new FieldAccessInfo(fieldAccesses.nextId(key), loc, enclosing, isWrite, field);
+            fieldAccesses.put(a);
+            return MetaDataFragment.touch(a);
         }
-        a = new FieldAccessInfo(getFieldAccesses().size(), loc, enclosing, isWrite, field);
-        getFieldAccesses().put(a);
-        return a;
     }
 
     public static JoinInfo makeJoin(SourceLocation loc, MethodInfo enclosing) {
-        JoinInfo a = getJoins().get(MetaDataInfoKeys.getJoinKey(loc));
-        if (a == null) {
-            a = new JoinInfo(getJoins().size(), loc, enclosing);
-            getJoins().put(a);
+        final MetaDataAllocator<JoinInfo> joins = getJoins();
+        synchronized (joins) {
+            final String key = MetaDataInfoKeys.getJoinKey(loc);
+            JoinInfo a = joins.get(key);
+            if (a == null) {
+                a = new JoinInfo(joins.nextId(key), loc, enclosing);
+                joins.put(a);
+            }
+            return MetaDataFragment.touch(a);
         }
-        return a;
     }
 
     public static StartInfo makeStart(SourceLocation loc, MethodInfo enclosing) {
-        StartInfo a = getStarts().get(MetaDataInfoKeys.getStartKey(loc));
-        if (a == null) {
-            a = new StartInfo(getStarts().size(), loc, enclosing);
-            getStarts().put(a);
+        final MetaDataAllocator<StartInfo> starts = getStarts();
+        synchronized (starts) {
+            final String key = MetaDataInfoKeys.getStartKey(loc);
+            StartInfo a = starts.get(key);
+            if (a == null) {
+                a = new StartInfo(starts.nextId(key), loc, enclosing);
+                starts.put(a);
+            }
+            return MetaDataFragment.touch(a);
         }
-        return a;
     }
 
     public static WaitInfo makeWait(SourceLocation loc, MethodInfo enclosing) {
-        WaitInfo a = getWaits().get(MetaDataInfoKeys.getWaitKey(loc));
-        if (a == null) {
-            a = new WaitInfo(getWaits().size(), loc, enclosing);
-            getWaits().put(a);
+        final MetaDataAllocator<WaitInfo> waits = getWaits();
+        synchronized (waits) {
+            final String key = MetaDataInfoKeys.getWaitKey(loc);
+            WaitInfo a = waits.get(key);
+            if (a == null) {
+                a = new WaitInfo(waits.nextId(key), loc, enclosing);
+                waits.put(a);
+            }
+            return MetaDataFragment.touch(a);
         }
-        return a;
     }
 
     public static InterruptInfo makeInterrupt(SourceLocation sourceLocation, MethodInfo method) {
-        InterruptInfo a = getInterrupts().get(MetaDataInfoKeys.getWaitKey(sourceLocation));
-        if (a == null) {
-            a = new InterruptInfo(getInterrupts().size(), sourceLocation, method);
-            getInterrupts().put(a);
+        final MetaDataAllocator<InterruptInfo> interrupts = getInterrupts();
+        synchronized (interrupts) {
+            final String key = MetaDataInfoKeys.getInterruptKey(sourceLocation);
+            InterruptInfo a = interrupts.get(key);
+            if (a == null) {
+                a = new InterruptInfo(interrupts.nextId(key), sourceLocation, method);
+                interrupts.put(a);
+            }
+            return MetaDataFragment.touch(a);
         }
-        return a;
     }
 
     public static InvokeInfo makeInvoke(SourceLocation loc, MethodInfo method,
             MethodInfo enclosing) {
-        InvokeInfo a;
         final MetaDataAllocator<InvokeInfo> invokes2 = getInvokes();
-        while (true) {
-            a = invokes2.get(MetaDataInfoKeys.getInvokeKey(loc, method));
-            if (a == null)
-                break;
-            // CS636: Include method info
-            loc = new SourceLocation(loc.getFile(), loc.getMethod(), loc.getLine(),
-                    loc.getOffset() + 1);
+        synchronized (invokes2) {
+            InvokeInfo a;
+            String key;
+            while (true) {
+                key = MetaDataInfoKeys.getInvokeKey(loc, method);
+                a = invokes2.get(key);
+                if (a == null)
+                    break;
+                // CS636: Include method info
+                loc = new SourceLocation(loc.getFile(), loc.getMethod(), loc.getLine(),
+                        loc.getOffset() + 1);
+            }
+            a = new InvokeInfo(invokes2.nextId(key), loc, method, enclosing);
+            invokes2.put(a);
+
+            return MetaDataFragment.touch(a);
         }
-        a = new InvokeInfo(invokes2.size(), loc, method, enclosing);
-        invokes2.put(a);
+    }
 
-        return a;
+    /**
+     * All the allocators, in a fixed order, for code that saves or reserves their ids.
+     */
+    public static MetaDataAllocator<?>[] getAllocators() {
+        return new MetaDataAllocator<?>[] { classes, fields, methods, acquires, releases, starts,
+                waits, joins, interrupts, fieldAccesses, arrayAccesses, invokes };
     }
 
     public static MetaDataAllocator<ClassInfo> getClasses() {
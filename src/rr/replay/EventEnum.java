@@ -65,4 +65,6 @@ public enum EventEnum {
 	CLASS_INITIALIZED,
 	STRING, 
 	FREE, 
+	ARRAY_ACCESS,
+	THREAD,
 }
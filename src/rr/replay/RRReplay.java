@@ -32,10 +32,8 @@
 
 package rr.replay;
 
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Vector;
 
 import acme.util.Assert;
@@ -60,6 +58,8 @@ import rr.meta.FieldInfo;
 import rr.meta.InterruptInfo;
 import rr.meta.InvokeInfo;
 import rr.meta.JoinInfo;
+import rr.meta.MetaDataAllocator;
+import rr.meta.MetaDataInfo;
 import rr.meta.MetaDataInfoMaps;
 import rr.meta.MetaDataInfoVisitor;
 import rr.meta.MethodInfo;
@@ -76,36 +76,66 @@ import rr.tool.RREventGenerator;
 
 /**
  * RRExperimental.
+ *
+ * Replays a trace recorded by ReplayLogTool (see TraceReader) through the tool chain.
  */
 public class RRReplay implements MetaDataInfoVisitor {
 
-	protected Vector<ShadowThread> threads = new Vector<ShadowThread>();
-	protected Vector<ReplayObject> objects = new Vector<ReplayObject>();
-	protected Vector<ReplayArray> arrays = new Vector<ReplayArray>();
+	protected ShadowThread[] threads = new ShadowThread[16];
+	// ShadowThreads only hold their Threads weakly, and reports name them.
+	protected Thread[] javaThreads = new Thread[16];
+	protected ReplayObject[] objects = new ReplayObject[1024];
+	protected ReplayArray[] arrays = new ReplayArray[1024];
 	protected Vector<ReplayBarrier> barriers = new Vector<ReplayBarrier>();
-	protected Vector<String> strings = new Vector<String>();
 	protected int eventCount;
 
-	protected final DataInputStream in;
+	protected final TraceReader in;
+
+	/**
+	 * The metadata for each key id in the trace, found by key the first time the id is used, so
+	 * that events do not look up strings.
+	 */
+	protected final class KeyTable<S extends MetaDataInfo> {
+		private final MetaDataAllocator<S> map;
+		private Object[] resolved = new Object[64];
+
+		KeyTable(MetaDataAllocator<S> map) {
+			this.map = map;
+		}
+
+		@SuppressWarnings("unchecked")
+		S get(int key) {
+			if (key >= resolved.length) {
+				resolved = Arrays.copyOf(resolved, Math.max(key + 1, resolved.length * 2));
+			}
+			S s = (S) resolved[key];
+			if (s == null) {
+				String k = in.string(key);
+				s = map.get(k);
+				Assert.assertTrue(s != null, "Bad MetaData for '" + k + "'");
+				resolved[key] = s;
+			}
+			return s;
+		}
+	}
+
+	protected final KeyTable<FieldAccessInfo> fieldAccesses = new KeyTable<FieldAccessInfo>(
+			MetaDataInfoMaps.getFieldAccesses());
+	protected final KeyTable<ArrayAccessInfo> arrayAccesses = new KeyTable<ArrayAccessInfo>(
+			MetaDataInfoMaps.getArrayAccesses());
+	protected final KeyTable<AcquireInfo> acquires = new KeyTable<AcquireInfo>(
+			MetaDataInfoMaps.getAcquires());
+	protected final KeyTable<ReleaseInfo> releases = new KeyTable<ReleaseInfo>(
+			MetaDataInfoMaps.getReleases());
+	protected final KeyTable<MethodInfo> methods = new KeyTable<MethodInfo>(
+			MetaDataInfoMaps.getMethods());
+	protected final KeyTable<JoinInfo> joins = new KeyTable<JoinInfo>(MetaDataInfoMaps.getJoins());
+	protected final KeyTable<WaitInfo> waits = new KeyTable<WaitInfo>(MetaDataInfoMaps.getWaits());
 
 	public RRReplay(String eventLog) throws IOException {
 		Util.log(eventLog);
-		in = new DataInputStream(new BufferedInputStream(new FileInputStream(eventLog)));
+		in = new TraceReader(eventLog);
 		Loader.addListener(this);
-
-		// Util.addToPeriodicTasks(new PeriodicTaskStmt("Replay Stats", 1000) {
-		// @Override
-		// public void run() throws Exception {
-		// Util.logf("---------------------------");
-		// Util.logf("Events %d", eventCount);
-		// Util.logf("Threads %d", threads.size());
-		// Util.logf("Objects %d", objects.size());
-		// Util.logf("Arrays %d", arrays.size());
-		// Util.logf("Barriers %d", barriers.size());
-		// Util.logf("Strings %d", strings.size());
-		// Util.logf("---------------------------");
-		// }
-		// });
 	}
 
 	boolean doIt = true;
@@ -126,97 +156,91 @@ public class RRReplay implements MetaDataInfoVisitor {
 
 	public synchronized void go() {
 		try {
+			for (int key : in.loadedClasses()) {
+				RRMain.loader.findClass(in.string(key));
+			}
+			if (RR.getTool() instanceof TraceAnalyzer) {
+				RR.startTimer();
+				((TraceAnalyzer) RR.getTool()).analyze(this);
+				RR.endTimer();
+				in.close();
+				return;
+			}
 			RR.startTimer();
 			boolean trackArrays = ArrayStateFactory.arrayOption
 					.get() != ArrayStateFactory.ArrayMode.NONE;
-			while (true) {
-				EventEnum event = EventEnum.values()[in.readInt()];
+			boolean trackMethods = !RR.noEnterOption.get();
+			TraceReader.Cursor c;
+			while ((c = in.next()) != null) {
 				eventCount++;
-				switch (event) {
-					case LOADCLASS: {
-						String className = readString();
-						RRMain.loader.findClass(className);
+				switch (c.event()) {
+					case THREAD: {
+						c.readThread();
 						break;
 					}
 					case CREATE: {
-						int thread = in.readInt();
-						Thread t = new Thread();
-						ShadowThread ts = ShadowThread.make(t, null);
-						put(thread, threads, ts);
+						thread(c.readId());
+						break;
+					}
+					case VOLATILE_ACCESS: {
+						int key = c.readId();
+						int target = c.readObject();
+						FieldAccessInfo fad = fieldAccesses.get(key);
+						final Object obj = object(target);
+						final ShadowVar state = fad.getField().getUpdater().getState(obj);
+						if (fad.isWrite()) {
+							if (doIt)
+								RREventGenerator.volatileWriteAccess(obj, state, fad.getId(),
+										thread(c.thread()));
+						} else {
+							if (doIt)
+								RREventGenerator.volatileReadAccess(obj, state, fad.getId(),
+										thread(c.thread()));
+						}
 						break;
 					}
 					case ACCESS: {
-						AccessEvent.Kind kind = AccessEvent.Kind.values()[in.readInt()];
-						int thread = in.readInt();
-						String accessKey = readString();
-						int target = in.readInt();
-						switch (kind) {
-							case VOLATILE: {
-								FieldAccessInfo fad = MetaDataInfoMaps.getFieldAccesses()
-										.get(accessKey);
-								Assert.assertTrue(fad != null, "Bad MetaData");
-								final Object obj = object(target);
-								final ShadowVar state = fad.getField().getUpdater().getState(obj);
-								if (fad.isWrite()) {
-									if (doIt)
-										RREventGenerator.volatileWriteAccess(obj, state,
-												fad.getId(), thread(thread));
-								} else {
-									if (doIt)
-										RREventGenerator.volatileReadAccess(obj, state, fad.getId(),
-												thread(thread));
-								}
-								break;
-							}
-							case FIELD: {
-								FieldAccessInfo fad = MetaDataInfoMaps.getFieldAccesses()
-										.get(accessKey);
-								Assert.assertTrue(fad != null, "Bad MetaData");
-								final Object obj = object(target);
-								final ShadowVar state = fad.getField().getUpdater().getState(obj);
-								if (fad.isWrite()) {
-									if (doIt) {
-										RREventGenerator.writeAccess(obj, state, fad.getId(),
-												thread(thread));
-									}
-								} else {
-									if (doIt)
-										RREventGenerator.readAccess(obj, state, fad.getId(),
-												thread(thread));
-								}
-								break;
-							}
-							case ARRAY: {
-								ArrayAccessInfo fad = MetaDataInfoMaps.getArrayAccesses()
-										.get(accessKey);
-								int index = in.readInt();
-								if (!trackArrays) {
-									break;
-								}
-								Assert.assertTrue(fad != null, "Bad MetaData for " + accessKey);
-								if (fad.isWrite()) {
-									if (doIt)
-										RREventGenerator.arrayWrite(array(target), index,
-												fad.getId(), thread(thread), array(target));
-								} else {
-									if (doIt)
-										RREventGenerator.arrayRead(array(target), index,
-												fad.getId(), thread(thread), array(target));
-								}
-								break;
+						int key = c.readId();
+						int target = c.readObject();
+						FieldAccessInfo fad = fieldAccesses.get(key);
+						final Object obj = object(target);
+						final ShadowVar state = fad.getField().getUpdater().getState(obj);
+						if (fad.isWrite()) {
+							if (doIt) {
+								RREventGenerator.writeAccess(obj, state, fad.getId(),
+										thread(c.thread()));
 							}
+						} else {
+							if (doIt)
+								RREventGenerator.readAccess(obj, state, fad.getId(),
+										thread(c.thread()));
+						}
+						break;
+					}
+					case ARRAY_ACCESS: {
+						int key = c.readId();
+						int target = c.readObject();
+						int index = c.readIndex();
+						if (!trackArrays) {
+							break;
+						}
+						ArrayAccessInfo fad = arrayAccesses.get(key);
+						if (fad.isWrite()) {
+							if (doIt)
+								RREventGenerator.arrayWrite(array(target), index, fad.getId(),
+										thread(c.thread()), array(target));
+						} else {
+							if (doIt)
+								RREventGenerator.arrayRead(array(target), index, fad.getId(),
+										thread(c.thread()), array(target));
 						}
 						break;
 					}
 
 					case ACQUIRE: {
-						int thread = in.readInt();
-						String accessKey = readString();
-						AcquireInfo fad = MetaDataInfoMaps.getAcquires().get(accessKey);
-						Assert.assertTrue(fad != null, "Bad MetaData for '" + accessKey + "'");
-						int obj = in.readInt();
-						ReplayObject object = object(obj);
-						ShadowThread td = thread(thread);
+						AcquireInfo fad = acquires.get(c.readId());
+						ReplayObject object = object(c.readObject());
+						ShadowThread td = thread(c.thread());
 						AcquireEvent ae = td.getAcquireEvent();
 						ae.setInfo(fad);
 						ae.setLock(ShadowLock.get(object));
@@ -225,13 +249,9 @@ public class RRReplay implements MetaDataInfoVisitor {
 						break;
 					}
 					case RELEASE: {
-						int thread = in.readInt();
-						String accessKey = readString();
-						ReleaseInfo fad = MetaDataInfoMaps.getReleases().get(accessKey);
-						Assert.assertTrue(fad != null, "Bad MetaData for '" + accessKey + "'");
-						int obj = in.readInt();
-						ReplayObject object = object(obj);
-						ShadowThread td = thread(thread);
+						ReleaseInfo fad = releases.get(c.readId());
+						ReplayObject object = object(c.readObject());
+						ShadowThread td = thread(c.thread());
 						ReleaseEvent ae = td.getReleaseEvent();
 						ae.setInfo(fad);
 						ae.setLock(ShadowLock.get(object));
@@ -240,38 +260,26 @@ public class RRReplay implements MetaDataInfoVisitor {
 						break;
 					}
 					case ENTER: {
-						int thread = in.readInt();
-						String accessKey = readString();
-						MethodInfo fad = MetaDataInfoMaps.getMethods().get(accessKey);
-						Assert.assertTrue(fad != null, "Bad MetaData for " + accessKey);
-						int obj = in.readInt();
-						if (doIt)
-							RREventGenerator.enter(object(obj), fad.getId(), thread(thread));
+						MethodInfo fad = methods.get(c.readId());
+						int obj = c.readObject();
+						if (doIt && trackMethods)
+							RREventGenerator.enter(object(obj), fad.getId(), thread(c.thread()));
 						break;
 					}
 					case EXIT: {
-						int thread = in.readInt();
-						String accessKey = readString();
-						MethodInfo fad = MetaDataInfoMaps.getMethods().get(accessKey);
-						Assert.assertTrue(fad != null, "Bad MetaData for " + accessKey);
-						int obj = in.readInt();
-						if (doIt)
-							RREventGenerator.exit(thread(thread));
+						if (doIt && trackMethods)
+							RREventGenerator.exit(thread(c.thread()));
 						break;
 					}
 
 					case STOP: {
-						int thread = in.readInt();
-						thread(thread).terminate();
+						thread(c.readId()).terminate();
 						break;
 					}
 
 					case PRESTART: {
-						int thread = in.readInt();
-
-						int newThread = in.readInt();
-
-						ShadowThread td = thread(thread);
+						int newThread = c.readId();
+						ShadowThread td = thread(c.thread());
 						StartEvent se = td.getStartEvent();
 						se.setNewThread(thread(newThread));
 						if (doIt)
@@ -280,10 +288,8 @@ public class RRReplay implements MetaDataInfoVisitor {
 
 					}
 					case POSTSTART: {
-						int thread = in.readInt();
-						int newThread = in.readInt();
-
-						ShadowThread td = thread(thread);
+						int newThread = c.readId();
+						ShadowThread td = thread(c.thread());
 						StartEvent se = td.getStartEvent();
 						se.setNewThread(thread(newThread));
 						if (doIt)
@@ -293,46 +299,40 @@ public class RRReplay implements MetaDataInfoVisitor {
 					}
 
 					case PRESLEEP: {
-						int thread = in.readInt();
-						SleepEvent sleepEvent = thread(thread).getSleepEvent();
+						SleepEvent sleepEvent = thread(c.thread()).getSleepEvent();
 						if (doIt)
 							RR.getTool().preSleep(sleepEvent);
 						break;
 					}
 					case POSTSLEEP: {
-						int thread = in.readInt();
-						SleepEvent sleepEvent = thread(thread).getSleepEvent();
+						SleepEvent sleepEvent = thread(c.thread()).getSleepEvent();
 						if (doIt)
 							RR.getTool().postSleep(sleepEvent);
 						break;
 					}
 
 					case PREBARRIER: {
-						int td = in.readInt();
-						int barrier = in.readInt();
-						int parties = in.readInt();
+						int barrier = c.readObject();
+						int parties = c.readId();
 						if (doIt)
 							SpecialMethods.invoke("ReplayBarrier.await()V", true,
-									barrier(barrier, parties), thread(td));
+									barrier(barrier, parties), thread(c.thread()));
 						break;
 					}
 					case POSTBARRIER: {
-						int td = in.readInt();
-						int barrier = in.readInt();
-						int parties = in.readInt();
+						int barrier = c.readObject();
+						int parties = c.readId();
 						if (doIt)
 							SpecialMethods.invoke("ReplayBarrier.await()V", false,
-									barrier(barrier, parties), thread(td));
+									barrier(barrier, parties), thread(c.thread()));
 						break;
 					}
 
 					case PREJOIN: {
-						ShadowThread td = thread(in.readInt());
-						String accessKey = readString();
-						JoinInfo fad = MetaDataInfoMaps.getJoins().get(accessKey);
-						Assert.assertTrue(fad != null, "Bad MetaData for " + accessKey);
+						ShadowThread td = thread(c.thread());
+						JoinInfo fad = joins.get(c.readId());
 
-						ShadowThread joiningThread = thread(in.readInt());
+						ShadowThread joiningThread = thread(c.readId());
 
 						JoinEvent je = td.getJoinEvent();
 						je.setJoiningThread(joiningThread);
@@ -344,12 +344,10 @@ public class RRReplay implements MetaDataInfoVisitor {
 					}
 
 					case POSTJOIN: {
-						ShadowThread td = thread(in.readInt());
-						String accessKey = readString();
-						JoinInfo fad = MetaDataInfoMaps.getJoins().get(accessKey);
-						Assert.assertTrue(fad != null, "Bad MetaData for " + accessKey);
+						ShadowThread td = thread(c.thread());
+						JoinInfo fad = joins.get(c.readId());
 
-						ShadowThread joiningThread = thread(in.readInt());
+						ShadowThread joiningThread = thread(c.readId());
 
 						JoinEvent je = td.getJoinEvent();
 						je.setJoiningThread(joiningThread);
@@ -361,9 +359,9 @@ public class RRReplay implements MetaDataInfoVisitor {
 					}
 
 					case PRENOTIFY: {
-						ShadowThread td = thread(in.readInt());
-						Object o = object(in.readInt());
-						boolean all = in.readBoolean();
+						ShadowThread td = thread(c.thread());
+						Object o = object(c.readObject());
+						boolean all = c.readBoolean();
 						NotifyEvent ne = td.getNotifyEvent();
 
 						ne.setLock(ShadowLock.get(o));
@@ -374,9 +372,9 @@ public class RRReplay implements MetaDataInfoVisitor {
 						break;
 					}
 					case POSTNOTIFY: {
-						ShadowThread td = thread(in.readInt());
-						Object o = object(in.readInt());
-						boolean all = in.readBoolean();
+						ShadowThread td = thread(c.thread());
+						Object o = object(c.readObject());
+						boolean all = c.readBoolean();
 						NotifyEvent ne = td.getNotifyEvent();
 
 						ne.setLock(ShadowLock.get(o));
@@ -387,12 +385,10 @@ public class RRReplay implements MetaDataInfoVisitor {
 						break;
 					}
 					case PREWAIT: {
-						ShadowThread td = thread(in.readInt());
-						String accessKey = readString();
-						WaitInfo fad = MetaDataInfoMaps.getWaits().get(accessKey);
-						Assert.assertTrue(fad != null, "Bad MetaData for " + accessKey);
+						ShadowThread td = thread(c.thread());
+						WaitInfo fad = waits.get(c.readId());
 
-						Object o = object(in.readInt());
+						Object o = object(c.readObject());
 
 						WaitEvent je = td.getWaitEvent();
 						je.setInfo(fad);
@@ -402,12 +398,10 @@ public class RRReplay implements MetaDataInfoVisitor {
 						break;
 					}
 					case POSTWAIT: {
-						ShadowThread td = thread(in.readInt());
-						String accessKey = readString();
-						WaitInfo fad = MetaDataInfoMaps.getWaits().get(accessKey);
-						Assert.assertTrue(fad != null, "Bad MetaData for " + accessKey);
+						ShadowThread td = thread(c.thread());
+						WaitInfo fad = waits.get(c.readId());
 
-						Object o = object(in.readInt());
+						Object o = object(c.readObject());
 
 						WaitEvent je = td.getWaitEvent();
 						je.setInfo(fad);
@@ -418,8 +412,8 @@ public class RRReplay implements MetaDataInfoVisitor {
 					}
 
 					case CLASS_INITIALIZED: {
-						ShadowThread td = thread(in.readInt());
-						String classKey = readString();
+						ShadowThread td = thread(c.thread());
+						String classKey = in.string(c.readId());
 						ClassInitializedEvent ce = td.getClassInitEvent();
 						ce.setRRClass(MetaDataInfoMaps.getClass(classKey));
 						if (doIt)
@@ -427,61 +421,83 @@ public class RRReplay implements MetaDataInfoVisitor {
 						break;
 					}
 
-					case STRING: {
-						String s = in.readUTF();
-						strings.add(s);
-						break;
-					}
-
 					case FREE: {
-						int id = in.readInt();
-						if (doIt && objects.size() > id)
-							objects.set(id, null);
-						if (doIt && arrays.size() > id)
-							arrays.set(id, null);
+						int id = c.readId();
+						if (doIt && objects.length > id)
+							objects[id] = null;
+						if (doIt && arrays.length > id)
+							arrays[id] = null;
 						break;
 					}
 
 					case QUIT: {
-						RR.endTimer();
-						return;
+						break;
 					}
 					default:
-						throw new RuntimeException("Bad Event " + event);
+						throw new RuntimeException("Bad Event " + c.event());
 
 				}
 			}
+			RR.endTimer();
+			in.close();
 		} catch (Throwable e) {
 			Assert.panic(new Throwable(
 					"Replay Error (" + e.getClass() + ") on Event " + eventCount + ": " + e, e));
 		}
 	}
 
-	private synchronized String readString() throws IOException {
-		int key = in.readInt();
-		return strings.get(key);
+	/*
+	 * For TraceAnalyzers. Like the rest of RRReplay, these may only be used by the thread running
+	 * go().
+	 */
+
+	public TraceReader getTrace() {
+		return in;
 	}
 
-	private synchronized ShadowThread thread(int thread) {
-		ShadowThread ts = threads.get(thread);
-		Assert.assertTrue(ts != null);
+	public FieldAccessInfo getFieldAccess(int key) {
+		return fieldAccesses.get(key);
+	}
+
+	public ArrayAccessInfo getArrayAccess(int key) {
+		return arrayAccesses.get(key);
+	}
+
+	public ShadowThread getThread(int thread) {
+		return thread(thread);
+	}
+
+	private ShadowThread thread(int thread) {
+		if (thread >= threads.length) {
+			threads = Arrays.copyOf(threads, Math.max(thread + 1, threads.length * 2));
+			javaThreads = Arrays.copyOf(javaThreads, threads.length);
+		}
+		ShadowThread ts = threads[thread];
+		if (ts == null) {
+			javaThreads[thread] = new Thread();
+			ts = threads[thread] = ShadowThread.make(javaThreads[thread], null);
+		}
 		return ts;
 	}
 
-	private synchronized ReplayObject object(final int target) {
-		ReplayObject o = get(target, objects);
+	private ReplayObject object(final int target) {
+		if (target >= objects.length) {
+			objects = Arrays.copyOf(objects, Math.max(target + 1, objects.length * 2));
+		}
+		ReplayObject o = objects[target];
 		if (o == null) {
-			o = new ReplayObject(target);
-			put(target, objects, o);
+			o = objects[target] = new ReplayObject(target);
 		}
 		return o;
 	}
 
-	private synchronized ReplayArray array(final int target) {
-		ReplayArray o = get(target, arrays);
+	private ReplayArray array(final int target) {
+		if (target >= arrays.length) {
+			arrays = Arrays.copyOf(arrays, Math.max(target + 1, arrays.length * 2));
+		}
+		ReplayArray o = arrays[target];
 		if (o == null) {
-			o = new ReplayArray(target);
-			put(target, arrays, o);
+			o = arrays[target] = new ReplayArray(target);
 		}
 		return o;
 	}
@@ -0,0 +1,116 @@
+/******************************************************************************
+ *
+ * Copyright (c) 2010, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ ******************************************************************************/
+
+package rr.replay;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of the events.rrlog trace written by ReplayLogTool and read by TraceReader.
+ *
+ * The file is a header (MAGIC, VERSION) followed by chunks, each an int segment id, an int
+ * length, and that many bytes of records. Every thread that logs events owns a segment and
+ * buffers its records, so threads only meet when they append a full chunk. Segment 0 is the
+ * dictionary: STRING definitions and LOADCLASS records, which are written before any record that
+ * uses them.
+ *
+ * A record is an EventEnum ordinal in one byte, then, for synchronization events (see isSync), the
+ * varint difference between its global stamp and the segment's previous stamp, then its operands.
+ * Ids are varints, object ids and array indices are zigzag varint differences from the segment's
+ * previous object id and index. A segment's THREAD records say which thread the following records
+ * are about. Records never span chunks. See TraceWriter for the operands of each event.
+ */
+public final class TraceFormat {
+
+	public static final int MAGIC = 0x52524c32; // "RRL2"
+	public static final int VERSION = 1;
+
+	public static final int HEADER_SIZE = 8;
+	public static final int CHUNK_HEADER_SIZE = 8;
+
+	public static final int DICTIONARY = 0;
+
+	/** Largest encoded record, other than dictionary STRINGs. */
+	public static final int MAX_RECORD = 64;
+
+	public static final EventEnum[] EVENTS = EventEnum.values();
+
+	private static final boolean[] sync = new boolean[EVENTS.length];
+	static {
+		for (EventEnum e : new EventEnum[] { EventEnum.THREAD, EventEnum.CREATE, EventEnum.STOP,
+				EventEnum.VOLATILE_ACCESS, EventEnum.ACQUIRE, EventEnum.RELEASE, EventEnum.PREJOIN,
+				EventEnum.POSTJOIN, EventEnum.PRENOTIFY, EventEnum.POSTNOTIFY, EventEnum.PRESLEEP,
+				EventEnum.POSTSLEEP, EventEnum.PRESTART, EventEnum.POSTSTART, EventEnum.PREWAIT,
+				EventEnum.POSTWAIT, EventEnum.PREBARRIER, EventEnum.POSTBARRIER,
+				EventEnum.CLASS_INITIALIZED, EventEnum.FREE, EventEnum.QUIT }) {
+			sync[e.ordinal()] = true;
+		}
+	}
+
+	/** True if the event carries a stamp and so orders the segments around it. */
+	public static boolean isSync(int ordinal) {
+		return sync[ordinal];
+	}
+
+	/** Write v as a varint at buf[pos], returning the new position. */
+	public static int putVarint(byte[] buf, int pos, long v) {
+		while ((v & ~0x7FL) != 0) {
+			buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buf[pos++] = (byte) v;
+		return pos;
+	}
+
+	public static long getVarint(ByteBuffer buf) {
+		long v = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buf.get();
+			v |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return v;
+	}
+
+	public static long zigzag(long v) {
+		return (v << 1) ^ (v >> 63);
+	}
+
+	public static long unzigzag(long v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private TraceFormat() {
+	}
+}
@@ -0,0 +1,256 @@
+/******************************************************************************
+ *
+ * Copyright (c) 2010, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ ******************************************************************************/
+
+package rr.replay;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+import java.util.Vector;
+
+import acme.util.Assert;
+import acme.util.Util;
+
+/**
+ * Reads a trace written by TraceWriter. The file is memory mapped, and records are decoded in
+ * place from the mapped chunks. The constructor reads the dictionary and indexes the chunks of
+ * every segment. next() then merges the segments: it repeatedly takes the segment whose
+ * next synchronization event has the smallest stamp, returns that event, and then returns the
+ * segment's unstamped events up to its next synchronization event. Events between two of a
+ * thread's synchronization events are only ordered against other threads by those events, so
+ * this order has the same happens-before relation as the recorded run.
+ */
+public final class TraceReader {
+
+	/** Largest region mapped at once. Chunks never span regions. */
+	private static final long REGION = 1L << 30;
+
+	private final FileChannel channel;
+	private final Vector<String> strings = new Vector<String>();
+	private final ArrayList<Integer> loadedClasses = new ArrayList<Integer>();
+	private final ArrayList<Cursor> cursors = new ArrayList<Cursor>();
+
+	private final PriorityQueue<Cursor> ready = new PriorityQueue<Cursor>();
+	private Cursor current;
+
+	public TraceReader(String fileName) throws IOException {
+		channel = new RandomAccessFile(fileName, "r").getChannel();
+		long size = channel.size();
+		long regionStart = 0;
+		ByteBuffer region = map(regionStart, size);
+		if (size < TraceFormat.HEADER_SIZE || region.getInt(0) != TraceFormat.MAGIC
+				|| region.getInt(4) != TraceFormat.VERSION) {
+			Assert.fail("%s is not a version %d RoadRunner trace.  Record it again with -tool=LOG.",
+					fileName, TraceFormat.VERSION);
+		}
+		long offset = TraceFormat.HEADER_SIZE;
+		while (offset < size) {
+			if (offset + TraceFormat.CHUNK_HEADER_SIZE > size) {
+				Util.log("Ignoring truncated chunk at end of trace");
+				break;
+			}
+			if (offset + TraceFormat.CHUNK_HEADER_SIZE > regionStart + region.capacity()) {
+				region = map(regionStart = offset, size);
+			}
+			int position = (int) (offset - regionStart);
+			int segment = region.getInt(position);
+			int length = region.getInt(position + 4);
+			long end = offset + TraceFormat.CHUNK_HEADER_SIZE + length;
+			if (end > size) {
+				Util.log("Ignoring truncated chunk at end of trace");
+				break;
+			}
+			if (end > regionStart + region.capacity()) {
+				region = map(regionStart = offset, size);
+				position = 0;
+			}
+			ByteBuffer chunk = slice(region, position + TraceFormat.CHUNK_HEADER_SIZE, length);
+			if (segment == TraceFormat.DICTIONARY) {
+				readDictionary(chunk);
+			} else {
+				while (cursors.size() <= segment) {
+					cursors.add(null);
+				}
+				Cursor c = cursors.get(segment);
+				if (c == null) {
+					cursors.set(segment, c = new Cursor());
+				}
+				c.chunks.add(chunk);
+			}
+			offset = end;
+		}
+		for (Cursor c : cursors) {
+			if (c != null && c.advance()) {
+				ready.add(c);
+			}
+		}
+	}
+
+	private ByteBuffer map(long offset, long size) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(REGION, size - offset));
+	}
+
+	private static ByteBuffer slice(ByteBuffer region, int position, int length) {
+		ByteBuffer b = region.duplicate();
+		b.position(position);
+		b.limit(position + length);
+		return b.slice();
+	}
+
+	private void readDictionary(ByteBuffer buf) {
+		Charset utf8 = Charset.forName("UTF-8");
+		while (buf.hasRemaining()) {
+			EventEnum e = TraceFormat.EVENTS[buf.get()];
+			switch (e) {
+				case STRING: {
+					int id = (int) TraceFormat.getVarint(buf);
+					int length = (int) TraceFormat.getVarint(buf);
+					byte[] utf = new byte[length];
+					buf.get(utf);
+					if (strings.size() <= id) {
+						strings.setSize(id + 1);
+					}
+					strings.set(id, new String(utf, utf8));
+					break;
+				}
+				case LOADCLASS:
+					loadedClasses.add((int) TraceFormat.getVarint(buf));
+					break;
+				default:
+					Assert.fail("Bad dictionary record " + e);
+			}
+		}
+	}
+
+	public String string(int id) {
+		return strings.get(id);
+	}
+
+	/** Keys of the classes loaded during the run, in load order. */
+	public ArrayList<Integer> loadedClasses() {
+		return loadedClasses;
+	}
+
+	/**
+	 * The cursor for the next event in merged order, with the event's operands left to read, or
+	 * null at the end of the trace. The caller must read all of an event's operands before calling
+	 * next() again.
+	 */
+	public Cursor next() {
+		if (current != null) {
+			if (!current.advance()) {
+				current = null;
+			} else if (current.stamped) {
+				ready.add(current);
+				current = null;
+			}
+		}
+		if (current == null) {
+			current = ready.poll();
+		}
+		return current;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	public final class Cursor implements Comparable<Cursor> {
+		private final ArrayList<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+		private int nextChunk;
+		private ByteBuffer buf = ByteBuffer.allocate(0);
+
+		private EventEnum event;
+		private boolean stamped;
+		private long stamp;
+		private int thread;
+		private int lastObject;
+		private int lastIndex;
+
+		/** Read the next event of this segment, and its stamp. Returns false at its end. */
+		boolean advance() {
+			while (!buf.hasRemaining()) {
+				if (nextChunk == chunks.size()) {
+					return false;
+				}
+				buf = chunks.get(nextChunk);
+				chunks.set(nextChunk++, null);
+			}
+			event = TraceFormat.EVENTS[buf.get()];
+			stamped = TraceFormat.isSync(event.ordinal());
+			if (stamped) {
+				stamp += TraceFormat.getVarint(buf);
+			}
+			return true;
+		}
+
+		public EventEnum event() {
+			return event;
+		}
+
+		/** The thread the event is about, as set by the last THREAD event. */
+		public int thread() {
+			return thread;
+		}
+
+		public int readId() {
+			return (int) TraceFormat.getVarint(buf);
+		}
+
+		public int readObject() {
+			lastObject += (int) TraceFormat.unzigzag(TraceFormat.getVarint(buf));
+			return lastObject;
+		}
+
+		public int readIndex() {
+			lastIndex += (int) TraceFormat.unzigzag(TraceFormat.getVarint(buf));
+			return lastIndex;
+		}
+
+		public boolean readBoolean() {
+			return buf.get() != 0;
+		}
+
+		/** Handle a THREAD event. */
+		public void readThread() {
+			thread = readId() - 1;
+		}
+
+		public int compareTo(Cursor other) {
+			return stamp < other.stamp ? -1 : (stamp == other.stamp ? 0 : 1);
+		}
+	}
+}
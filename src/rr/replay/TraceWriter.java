@@ -0,0 +1,246 @@
+/******************************************************************************
+ *
+ * Copyright (c) 2010, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ ******************************************************************************/
+
+package rr.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import acme.util.Assert;
+
+/**
+ * Writes a trace in the format described by TraceFormat. Each thread writes into its own Segment,
+ * which must be locked around each record:
+ *
+ * <pre>
+ * Segment out = writer.segment();
+ * synchronized (out) {
+ * 	if (out.isOpen()) {
+ * 		out.syncEvent(EventEnum.ACQUIRE, thread);
+ * 		out.writeId(key);
+ * 		out.writeObject(object);
+ * 	}
+ * }
+ * </pre>
+ *
+ * Only the owning thread and close() ever take a segment's lock, so it is not contended.
+ */
+public final class TraceWriter {
+
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	private final DataOutputStream out;
+	private final AtomicLong clock = new AtomicLong();
+	private final AtomicInteger segmentCount = new AtomicInteger(TraceFormat.DICTIONARY + 1);
+	private final ConcurrentLinkedQueue<Segment> segments = new ConcurrentLinkedQueue<Segment>();
+	private final ThreadLocal<Segment> localSegment = new ThreadLocal<Segment>();
+	private final ConcurrentHashMap<String, Integer> strings = new ConcurrentHashMap<String, Integer>();
+	private volatile boolean open = true;
+
+	public TraceWriter(String fileName) throws IOException {
+		out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(fileName), CHUNK_SIZE * 4));
+		out.writeInt(TraceFormat.MAGIC);
+		out.writeInt(TraceFormat.VERSION);
+	}
+
+	/** The calling thread's segment. */
+	public Segment segment() {
+		Segment s = localSegment.get();
+		if (s == null) {
+			s = new Segment(segmentCount.getAndIncrement());
+			localSegment.set(s);
+			segments.add(s);
+		}
+		return s;
+	}
+
+	/**
+	 * The id for s, defining it in the dictionary the first time. The definition is written before
+	 * the id is published, so it always precedes any chunk that uses the id.
+	 */
+	public int stringKey(String s) {
+		Integer x = strings.get(s);
+		if (x == null) {
+			synchronized (strings) {
+				x = strings.get(s);
+				if (x == null) {
+					x = strings.size();
+					byte[] utf = s.getBytes(java.nio.charset.Charset.forName("UTF-8"));
+					byte[] record = new byte[1 + 10 + 5 + utf.length];
+					record[0] = (byte) EventEnum.STRING.ordinal();
+					int pos = TraceFormat.putVarint(record, 1, x);
+					pos = TraceFormat.putVarint(record, pos, utf.length);
+					System.arraycopy(utf, 0, record, pos, utf.length);
+					writeChunk(TraceFormat.DICTIONARY, record, pos + utf.length);
+					strings.put(s, x);
+				}
+			}
+		}
+		return x;
+	}
+
+	/** Record that a class was loaded, so that replay can load it before using its metadata. */
+	public void loadClass(String className) {
+		int key = stringKey(className);
+		byte[] record = new byte[1 + 5];
+		record[0] = (byte) EventEnum.LOADCLASS.ordinal();
+		writeChunk(TraceFormat.DICTIONARY, record, TraceFormat.putVarint(record, 1, key));
+	}
+
+	private synchronized void writeChunk(int segment, byte[] buf, int len) {
+		if (!open) return;
+		try {
+			out.writeInt(segment);
+			out.writeInt(len);
+			out.write(buf, 0, len);
+		} catch (IOException e) {
+			Assert.fail(e);
+		}
+	}
+
+	/** Total records written, including dictionary records. */
+	public long eventCount() {
+		long n = strings.size();
+		for (Segment s : segments) {
+			n += s.count;
+		}
+		return n;
+	}
+
+	/** Flush every segment and close the file. Later records are dropped. */
+	public void close() {
+		for (Segment s : segments) {
+			synchronized (s) {
+				s.flush();
+				s.closed = true;
+			}
+		}
+		synchronized (this) {
+			open = false;
+			try {
+				out.close();
+			} catch (IOException e) {
+				Assert.fail(e);
+			}
+		}
+	}
+
+	public final class Segment {
+		private final int id;
+		private final byte[] buf = new byte[CHUNK_SIZE];
+		private int pos;
+		private boolean closed;
+
+		private boolean fresh = true;
+		private int thread;
+		private long lastStamp;
+		private int lastObject;
+		private int lastIndex;
+
+		long count;
+
+		Segment(int id) {
+			this.id = id;
+		}
+
+		public boolean isOpen() {
+			return !closed && open;
+		}
+
+		/** Start a record for an event with no stamp. */
+		public void event(EventEnum e, int thread) {
+			begin(e, thread);
+		}
+
+		/** Start a record for a synchronization event, stamping it from the global clock. */
+		public void syncEvent(EventEnum e, int thread) {
+			begin(e, thread);
+			stamp();
+		}
+
+		private void begin(EventEnum e, int thread) {
+			if (pos > CHUNK_SIZE - 2 * TraceFormat.MAX_RECORD) {
+				flush();
+			}
+			if (fresh || thread != this.thread) {
+				// segments start with a THREAD record, so that their first records are ordered
+				// after the events that created the thread.
+				fresh = false;
+				this.thread = thread;
+				buf[pos++] = (byte) EventEnum.THREAD.ordinal();
+				stamp();
+				writeId(thread + 1);
+				count++;
+			}
+			buf[pos++] = (byte) e.ordinal();
+			count++;
+		}
+
+		private void stamp() {
+			long stamp = clock.getAndIncrement();
+			pos = TraceFormat.putVarint(buf, pos, stamp - lastStamp);
+			lastStamp = stamp;
+		}
+
+		public void writeId(int id) {
+			pos = TraceFormat.putVarint(buf, pos, id & 0xFFFFFFFFL);
+		}
+
+		public void writeObject(int object) {
+			pos = TraceFormat.putVarint(buf, pos, TraceFormat.zigzag(object - lastObject));
+			lastObject = object;
+		}
+
+		public void writeIndex(int index) {
+			pos = TraceFormat.putVarint(buf, pos, TraceFormat.zigzag(index - lastIndex));
+			lastIndex = index;
+		}
+
+		public void writeBoolean(boolean b) {
+			buf[pos++] = (byte) (b ? 1 : 0);
+		}
+
+		void flush() {
+			if (pos > 0) {
+				writeChunk(id, buf, pos);
+				pos = 0;
+			}
+		}
+	}
+}
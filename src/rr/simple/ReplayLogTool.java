@@ -32,12 +32,11 @@
 
 package rr.simple;
 
-import java.io.BufferedOutputStream;
-import java.io.DataOutputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.IdentityHashMap;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import acme.util.Assert;
 import acme.util.Util;
@@ -76,53 +75,62 @@ import rr.meta.StartInfo;
 import rr.meta.WaitInfo;
 import rr.replay.EventEnum;
 import rr.replay.ReplayBarrier;
+import rr.replay.TraceWriter;
 import rr.state.ShadowThread;
 import rr.tool.RR;
 import rr.tool.Tool;
 
 /**
  * Used to create a log to for trace replaying. Not stable.
+ *
+ * Each thread writes its events into its own segment of events.rrlog (see TraceWriter), so
+ * logging does not serialize the target's threads. Object ids are weak: when an object is
+ * collected, its id comes off a reference queue and a FREE event is logged for it.
  */
 
 @Abbrev("LOG")
 final public class ReplayLogTool extends Tool
 		implements MetaDataInfoVisitor, BarrierListener<ReplayBarrier> {
 
-	protected static int count = 0;
+	private static final int STRIPES = 64;
 
-	private class MonitoredInteger {
-		final int x = count++;
+	private static final class ObjectId extends WeakReference<Object> {
+		final int id;
 
-		@Override
-		protected void finalize() {
-			try {
-				synchronized (out) {
-					writeEventType(EventEnum.FREE);
-					out.writeInt(x);
-				}
-			} catch (IOException e) {
-				Assert.panic(e);
-			}
+		ObjectId(Object o, int id, ReferenceQueue<Object> queue) {
+			super(o, queue);
+			this.id = id;
 		}
 	}
 
-	protected IdentityHashMap<ShadowThread, Integer> threads = new IdentityHashMap<ShadowThread, Integer>();
-	protected WeakIdentityHashMap<Object, MonitoredInteger> objects = new WeakIdentityHashMap<Object, MonitoredInteger>();
-	protected HashMap<String, Integer> strings = new HashMap<String, Integer>();
-	protected DataOutputStream out;
-	protected int eventCount = 0;
-	protected boolean open = true;
+	protected final ConcurrentHashMap<ShadowThread, Integer> threads = new ConcurrentHashMap<ShadowThread, Integer>();
+	protected final AtomicInteger threadCount = new AtomicInteger();
+
+	// 0 is null
+	protected final AtomicInteger objectCount = new AtomicInteger(1);
+	private final WeakIdentityHashMap<Object, ObjectId>[] objects = newObjectMaps();
+	private final ReferenceQueue<Object> freed = new ReferenceQueue<Object>();
+
+	protected TraceWriter log;
 
 	public ReplayLogTool(String name, Tool next, CommandLine commandLine) {
 		super(name, next, commandLine);
 	}
 
+	@SuppressWarnings("unchecked")
+	private static WeakIdentityHashMap<Object, ObjectId>[] newObjectMaps() {
+		WeakIdentityHashMap<Object, ObjectId>[] maps = new WeakIdentityHashMap[STRIPES];
+		for (int i = 0; i < STRIPES; i++) {
+			maps[i] = new WeakIdentityHashMap<Object, ObjectId>();
+		}
+		return maps;
+	}
+
 	@Override
 	public void init() {
 		RR.nofastPathOption.set(true);
 		try {
-			out = new DataOutputStream(
-					new BufferedOutputStream(new FileOutputStream("events.rrlog"), 8192 * 32));
+			log = new TraceWriter("events.rrlog");
 			addMetaDataListener(this);
 
 			new BarrierMonitor<ReplayBarrier>(this, new DefaultValue<Object, ReplayBarrier>() {
@@ -132,6 +140,27 @@ final public class ReplayLogTool extends Tool
 				}
 			});
 
+			Thread cleaner = new Thread("RR Replay Log Cleaner") {
+				@Override
+				public void run() {
+					try {
+						while (true) {
+							int id = ((ObjectId) freed.remove()).id;
+							TraceWriter.Segment out = log.segment();
+							synchronized (out) {
+								if (out.isOpen()) {
+									out.syncEvent(EventEnum.FREE, -1);
+									out.writeId(id);
+								}
+							}
+						}
+					} catch (InterruptedException e) {
+						// done
+					}
+				}
+			};
+			cleaner.setDaemon(true);
+			cleaner.start();
 		} catch (IOException e) {
 			Assert.fail(e);
 		}
@@ -139,72 +168,52 @@ final public class ReplayLogTool extends Tool
 
 	@Override
 	public void fini() {
-		try {
-			synchronized (out) {
-				writeEventType(EventEnum.QUIT);
-				out.close();
-				open = false;
-			}
-			Util.logf("Generated %,d Events", this.eventCount);
-		} catch (IOException e) {
-			Assert.fail(e);
-		}
-	}
-
-	// requires out
-	private void writeEventType(EventEnum e) throws IOException {
-		out.writeInt(e.ordinal());
-		eventCount++;
-	}
-
-	// requires out
-	private int stringKey(String s) throws IOException {
-		synchronized (strings) {
-			Integer x = strings.get(s);
-			if (x == null) {
-				x = strings.size();
-				writeEventType(EventEnum.STRING);
-				out.writeUTF(s);
+		TraceWriter.Segment out = log.segment();
+		synchronized (out) {
+			if (out.isOpen()) {
+				out.syncEvent(EventEnum.QUIT, -1);
 			}
-			strings.put(s, x);
-			return x;
 		}
+		log.close();
+		Util.logf("Generated %,d Events", log.eventCount());
 	}
 
 	protected int thread(ShadowThread s) {
-		synchronized (threads) {
-			Integer i = threads.get(s);
+		Integer i = threads.get(s);
+		if (i == null) {
+			Integer fresh = threadCount.getAndIncrement();
+			i = threads.putIfAbsent(s, fresh);
 			if (i == null) {
-				i = new Integer(threads.size());
-				threads.put(s, i);
+				i = fresh;
 			}
-			return i;
 		}
+		return i;
 	}
 
-	protected int object(Object s) {
-		synchronized (objects) {
-			MonitoredInteger i = objects.get(s);
+	protected int object(Object o) {
+		if (o == null) {
+			return 0;
+		}
+		int h = System.identityHashCode(o);
+		WeakIdentityHashMap<Object, ObjectId> map = objects[(h ^ (h >>> 16)) & (STRIPES - 1)];
+		synchronized (map) {
+			ObjectId i = map.get(o);
 			if (i == null) {
-				i = new MonitoredInteger();
-				objects.put(s, i);
+				i = new ObjectId(o, objectCount.getAndIncrement(), freed);
+				map.put(o, i);
 			}
-			return i.x;
+			return i.id;
 		}
 	}
 
 	@Override
 	public void create(NewThreadEvent e) {
-		ShadowThread td = e.getThread();
-		int thread = thread(td);
+		int thread = thread(e.getThread());
+		TraceWriter.Segment out = log.segment();
 		synchronized (out) {
-			if (open) {
-				try {
-					writeEventType(EventEnum.CREATE);
-					out.writeInt(thread);
-				} catch (IOException ex) {
-					Assert.fail(ex);
-				}
+			if (out.isOpen()) {
+				out.syncEvent(EventEnum.CREATE, thread);
+				out.writeId(thread);
 			}
 		}
 		super.create(e);
@@ -213,14 +222,11 @@ final public class ReplayLogTool extends Tool
 	@Override
 	public void stop(ShadowThread td) {
 		int thread = thread(td);
+		TraceWriter.Segment out = log.segment();
 		synchronized (out) {
-			if (open) {
-				try {
-					writeEventType(EventEnum.STOP);
-					out.writeInt(thread);
-				} catch (IOException e) {
-					Assert.fail(e);
-				}
+			if (out.isOpen()) {
+				out.syncEvent(EventEnum.STOP, thread);
+				out.writeId(thread);
 			}
 		}
 		super.stop(td);
@@ -228,356 +234,265 @@ final public class ReplayLogTool extends Tool
 
 	@Override
 	public void access(AccessEvent fae) {
-		try {
-			int ordinal = fae.getKind().ordinal();
-			int thread = thread(fae.getThread());
-			int object = object(fae.getTarget());
-			synchronized (out) {
-				if (open) {
-					int key = stringKey(fae.getAccessInfo().getKey());
-					writeEventType(EventEnum.ACCESS);
-					out.writeInt(ordinal);
-					out.writeInt(thread);
-					out.writeInt(key);
-					out.writeInt(object);
-					if (fae.getKind() == AccessEvent.Kind.ARRAY) {
-						out.writeInt(((ArrayAccessEvent) fae).getIndex());
-					}
+		int thread = thread(fae.getThread());
+		int object = object(fae.getTarget());
+		int key = log.stringKey(fae.getAccessInfo().getKey());
+		TraceWriter.Segment out = log.segment();
+		synchronized (out) {
+			if (out.isOpen()) {
+				if (fae.getKind() == AccessEvent.Kind.ARRAY) {
+					out.event(EventEnum.ARRAY_ACCESS, thread);
+					out.writeId(key);
+					out.writeObject(object);
+					out.writeIndex(((ArrayAccessEvent) fae).getIndex());
+				} else {
+					out.event(EventEnum.ACCESS, thread);
+					out.writeId(key);
+					out.writeObject(object);
 				}
 			}
-		} catch (IOException e) {
-			Assert.fail(e);
 		}
 		super.access(fae);
 	}
 
 	@Override
 	public void volatileAccess(VolatileAccessEvent fae) {
-		try {
-			int ordinal = fae.getKind().ordinal();
-			int thread = thread(fae.getThread());
-			int object = object(fae.getTarget());
-			synchronized (out) {
-				if (open) {
-					int key = stringKey(fae.getAccessInfo().getKey());
-					writeEventType(EventEnum.ACCESS);
-					out.writeInt(ordinal);
-					out.writeInt(thread);
-					out.writeInt(key);
-					out.writeInt(object);
-				}
+		int thread = thread(fae.getThread());
+		int object = object(fae.getTarget());
+		int key = log.stringKey(fae.getAccessInfo().getKey());
+		TraceWriter.Segment out = log.segment();
+		synchronized (out) {
+			if (out.isOpen()) {
+				out.syncEvent(EventEnum.VOLATILE_ACCESS, thread);
+				out.writeId(key);
+				out.writeObject(object);
 			}
-		} catch (IOException e) {
-			Assert.fail(e);
 		}
-
 		super.volatileAccess(fae);
 	}
 
 	@Override
 	public void acquire(AcquireEvent ae) {
-		try {
-			int thread = thread(ae.getThread());
-			int object = object(ae.getLock().getLock());
-			synchronized (out) {
-				if (open) {
-					int key = stringKey(ae.getInfo().getKey());
-					writeEventType(EventEnum.ACQUIRE);
-					out.writeInt(thread);
-					out.writeInt(key);
-					out.writeInt(object);
-				}
+		int thread = thread(ae.getThread());
+		int object = object(ae.getLock().getLock());
+		int key = log.stringKey(ae.getInfo().getKey());
+		TraceWriter.Segment out = log.segment();
+		synchronized (out) {
+			if (out.isOpen()) {
+				out.syncEvent(EventEnum.ACQUIRE, thread);
+				out.writeId(key);
+				out.writeObject(object);
 			}
-		} catch (IOException e) {
-			Assert.fail(e);
 		}
 		super.acquire(ae);
 	}
 
 	@Override
 	public void release(ReleaseEvent ae) {
-		try {
-			int thread = thread(ae.getThread());
-			int object = object(ae.getLock().getLock());
-			synchronized (out) {
-				if (open) {
-					int key = stringKey(ae.getInfo().getKey());
-					writeEventType(EventEnum.RELEASE);
-					out.writeInt(thread);
-					out.writeInt(key);
-					out.writeInt(object);
-				}
+		int thread = thread(ae.getThread());
+		int object = object(ae.getLock().getLock());
+		int key = log.stringKey(ae.getInfo().getKey());
+		TraceWriter.Segment out = log.segment();
+		synchronized (out) {
+			if (out.isOpen()) {
+				out.syncEvent(EventEnum.RELEASE, thread);
+				out.writeId(key);
+				out.writeObject(object);
 			}
-		} catch (IOException e) {
-			Assert.fail(e);
 		}
-
 		super.release(ae);
 	}
 
 	@Override
 	public void enter(MethodEvent me) {
-		try {
-			int thread = thread(me.getThread());
-			int object = object(me.getTarget());
-			synchronized (out) {
-				if (open) {
-					int key = stringKey(me.getInfo().getKey());
-					writeEventType(EventEnum.ENTER);
-					out.writeInt(thread);
-					out.writeInt(key);
-					out.writeInt(object);
-				}
+		int thread = thread(me.getThread());
+		int object = object(me.getTarget());
+		int key = log.stringKey(me.getInfo().getKey());
+		TraceWriter.Segment out = log.segment();
+		synchronized (out) {
+			if (out.isOpen()) {
+				out.event(EventEnum.ENTER, thread);
+				out.writeId(key);
+				out.writeObject(object);
 			}
-		} catch (IOException e) {
-			Assert.fail(e);
 		}
 		super.enter(me);
 	}
 
 	@Override
 	public void exit(MethodEvent me) {
-		try {
-			int thread = thread(me.getThread());
-			int object = object(me.getTarget());
-			synchronized (out) {
-				if (open) {
-					int key = stringKey(me.getInfo().getKey());
-					writeEventType(EventEnum.EXIT);
-					out.writeInt(thread);
-					out.writeInt(key);
-					out.writeInt(object);
-				}
+		int thread = thread(me.getThread());
+		TraceWriter.Segment out = log.segment();
+		synchronized (out) {
+			if (out.isOpen()) {
+				out.event(EventEnum.EXIT, thread);
 			}
-		} catch (IOException e) {
-			Assert.fail(e);
 		}
 		super.exit(me);
 	}
 
-	@Override
-	public void postJoin(JoinEvent je) {
-		try {
-			int thread = thread(je.getThread());
-			int thread2 = thread(je.getJoiningThread());
-			synchronized (out) {
-				if (open) {
-					int key = stringKey(je.getInfo().getKey());
-					writeEventType(EventEnum.POSTJOIN);
-					out.writeInt(thread);
-					out.writeInt(key);
-					out.writeInt(thread2);
-				}
+	private void join(EventEnum e, JoinEvent je) {
+		int thread = thread(je.getThread());
+		int thread2 = thread(je.getJoiningThread());
+		int key = log.stringKey(je.getInfo().getKey());
+		TraceWriter.Segment out = log.segment();
+		synchronized (out) {
+			if (out.isOpen()) {
+				out.syncEvent(e, thread);
+				out.writeId(key);
+				out.writeId(thread2);
 			}
-		} catch (IOException e) {
-			Assert.fail(e);
 		}
-		super.postJoin(je);
 	}
 
 	@Override
-	public void postNotify(NotifyEvent ne) {
-		try {
-			int thread = thread(ne.getThread());
-			int object = object(ne.getLock().getLock());
-			boolean notifyAll = ne.isNotifyAll();
-			synchronized (out) {
-				if (open) {
-					writeEventType(EventEnum.POSTNOTIFY);
-					out.writeInt(thread);
-					out.writeInt(object);
-					out.writeBoolean(notifyAll);
-				}
-			}
-		} catch (IOException e) {
-			Assert.fail(e);
-		}
-		super.postNotify(ne);
+	public void preJoin(JoinEvent je) {
+		join(EventEnum.PREJOIN, je);
+		super.preJoin(je);
 	}
 
 	@Override
-	public void postSleep(SleepEvent se) {
-		int thread = thread(se.getThread());
+	public void postJoin(JoinEvent je) {
+		join(EventEnum.POSTJOIN, je);
+		super.postJoin(je);
+	}
+
+	private void notify(EventEnum e, NotifyEvent ne) {
+		int thread = thread(ne.getThread());
+		int object = object(ne.getLock().getLock());
+		TraceWriter.Segment out = log.segment();
 		synchronized (out) {
-			if (open) {
-				try {
-					writeEventType(EventEnum.POSTSLEEP);
-					out.writeInt(thread);
-				} catch (IOException e) {
-					Assert.fail(e);
-				}
+			if (out.isOpen()) {
+				out.syncEvent(e, thread);
+				out.writeObject(object);
+				out.writeBoolean(ne.isNotifyAll());
 			}
 		}
-		super.postSleep(se);
 	}
 
 	@Override
-	public void postStart(StartEvent se) {
-		try {
-			int thread = thread(se.getThread());
-			int thread2 = thread(se.getNewThread());
-			synchronized (out) {
-				if (open) {
-					writeEventType(EventEnum.POSTSTART);
-					out.writeInt(thread);
-					out.writeInt(thread2);
-				}
-			}
-		} catch (IOException e) {
-			Assert.fail(e);
-		}
-		super.postStart(se);
+	public void preNotify(NotifyEvent ne) {
+		notify(EventEnum.PRENOTIFY, ne);
+		super.preNotify(ne);
 	}
 
 	@Override
-	public void postWait(WaitEvent we) {
-		try {
-			int thread = thread(we.getThread());
-			int object = object(we.getLock().getLock());
-			synchronized (out) {
-				if (open) {
-					int key = stringKey(we.getInfo().getKey());
-					writeEventType(EventEnum.POSTWAIT);
-					out.writeInt(thread);
-					out.writeInt(key);
-					out.writeInt(object);
+	public void postNotify(NotifyEvent ne) {
+		notify(EventEnum.POSTNOTIFY, ne);
+		super.postNotify(ne);
+	}
 
-				}
+	private void sleep(EventEnum e, SleepEvent se) {
+		int thread = thread(se.getThread());
+		TraceWriter.Segment out = log.segment();
+		synchronized (out) {
+			if (out.isOpen()) {
+				out.syncEvent(e, thread);
 			}
-		} catch (IOException e) {
-			Assert.fail(e);
 		}
-		super.postWait(we);
 	}
 
 	@Override
-	public void preJoin(JoinEvent je) {
-		try {
-			int thread = thread(je.getThread());
-			int thread2 = thread(je.getJoiningThread());
-			synchronized (out) {
-				if (open) {
-					int key = stringKey(je.getInfo().getKey());
-					writeEventType(EventEnum.PREJOIN);
-					out.writeInt(thread);
-					out.writeInt(key);
-					out.writeInt(thread2);
-				}
-			}
-		} catch (IOException e) {
-			Assert.fail(e);
-		}
-		super.preJoin(je);
+	public void preSleep(SleepEvent se) {
+		sleep(EventEnum.PRESLEEP, se);
+		super.preSleep(se);
 	}
 
 	@Override
-	public void preNotify(NotifyEvent ne) {
-		int thread = thread(ne.getThread());
-		int object = object(ne.getLock().getLock());
-		boolean notifyAll = ne.isNotifyAll();
-		synchronized (out) {
-			if (open) {
-				try {
-					writeEventType(EventEnum.PRENOTIFY);
-					out.writeInt(thread);
-					out.writeInt(object);
-					out.writeBoolean(notifyAll);
-				} catch (IOException e) {
-					Assert.fail(e);
-				}
-			}
-		}
-		super.preNotify(ne);
+	public void postSleep(SleepEvent se) {
+		sleep(EventEnum.POSTSLEEP, se);
+		super.postSleep(se);
 	}
 
-	@Override
-	public void preSleep(SleepEvent se) {
+	private void start(EventEnum e, StartEvent se) {
 		int thread = thread(se.getThread());
+		int thread2 = thread(se.getNewThread());
+		TraceWriter.Segment out = log.segment();
 		synchronized (out) {
-			if (open) {
-				try {
-					writeEventType(EventEnum.PRESLEEP);
-					out.writeInt(thread);
-				} catch (IOException e) {
-					Assert.fail(e);
-				}
+			if (out.isOpen()) {
+				out.syncEvent(e, thread);
+				out.writeId(thread2);
 			}
 		}
-		super.preSleep(se);
 	}
 
 	@Override
 	public void preStart(StartEvent se) {
-		try {
-			int thread = thread(se.getThread());
-			int thread2 = thread(se.getNewThread());
-			synchronized (out) {
-				if (open) {
-					writeEventType(EventEnum.PRESTART);
-					out.writeInt(thread);
-					out.writeInt(thread2);
-				}
-			}
-		} catch (IOException e) {
-			Assert.fail(e);
-		}
-
+		start(EventEnum.PRESTART, se);
 		super.preStart(se);
 	}
 
 	@Override
-	public void classInitialized(ClassInitializedEvent ce) {
-		try {
-			int thread = thread(ce.getThread());
-			synchronized (out) {
-				if (open) {
-					int key = stringKey(ce.getRRClass().getName());
-					writeEventType(EventEnum.CLASS_INITIALIZED);
-					out.writeInt(thread);
-					out.writeInt(key);
-				}
+	public void postStart(StartEvent se) {
+		start(EventEnum.POSTSTART, se);
+		super.postStart(se);
+	}
+
+	private void wait(EventEnum e, WaitEvent we) {
+		int thread = thread(we.getThread());
+		int object = object(we.getLock().getLock());
+		int key = log.stringKey(we.getInfo().getKey());
+		TraceWriter.Segment out = log.segment();
+		synchronized (out) {
+			if (out.isOpen()) {
+				out.syncEvent(e, thread);
+				out.writeId(key);
+				out.writeObject(object);
 			}
-		} catch (IOException e) {
-			Assert.fail(e);
 		}
-
-		super.classInitialized(ce);
 	}
 
 	@Override
 	public void preWait(WaitEvent we) {
-		try {
-			int thread = thread(we.getThread());
-			int object = object(we.getLock().getLock());
-			synchronized (out) {
-				if (open) {
-					int key = stringKey(we.getInfo().getKey());
-					writeEventType(EventEnum.PREWAIT);
-					out.writeInt(thread);
-					out.writeInt(key);
-					out.writeInt(object);
-				}
+		wait(EventEnum.PREWAIT, we);
+		super.preWait(we);
+	}
+
+	@Override
+	public void postWait(WaitEvent we) {
+		wait(EventEnum.POSTWAIT, we);
+		super.postWait(we);
+	}
+
+	@Override
+	public void classInitialized(ClassInitializedEvent ce) {
+		int thread = thread(ce.getThread());
+		int key = log.stringKey(ce.getRRClass().getName());
+		TraceWriter.Segment out = log.segment();
+		synchronized (out) {
+			if (out.isOpen()) {
+				out.syncEvent(EventEnum.CLASS_INITIALIZED, thread);
+				out.writeId(key);
 			}
-		} catch (IOException e) {
-			Assert.fail(e);
 		}
-		super.preWait(we);
+		super.classInitialized(ce);
 	}
 
-	public synchronized void visit(ClassInfo x) {
+	private void barrier(EventEnum e, BarrierEvent<ReplayBarrier> be) {
+		int thread = thread(be.getThread());
+		int object = object(be.getBarrier());
+		TraceWriter.Segment out = log.segment();
 		synchronized (out) {
-			if (open) {
-				try {
-					int key = stringKey(x.getName().replace("/", "."));
-					writeEventType(EventEnum.LOADCLASS);
-					out.writeInt(key);
-				} catch (IOException e) {
-					Assert.fail(e);
-				}
+			if (out.isOpen()) {
+				out.syncEvent(e, thread);
+				out.writeObject(object);
+				out.writeId(be.getParties());
 			}
 		}
 	}
 
+	public void preDoBarrier(BarrierEvent<ReplayBarrier> be) {
+		barrier(EventEnum.PREBARRIER, be);
+	}
+
+	public void postDoBarrier(BarrierEvent<ReplayBarrier> be) {
+		barrier(EventEnum.POSTBARRIER, be);
+	}
+
+	public void visit(ClassInfo x) {
+		log.loadClass(x.getName().replace("/", "."));
+	}
+
 	public void visit(FieldInfo x) {
 		// TODO Auto-generated method stub
 
@@ -628,36 +543,6 @@ final public class ReplayLogTool extends Tool
 
 	}
 
-	public void postDoBarrier(BarrierEvent<ReplayBarrier> be) {
-		synchronized (out) {
-			if (open) {
-				try {
-					writeEventType(EventEnum.POSTBARRIER);
-					out.writeInt(thread(be.getThread()));
-					out.writeInt(object(be.getBarrier()));
-					out.writeInt(be.getParties());
-				} catch (IOException e) {
-					Assert.fail(e);
-				}
-			}
-		}
-	}
-
-	public synchronized void preDoBarrier(BarrierEvent<ReplayBarrier> be) {
-		synchronized (out) {
-			if (open) {
-				try {
-					writeEventType(EventEnum.PREBARRIER);
-					out.writeInt(thread(be.getThread()));
-					out.writeInt(object(be.getBarrier()));
-					out.writeInt(be.getParties());
-				} catch (IOException e) {
-					Assert.fail(e);
-				}
-			}
-		}
-	}
-
 	public void visit(InterruptInfo x) {
 		// TODO Auto-generated method stub
 		Assert.panic("Implement me");
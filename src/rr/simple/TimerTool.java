@@ -32,7 +32,7 @@
 
 package rr.simple;
 
-import acme.util.count.Timer;
+import acme.util.count.HistogramTimer;
 import acme.util.option.CommandLine;
 import rr.annotations.Abbrev;
 import rr.event.AccessEvent;
@@ -50,14 +50,15 @@ import rr.state.ShadowVar;
 import rr.tool.Tool;
 
 /**
- * Count the number of events for most common cases.
+ * Time the tools below this one for the most common events.  Each event kind gets a
+ * HistogramTimer, so the log shows p50/p99/max latencies as well as totals.
  */
 
 @Abbrev("T")
 final public class TimerTool extends Tool {
 
-	private final Timer accessC, volatileAccessC, arrayAccessC, acquireC, releaseC, enterC, exitC,
-			waitC, notifyC, sleepC, joinC, startC, guardStateC;
+	private final HistogramTimer accessC, volatileAccessC, arrayAccessC, acquireC, releaseC, enterC,
+			exitC, waitC, notifyC, sleepC, joinC, startC, guardStateC;
 
 	private static int countToolNum = 0;
 
@@ -65,19 +66,19 @@ final public class TimerTool extends Tool {
 		super(name, next, commandLine);
 		countToolNum++;
 		String fullName = name + "(" + countToolNum + ")";
-		accessC = new Timer(fullName, "Access");
-		volatileAccessC = new Timer(fullName, "VolatileAccess");
-		arrayAccessC = new Timer(fullName, "Array Access");
-		acquireC = new Timer(fullName, "Acquire");
-		releaseC = new Timer(fullName, "Release");
-		enterC = new Timer(fullName, "Enter");
-		exitC = new Timer(fullName, "Exit");
-		waitC = new Timer(fullName, "Wait");
-		notifyC = new Timer(fullName, "Notify");
-		sleepC = new Timer(fullName, "Sleep");
-		joinC = new Timer(fullName, "Join");
-		startC = new Timer(fullName, "Start");
-		guardStateC = new Timer(fullName, "Guard State");
+		accessC = new HistogramTimer(fullName, "Access");
+		volatileAccessC = new HistogramTimer(fullName, "VolatileAccess");
+		arrayAccessC = new HistogramTimer(fullName, "Array Access");
+		acquireC = new HistogramTimer(fullName, "Acquire");
+		releaseC = new HistogramTimer(fullName, "Release");
+		enterC = new HistogramTimer(fullName, "Enter");
+		exitC = new HistogramTimer(fullName, "Exit");
+		waitC = new HistogramTimer(fullName, "Wait");
+		notifyC = new HistogramTimer(fullName, "Notify");
+		sleepC = new HistogramTimer(fullName, "Sleep");
+		joinC = new HistogramTimer(fullName, "Join");
+		startC = new HistogramTimer(fullName, "Start");
+		guardStateC = new HistogramTimer(fullName, "Guard State");
 	}
 
 	@Override
@@ -38,6 +38,7 @@ import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.util.BitSet;
 import java.util.HashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.management.Notification;
 import javax.management.NotificationEmitter;
@@ -61,25 +62,85 @@ import acme.util.option.CommandLineOption;
 public class ArrayStateFactory {
 
     public static enum ArrayMode {
-        NONE, FINE, COARSE, SPECIAL, USER
+        NONE, FINE, COARSE, SPECIAL, USER, COMPACT, BLOCK
     };
 
-    protected static final ConcurrentIdentityHashMap<Object, AbstractArrayState> table = new ConcurrentIdentityHashMap<Object, AbstractArrayState>(
-            (1 << 16) - 11, (float) 0.5, RR.maxTidOption.get());
-
     /*
-     * In previous versions that AbstractArrayState values were weak references, which could cause
-     * state for long-lived arrays in the attic to be remove if those arrays were not accesses often
-     * enough to keep them in the other caches.
+     * Array states live in SHARDS independent shards, picked by the array's identity hash. Each
+     * shard has two generations:
+     * - young: a ConcurrentIdentityHashMap with strong keys, read without locking.
+     * - attic: a WeakIdentityHashMap, so arrays that are only reachable from here can be collected.
+     * Misses, creation, and eviction (moving young into the attic) lock only the shard. A shard
+     * evicts itself once its young generation reaches its limit, and the Array Cleaner thread
+     * evicts the shards one at a time after a major GC. There is never a table-wide pause.
+     *
+     * The attic values are strong: in previous versions they were weak references, which could
+     * cause state for long-lived arrays in the attic to be removed if those arrays were not
+     * accessed often enough to keep them in the other caches.
      */
-    private static final WeakIdentityHashMap<Object, AbstractArrayState> attic = new WeakIdentityHashMap<Object, AbstractArrayState>(
-            (1 << 16) - 11);
+    private static final int SHARD_BITS = 6;
+    private static final int SHARDS = 1 << SHARD_BITS;
+
+    private static final class Shard {
+        // Padding, so that the hot fields of neighbouring shards do not share a cache line. (The
+        // VM lays out longs before references and ints.)
+        long p0, p1, p2, p3, p4, p5, p6, p7;
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        final ConcurrentIdentityHashMap<Object, AbstractArrayState> young = new ConcurrentIdentityHashMap<Object, AbstractArrayState>(
+                (1 << 10) - 11, (float) 0.5, 16);
+
+        // guarded by lock
+        final WeakIdentityHashMap<Object, AbstractArrayState> attic = new WeakIdentityHashMap<Object, AbstractArrayState>(
+                (1 << 10) - 11);
+
+        // guarded by lock
+        int count = 0;
+        int limit = MAP_CHECK;
+
+        void lock() {
+            if (!lock.tryLock()) {
+                shardContention.inc();
+                lock.lock();
+            }
+        }
+
+        // Move young into the attic. Lock must be held.
+        void evict() {
+            long start = evictionTime.start();
+            for (AbstractArrayState aas : young.values()) {
+                final Object a = aas.getArray();
+                if (!attic.containsKey(a)) {
+                    attic.put(a, aas);
+                }
+                young.remove(a);
+            }
+            count = 0;
+            if (limit < MAP_MAX) {
+                limit += MAP_INC;
+            }
+            evictionTime.stop(start);
+            evictions.inc();
+        }
+    }
 
-    private static int count = 0; // since ConcurrentHashMap size() is slow, approximate here...
+    private static final Shard shards[] = new Shard[SHARDS];
+
+    static {
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    private static Shard shardFor(int hash) {
+        // mix, since identity hashes need not vary in their low bits.
+        return shards[(hash ^ (hash >>> 16) ^ (hash >>> SHARD_BITS)) & (SHARDS - 1)];
+    }
 
     public static CommandLineOption<ArrayMode> arrayOption = CommandLine.makeEnumChoice("array",
             ArrayMode.FINE, CommandLineOption.Kind.STABLE,
-            "Determine the granularity of array shadow memory.\n    NONE tracks no array info.\n    FINE uses one location per index.\n    COARSE uses one location per array\n    SPECIAL can change from COARSE to FINE if tool requests it.",
+            "Determine the granularity of array shadow memory.\n    NONE tracks no array info.\n    FINE uses one location per index.\n    COARSE uses one location per array\n    SPECIAL can change from COARSE to FINE if tool requests it.\n    COMPACT is FINE with a primitive word per index for tools that support it (FT2).\n    BLOCK is COMPACT with one word per block of indices until they differ.",
             ArrayMode.class);
 
     public static CommandLineOption<ArrayStateCreator> userArrayOption;
@@ -119,13 +180,16 @@ public class ArrayStateFactory {
 
     protected final ShadowThread owner;
 
-    private static int MAP_CHECK = 2000;
-    private static int MAP_MAX = 100000;
-    private static int MAP_INC = 500;
-    private static int mapCheck = MAP_CHECK;
+    // Per-shard limits on the young generation.
+    private static final int MAP_CHECK = 32;
+    private static final int MAP_MAX = 1600;
+    private static final int MAP_INC = 8;
     private static final Counter size = new Counter("ArrayStateFactory", "Size");
-    private static final Timer atticTime = new Timer("ArrayStateFactory", "Attic Move Time");
     private static final Counter atticHits = new Counter("ArrayStateFactory", "Attic Hits");
+    private static final Counter shardContention = new Counter("ArrayStateFactory",
+            "Shard Contention");
+    private static final Counter evictions = new Counter("ArrayStateFactory", "Shard Evictions");
+    private static final Timer evictionTime = new Timer("ArrayStateFactory", "Shard Eviction Time");
 
     public ArrayStateFactory(ShadowThread shadowThread, ArrayMode defaultMode, boolean useCAS) {
         this.defaultMode = defaultMode;
@@ -146,46 +210,84 @@ public class ArrayStateFactory {
             return NULL;
         } else {
             int hash = Util.identityHashCode(array);
-            AbstractArrayState state = table.get(array, hash);
+            final Shard shard = shardFor(hash);
+            AbstractArrayState state = shard.young.get(array, hash);
             if (state != null) {
                 return state;
             }
-            synchronized (attic) {
-                state = attic.get(array);
+            shard.lock();
+            try {
+                state = find(shard, array, hash);
                 if (state != null) {
-                    atticHits.inc();
-                    AbstractArrayState z = table.putIfAbsent(array, state, hash);
-                    if (z != null && z != state) {
-                        Assert.panic("Pulled wrong array state for %s from attic: %s != %s", array,
-                                state, z);
-                    }
                     return state;
                 }
+            } finally {
+                shard.lock.unlock();
             }
-            switch (mode) {
-                case NONE:
-                    Assert.panic("NO array state option....");
-                case FINE:
-                    state = useCAS ? new CASFineArrayState(array) : new FineArrayState(array);
-                    break;
-                case COARSE:
-                    state = useCAS ? new CASCoarseArrayState(array) : new CoarseArrayState(array);
-                    break;
-                case SPECIAL:
-                    state = new SpecializingArrayState(array);
-                    break;
-                case USER:
-                    try {
-                        state = userArrayOption.get().make(array);
-                    } catch (Exception ex) {
-                        Assert.panic(ex);
-                    }
+            // Create without the lock: the state for an array of arrays creates the states of
+            // its elements, which may live in other shards.
+            state = create(array, mode, useCAS);
+            shard.lock();
+            try {
+                final AbstractArrayState z = find(shard, array, hash);
+                if (z != null) {
+                    Yikes.yikes("Concurrent array state creation...");
+                    state.forget();
+                    return z;
+                }
+                put0(shard, array, state, hash);
+                return state;
+            } finally {
+                shard.lock.unlock();
             }
-            return put0(array, state, hash);
         }
 
     }
 
+    // Shard lock must be held. Promotes states found in the attic back to young.
+    private static AbstractArrayState find(Shard shard, Object array, int hash) {
+        AbstractArrayState state = shard.young.get(array, hash);
+        if (state == null) {
+            state = shard.attic.get(array);
+            if (state != null) {
+                // promotions do not count towards the shard's limit.
+                atticHits.inc();
+                shard.young.putIfAbsent(array, state, hash);
+            }
+        }
+        return state;
+    }
+
+    private static AbstractArrayState create(Object array, ArrayMode mode, boolean useCAS) {
+        AbstractArrayState state = null;
+        switch (mode) {
+            case NONE:
+                Assert.panic("NO array state option....");
+            case FINE:
+                state = useCAS ? new CASFineArrayState(array) : new FineArrayState(array);
+                break;
+            case COARSE:
+                state = useCAS ? new CASCoarseArrayState(array) : new CoarseArrayState(array);
+                break;
+            case SPECIAL:
+                state = new SpecializingArrayState(array);
+                break;
+            case COMPACT:
+                state = new CompactArrayState(array);
+                break;
+            case BLOCK:
+                state = new BlockArrayState(array);
+                break;
+            case USER:
+                try {
+                    state = userArrayOption.get().make(array);
+                } catch (Exception ex) {
+                    Assert.panic(ex);
+                }
+        }
+        return state;
+    }
+
     public static AbstractArrayState make(Object array, ArrayMode mode, boolean useCAS) {
         return get0(array, mode, useCAS);
     }
@@ -211,43 +313,56 @@ public class ArrayStateFactory {
 
     }
 
-    private static AbstractArrayState put0(Object array, AbstractArrayState state, int hash) {
-        AbstractArrayState z = table.putIfAbsent(array, state, hash);
-        if (z != null) {
-            Yikes.yikes("Concurrent array state creation...");
-            state.forget();
-            state = z;
-        }
-        count++;
+    // Shard lock must be held.
+    private static void put0(Shard shard, Object array, AbstractArrayState state, int hash) {
+        shard.young.putIfAbsent(array, state, hash);
         size.inc();
-        if (count > 0 && count % mapCheck == 0) {
-            synchronized (ArrayStateFactory.class) {
-                ArrayStateFactory.class.notify();
-            }
+        if (++shard.count >= shard.limit) {
+            shard.evict();
         }
-
-        return state;
     }
 
+    // Evict every shard, one at a time.
     protected static void moveToAttic() {
-        synchronized (attic) {
-            count = 0;
-            if (mapCheck < MAP_MAX) {
-                mapCheck += MAP_INC;
+        long start = System.nanoTime();
+        int atticSize = 0;
+        for (Shard shard : shards) {
+            shard.lock();
+            try {
+                shard.evict();
+                atticSize += shard.attic.size();
+            } finally {
+                shard.lock.unlock();
             }
-            long start = atticTime.start();
-            int oldAtticSize = attic.size();
-            for (AbstractArrayState aas : table.values()) {
-                final Object a = aas.getArray();
-                if (!attic.containsKey(a)) {
-                    attic.put(a, aas);
-                }
-                final AbstractArrayState remove = table.remove(a);
+        }
+        Util.logf("ArrayStateFactory Moved Entries to Attic (%d ms).  Attic size: %d.",
+                (System.nanoTime() - start) / 1000000, atticSize);
+    }
+
+    /**
+     * Approximate number of states in the young tables. Reads each shard's count without locking
+     * it, so it may be a little stale.
+     */
+    public static int youngSize() {
+        int n = 0;
+        for (Shard shard : shards) {
+            n += shard.count;
+        }
+        return n;
+    }
+
+    /** Number of states in the attic. Locks one shard at a time. */
+    public static int atticSize() {
+        int n = 0;
+        for (Shard shard : shards) {
+            shard.lock();
+            try {
+                n += shard.attic.size();
+            } finally {
+                shard.lock.unlock();
             }
-            long elapsed = atticTime.stop(start) / 1000000;
-            Util.logf("ArrayStateFactory Moved Entries to Attic (%d ms).  Attic size: %d->%d.",
-                    elapsed, oldAtticSize, attic.size());
         }
+        return n;
     }
 
     public static AbstractArrayState make(Object array) {
@@ -256,10 +371,16 @@ public class ArrayStateFactory {
     }
 
     public static void clearAll() {
-        synchronized (attic) {
-            attic.clear();
+        for (Shard shard : shards) {
+            shard.lock();
+            try {
+                shard.attic.clear();
+                shard.young.clear();
+                shard.count = 0;
+            } finally {
+                shard.lock.unlock();
+            }
         }
-        table.clear();
         for (int i = 0; i < RR.maxTidOption.get(); i++) {
             AbstractArrayStateCache.clearAll(i);
         }
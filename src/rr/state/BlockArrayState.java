@@ -0,0 +1,207 @@
+/******************************************************************************
+ * 
+ * Copyright (c) 2010, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ ******************************************************************************/
+
+package rr.state;
+
+import java.util.Arrays;
+
+import sun.misc.Unsafe;
+import acme.util.Assert;
+import acme.util.count.Counter;
+
+/*
+ * Array shadow for -array=BLOCK: a WordArrayState that keeps one word for each block of
+ * BLOCK_SIZE consecutive indices as long as all of them have the same word. Data-parallel code
+ * that has each thread sweep its own contiguous part of an array moves whole blocks from one
+ * word to the next, so most blocks stay at one word.
+ *
+ * The first update that gives an index of a uniform block a different word splits the block
+ * into a long[] with one word per index. Updates to a split block are a compare-and-set on that
+ * index's word. An update to one of the first two or last two indices of a split block (where
+ * a sweep, even one with stride two, ends) that leaves all of its words equal merges the block
+ * back to one word, e.g., once a thread has swept the block in its current epoch. This is exact:
+ * the words reported for each index are the same as with -array=COMPACT.
+ *
+ * Only splitting and merging lock the block. A merge sets the block's word and then seals each
+ * index of the long[] by swapping its word for SEALED, undoing the seals if some index changed
+ * in the meantime. Readers and writers that find SEALED retry on the block, so no update to a
+ * split array can be lost to a merge, and a sealed long[] is never used again.
+ *
+ * As with any WordArrayState, getWord and casWord require inBounds(index): an index past the
+ * end of a partial last block would otherwise hit the next object on the heap once it is split.
+ */
+public final class BlockArrayState extends WordArrayState {
+
+    public static final int LOG_BLOCK_SIZE = 6;
+    public static final int BLOCK_SIZE = 1 << LOG_BLOCK_SIZE;
+    private static final int MASK = BLOCK_SIZE - 1;
+
+    private static final Counter splits = new Counter("BlockArrayState", "Splits");
+    private static final Counter merges = new Counter("BlockArrayState", "Merges");
+
+    private static final class Block {
+        // the word for every index, when split is null.
+        volatile long word;
+
+        // one word per index, or null. Set and cleared with the block locked.
+        volatile long[] split;
+    }
+
+    private final Block[] blocks;
+
+    public BlockArrayState(Object array) {
+        super(array, ArrayStateFactory.ArrayMode.BLOCK);
+        blocks = new Block[(length + MASK) >>> LOG_BLOCK_SIZE];
+        for (int b = 0; b < blocks.length; b++) {
+            blocks[b] = new Block();
+        }
+    }
+
+    private int blockLength(int b) {
+        return Math.min(BLOCK_SIZE, length - (b << LOG_BLOCK_SIZE));
+    }
+
+    @Override
+    public final long getWord(int index) {
+        final Block block = blocks[index >>> LOG_BLOCK_SIZE];
+        while (true) {
+            final long[] s = block.split;
+            if (s == null) {
+                return block.word;
+            }
+            final long w = unsafe.getLongVolatile(s, byteOffset(index & MASK));
+            if (w != SEALED) {
+                return w;
+            }
+            // being merged: retry on the block.
+        }
+    }
+
+    @Override
+    public final boolean casWord(int index, long expected, long word) {
+        final int b = index >>> LOG_BLOCK_SIZE;
+        final int i = index & MASK;
+        final Block block = blocks[b];
+        while (true) {
+            final long[] s = block.split;
+            if (s != null) {
+                final long offset = byteOffset(i);
+                if (unsafe.compareAndSwapLong(s, offset, expected, word)) {
+                    if (i <= 1 || i >= s.length - 2) {
+                        tryMerge(block, s, word);
+                    }
+                    return true;
+                }
+                if (unsafe.getLongVolatile(s, offset) != SEALED) {
+                    return false;
+                }
+                continue; // being merged: retry on the block.
+            }
+
+            final int n = blockLength(b);
+            if (n == 1) {
+                // never split.
+                return unsafe.compareAndSwapLong(block, wordOffset, expected, word);
+            }
+            synchronized (block) {
+                if (block.split != null) {
+                    continue;
+                }
+                if (block.word != expected) {
+                    return false;
+                }
+                if (expected != word) {
+                    final long[] t = new long[n];
+                    Arrays.fill(t, expected);
+                    t[i] = word;
+                    block.split = t;
+                    splits.inc();
+                }
+                return true;
+            }
+        }
+    }
+
+    /*
+     * Merge block, split into s, back into one word if all of s's words are word.
+     */
+    private static void tryMerge(Block block, long[] s, long word) {
+        for (long w : s) {
+            if (w != word) {
+                return;
+            }
+        }
+        synchronized (block) {
+            if (block.split != s) {
+                return;
+            }
+            block.word = word;
+            for (int j = 0; j < s.length; j++) {
+                if (!unsafe.compareAndSwapLong(s, byteOffset(j), word, SEALED)) {
+                    // changed since the check: unseal and stay split.
+                    for (int k = 0; k < j; k++) {
+                        unsafe.putLongVolatile(s, byteOffset(k), word);
+                    }
+                    return;
+                }
+            }
+            block.split = null;
+            merges.inc();
+        }
+    }
+
+    private static final Unsafe unsafe = Unsafe.getUnsafe();
+    private static final int base;
+    private static final int shift;
+
+    private static long byteOffset(int i) {
+        return ((long) i << shift) + base;
+    }
+
+    static {
+        base = unsafe.arrayBaseOffset(long[].class);
+        int scale = unsafe.arrayIndexScale(long[].class);
+        if ((scale & (scale - 1)) != 0)
+            Assert.panic("data type scale not a power of two");
+        shift = 31 - Integer.numberOfLeadingZeros(scale);
+    }
+
+    private static final long wordOffset;
+
+    static {
+        try {
+            wordOffset = unsafe.objectFieldOffset(Block.class.getDeclaredField("word"));
+        } catch (Exception ex) {
+            throw new Error(ex);
+        }
+    }
+}
@@ -63,8 +63,7 @@ public final class CASFineArrayState extends CASAbstractArrayState {
 
     @Override
     public AbstractArrayState getShadowForNextDim(ShadowThread td, Object element, int i) {
-        if (element != nextDimension[i].getArray()) {
-            // Yikes.yikes("Stale array entry for next dim");
+        if (element != nextDimension[i].getArrayNoCheck()) {
             nextDimension[i] = td.arrayStateFactory.get(element);
         }
         return nextDimension[i];
@@ -0,0 +1,76 @@
+/******************************************************************************
+ * 
+ * Copyright (c) 2010, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ ******************************************************************************/
+
+package rr.state;
+
+import sun.misc.Unsafe;
+import acme.util.Assert;
+
+/*
+ * Array shadow for -array=COMPACT: a WordArrayState with the words in a long[] of the array's
+ * length, updated with compare-and-set.
+ */
+public final class CompactArrayState extends WordArrayState {
+
+    protected final long[] words;
+
+    public CompactArrayState(Object array) {
+        super(array, ArrayStateFactory.ArrayMode.COMPACT);
+        words = new long[length];
+    }
+
+    @Override
+    public final long getWord(int index) {
+        return unsafe.getLongVolatile(words, byteOffset(index));
+    }
+
+    @Override
+    public final boolean casWord(int index, long expected, long word) {
+        return unsafe.compareAndSwapLong(words, byteOffset(index), expected, word);
+    }
+
+    private static final Unsafe unsafe = Unsafe.getUnsafe();
+    private static final int base;
+    private static final int shift;
+
+    private static long byteOffset(int i) {
+        return ((long) i << shift) + base;
+    }
+
+    static {
+        base = unsafe.arrayBaseOffset(long[].class);
+        int scale = unsafe.arrayIndexScale(long[].class);
+        if ((scale & (scale - 1)) != 0)
+            Assert.panic("data type scale not a power of two");
+        shift = 31 - Integer.numberOfLeadingZeros(scale);
+    }
+}
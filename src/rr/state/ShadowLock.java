@@ -33,6 +33,7 @@
 package rr.state;
 
 import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import acme.util.Assert;
 import acme.util.Util;
@@ -64,7 +65,7 @@ public class ShadowLock extends Decoratable {
     private ShadowThread curThread = null;
     private final int hashCode;
 
-    static private int counter = 0;
+    static private final AtomicInteger counter = new AtomicInteger();
 
     /*
      * Constructor / helper methods.
@@ -73,7 +74,7 @@ public class ShadowLock extends Decoratable {
     private ShadowLock(Object lock) {
         // Assert.assertTrue(lock != null);
         this.lock = new WeakReference<Object>(lock);
-        hashCode = counter++;
+        hashCode = counter.getAndIncrement();
         if (RRMain.slowMode())
             count.inc();
     }
@@ -144,10 +145,47 @@ public class ShadowLock extends Decoratable {
         }
     };
 
+    /*
+     * Guards the first store into a ShadowLockHolder's field, so that racing threads agree on one
+     * ShadowLock per object.
+     */
+    private static final Object[] holderInitLocks = new Object[64];
+    static {
+        for (int i = 0; i < holderInitLocks.length; i++) {
+            holderInitLocks[i] = new Object();
+        }
+    }
+
     public static ShadowLock get(Object o) {
+        if (o instanceof ShadowLockHolder) {
+            final ShadowLock ld = ((ShadowLockHolder) o).__$rr_getShadowLock();
+            return ld != null ? ld : makeForHolder((ShadowLockHolder) o);
+        }
         return locks.get(o);
     }
 
+    private static ShadowLock makeForHolder(ShadowLockHolder o) {
+        synchronized (holderInitLocks[Util.identityHashCode(o) & (holderInitLocks.length - 1)]) {
+            ShadowLock ld = o.__$rr_getShadowLock();
+            if (ld == null) {
+                ld = new ShadowLock(o);
+                o.__$rr_setShadowLock(ld);
+            }
+            return ld;
+        }
+    }
+
+    /**
+     * Called on the result of clone(), which copies the hidden field of a ShadowLockHolder. A
+     * fresh copy must not share the original's ShadowLock.
+     */
+    public static void cloned(ShadowLockHolder copy) {
+        final ShadowLock ld = copy.__$rr_getShadowLock();
+        if (ld != null && ld.lock.get() != copy) {
+            copy.__$rr_setShadowLock(null);
+        }
+    }
+
     /**
      * This may return null if the object has been collected.
      */
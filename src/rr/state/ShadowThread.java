@@ -38,7 +38,6 @@ import java.util.Vector;
 
 import acme.util.Assert;
 import acme.util.AtomicFlag;
-import acme.util.StackDump;
 import acme.util.Util;
 import acme.util.count.Counter;
 import acme.util.count.HighWaterMark;
@@ -49,6 +48,7 @@ import acme.util.decorations.DefaultValue;
 import acme.util.identityhash.WeakIdentityHashMap;
 import acme.util.identityhash.WeakIdentityHashMap.ValueFunction;
 import rr.RRMain;
+import rr.error.ErrorStack;
 import rr.event.AcquireEvent;
 import rr.event.ArrayAccessEvent;
 import rr.event.ClassAccessedEvent;
@@ -438,14 +438,11 @@ public class ShadowThread extends Decoratable implements ShadowVar {
     }
 
     /**
-     * Return a String representing the call stack for a thread in the target program.
+     * Return the call stack for a thread in the target program, to pass to ErrorMessage.error. The
+     * stack is only recorded once error decides to report it (see ErrorStack).
      */
-    public static String stackDumpForErrorMessage(ShadowThread currentThread) {
-        if (RR.stackOption.get()) {
-            return StackDump.stackDump(currentThread.getThread(), RR.toolCode);
-        } else {
-            return "Use -stacks to show stacks...";
-        }
+    public static Object stackDumpForErrorMessage(ShadowThread currentThread) {
+        return new ErrorStack(currentThread);
     }
 
     /**
@@ -111,6 +111,14 @@ public class ShadowVolatile extends Decoratable {
         return fd;
     }
 
+    /**
+     * True if this is the ShadowVolatile for a field of o. (Unlike getTarget, this does not
+     * complain if the target was collected.)
+     */
+    public boolean isTarget(Object o) {
+        return target.get() == o;
+    }
+
     /*
      * Use Weak Resource Managers to avoid pinning down objects that could be collected.
      */
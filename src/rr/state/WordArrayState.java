@@ -0,0 +1,144 @@
+/******************************************************************************
+ * 
+ * Copyright (c) 2010, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ * 
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ ******************************************************************************/
+
+package rr.state;
+
+import acme.util.Yikes;
+
+/*
+ * Base for array shadows that keep one long of tool-defined words per index instead of a
+ * ShadowVar per index (-array=COMPACT and -array=BLOCK). Tools read and update an index's word
+ * with getWord/casWord. A tool that understands these states (FT2 keeps the last write and read
+ * epochs in the word) answers makeShadowVar with the shared WORDS marker, which is never stored:
+ * the event generator hands it straight to the tool, without putShadow, so an access to such an
+ * index takes no lock. Subclasses decide how the words are stored.
+ *
+ * An index can still be given a real ShadowVar with putState, e.g., when FT2 needs a full vector
+ * clock because the index becomes read-shared. The ShadowVar[] for those is only allocated when
+ * the first one is stored. Tools that do not know about these states just store ShadowVars, so
+ * for them they behave like FineArrayState.
+ */
+public abstract class WordArrayState extends AbstractArrayState {
+
+    /** Marker returned by tools from makeShadowVar to say "use the words for this index". */
+    public static final ShadowVar WORDS = new ShadowVar() {
+        @Override
+        public String toString() {
+            return "[words]";
+        }
+    };
+
+    /**
+     * A word value tools must not use. BlockArrayState uses it internally while merging. (For
+     * FT2 it would be a word whose W is READ_SHARED, which only ever appears in R.)
+     */
+    public static final long SEALED = -1L;
+
+    protected final int length;
+    protected volatile ShadowVar[] shadowVar;
+    protected final AbstractArrayState[] nextDimension;
+
+    protected WordArrayState(Object array, ArrayStateFactory.ArrayMode mode) {
+        super(array);
+        length = lengthOf(array);
+        if (array.getClass().getComponentType().isArray()) {
+            nextDimension = new AbstractArrayState[length];
+            Object[] objArray = (Object[]) array;
+            for (int i = 0; i < length; i++) {
+                nextDimension[i] = ArrayStateFactory.make(objArray[i], mode, false);
+            }
+        } else {
+            nextDimension = null;
+        }
+    }
+
+    @Override
+    public AbstractArrayState getShadowForNextDim(ShadowThread td, Object element, int i) {
+        if (element != nextDimension[i].getArrayNoCheck()) {
+            nextDimension[i] = td.arrayStateFactory.get(element);
+        }
+        return nextDimension[i];
+    }
+
+    @Override
+    public void setShadowForNextDim(int i, AbstractArrayState s) {
+        nextDimension[i] = s;
+    }
+
+    @Override
+    public final ShadowVar getState(int index) {
+        final ShadowVar[] s = shadowVar;
+        if (!inBounds(index)) {
+            Yikes.yikes("Bad shadow array get: out of bounds.  Using index 0...");
+            index = 0;
+        }
+        return s == null ? null : s[index];
+    }
+
+    @Override
+    public final synchronized boolean putState(int index, ShadowVar expected, ShadowVar v) {
+        if (!inBounds(index)) {
+            Yikes.yikes("Bad shadow array set: out of bounds.");
+            return true;
+        }
+        if (v == WORDS) {
+            // never stored: the words are the state.
+            return getState(index) == expected;
+        }
+        ShadowVar[] s = shadowVar;
+        if (s == null) {
+            if (expected != null) {
+                return false;
+            }
+            s = shadowVar = new ShadowVar[length];
+        }
+        if (s[index] != expected)
+            return false;
+
+        s[index] = v;
+        return true;
+    }
+
+    /**
+     * Whether index is in the array. Tools are called before the JVM checks the bounds, so they
+     * must check this before getWord or casWord, which do not.
+     */
+    public final boolean inBounds(int index) {
+        return index >= 0 && index < length;
+    }
+
+    /** The word for index, initially 0. Requires inBounds(index). */
+    public abstract long getWord(int index);
+
+    /** Set the word for index to word if it is still expected. Requires inBounds(index). */
+    public abstract boolean casWord(int index, long expected, long word);
+}
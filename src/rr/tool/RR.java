@@ -66,6 +66,7 @@ import rr.RRMain;
 import rr.error.ErrorMessage;
 import rr.error.ErrorMessages;
 import rr.instrument.Instrumentor;
+import rr.loader.ClassCache;
 import rr.loader.Loader;
 import rr.meta.MetaDataInfoMaps;
 import rr.simple.LastTool;
@@ -73,6 +74,7 @@ import rr.state.ShadowThread;
 import rr.tool.tasks.CountTask;
 import rr.tool.tasks.GCRunner;
 import rr.tool.tasks.MemoryStatsTask;
+import rr.tool.tasks.MetricsServer;
 import rr.tool.tasks.ThreadStacksTask;
 import rr.tool.tasks.TimeOutTask;
 
@@ -135,6 +137,17 @@ public class RR {
                 }
             });
 
+    public static CommandLineOption<Integer> metricsPortOption = CommandLine.makeInteger(
+            "metricsPort", -1, CommandLineOption.Kind.EXPERIMENTAL,
+            "Serve live counters, thread and array state counts, and error totals as XML on http://127.0.0.1:<port>/metrics.  0 picks a free port.  Off by default.",
+            new Runnable() {
+                public void run() {
+                    if (metricsPortOption.get() >= 0) {
+                        MetricsServer.start(metricsPortOption.get());
+                    }
+                }
+            });
+
     public static CommandLineOption<Integer> timeOutOption = CommandLine.makeInteger("maxTime", 0,
             CommandLineOption.Kind.STABLE, "Maximum execution time in seconds.", new Runnable() {
                 public void run() {
@@ -153,6 +166,14 @@ public class RR {
             CommandLineOption.Kind.STABLE,
             "Record stack traces for printing in erros messages.  Stacks are expensive to compute, so by default RoadRunner doesn't (See ShadowThread.java).");
 
+    public static CommandLineOption<Boolean> shadowStackOption = CommandLine.makeBoolean(
+            "shadowStacks", false, CommandLineOption.Kind.STABLE,
+            "Record stacks for error messages from RoadRunner's own method enter/exit events instead of the JVM.  Much cheaper than -stacks, but only shows instrumented methods, and needs those events (no -noEnter).  Use with -callSites to show the line of each call.  Must come before -tool.");
+
+    public static CommandLineOption<Integer> maxStacksOption = CommandLine.makeInteger("maxStacks",
+            10, CommandLineOption.Kind.STABLE,
+            "Maximum number of error messages for each declaration/operation that record a stack under -stacks or -shadowStacks.");
+
     public static CommandLineOption<Boolean> valuesOption = CommandLine.makeBoolean("values", false,
             CommandLineOption.Kind.EXPERIMENTAL,
             "Pass tools.internal/new values for writes to tools.  Tools can then change the new value to be written.  You MUST run java with -noverify if you use -values in conjunction with array instrumentation.");
@@ -292,9 +313,11 @@ public class RR {
                     } else {
                         Util.log("User has disabled fastpath instrumentation.");
                     }
-                    noEnterOption
-                            .set(noEnterOption.get() || (firstEnter.getClass() == LastTool.class
-                                    && firstExit.getClass() == LastTool.class));
+                    // -shadowStacks reads the stack kept by enter/exit events.
+                    noEnterOption.set(noEnterOption.get()
+                            || (firstEnter.getClass() == LastTool.class
+                                    && firstExit.getClass() == LastTool.class
+                                    && !shadowStackOption.get()));
                     if (noEnterOption.get()) {
                         Util.log("No Tools implement enter/exit hooks.");
                     }
@@ -354,6 +377,7 @@ public class RR {
         if (endTime == 0) {
             endTimer(); // call here in case the target didn't exit cleanly
         }
+        ErrorMessage.flush();
 
         // always always always print time
         boolean tmp = Util.quietOption.get();
@@ -361,6 +385,8 @@ public class RR {
         Util.logf("Total Time: %d", (endTime - startTime));
         Util.quietOption.set(tmp);
 
+        ClassCache.save();
+
         if (RR.noShutdownHookOption.get()) {
             return;
         }
@@ -474,6 +500,7 @@ public class RR {
         xml.print("threadMaxActive", ShadowThread.maxActiveThreads());
         xml.print("errorTotal", ErrorMessage.getTotalNumberOfErrors());
         xml.print("distinctErrorTotal", ErrorMessage.getTotalNumberOfDistinctErrors());
+        xml.print("errorReportsDropped", ErrorMessage.getNumberOfDroppedReports());
         ErrorMessages.xmlErrorsByMethod(xml);
         ErrorMessages.xmlErrorsByField(xml);
         ErrorMessages.xmlErrorsByArray(xml);
@@ -70,6 +70,7 @@ import rr.state.ShadowLock;
 import rr.state.ShadowThread;
 import rr.state.ShadowVar;
 import rr.state.ShadowVolatile;
+import rr.state.WordArrayState;
 import rr.state.update.AbstractFieldUpdater;
 
 public class RREventGenerator extends RR {
@@ -158,6 +159,14 @@ public class RREventGenerator extends RR {
 
     protected static VolatileAccessEvent prepVolatileAccessEvent(Object target, ShadowVar gs,
             int fadId, ShadowThread td, boolean isWrite) {
+        return prepVolatileAccessEvent(target, gs, fadId, td, isWrite, null);
+    }
+
+    /*
+     * shadowVolatile may be null, in which case it is looked up.
+     */
+    protected static VolatileAccessEvent prepVolatileAccessEvent(Object target, ShadowVar gs,
+            int fadId, ShadowThread td, boolean isWrite, ShadowVolatile shadowVolatile) {
         FieldAccessInfo fad = MetaDataInfoMaps.getFieldAccesses().get(fadId);
         // do first. see above
 
@@ -172,7 +181,8 @@ public class RREventGenerator extends RR {
         fae.setInfo(fad);
         fae.setUpdater(updater);
         fae.setWrite(isWrite);
-        fae.setShadowVolatile(ShadowVolatile.get(target, fad.getField()));
+        fae.setShadowVolatile(shadowVolatile != null ? shadowVolatile
+                : ShadowVolatile.get(target, fad.getField()));
         if (gs == null) {
             fae.putOriginalShadow(null);
             gs = getTool().makeShadowVar(fae);
@@ -208,6 +218,34 @@ public class RREventGenerator extends RR {
         }
     }
 
+    /*
+     * Called from the instrumented accessors, which keep the ShadowVolatile in a field next to
+     * the volatile (see GuardStateInserter).
+     */
+    public static void volatileWriteAccess(Object target, ShadowVar gs, int fadId,
+            ShadowThread td, ShadowVolatile shadowVolatile) {
+        try {
+            VolatileAccessEvent ae = prepVolatileAccessEvent(target, gs, fadId, td, true,
+                    shadowVolatile);
+            getTool().volatileAccess(ae);
+            ae.setTarget(null);
+        } catch (Throwable e) {
+            Assert.panic(e);
+        }
+    }
+
+    public static void volatileReadAccess(Object target, ShadowVar gs, int fadId, ShadowThread td,
+            ShadowVolatile shadowVolatile) {
+        try {
+            VolatileAccessEvent ae = prepVolatileAccessEvent(target, gs, fadId, td, false,
+                    shadowVolatile);
+            getTool().volatileAccess(ae);
+            ae.setTarget(null);
+        } catch (Throwable e) {
+            Assert.panic(e);
+        }
+    }
+
     /****/
 
     public static ShadowVar cloneVariableState(ShadowVar shadowVar) {
@@ -561,7 +599,8 @@ public class RREventGenerator extends RR {
         if (gs == null) {
             aae.putOriginalShadow(null);
             gs = getTool().makeShadowVar(aae);
-            if (!aae.putShadow(gs)) {
+            // WORDS is never stored (see WordArrayState).
+            if (gs != WordArrayState.WORDS && !aae.putShadow(gs)) {
                 Yikes.yikes("Concurrent array guard state init...");
                 gs = as.getState(index);
                 Assert.assertTrue(gs != null,
@@ -744,6 +783,14 @@ public class RREventGenerator extends RR {
 
     protected static VolatileAccessEvent prepVolatileAccessEventML(Object target, ShadowVar gs,
             int fadId, ShadowThread td, boolean isWrite) {
+        return prepVolatileAccessEventML(target, gs, fadId, td, isWrite, null);
+    }
+
+    /*
+     * shadowVolatile may be null, in which case it is looked up.
+     */
+    protected static VolatileAccessEvent prepVolatileAccessEventML(Object target, ShadowVar gs,
+            int fadId, ShadowThread td, boolean isWrite, ShadowVolatile shadowVolatile) {
         FieldAccessInfo fad = MetaDataInfoMaps.getFieldAccesses().get(fadId);
         // do first. see above
 
@@ -763,7 +810,8 @@ public class RREventGenerator extends RR {
         fae.setInfo(fad);
         fae.setUpdater(updater);
         fae.setWrite(isWrite);
-        fae.setShadowVolatile(ShadowVolatile.get(target, fad.getField()));
+        fae.setShadowVolatile(shadowVolatile != null ? shadowVolatile
+                : ShadowVolatile.get(target, fad.getField()));
         if (gs == null) {
             fae.putOriginalShadow(null);
             gs = getTool().makeShadowVar(fae);
@@ -799,4 +847,28 @@ public class RREventGenerator extends RR {
             Assert.panic(e);
         }
     }
+
+    public static void volatileWriteAccessML(Object target, ShadowVar gs, int fadId,
+            ShadowThread td, ShadowVolatile shadowVolatile) {
+        try {
+            VolatileAccessEvent fae = prepVolatileAccessEvent(target, gs, fadId, td, true,
+                    shadowVolatile);
+            getTool().volatileAccess(fae);
+            fae.setTarget(null);
+        } catch (Throwable e) {
+            Assert.panic(e);
+        }
+    }
+
+    public static void volatileReadAccessML(Object target, ShadowVar gs, int fadId,
+            ShadowThread td, ShadowVolatile shadowVolatile) {
+        try {
+            VolatileAccessEvent fae = prepVolatileAccessEvent(target, gs, fadId, td, false,
+                    shadowVolatile);
+            getTool().volatileAccess(fae);
+            fae.setTarget(null);
+        } catch (Throwable e) {
+            Assert.panic(e);
+        }
+    }
 }
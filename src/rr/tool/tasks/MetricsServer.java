@@ -0,0 +1,169 @@
+/******************************************************************************
+
+Copyright (c) 2010, Cormac Flanagan (University of California, Santa Cruz)
+                    and Stephen Freund (Williams College) 
+
+All rights reserved.  
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+
+    * Redistributions in binary form must reproduce the above
+      copyright notice, this list of conditions and the following
+      disclaimer in the documentation and/or other materials provided
+      with the distribution.
+
+    * Neither the names of the University of California, Santa Cruz
+      and Williams College nor the names of its contributors may be
+      used to endorse or promote products derived from this software
+      without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+******************************************************************************/
+
+package rr.tool.tasks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import rr.error.ErrorMessage;
+import rr.state.ArrayStateFactory;
+import rr.state.ShadowThread;
+import rr.tool.RR;
+import rr.tool.Tool;
+import acme.util.Assert;
+import acme.util.Util;
+import acme.util.count.AbstractCounter;
+import acme.util.io.XMLWriter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves a live snapshot of the run's counters and summary numbers as XML on
+ * http://127.0.0.1:port/metrics (see -metricsPort).  Nothing is paused to take
+ * the snapshot: counters are read racily, as the periodic tasks do, so values
+ * may be a little stale.  Counters with a count also get a rate, in events per
+ * second since the previous sample, where samples are at least a second apart.
+ */
+public class MetricsServer implements HttpHandler {
+
+	private static final long SAMPLE_INTERVAL = 1000;
+
+	private final long startTime = System.currentTimeMillis();
+
+	// guarded by this
+	private long lastSampleTime = startTime;
+	private IdentityHashMap<AbstractCounter, Long> lastCounts = new IdentityHashMap<AbstractCounter, Long>();
+	private IdentityHashMap<AbstractCounter, Double> rates = new IdentityHashMap<AbstractCounter, Double>();
+
+	public static void start(int port) {
+		try {
+			final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+			server.createContext("/metrics", new MetricsServer());
+			// The dispatcher thread inherits daemon status from the thread that
+			// starts the server, and must not keep the target from exiting.
+			Thread starter = new Thread("RR Metrics Starter") {
+				@Override
+				public void run() {
+					server.start();
+				}
+			};
+			starter.setDaemon(true);
+			starter.start();
+			starter.join();
+			Util.logf("Metrics available at http://%s:%d/metrics", server.getAddress().getHostString(), server.getAddress().getPort());
+		} catch (IOException e) {
+			Assert.fail("Could not start metrics server on port " + port, e);
+		} catch (InterruptedException e) {
+			Assert.panic(e);
+		}
+	}
+
+	public void handle(HttpExchange exchange) throws IOException {
+		byte[] body;
+		try {
+			body = snapshot().getBytes("UTF-8");
+		} catch (RuntimeException e) {
+			body = ("<error>" + e + "</error>\n").getBytes("UTF-8");
+		}
+		exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+		exchange.sendResponseHeaders(200, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+	private synchronized String snapshot() {
+		List<AbstractCounter> counters = AbstractCounter.getAll();
+		sample(counters);
+
+		StringWriter sOut = new StringWriter();
+		XMLWriter xml = new XMLWriter(new PrintWriter(sOut));
+		xml.push("metrics");
+		xml.print("time", System.currentTimeMillis() - startTime);
+		Tool tool = RR.getTool();
+		xml.print("tools", tool == null ? "" : tool.toChainString());
+		xml.print("threadCount", ShadowThread.numThreads());
+		xml.print("threadMaxActive", ShadowThread.maxActiveThreads());
+		xml.print("arrayStatesYoung", ArrayStateFactory.youngSize());
+		xml.print("arrayStatesAttic", ArrayStateFactory.atticSize());
+		xml.print("errorTotal", ErrorMessage.getTotalNumberOfErrors());
+		xml.print("distinctErrorTotal", ErrorMessage.getTotalNumberOfDistinctErrors());
+		xml.print("errorReportsDropped", ErrorMessage.getNumberOfDroppedReports());
+		xml.push("counters");
+		for (AbstractCounter c : counters) {
+			Double rate = rates.get(c);
+			if (rate != null) {
+				xml.printInsideScope("counter", "name", String.format("\"%s\"", c.getFullName()), "value", c.get(), "rate", String.format("%.1f", rate));
+			} else {
+				xml.printInsideScope("counter", "name", String.format("\"%s\"", c.getFullName()), "value", c.get());
+			}
+		}
+		xml.pop();
+		xml.pop();
+		xml.close();
+		return sOut.toString();
+	}
+
+	// this must be held.
+	private void sample(List<AbstractCounter> counters) {
+		long now = System.currentTimeMillis();
+		long elapsed = now - lastSampleTime;
+		if (elapsed < SAMPLE_INTERVAL) return;
+		IdentityHashMap<AbstractCounter, Long> counts = new IdentityHashMap<AbstractCounter, Long>();
+		IdentityHashMap<AbstractCounter, Double> newRates = new IdentityHashMap<AbstractCounter, Double>();
+		for (AbstractCounter c : counters) {
+			if (!c.hasCount()) continue;
+			long count = c.getCount();
+			Long last = lastCounts.get(c);
+			counts.put(c, count);
+			newRates.put(c, (count - (last == null ? 0 : last)) * 1000.0 / elapsed);
+		}
+		lastSampleTime = now;
+		lastCounts = counts;
+		rates = newRates;
+	}
+}
@@ -172,7 +172,7 @@ public class EraserWithBarriersTool extends Tool implements BarrierListener<Obje
                 }
             }
             LockSet ls = (LockSet) state;
-            gs.state = ls = LockSet.intersect(ls, currentLockSet);
+            gs.state = ls = LockSet.intersect(ls, currentLockSet, currentThread.getTid());
             if (ls.isEmpty() && !barrierTransition(currentThread, gs)) {
                 error(fae, gs);
                 return;
@@ -207,7 +207,7 @@ public class EraserWithBarriersTool extends Tool implements BarrierListener<Obje
     private static boolean lockSetCheck(final ShadowThread currentThread, BEGuardState gs,
             final ShadowVar state) {
         LockSet ls = (LockSet) state;
-        ls = LockSet.intersect(ls, ts_get_lset(currentThread));
+        ls = LockSet.intersect(ls, ts_get_lset(currentThread), currentThread.getTid());
         if (ls != state) {
             gs.state = ls;
         }
@@ -276,14 +276,16 @@ public class EraserWithBarriersTool extends Tool implements BarrierListener<Obje
     @Override
     public void acquire(AcquireEvent ae) {
         ShadowThread currentThread = ae.getThread();
-        ts_set_lset(currentThread, ts_get_lset(currentThread).add(ae.getLock()));
+        ts_set_lset(currentThread,
+                ts_get_lset(currentThread).add(ae.getLock(), currentThread.getTid()));
         super.acquire(ae);
     }
 
     @Override
     public void release(ReleaseEvent re) {
         ShadowThread currentThread = re.getThread();
-        ts_set_lset(currentThread, ts_get_lset(currentThread).remove(re.getLock()));
+        ts_set_lset(currentThread,
+                ts_get_lset(currentThread).remove(re.getLock(), currentThread.getTid()));
         super.release(re);
     }
 
@@ -108,7 +108,8 @@ final public class LockSetTool extends Tool {
 
                 LockSet ls = (LockSet) g;
 
-                LockSet ls2 = LockSet.intersect(ls, ts_get_lset(currentThread));
+                LockSet ls2 = LockSet.intersect(ls, ts_get_lset(currentThread),
+                        currentThread.getTid());
 
                 if (ls != ls2) {
                     if (!fae.putShadow(ls2)) {
@@ -160,14 +161,16 @@ final public class LockSetTool extends Tool {
     @Override
     public void acquire(AcquireEvent ae) {
         ShadowThread currentThread = ae.getThread();
-        ts_set_lset(currentThread, ts_get_lset(currentThread).add(ae.getLock()));
+        ts_set_lset(currentThread,
+                ts_get_lset(currentThread).add(ae.getLock(), currentThread.getTid()));
         super.acquire(ae);
     }
 
     @Override
     public void release(ReleaseEvent re) {
         ShadowThread currentThread = re.getThread();
-        ts_set_lset(currentThread, ts_get_lset(currentThread).remove(re.getLock()));
+        ts_set_lset(currentThread,
+                ts_get_lset(currentThread).remove(re.getLock(), currentThread.getTid()));
         super.release(re);
     }
 
@@ -100,7 +100,8 @@ public final class ProtectingLockTool extends Tool {
 
         if (gs instanceof LockSet) {
             LockSet ls = (LockSet) gs;
-            ls = LockSet.intersect(ls, LockSetTool.ts_get_lset(currentThread));
+            ls = LockSet.intersect(ls, LockSetTool.ts_get_lset(currentThread),
+                    currentThread.getTid());
             set(ld, gs = ls);
             if (gs != LockSet.emptySet()) {
                 return true;
@@ -34,17 +34,16 @@ package tools.fasttrack;
 
 import acme.util.Util;
 import rr.state.ShadowLock;
-import tools.util.VectorClock;
+import tools.util.AdaptiveVectorClock;
 
-public class FTLockState extends VectorClock {
+public class FTLockState extends AdaptiveVectorClock {
 
-    // inherited values field: protected by peer.getLock().
+    // inherited clock state: protected by peer.getLock().
     // That lock will be held during acquire/release/wait events.
 
     private final ShadowLock peer;
 
-    public FTLockState(ShadowLock peer, int size) {
-        super(size);
+    public FTLockState(ShadowLock peer) {
         this.peer = peer;
     }
 
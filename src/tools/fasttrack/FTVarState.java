@@ -32,6 +32,7 @@
 
 package tools.fasttrack;
 
+import rr.error.ErrorMessage;
 import rr.state.ShadowVar;
 import tools.util.Epoch;
 import tools.util.VectorClock;
@@ -73,6 +74,12 @@ public class FTVarState extends VectorClock implements ShadowVar {
         super.makeCV(len);
     }
 
+    @Override
+    public synchronized Object snapshot() {
+        return ErrorMessage.format("[W=%s R=%s V=%s]", Epoch.toString(W), Epoch.toString(R),
+                new VectorClock(this));
+    }
+
     @Override
     public synchronized String toString() {
         return String.format("[W=%s R=%s V=%s]", Epoch.toString(W), Epoch.toString(R),
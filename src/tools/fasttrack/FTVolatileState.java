@@ -34,17 +34,16 @@ package tools.fasttrack;
 
 import acme.util.Util;
 import rr.state.ShadowVolatile;
-import tools.util.VectorClock;
+import tools.util.AdaptiveVectorClock;
 
-public class FTVolatileState extends VectorClock {
-    // inherited values field: protected by peer.
+public class FTVolatileState extends AdaptiveVectorClock {
+    // inherited clock state: protected by peer.
     // RR ensures that peer is held when volatile access handler
     // is called.
 
     private final ShadowVolatile peer;
 
-    public FTVolatileState(ShadowVolatile peer, int size) {
-        super(size);
+    public FTVolatileState(ShadowVolatile peer) {
         this.peer = peer;
     }
 
@@ -34,6 +34,7 @@ package tools.fasttrack;
 
 import acme.util.Assert;
 import acme.util.Util;
+import acme.util.Yikes;
 import acme.util.count.AggregateCounter;
 import acme.util.count.ThreadLocalCounter;
 import acme.util.decorations.Decoration;
@@ -69,15 +70,16 @@ import rr.meta.ArrayAccessInfo;
 import rr.meta.ClassInfo;
 import rr.meta.FieldInfo;
 import rr.meta.MetaDataInfoMaps;
-import rr.meta.MethodInfo;
 import rr.meta.OperationInfo;
-import rr.meta.SourceLocation;
 import rr.state.ShadowLock;
 import rr.state.ShadowThread;
 import rr.state.ShadowVar;
 import rr.state.ShadowVolatile;
+import rr.state.WordArrayState;
+import rr.state.update.Updaters;
 import rr.tool.RR;
 import rr.tool.Tool;
+import tools.util.AdaptiveVectorClock;
 import tools.util.Epoch;
 import tools.util.VectorClock;
 
@@ -97,6 +99,10 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
 
     private static final boolean COUNT_OPERATIONS = RRMain.slowMode();
     private static final int INIT_VECTOR_CLOCK_SIZE = 4;
+    private static final int INIT_CLASS_BITS_SIZE = 4;
+
+    // WordArrayState words hold a packed W/R pair, as FTCASVarState does.
+    private static final boolean COMPACT_ARRAYS = Epoch.PAIR_FITS_IN_LONG;
 
     public final ErrorMessage<FieldInfo> fieldErrors = ErrorMessages
             .makeFieldErrorMessage("FastTrack");
@@ -116,6 +122,9 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
                         }
                     });
 
+    // Use FTCASVarState for new locations. Set in init(), once -updaters has been processed.
+    private boolean casVarStates;
+
     public static VectorClock getClassInitTime(ClassInfo ci) {
         synchronized (classInitTime) {
             return classInitTime.get(ci);
@@ -176,6 +185,13 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
         ts_set_E(st, tV.get(tid));
     }
 
+    protected void maxEpochAndCV(ShadowThread st, AdaptiveVectorClock other, OperationInfo info) {
+        final int tid = st.getTid();
+        final VectorClock tV = ts_get_V(st);
+        tV.max(other);
+        ts_set_E(st, tV.get(tid));
+    }
+
     protected void incEpochAndCV(ShadowThread st, OperationInfo info) {
         final int tid = st.getTid();
         final VectorClock tV = ts_get_V(st);
@@ -187,7 +203,7 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
             "FastTrack:ShadowLock", DecorationFactory.Type.MULTIPLE,
             new DefaultValue<ShadowLock, FTLockState>() {
                 public FTLockState get(final ShadowLock lock) {
-                    return new FTLockState(lock, INIT_VECTOR_CLOCK_SIZE);
+                    return new FTLockState(lock);
                 }
             });
 
@@ -200,7 +216,7 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
             .makeDecoration("FastTrack:shadowVolatile", DecorationFactory.Type.MULTIPLE,
                     new DefaultValue<ShadowVolatile, FTVolatileState>() {
                         public FTVolatileState get(final ShadowVolatile vol) {
-                            return new FTVolatileState(vol, INIT_VECTOR_CLOCK_SIZE);
+                            return new FTVolatileState(vol);
                         }
                     });
 
@@ -209,13 +225,25 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
         return volatileVs.get(ld);
     }
 
+    @Override
+    public void init() {
+        super.init();
+        casVarStates = Updaters.updateOptions.get() == Updaters.UpdateMode.CAS
+                && Epoch.PAIR_FITS_IN_LONG;
+    }
+
     @Override
     public ShadowVar makeShadowVar(final AccessEvent event) {
         if (event.getKind() == Kind.VOLATILE) {
             final ShadowThread st = event.getThread();
-            final VectorClock volV = getV(((VolatileAccessEvent) event).getShadowVolatile());
+            final FTVolatileState volV = getV(((VolatileAccessEvent) event).getShadowVolatile());
             volV.max(ts_get_V(st));
             return super.makeShadowVar(event);
+        } else if (COMPACT_ARRAYS && event.getKind() == Kind.ARRAY
+                && ((ArrayAccessEvent) event).getArrayState() instanceof WordArrayState) {
+            return WordArrayState.WORDS;
+        } else if (casVarStates) {
+            return new FTCASVarState(event.isWrite(), ts_get_E(event.getThread()));
         } else {
             return new FTVarState(event.isWrite(), ts_get_E(event.getThread()));
         }
@@ -257,7 +285,7 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
     public void release(final ReleaseEvent event) {
         final ShadowThread st = event.getThread();
         final VectorClock tV = ts_get_V(st);
-        final VectorClock lockV = getV(event.getLock());
+        final FTLockState lockV = getV(event.getLock());
 
         lockV.max(tV);
         incEpochAndCV(st, event.getInfo());
@@ -286,34 +314,82 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
         }
     }
 
+    // Bitset of ClassInfo ids whose init time this thread has already joined.
+    // Thread-local: only read and written by the owning thread.
+    protected static long[] ts_get_classInitJoined(ShadowThread st) {
+        Assert.panic("Bad");
+        return null;
+    }
+
+    protected static void ts_set_classInitJoined(ShadowThread st, long[] bits) {
+        Assert.panic("Bad");
+    }
+
+    /*
+     * The init time of a class never changes once another thread can see the class, so each thread
+     * only needs to join it once. Only call from the slow path, before any race checks.
+     */
+    protected void joinClassInitTime(final ShadowThread st, final ClassInfo owner,
+            final OperationInfo info) {
+        final int id = owner.getId();
+        long[] bits = ts_get_classInitJoined(st);
+        if (bits != null && (id >> 6) < bits.length && (bits[id >> 6] & (1L << id)) != 0) {
+            return;
+        }
+        synchronized (classInitTime) {
+            maxEpochAndCV(st, classInitTime.get(owner), info); // won't change current epoch
+        }
+        if (bits == null || (id >> 6) >= bits.length) {
+            final long[] newBits = new long[Math.max((id >> 6) + 1,
+                    bits == null ? INIT_CLASS_BITS_SIZE : bits.length * 2)];
+            if (bits != null) {
+                System.arraycopy(bits, 0, newBits, 0, bits.length);
+            }
+            bits = newBits;
+            ts_set_classInitJoined(st, bits);
+        }
+        bits[id >> 6] |= 1L << id;
+    }
+
+    protected void joinClassInitTime(final AccessEvent event, final ShadowThread st) {
+        if (event.getTarget() == null && event.getKind() == Kind.FIELD) {
+            // CS636: Static variable
+            joinClassInitTime(st, ((FieldAccessEvent) event).getInfo().getField().getOwner(),
+                    event.getAccessInfo());
+        }
+    }
+
+    /*
+     * Hot path: no metadata lookups, locks, or allocation happen before the same-epoch checks in
+     * read/write. Static accesses join the owning class's init time in the slow path only, which
+     * is sound because the same-epoch paths perform no race checks.
+     */
     @Override
     public void access(final AccessEvent event) {
-        SourceLocation sl = event.getAccessInfo().getLoc();
-        int line = sl.getLine();
-        int offset = sl.getOffset();
-        MethodInfo methInfo = sl.getMethod();
-        String methName = methInfo.getName();
-        ClassInfo className = methInfo.getOwner();
-        String desc = methInfo.getDescriptor();
-
         final ShadowThread st = event.getThread();
         final ShadowVar shadow = getOriginalOrBad(event.getOriginalShadow(), st);
 
         if (shadow instanceof FTVarState) {
-            FTVarState sx = (FTVarState) shadow;
-
-            Object target = event.getTarget();
-            if (target == null) {
-                // CS636: Static variable
-                ClassInfo owner = ((FieldAccessEvent) event).getInfo().getField().getOwner();
-                final VectorClock tV = ts_get_V(st);
-                synchronized (classInitTime) {
-                    VectorClock initTime = classInitTime.get(owner);
-                    maxEpochAndCV(st, initTime, event.getAccessInfo()); // won't change current
-                                                                        // epoch
-                }
+            final FTVarState sx = (FTVarState) shadow;
+            if (event.isWrite()) {
+                write(event, st, sx);
+            } else {
+                read(event, st, sx);
             }
-
+        } else if (shadow == WordArrayState.WORDS) {
+            final ArrayAccessEvent aae = (ArrayAccessEvent) event;
+            final WordArrayState as = (WordArrayState) aae.getArrayState();
+            final int index = aae.getIndex();
+            if (!as.inBounds(index)) {
+                // the JVM throws once we return. Skip it, as FineArrayState does.
+                Yikes.yikes("Bad shadow array access: out of bounds.");
+            } else if (event.isWrite()) {
+                write(aae, st, as, index);
+            } else {
+                read(aae, st, as, index);
+            }
+        } else if (shadow instanceof FTCASVarState) {
+            final FTCASVarState sx = (FTCASVarState) shadow;
             if (event.isWrite()) {
                 write(event, st, sx);
             } else {
@@ -393,6 +469,8 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
             }
         }
 
+        joinClassInitTime(event, st);
+
         synchronized (sx) {
             final VectorClock tV = ts_get_V(st);
             final int/* epoch */ r = sx.R;
@@ -503,6 +581,8 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
             }
         }
 
+        joinClassInitTime(event, st);
+
         synchronized (sx) {
             final int/* epoch */ w = sx.W;
             final int wTid = Epoch.tid(w);
@@ -597,12 +677,299 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
     // }
     // }
 
+    /*
+     * read and write for FTCASVarState (-updaters=CAS). The rules are the same as above, but the
+     * exclusive cases commit with a CAS on sx.WR and start over if it fails, so they never block.
+     * Only the move into READ_SHARED and accesses to READ_SHARED locations synchronize on sx.
+     * Races are reported after the CAS succeeds, so a retry never reports one twice.
+     */
+    protected void read(final AccessEvent event, final ShadowThread st, final FTCASVarState sx) {
+        final int/* epoch */ e = ts_get_E(st);
+
+        /* optional */ {
+            final int/* epoch */ r = FTCASVarState.R(sx.WR);
+            if (r == e) {
+                if (COUNT_OPERATIONS)
+                    readSameEpoch.inc(st.getTid());
+                return;
+            } else if (r == Epoch.READ_SHARED && sx.get(st.getTid()) == e) {
+                if (COUNT_OPERATIONS)
+                    readSharedSameEpoch.inc(st.getTid());
+                return;
+            }
+        }
+
+        joinClassInitTime(event, st);
+
+        final VectorClock tV = ts_get_V(st);
+        final int tid = st.getTid();
+        while (true) {
+            final long wr = sx.WR;
+            final int/* epoch */ r = FTCASVarState.R(wr);
+
+            if (r == Epoch.READ_SHARED) {
+                synchronized (sx) {
+                    // R is final once READ_SHARED, and W only changes under the lock.
+                    final int/* epoch */ w = FTCASVarState.W(sx.WR);
+                    final int wTid = Epoch.tid(w);
+                    if (wTid != tid && !Epoch.leq(w, tV.get(wTid))) {
+                        if (COUNT_OPERATIONS)
+                            writeReadError.inc(tid);
+                        error(event, sx, "Write-Read Race", "Write by ", wTid, "Read by ", tid);
+                        return;
+                    }
+                    if (COUNT_OPERATIONS)
+                        readShared.inc(tid);
+                    sx.set(tid, e);
+                }
+                return;
+            }
+
+            final int/* epoch */ w = FTCASVarState.W(wr);
+            final int wTid = Epoch.tid(w);
+            if (wTid != tid && !Epoch.leq(w, tV.get(wTid))) {
+                if (COUNT_OPERATIONS)
+                    writeReadError.inc(tid);
+                error(event, sx, "Write-Read Race", "Write by ", wTid, "Read by ", tid);
+                // best effort recovery:
+                return;
+            }
+
+            final int rTid = Epoch.tid(r);
+            if (rTid == tid || Epoch.leq(r, tV.get(rTid))) {
+                if (sx.cas(wr, FTCASVarState.pack(w, e))) {
+                    if (COUNT_OPERATIONS)
+                        readExclusive.inc(tid);
+                    return;
+                }
+            } else {
+                synchronized (sx) {
+                    if (sx.WR == wr) {
+                        int initSize = Math.max(Math.max(rTid, tid), INIT_VECTOR_CLOCK_SIZE);
+                        sx.makeCV(initSize);
+                        sx.set(rTid, r);
+                        sx.set(tid, e);
+                        if (sx.cas(wr, FTCASVarState.pack(w, Epoch.READ_SHARED))) {
+                            if (COUNT_OPERATIONS)
+                                readShare.inc(tid);
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    protected void write(final AccessEvent event, final ShadowThread st, final FTCASVarState sx) {
+        final int/* epoch */ e = ts_get_E(st);
+
+        /* optional */ {
+            final int/* epoch */ w = FTCASVarState.W(sx.WR);
+            if (w == e) {
+                if (COUNT_OPERATIONS)
+                    writeSameEpoch.inc(st.getTid());
+                return;
+            }
+        }
+
+        joinClassInitTime(event, st);
+
+        final VectorClock tV = ts_get_V(st);
+        final int tid = st.getTid();
+        while (true) {
+            final long wr = sx.WR;
+            final int/* epoch */ r = FTCASVarState.R(wr);
+
+            if (r == Epoch.READ_SHARED) {
+                synchronized (sx) {
+                    final int/* epoch */ w = FTCASVarState.W(sx.WR);
+                    final int wTid = Epoch.tid(w);
+                    if (wTid != tid /* optimization */ && !Epoch.leq(w, tV.get(wTid))) {
+                        if (COUNT_OPERATIONS)
+                            writeWriteError.inc(tid);
+                        error(event, sx, "Write-Write Race", "Write by ", wTid, "Write by ", tid);
+                    }
+                    if (sx.anyGt(tV)) {
+                        for (int prevReader = sx.nextGt(tV, 0); prevReader > -1; prevReader = sx
+                                .nextGt(tV, prevReader + 1)) {
+                            error(event, sx, "Read(Shared)-Write Race", "Read by ", prevReader,
+                                    "Write by ", tid);
+                        }
+                        if (COUNT_OPERATIONS)
+                            sharedWriteError.inc(tid);
+                    } else {
+                        if (COUNT_OPERATIONS)
+                            writeShared.inc(tid);
+                    }
+                    // no CAS needed: once READ_SHARED, WR only changes under the lock.
+                    sx.WR = FTCASVarState.pack(e, Epoch.READ_SHARED);
+                }
+                return;
+            }
+
+            final int/* epoch */ w = FTCASVarState.W(wr);
+            final int wTid = Epoch.tid(w);
+            final int rTid = Epoch.tid(r);
+            final boolean writeRace = wTid != tid /* optimization */
+                    && !Epoch.leq(w, tV.get(wTid));
+            final boolean readRace = rTid != tid /* optimization */
+                    && !Epoch.leq(r, tV.get(rTid));
+
+            if (sx.cas(wr, FTCASVarState.pack(e, r))) {
+                if (writeRace) {
+                    if (COUNT_OPERATIONS)
+                        writeWriteError.inc(tid);
+                    error(event, sx, "Write-Write Race", "Write by ", wTid, "Write by ", tid);
+                }
+                if (readRace) {
+                    if (COUNT_OPERATIONS)
+                        readWriteError.inc(tid);
+                    error(event, sx, "Read-Write Race", "Read by ", rTid, "Write by ", tid);
+                } else {
+                    if (COUNT_OPERATIONS)
+                        writeExclusive.inc(tid);
+                }
+                return;
+            }
+        }
+    }
+
+    /*
+     * read and write for indices of a WordArrayState (-array=COMPACT or BLOCK). An index's word
+     * packs its W and R epochs as FTCASVarState.WR does, and the exclusive rules update it with
+     * casWord. When an index becomes READ_SHARED, its word's R is set to READ_SHARED and an FTVarState
+     * holding W and the read clock is installed for it, both with the lock on the array state
+     * held. From then on, the FTVarState paths above handle that index and the word's W is stale,
+     * so R must be checked before W.
+     */
+    protected void read(final ArrayAccessEvent event, final ShadowThread st,
+            final WordArrayState as, final int index) {
+        final int/* epoch */ e = ts_get_E(st);
+        final VectorClock tV = ts_get_V(st);
+        final int tid = st.getTid();
+        while (true) {
+            final long wr = as.getWord(index);
+            final int/* epoch */ r = FTCASVarState.R(wr);
+            if (r == e) {
+                if (COUNT_OPERATIONS)
+                    readSameEpoch.inc(tid);
+                return;
+            }
+            if (r == Epoch.READ_SHARED) {
+                read(event, st, inflated(as, index));
+                return;
+            }
+
+            final int/* epoch */ w = FTCASVarState.W(wr);
+            final int wTid = Epoch.tid(w);
+            if (wTid != tid && !Epoch.leq(w, tV.get(wTid))) {
+                if (COUNT_OPERATIONS)
+                    writeReadError.inc(tid);
+                error(event, snapshot(wr), "Write-Read Race", "Write by ", wTid, "Read by ", tid);
+                // best effort recovery:
+                return;
+            }
+
+            final int rTid = Epoch.tid(r);
+            if (rTid == tid || Epoch.leq(r, tV.get(rTid))) {
+                if (as.casWord(index, wr, FTCASVarState.pack(w, e))) {
+                    if (COUNT_OPERATIONS)
+                        readExclusive.inc(tid);
+                    return;
+                }
+            } else {
+                synchronized (as) {
+                    if (as.casWord(index, wr, FTCASVarState.pack(w, Epoch.READ_SHARED))) {
+                        final FTVarState sx = new FTVarState(true, w);
+                        int initSize = Math.max(Math.max(rTid, tid), INIT_VECTOR_CLOCK_SIZE);
+                        sx.makeCV(initSize);
+                        sx.set(rTid, r);
+                        sx.set(tid, e);
+                        sx.R = Epoch.READ_SHARED;
+                        if (!as.putState(index, null, sx)) {
+                            Assert.panic("Index of compact array inflated twice: " + index);
+                        }
+                        if (COUNT_OPERATIONS)
+                            readShare.inc(tid);
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    protected void write(final ArrayAccessEvent event, final ShadowThread st,
+            final WordArrayState as, final int index) {
+        final int/* epoch */ e = ts_get_E(st);
+        final VectorClock tV = ts_get_V(st);
+        final int tid = st.getTid();
+        while (true) {
+            final long wr = as.getWord(index);
+            final int/* epoch */ r = FTCASVarState.R(wr);
+            if (r == Epoch.READ_SHARED) {
+                write(event, st, inflated(as, index));
+                return;
+            }
+            final int/* epoch */ w = FTCASVarState.W(wr);
+            if (w == e) {
+                if (COUNT_OPERATIONS)
+                    writeSameEpoch.inc(tid);
+                return;
+            }
+
+            final int wTid = Epoch.tid(w);
+            final int rTid = Epoch.tid(r);
+            final boolean writeRace = wTid != tid /* optimization */
+                    && !Epoch.leq(w, tV.get(wTid));
+            final boolean readRace = rTid != tid /* optimization */
+                    && !Epoch.leq(r, tV.get(rTid));
+
+            if (as.casWord(index, wr, FTCASVarState.pack(e, r))) {
+                if (writeRace) {
+                    if (COUNT_OPERATIONS)
+                        writeWriteError.inc(tid);
+                    error(event, snapshot(wr), "Write-Write Race", "Write by ", wTid, "Write by ",
+                            tid);
+                }
+                if (readRace) {
+                    if (COUNT_OPERATIONS)
+                        readWriteError.inc(tid);
+                    error(event, snapshot(wr), "Read-Write Race", "Read by ", rTid, "Write by ",
+                            tid);
+                } else {
+                    if (COUNT_OPERATIONS)
+                        writeExclusive.inc(tid);
+                }
+                return;
+            }
+        }
+    }
+
+    // The FTVarState of an index whose word says READ_SHARED.
+    protected static FTVarState inflated(final WordArrayState as, final int index) {
+        ShadowVar sx = as.getState(index);
+        if (sx == null) {
+            // the inflating thread holds the lock until the state is installed.
+            synchronized (as) {
+                sx = as.getState(index);
+            }
+        }
+        return (FTVarState) sx;
+    }
+
+    // The W/R state in a word, for error messages.
+    private static FTVarState snapshot(final long wr) {
+        final FTVarState sx = new FTVarState(true, FTCASVarState.W(wr));
+        sx.R = FTCASVarState.R(wr);
+        return sx;
+    }
+
     /*****/
 
     @Override
     public void volatileAccess(final VolatileAccessEvent event) {
         final ShadowThread st = event.getThread();
-        final VectorClock volV = getV((event).getShadowVolatile());
+        final FTVolatileState volV = getV((event).getShadowVolatile());
 
         if (event.isWrite()) {
             final VectorClock tV = ts_get_V(st);
@@ -670,7 +1037,7 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
     @Override
     public void preWait(WaitEvent event) {
         final ShadowThread st = event.getThread();
-        final VectorClock lockV = getV(event.getLock());
+        final FTLockState lockV = getV(event.getLock());
         lockV.max(ts_get_V(st)); // we hold lock, so no need to sync here...
         incEpochAndCV(st, event.getInfo());
         super.preWait(event);
@@ -681,7 +1048,7 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
     @Override
     public void postWait(WaitEvent event) {
         final ShadowThread st = event.getThread();
-        final VectorClock lockV = getV(event.getLock());
+        final FTLockState lockV = getV(event.getLock());
         maxEpochAndCV(st, lockV, event.getInfo()); // we hold lock here
         super.postWait(event);
         if (COUNT_OPERATIONS)
@@ -693,6 +1060,12 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
                 Epoch.toString(ts_get_E(td)));
     }
 
+    // toString(td), formatted by the error reporter from a copy of td's clock.
+    private static Object snapshot(final ShadowThread td) {
+        return ErrorMessage.format("[tid=%-2d   C=%s   E=%s]", td.getTid(), ts_get_V(td),
+                Epoch.toString(ts_get_E(td)));
+    }
+
     private final Decoration<ShadowThread, VectorClock> vectorClockForBarrierEntry = ShadowThread
             .makeDecoration("FT:barrier", DecorationFactory.Type.MULTIPLE,
                     new NullDefault<ShadowThread, VectorClock>());
@@ -740,10 +1113,7 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
     @Override
     public void classAccessed(ClassAccessedEvent event) {
         final ShadowThread st = event.getThread();
-        synchronized (classInitTime) {
-            final VectorClock initTime = classInitTime.get(event.getRRClass());
-            maxEpochAndCV(st, initTime, null);
-        }
+        joinClassInitTime(st, event.getRRClass(), null);
         if (COUNT_OPERATIONS)
             other.inc(st.getTid());
     }
@@ -755,7 +1125,7 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
         }
     }
 
-    protected void error(final AccessEvent ae, final FTVarState x, final String description,
+    protected void error(final AccessEvent ae, final ShadowVar x, final String description,
             final String prevOp, final int prevTid, final String curOp, final int curTid) {
 
         if (ae instanceof FieldAccessEvent) {
@@ -765,7 +1135,7 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
         }
     }
 
-    protected void arrayError(final ArrayAccessEvent aae, final FTVarState sx,
+    protected void arrayError(final ArrayAccessEvent aae, final ShadowVar sx,
             final String description, final String prevOp, final int prevTid, final String curOp,
             final int curTid) {
         final ShadowThread st = aae.getThread();
@@ -773,7 +1143,7 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
 
         if (arrayErrors.stillLooking(aae.getInfo())) {
             arrayErrors.error(st, aae.getInfo(), "Alloc Site", ArrayAllocSiteTracker.get(target),
-                    "Shadow State", sx, "Current Thread", toString(st), "Array",
+                    "Shadow State", sx, "Current Thread", snapshot(st), "Array",
                     Util.objectToIdentityString(target) + "[" + aae.getIndex() + "]", "Message",
                     description, "Previous Op", prevOp + " " + ShadowThread.get(prevTid),
                     "Currrent Op", curOp + " " + ShadowThread.get(curTid), "Stack",
@@ -788,7 +1158,7 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
         }
     }
 
-    protected void fieldError(final FieldAccessEvent fae, final FTVarState sx,
+    protected void fieldError(final FieldAccessEvent fae, final ShadowVar sx,
             final String description, final String prevOp, final int prevTid, final String curOp,
             final int curTid) {
         final FieldInfo fd = fae.getInfo().getField();
@@ -796,7 +1166,7 @@ public class FastTrackTool extends Tool implements BarrierListener<FTBarrierStat
         final Object target = fae.getTarget();
 
         if (fieldErrors.stillLooking(fd)) {
-            fieldErrors.error(st, fd, "Shadow State", sx, "Current Thread", toString(st), "Class",
+            fieldErrors.error(st, fd, "Shadow State", sx, "Current Thread", snapshot(st), "Class",
                     (target == null ? fd.getOwner() : target.getClass()), "Field",
                     Util.objectToIdentityString(target) + "." + fd, "Message", description,
                     "Previous Op", prevOp + " " + ShadowThread.get(prevTid), "Currrent Op",
@@ -727,6 +727,12 @@ public class FastTrackSamplingTool extends Tool implements BarrierListener<FTSBa
                 Epoch.toString(ts_get_E(td)));
     }
 
+    // toString(td), formatted by the error reporter from a copy of td's clock.
+    private static Object snapshot(final ShadowThread td) {
+        return ErrorMessage.format("[tid=%-2d   C=%s   E=%s]", td.getTid(), ts_get_V(td),
+                Epoch.toString(ts_get_E(td)));
+    }
+
     private final Decoration<ShadowThread, VectorClock> vectorClockForBarrierEntry = ShadowThread
             .makeDecoration("FTS:barrier", DecorationFactory.Type.MULTIPLE,
                     new NullDefault<ShadowThread, VectorClock>());
@@ -807,7 +813,7 @@ public class FastTrackSamplingTool extends Tool implements BarrierListener<FTSBa
 
         if (arrayErrors.stillLooking(aae.getInfo())) {
             arrayErrors.error(st, aae.getInfo(), "Alloc Site", ArrayAllocSiteTracker.get(target),
-                    "Shadow State", sx, "Current Thread", toString(st), "Array",
+                    "Shadow State", sx, "Current Thread", snapshot(st), "Array",
                     Util.objectToIdentityString(target) + "[" + aae.getIndex() + "]", "Message",
                     description, "Previous Op", prevOp + " " + ShadowThread.get(prevTid),
                     "Currrent Op", curOp + " " + ShadowThread.get(curTid), "Stack",
@@ -830,7 +836,7 @@ public class FastTrackSamplingTool extends Tool implements BarrierListener<FTSBa
         final Object target = fae.getTarget();
 
         if (fieldErrors.stillLooking(fd)) {
-            fieldErrors.error(st, fd, "Shadow State", sx, "Current Thread", toString(st), "Class",
+            fieldErrors.error(st, fd, "Shadow State", sx, "Current Thread", snapshot(st), "Class",
                     (target == null ? fd.getOwner() : target.getClass()), "Field",
                     Util.objectToIdentityString(target) + "." + fd, "Message", description,
                     "Previous Op", prevOp + " " + ShadowThread.get(prevTid), "Currrent Op",
@@ -0,0 +1,223 @@
+/******************************************************************************
+ *
+ * Copyright (c) 2010, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ ******************************************************************************/
+
+package tools.hb;
+
+import rr.error.ErrorMessage;
+import rr.error.ErrorSnapshot;
+import rr.state.ShadowVar;
+import sun.misc.Unsafe;
+import tools.util.Epoch;
+import tools.util.VectorClock;
+
+/*
+ * Shadow state for fields and array elements under HappensBeforeTool.
+ *
+ * The last write epoch and the last read epoch are packed into the single long WR (write in the
+ * high half, read in the low half) and updated with compare-and-set. While reads are totally
+ * ordered, that is all the state a location has. When a read is concurrent with the last read,
+ * R becomes Epoch.READ_SHARED for good and the reads are kept in the read clock instead, with one
+ * slot per thread.
+ *
+ * No access takes a monitor:
+ * - WR is only changed by cas().
+ * - The read clock is filled in and published under the lock on this state before WR is moved to
+ *   READ_SHARED, which happens at most once. It starts with just enough slots for the two reads
+ *   that shared it, and a slot past the end reads as Epoch.make(tid, 0).
+ * - Slot i of the read clock is only written by thread i. A reader writes its slot before it
+ *   checks W, and a writer changes W before it scans the slots, so at least one of two racing
+ *   accesses sees the other.
+ * - A reader whose slot is past the end grows the clock under the lock on this state. The slots
+ *   are copied before the new clock is published and merged again after, and a reader that finds
+ *   the clock replaced after writing its slot writes it again, so no slot write is lost.
+ */
+public final class HBVarState implements ShadowVar, ErrorSnapshot {
+
+    private volatile long WR;
+    private volatile int/* epoch */[] readClock;
+
+    public HBVarState(boolean isWrite, int/* epoch */ epoch) {
+        if (isWrite) {
+            WR = pack(epoch, Epoch.ZERO);
+        } else {
+            WR = pack(Epoch.ZERO, epoch);
+        }
+    }
+
+    public static long pack(int/* epoch */ w, int/* epoch */ r) {
+        return (((long) w) << 32) | (((long) r) & 0xFFFFFFFFL);
+    }
+
+    public static int/* epoch */ W(long wr) {
+        return (int) (wr >>> 32);
+    }
+
+    public static int/* epoch */ R(long wr) {
+        return (int) wr;
+    }
+
+    public long get() {
+        return WR;
+    }
+
+    public boolean cas(long expected, long wr) {
+        return unsafe.compareAndSwapLong(this, wrOffset, expected, wr);
+    }
+
+    /*
+     * Move R to READ_SHARED, with r and e as the first two entries of the read clock. Returns
+     * false if WR is no longer expected.
+     */
+    public synchronized boolean share(long expected, int/* epoch */ r, int/* epoch */ e) {
+        if (WR != expected) {
+            return false;
+        }
+        final int/* epoch */[] clock = new int/* epoch */[Math.max(Epoch.tid(r), Epoch.tid(e)) + 1];
+        clearFrom(clock, 0);
+        clock[Epoch.tid(r)] = r;
+        clock[Epoch.tid(e)] = e;
+        readClock = clock;
+        if (cas(expected, pack(W(expected), Epoch.READ_SHARED))) {
+            return true;
+        }
+        readClock = null;
+        return false;
+    }
+
+    // requires: R is READ_SHARED
+    public int/* epoch */ getRead(int tid) {
+        final int/* epoch */[] clock = readClock;
+        if (tid >= clock.length) {
+            return Epoch.make(tid, 0);
+        }
+        return unsafe.getIntVolatile(clock, byteOffset(tid));
+    }
+
+    // requires: R is READ_SHARED, and tid is the current thread's
+    public void setRead(int tid, int/* epoch */ e) {
+        int/* epoch */[] clock = readClock;
+        while (true) {
+            if (tid >= clock.length) {
+                clock = ensureCapacity(tid + 1);
+            }
+            unsafe.putIntVolatile(clock, byteOffset(tid), e);
+            final int/* epoch */[] current = readClock;
+            if (current == clock) {
+                return;
+            }
+            clock = current;
+        }
+    }
+
+    // requires: R is READ_SHARED
+    private synchronized int/* epoch */[] ensureCapacity(int len) {
+        final int/* epoch */[] clock = readClock;
+        final int curLength = clock.length;
+        if (curLength >= len) {
+            return clock;
+        }
+        final int/* epoch */[] b = new int/* epoch */[Math.max(len, 2 * curLength)];
+        for (int i = 0; i < curLength; i++) {
+            b[i] = unsafe.getIntVolatile(clock, byteOffset(i));
+        }
+        clearFrom(b, curLength);
+        readClock = b;
+        // pick up slots written to the old clock while it was being copied.
+        for (int i = 0; i < curLength; i++) {
+            final int/* epoch */ old = unsafe.getIntVolatile(clock, byteOffset(i));
+            int/* epoch */ cur;
+            while (!Epoch.leq(old, cur = unsafe.getIntVolatile(b, byteOffset(i)))) {
+                if (unsafe.compareAndSwapInt(b, byteOffset(i), cur, old)) {
+                    break;
+                }
+            }
+        }
+        return b;
+    }
+
+    private static void clearFrom(int/* epoch */[] clock, int from) {
+        for (int i = from; i < clock.length; i++) {
+            clock[i] = Epoch.make(i, 0);
+        }
+    }
+
+    // requires: R is READ_SHARED
+    public int readClockSize() {
+        return readClock.length;
+    }
+
+    public Object snapshot() {
+        final long wr = WR;
+        final String w = "W=" + Epoch.toString(W(wr));
+        if (R(wr) != Epoch.READ_SHARED) {
+            return "[" + w + " R=" + Epoch.toString(R(wr)) + "]";
+        }
+        final VectorClock r = new VectorClock(readClockSize());
+        for (int i = 0; i < r.size(); i++) {
+            r.set(i, getRead(i));
+        }
+        return ErrorMessage.format("[%s R=%s]", w, r);
+    }
+
+    @Override
+    public String toString() {
+        final long wr = WR;
+        final String w = "W=" + Epoch.toString(W(wr));
+        if (R(wr) != Epoch.READ_SHARED) {
+            return "[" + w + " R=" + Epoch.toString(R(wr)) + "]";
+        }
+        String r = "";
+        for (int i = 0; i < readClockSize(); i++) {
+            r += (i > 0 ? " " : "") + Epoch.toString(getRead(i));
+        }
+        return "[" + w + " R=[" + r + "]]";
+    }
+
+    private static final Unsafe unsafe = Unsafe.getUnsafe();
+    private static final long wrOffset;
+    private static final int base;
+    private static final int shift;
+
+    private static long byteOffset(int i) {
+        return ((long) i << shift) + base;
+    }
+
+    static {
+        try {
+            wrOffset = unsafe.objectFieldOffset(HBVarState.class.getDeclaredField("WR"));
+        } catch (Exception ex) {
+            throw new Error(ex);
+        }
+        base = unsafe.arrayBaseOffset(int[].class);
+        shift = 31 - Integer.numberOfLeadingZeros(unsafe.arrayIndexScale(int[].class));
+    }
+}
@@ -67,6 +67,7 @@ import rr.state.ShadowLock;
 import rr.state.ShadowThread;
 import rr.state.ShadowVar;
 import rr.tool.Tool;
+import tools.util.Epoch;
 import tools.util.VectorClock;
 import tools.util.VectorClockPair;
 
@@ -184,7 +185,9 @@ public final class HappensBeforeTool extends Tool implements BarrierListener<HBB
 
             final VectorClock cv = ts_get_cv_hb(td);
             if (fae.isWrite()) {
-                p.rd.max(get(currentThread));
+                synchronized (p.rd) {
+                    p.rd.max(get(currentThread));
+                }
                 tick(td);
             } else {
                 synchronized (p.rd) {
@@ -195,90 +198,132 @@ public final class HappensBeforeTool extends Tool implements BarrierListener<HBB
         super.volatileAccess(fae);
     }
 
-    // FIXME: syncrhonize-me because we have destructive races on clock-vectors, and
-    // we have no "right-mover" argument
+    /*
+     * Fields and array elements use HBVarState, which keeps an epoch for the last write and for
+     * the last read while the reads are totally ordered, and a read clock once they are not. Races
+     * are checked against those, and every update is a compare-and-set or a write to the current
+     * thread's own read clock slot (see HBVarState), so no access takes a monitor.
+     */
     @Override
     public void access(AccessEvent fae) {
         ShadowVar g = fae.getOriginalShadow();
         final ShadowThread currentThread = fae.getThread();
 
-        if (g instanceof VectorClockPair) {
-            boolean passAlong = false;
-            VectorClockPair p = (VectorClockPair) g;
-            boolean isWrite = fae.isWrite();
-            VectorClock cv = get(currentThread);
-            // Util.log("p=" + p);
-            // Util.log("t=" + cv);
-            final int tid = currentThread.getTid();
-            if (isWrite) {
-                // check after prev read
-                passAlong |= checkAfter(p.rd, "read", currentThread, "write", fae, true, p);
-                // check after prev write
-                passAlong |= checkAfter(p.wr, "write", currentThread, "write", fae, true, p);
-                synchronized (p.wr) {
-                    p.wr.set(tid, cv.get(tid));
-                }
+        if (g instanceof HBVarState) {
+            final boolean passAlong;
+            if (fae.isWrite()) {
+                passAlong = write(fae, currentThread, (HBVarState) g);
             } else {
-                // check after prev write
-                passAlong |= checkAfter(p.wr, "write", currentThread, "read", fae, true, p);
-                synchronized (p.rd) {
-                    p.rd.set(tid, cv.get(tid));
-                }
-                // p.rd.max(cv);
+                passAlong = read(fae, currentThread, (HBVarState) g);
             }
             if (passAlong) {
                 advance(fae);
             }
-            // Util.log("p=" + p);
-            // Util.log("t=" + cv);
         } else {
             super.access(fae);
         }
     }
 
-    private boolean checkAfter(VectorClock prev, String prevOp, ShadowThread currentThread,
-            String curOp, AccessEvent fad, boolean isWrite, ShadowVar p) {
-        VectorClock cv = get(currentThread);
-        if (prev.anyGt(cv)) {
-            int start = 0;
-            while (true) {
-                start = prev.nextGt(cv, start);
-                if (start == -1) {
-                    break;
+    private boolean read(AccessEvent fae, ShadowThread currentThread, HBVarState sx) {
+        final VectorClock cv = get(currentThread);
+        final int tid = currentThread.getTid();
+        final int/* epoch */ e = cv.get(tid);
+        while (true) {
+            final long wr = sx.get();
+            final int/* epoch */ r = HBVarState.R(wr);
+            if (r == e) {
+                return false;
+            }
+
+            if (r == Epoch.READ_SHARED) {
+                if (sx.getRead(tid) == e) {
+                    return false;
+                }
+                sx.setRead(tid, e);
+                // W must be read after our slot is written.
+                return checkAfter(HBVarState.W(sx.get()), "write", currentThread, "read", fae, sx);
+            }
+
+            final int/* epoch */ w = HBVarState.W(wr);
+            final int rTid = Epoch.tid(r);
+            if (rTid == tid || Epoch.leq(r, cv.get(rTid))) {
+                if (sx.cas(wr, HBVarState.pack(w, e))) {
+                    return checkAfter(w, "write", currentThread, "read", fae, sx);
                 }
-                Object target = fad.getTarget();
-                if (fad.getKind() == Kind.ARRAY) {
-                    ArrayAccessEvent aae = (ArrayAccessEvent) fad;
-                    final ArrayAccessInfo arrayAccessInfo = aae.getInfo();
-                    arrayErrors.error(currentThread, arrayAccessInfo, "Guard State", prev, "Array",
-                            Util.objectToIdentityString(target) + "[" + aae.getIndex() + "]",
-                            "Locks", currentThread.getLocksHeld(), "Prev Op",
-                            prevOp + "-by-thread-" + start, "Prev Op CV", prev, "Cur Op", curOp,
-                            "Cur Op CV", cv, "Stack",
-                            ShadowThread.stackDumpForErrorMessage(currentThread));
-                    start++;
-                    return !arrayErrors.stillLooking(arrayAccessInfo);
+            } else if (sx.share(wr, r, e)) {
+                return checkAfter(w, "write", currentThread, "read", fae, sx);
+            }
+        }
+    }
+
+    private boolean write(AccessEvent fae, ShadowThread currentThread, HBVarState sx) {
+        final VectorClock cv = get(currentThread);
+        final int tid = currentThread.getTid();
+        final int/* epoch */ e = cv.get(tid);
+        while (true) {
+            final long wr = sx.get();
+            final int/* epoch */ w = HBVarState.W(wr);
+            if (w == e) {
+                return false;
+            }
+
+            final int/* epoch */ r = HBVarState.R(wr);
+            if (sx.cas(wr, HBVarState.pack(e, r))) {
+                boolean passAlong = checkAfter(w, "write", currentThread, "write", fae, sx);
+                if (r != Epoch.READ_SHARED) {
+                    passAlong |= checkAfter(r, "read", currentThread, "write", fae, sx);
                 } else {
-                    FieldInfo fd = ((FieldAccessEvent) fad).getInfo().getField();
-                    errors.error(currentThread, fd, "Guard State", prev, "Class",
-                            target == null ? fd.getOwner() : target.getClass(), "Field",
-                            Util.objectToIdentityString(target) + "." + fd, "Locks",
-                            currentThread.getLocksHeld(), "Prev Op", prevOp + "-by-thread-" + start,
-                            "Prev Op CV", prev, "Cur Op", curOp, "Cur Op CV", cv, "Stack",
-                            ShadowThread.stackDumpForErrorMessage(currentThread));
-                    start++;
-                    return !errors.stillLooking(fd);
+                    // the slots must be read after W is written.
+                    for (int i = 0; i < sx.readClockSize() && !passAlong; i++) {
+                        passAlong = checkAfter(sx.getRead(i), "read", currentThread, "write", fae,
+                                sx);
+                    }
                 }
+                return passAlong;
             }
+        }
+    }
+
+    /*
+     * Report a race if prev, the epoch of an earlier access, is not ordered before the current
+     * thread's clock. Returns true if the error reporters are done with this location.
+     */
+    private boolean checkAfter(int/* epoch */ prev, String prevOp, ShadowThread currentThread,
+            String curOp, AccessEvent fad, ShadowVar p) {
+        VectorClock cv = get(currentThread);
+        final int prevTid = Epoch.tid(prev);
+        if (prevTid == currentThread.getTid() || Epoch.leq(prev, cv.get(prevTid))) {
             return false;
+        }
+        Object target = fad.getTarget();
+        if (fad.getKind() == Kind.ARRAY) {
+            ArrayAccessEvent aae = (ArrayAccessEvent) fad;
+            final ArrayAccessInfo arrayAccessInfo = aae.getInfo();
+            arrayErrors.error(currentThread, arrayAccessInfo, "Guard State", p, "Array",
+                    Util.objectToIdentityString(target) + "[" + aae.getIndex() + "]", "Locks",
+                    currentThread.getLocksHeld(), "Prev Op", prevOp + "-by-thread-" + prevTid,
+                    "Prev Op Epoch", Epoch.toString(prev), "Cur Op", curOp, "Cur Op CV", cv,
+                    "Stack", ShadowThread.stackDumpForErrorMessage(currentThread));
+            return !arrayErrors.stillLooking(arrayAccessInfo);
         } else {
-            return false;
+            FieldInfo fd = ((FieldAccessEvent) fad).getInfo().getField();
+            errors.error(currentThread, fd, "Guard State", p, "Class",
+                    target == null ? fd.getOwner() : target.getClass(), "Field",
+                    Util.objectToIdentityString(target) + "." + fd, "Locks",
+                    currentThread.getLocksHeld(), "Prev Op", prevOp + "-by-thread-" + prevTid,
+                    "Prev Op Epoch", Epoch.toString(prev), "Cur Op", curOp, "Cur Op CV", cv,
+                    "Stack", ShadowThread.stackDumpForErrorMessage(currentThread));
+            return !errors.stillLooking(fd);
         }
     }
 
     @Override
     public ShadowVar makeShadowVar(AccessEvent fae) {
-        return new VectorClockPair();
+        if (fae.getKind() == Kind.VOLATILE) {
+            return new VectorClockPair();
+        }
+        final ShadowThread currentThread = fae.getThread();
+        return new HBVarState(fae.isWrite(), get(currentThread).get(currentThread.getTid()));
     }
 
     @Override
@@ -0,0 +1,353 @@
+/******************************************************************************
+ *
+ * Copyright (c) 2016, Cormac Flanagan (University of California, Santa Cruz) and Stephen Freund
+ * (Williams College)
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice, this list of conditions
+ * and the following disclaimer in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ * Neither the names of the University of California, Santa Cruz and Williams College nor the names
+ * of its contributors may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ ******************************************************************************/
+
+package tools.util;
+
+import java.io.Serializable;
+
+import rr.error.ErrorSnapshot;
+
+/**
+ * A vector clock that picks its representation from the number of non-zero entries:
+ *
+ * - epoch form: at most one non-zero entry, kept in a single epoch.
+ *
+ * - sparse form: up to MAX_SPARSE non-zero entries, kept as epochs sorted by tid.
+ *
+ * - dense form: a VectorClock.
+ *
+ * Locks and volatiles are typically touched by only a few threads, so their clocks stay small even
+ * when the program creates thousands of threads. Operations move between the forms as needed, and
+ * copy() may move back to a compact form.
+ *
+ * This is not a VectorClock subclass, so that VectorClock's operations can stay final for thread
+ * and variable clocks. VectorClock.copy and VectorClock.max take an AdaptiveVectorClock directly.
+ *
+ * The client is responsible for providing synchronization. Unlike VectorClock, there are no
+ * guarantees for unsynchronized reads of get(tid).
+ */
+public class AdaptiveVectorClock implements Serializable, ErrorSnapshot {
+
+    private static final int MAX_SPARSE = 8;
+
+    // Form is determined by: dense != null => dense; entries != null => sparse; else epoch.
+    // Fields are written before the clock is shared, so no initializers (see clear).
+
+    // epoch form: the only entry that may be non-zero.
+    private int/* epoch */ epoch;
+
+    // sparse form: entries[0..count) are non-zero and sorted by tid.
+    private int/* epoch */[] entries;
+    private int count;
+
+    // dense form.
+    private VectorClock dense;
+
+    public AdaptiveVectorClock() {
+    }
+
+    public AdaptiveVectorClock(AdaptiveVectorClock other) {
+        copy(other);
+    }
+
+    // requires exclusive access to this
+    private void clear() {
+        dense = null;
+        entries = null;
+        count = 0;
+        epoch = Epoch.ZERO;
+    }
+
+    // requires: this is not dense
+    final int entryCount() {
+        if (entries != null) {
+            return count;
+        } else {
+            return Epoch.clock(epoch) == 0 ? 0 : 1;
+        }
+    }
+
+    // requires: this is not dense, 0 <= i < entryCount()
+    final int/* epoch */ entryAt(int i) {
+        return entries != null ? entries[i] : epoch;
+    }
+
+    // requires: this is dense
+    final VectorClock dense() {
+        return dense;
+    }
+
+    public final boolean isDense() {
+        return dense != null;
+    }
+
+    // requires: exclusive access to this, this is not dense, clock(e) > 0
+    private void put(int/* epoch */ e) {
+        final int tid = Epoch.tid(e);
+        if (entries == null) {
+            if (Epoch.clock(epoch) == 0 || Epoch.tid(epoch) == tid) {
+                epoch = e;
+                return;
+            }
+            entries = new int/* epoch */[4];
+            entries[0] = epoch;
+            count = 1;
+            epoch = Epoch.ZERO;
+        }
+        int i = indexOf(tid);
+        if (i >= 0) {
+            entries[i] = e;
+            return;
+        }
+        if (count == MAX_SPARSE) {
+            inflate();
+            dense.set(tid, e);
+            return;
+        }
+        i = -(i + 1);
+        if (count == entries.length) {
+            int/* epoch */[] b = new int/* epoch */[Math.min(count * 2, MAX_SPARSE)];
+            System.arraycopy(entries, 0, b, 0, count);
+            entries = b;
+        }
+        System.arraycopy(entries, i, entries, i + 1, count - i);
+        entries[i] = e;
+        count++;
+    }
+
+    // Returns the position of tid in entries, or -(insertion point + 1).
+    // requires: exclusive access to this, this is sparse
+    private int indexOf(int tid) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int midTid = Epoch.tid(entries[mid]);
+            if (midTid < tid) {
+                lo = mid + 1;
+            } else if (midTid > tid) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    // requires: exclusive access to this, this is not dense
+    private void inflate() {
+        final int n = entryCount();
+        final VectorClock b = new VectorClock(n > 0 ? Epoch.tid(entryAt(n - 1)) + 1 : 0);
+        b.copy(this);
+        entries = null;
+        count = 0;
+        epoch = Epoch.ZERO;
+        dense = b;
+    }
+
+    // requires: exclusive access to this and src
+    public void copy(AdaptiveVectorClock src) {
+        if (src == this) {
+            return;
+        }
+        if (src.dense != null) {
+            copy(src.dense);
+            return;
+        }
+        clear();
+        if (src.entries != null) {
+            entries = src.entries.clone();
+            count = src.count;
+        } else {
+            epoch = src.epoch;
+        }
+    }
+
+    // requires: exclusive access to this and src
+    public void copy(VectorClock src) {
+        final int/* epoch */[] srcValues = src.values;
+        int n = 0;
+        for (int i = 0; i < srcValues.length && n <= MAX_SPARSE; i++) {
+            if (Epoch.clock(srcValues[i]) != 0) {
+                n++;
+            }
+        }
+        if (n <= MAX_SPARSE) {
+            clear();
+            for (int i = 0; i < srcValues.length; i++) {
+                if (Epoch.clock(srcValues[i]) != 0) {
+                    put(srcValues[i]);
+                }
+            }
+        } else {
+            if (dense == null) {
+                clear();
+                dense = new VectorClock(srcValues.length);
+            }
+            dense.copy(src);
+        }
+    }
+
+    // requires: exclusive access to this and other
+    public void max(VectorClock other) {
+        if (dense != null) {
+            dense.max(other);
+            return;
+        }
+        final int/* epoch */[] otherValues = other.values;
+        for (int i = 0; i < otherValues.length && dense == null; i++) {
+            if (Epoch.clock(otherValues[i]) != 0) {
+                maxEntry(otherValues[i]);
+            }
+        }
+        if (dense != null) {
+            // inflated part way through: finish with the dense max.
+            dense.max(other);
+        }
+    }
+
+    // requires: exclusive access to this and other
+    public void max(AdaptiveVectorClock other) {
+        if (other.dense != null) {
+            max(other.dense);
+            return;
+        }
+        if (dense != null) {
+            dense.max(other);
+            return;
+        }
+        final int n = other.entryCount();
+        for (int i = 0; i < n && dense == null; i++) {
+            maxEntry(other.entryAt(i));
+        }
+        if (dense != null) {
+            // inflated part way through: finish with the dense max.
+            dense.max(other);
+        }
+    }
+
+    // requires: exclusive access to this, this is not dense
+    private void maxEntry(int/* epoch */ e) {
+        if (!Epoch.leq(e, get(Epoch.tid(e)))) {
+            put(e);
+        }
+    }
+
+    /* Return true if any entry in this is greater than in other. */
+    // requires: exclusive access to this and other
+    public boolean anyGt(VectorClock other) {
+        if (dense != null) {
+            return dense.anyGt(other);
+        }
+        return nextGt(other, 0) != -1;
+    }
+
+    /* Returns next index i >= start such that this[i] > other[i], or -1 if no such. */
+    // requires: exclusive access to this and other
+    public int nextGt(VectorClock other, int start) {
+        if (dense != null) {
+            return dense.nextGt(other, start);
+        }
+        final int n = entryCount();
+        for (int i = 0; i < n; i++) {
+            final int/* epoch */ e = entryAt(i);
+            final int tid = Epoch.tid(e);
+            if (tid >= start && !Epoch.leq(e, other.get(tid))) {
+                return tid;
+            }
+        }
+        return -1;
+    }
+
+    // requires: exclusive access to this
+    public void tick(int tid) {
+        if (dense != null) {
+            dense.tick(tid);
+        } else {
+            put(Epoch.tick(get(tid)));
+        }
+    }
+
+    // requires: exclusive access to this
+    public void set(int tid, int/* epoch */ v) {
+        if (dense != null) {
+            dense.set(tid, v);
+        } else if (Epoch.clock(v) != 0) {
+            put(v);
+        } else if (Epoch.clock(get(tid)) != 0) {
+            // resetting an entry to zero is rare; just use the dense form.
+            inflate();
+            dense.set(tid, v);
+        }
+    }
+
+    // requires: exclusive access to this
+    public int/* epoch */ get(final int tid) {
+        if (dense != null) {
+            return dense.get(tid);
+        }
+        if (entries != null) {
+            final int i = indexOf(tid);
+            return i >= 0 ? entries[i] : Epoch.make(tid, 0);
+        }
+        return Epoch.tid(epoch) == tid ? epoch : Epoch.make(tid, 0);
+    }
+
+    // requires: exclusive access to this
+    public int size() {
+        if (dense != null) {
+            return dense.size();
+        }
+        final int n = entryCount();
+        return n > 0 ? Epoch.tid(entryAt(n - 1)) + 1 : 0;
+    }
+
+    // requires: exclusive access to this
+    public Object snapshot() {
+        return new AdaptiveVectorClock(this);
+    }
+
+    // requires: exclusive access to this
+    @Override
+    public String toString() {
+        if (dense != null) {
+            return dense.toString();
+        }
+        StringBuilder r = new StringBuilder();
+        r.append("{");
+        final int n = entryCount();
+        for (int i = 0; i < n; i++) {
+            r.append((i > 0 ? " " : "") + Epoch.toString(entryAt(i)));
+        }
+        return r.append("}").toString();
+    }
+}
@@ -41,14 +41,19 @@ public final class Epoch {
 
     /*
      * We use a variable number of bits for ids, based on the maxTid configured on the command line.
+     * At most half of the bits may go to tids, so int epochs leave at least 16 bits for clocks and
+     * long epochs (FT2L) leave at least 33.
      */
     public static final int TID_BITS = Integer/* epoch */.SIZE
             - Integer/* epoch */.numberOfLeadingZeros(RR.maxTidOption.get());
 
+    private static final int MAX_TID_BITS = Math.min(Integer/* epoch */.SIZE / 2, 31);
+
     static {
-        Assert.assertTrue(TID_BITS > 0 && TID_BITS <= 16,
-                "Epochs can only have 1-16 bits for tids, not " + TID_BITS
-                        + " --- check 0 < maxTid <= 2^16 ");
+        Assert.assertTrue(TID_BITS > 0 && TID_BITS <= MAX_TID_BITS,
+                "Epochs can only have 1-" + MAX_TID_BITS + " bits for tids, not " + TID_BITS
+                        + " --- check 0 < maxTid < 2^" + MAX_TID_BITS
+                        + ", or use the long-epoch tool (FT2L)");
         Util.logf("Epoch will use %d bits for tids", TID_BITS);
     }
 
@@ -56,9 +61,15 @@ public final class Epoch {
     public static final int/* epoch */ MAX_CLOCK = (((int/* epoch */) 1) << CLOCK_BITS) - 1;
     public static final int MAX_TID = (1 << TID_BITS) - 1;
 
+    private static final String OVERFLOW = "Epoch clock overflow --- use a smaller maxTid, "
+            + "or the long-epoch tool (FT2L) for long runs";
+
     public static final int/* epoch */ ZERO = 0;
     public static final int/* epoch */ READ_SHARED = -1;
 
+    // True if a write/read pair of epochs can be packed into one long, as FTCASVarState does.
+    public static final boolean PAIR_FITS_IN_LONG = Integer/* epoch */.SIZE <= Integer.SIZE;
+
     public static int tid(int/* epoch */ epoch) {
         return (int) (epoch >>> CLOCK_BITS);
     }
@@ -77,12 +88,12 @@ public final class Epoch {
     }
 
     public static int/* epoch */ tick(int/* epoch */ epoch) {
-        Assert.assertTrue(clock(epoch) <= MAX_CLOCK - 1, "Epoch clock overflow");
+        Assert.assertTrue(clock(epoch) <= MAX_CLOCK - 1, OVERFLOW);
         return epoch + 1;
     }
 
     public static int/* epoch */ tick(int/* epoch */ epoch, int amount) {
-        Assert.assertTrue(clock(epoch) <= MAX_CLOCK - amount, "Epoch clock overflow");
+        Assert.assertTrue(clock(epoch) <= MAX_CLOCK - amount, OVERFLOW);
         return epoch + amount;
     }
 
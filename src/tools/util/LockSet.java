@@ -32,56 +32,88 @@
 
 package tools.util;
 
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import acme.util.Assert;
-import acme.util.LockManager;
 import acme.util.Util;
 import acme.util.count.Counter;
+import acme.util.count.ThreadLocalCounter;
 import rr.RRMain;
 import rr.state.ShadowLock;
 import rr.state.ShadowVar;
-
+import rr.tool.RR;
+
+/*
+ * Immutable, hash-consed lock sets: two LockSets with the same locks are the same object, so
+ * tools can compare them with ==. A set keeps its locks in an array sorted by
+ * ShadowLock.hashCode(), which is unique for each ShadowLock, plus a 64-bit summary with bit
+ * (hashCode & 63) set for each lock, which answers most "disjoint?" and "contains?" questions
+ * without looking at the array.
+ *
+ * Sets are interned in a ConcurrentHashMap keyed by their contents. Each set also memoizes the
+ * results of add, remove, and intersect in small direct-mapped caches of immutable entries. The
+ * caches are read and written without locks: a racing write can only replace one valid entry
+ * with another or be missed by another thread, which then recomputes the same interned result.
+ */
 public final class LockSet implements ShadowVar {
 
     public static final Counter lockSetCounter = new Counter("LockSet", "Objects");
 
-    static public final LockSet emptySet = new LockSet(null, 0, null, null);
-    static private final LockManager tableLocks = new LockManager(4096);
-
-    protected final int id;
-    protected final int hashcode;
-    public final ShadowLock lock;
+    private static final ThreadLocalCounter cacheHits = new ThreadLocalCounter("LockSet",
+            "Cache Hits", RR.maxTidOption.get());
+    private static final ThreadLocalCounter cacheMisses = new ThreadLocalCounter("LockSet",
+            "Cache Misses", RR.maxTidOption.get());
 
-    protected final LockSet rest; // to smaller lock set
-    protected final LockSet next; // for table linked list
+    private static final ConcurrentHashMap<Key, LockSet> table = new ConcurrentHashMap<Key, LockSet>();
+    private static final AtomicInteger numSets = new AtomicInteger();
 
-    private static int TABLE_SIZE = 523233;
-    private static LockSet table[] = new LockSet[TABLE_SIZE];
+    static public final LockSet emptySet = intern(new ShadowLock[0]);
 
-    static private int numSets = 0;
+    protected final int id;
+    private final ShadowLock[] locks;
+    private final long summary;
+
+    private final Cache intersect = new Cache();
+    private final Cache insert = new Cache();
+    private final Cache delete = new Cache();
+
+    private LockSet(ShadowLock[] locks, int id) {
+        this.locks = locks;
+        this.id = id;
+        long s = 0;
+        for (ShadowLock lock : locks) {
+            s |= bit(lock);
+        }
+        this.summary = s;
+    }
 
-    static {
-        table[0] = emptySet;
+    private static long bit(ShadowLock lock) {
+        return 1L << lock.hashCode();
     }
 
-    final Cache intersect = new Cache();
-    final Cache insert = new Cache();
-
-    protected LockSet(ShadowLock shadowLock, int hashCode, LockSet prev, LockSet next) {
-        if (RRMain.slowMode())
-            lockSetCounter.inc();
-        this.hashcode = hashCode;
-        this.rest = prev;
-        this.lock = shadowLock;
-        this.next = next;
-        this.id = numSets++;
+    private static LockSet intern(ShadowLock[] locks) {
+        final Key key = new Key(locks);
+        LockSet ls = table.get(key);
+        if (ls == null) {
+            final LockSet newLs = new LockSet(locks, numSets.getAndIncrement());
+            ls = table.putIfAbsent(key, newLs);
+            if (ls == null) {
+                ls = newLs;
+                if (RRMain.slowMode())
+                    lockSetCounter.inc();
+            }
+        }
+        return ls;
     }
 
-    public ShadowLock getFirst() {
-        return this.lock;
+    public int size() {
+        return locks.length;
     }
 
-    public LockSet getRest() {
-        return this.rest;
+    public ShadowLock get(int i) {
+        return locks[i];
     }
 
     public boolean isEmpty() {
@@ -94,117 +126,148 @@ public final class LockSet implements ShadowVar {
 
     public static int largestSetSize() {
         int max = 0;
-        for (int i = 0; i < TABLE_SIZE; i++) {
-            for (LockSet ls = table[i]; ls != null; ls = ls.next) {
-                int size = 0;
-                for (LockSet ls2 = ls; ls2 != null; ls2 = ls2.rest) {
-                    size++;
-                }
-                if (max < size)
-                    max = size;
-            }
+        for (LockSet ls : table.values()) {
+            max = Math.max(max, ls.size());
         }
         return max;
     }
 
     public static int[] cacheSizes() {
         int a[] = new int[Cache.CACHE_SIZE + 1];
-        for (int i = 0; i < TABLE_SIZE; i++) {
-            for (LockSet ls = table[i]; ls != null; ls = ls.next) {
-                a[ls.intersect.size]++;
-                a[ls.insert.size]++;
-            }
+        for (LockSet ls : table.values()) {
+            a[ls.intersect.size()]++;
+            a[ls.insert.size()]++;
+            a[ls.delete.size()]++;
         }
         return a;
     }
 
-    // pre: ld not in lockset...
-    public LockSet add(ShadowLock lock) {
-        LockSet newLs = insert.get(lock);
-        if (newLs != null)
-            return newLs;
-        int newHashCode = this.hashcode + lock.hashCode();
-        int bucket = (newHashCode & 0x7fffffff) % TABLE_SIZE;
-        synchronized (tableLocks.get(bucket)) {
-            for (LockSet ls = table[bucket]; ls != null; ls = ls.next) {
-                if (ls.rest == this && ls.lock == lock) {
-                    return ls;
-                }
+    private int indexOf(ShadowLock lock) {
+        if ((summary & bit(lock)) == 0) {
+            return -1;
+        }
+        final int hash = lock.hashCode();
+        int lo = 0;
+        int hi = locks.length - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int h = locks[mid].hashCode();
+            if (h < hash) {
+                lo = mid + 1;
+            } else if (h > hash) {
+                hi = mid - 1;
+            } else {
+                return locks[mid] == lock ? mid : -1;
             }
-
-            newLs = new LockSet(lock, newHashCode, this, table[bucket]);
-            table[bucket] = newLs;
         }
-
-        if (RRMain.slowMode())
-            lockSetCounter.inc();
-        insert.put(lock, newLs);
-
-        // Util.log(lock + " + " + this + " ==> " + newLs);
-
-        return newLs;
+        return -1;
     }
 
     public boolean contains(ShadowLock lock) {
-        for (LockSet ls = this; ls != LockSet.emptySet; ls = ls.getRest()) {
-            if (ls.lock == lock) {
-                Util.log(this + " ? " + lock + " ==> " + true);
-                return true;
-            }
-        }
-        // Util.log(this + " ? " + lock + " ==> " + false);
-        return false;
+        return indexOf(lock) >= 0;
     }
 
-    // lock must be top element
-    public LockSet remove(ShadowLock lock) {
-        if (RRMain.slowMode())
-            Assert.assertTrue(lock == this.lock);
-        return this.getRest();
+    public LockSet add(ShadowLock lock, int tid) {
+        LockSet newLs = insert.get(lock);
+        if (newLs != null) {
+            cacheHits.inc(tid);
+            return newLs;
+        }
+        cacheMisses.inc(tid);
+        if (contains(lock)) {
+            newLs = this;
+        } else {
+            final int n = locks.length;
+            final ShadowLock[] newLocks = new ShadowLock[n + 1];
+            int i = 0;
+            while (i < n && locks[i].hashCode() < lock.hashCode()) {
+                newLocks[i] = locks[i];
+                i++;
+            }
+            newLocks[i] = lock;
+            System.arraycopy(locks, i, newLocks, i + 1, n - i);
+            newLs = intern(newLocks);
+        }
+        insert.put(lock, newLs);
+        return newLs;
     }
 
-    private static LockSet intersectRec(LockSet ls1, LockSet ls2) {
-        if (ls1 == emptySet) {
-            return ls1;
+    public LockSet remove(ShadowLock lock, int tid) {
+        LockSet newLs = delete.get(lock);
+        if (newLs != null) {
+            cacheHits.inc(tid);
+            return newLs;
         }
-        LockSet result = intersectRec(ls1.getRest(), ls2);
-        final ShadowLock lock = ls1.getFirst();
-        if (ls2.contains(lock)) {
-            result = result.add(lock);
+        cacheMisses.inc(tid);
+        final int i = indexOf(lock);
+        if (i < 0) {
+            if (RRMain.slowMode())
+                Assert.fail("Removing " + lock + " from " + this);
+            newLs = this;
+        } else {
+            final int n = locks.length;
+            final ShadowLock[] newLocks = new ShadowLock[n - 1];
+            System.arraycopy(locks, 0, newLocks, 0, i);
+            System.arraycopy(locks, i + 1, newLocks, i, n - i - 1);
+            newLs = intern(newLocks);
         }
-        return result;
+        delete.put(lock, newLs);
+        return newLs;
     }
 
-    public LockSet intersect(LockSet other) {
-        return intersect(this, other);
+    public LockSet intersect(LockSet other, int tid) {
+        return intersect(this, other, tid);
     }
 
-    public static LockSet intersect(LockSet ls1, LockSet ls2) {
+    public static LockSet intersect(LockSet ls1, LockSet ls2, int tid) {
         if (ls1 == ls2) {
-            // Util.log(ls1 + " /\\ " + ls2 + " ==> " + ls1);
             return ls1;
         }
+        if ((ls1.summary & ls2.summary) == 0) {
+            return emptySet;
+        }
         if (ls2.id < ls1.id) {
             LockSet tmp = ls1;
             ls1 = ls2;
             ls2 = tmp;
         }
-        if (ls1 == emptySet) {
-            // Util.log(ls1 + " /\\ " + ls2 + " ==> " + ls1);
-            return ls1;
-        }
 
         LockSet result = ls1.intersect.get(ls2);
         if (result != null) {
-            // Util.log(ls1 + " /\\ " + ls2 + " ==> " + result);
+            cacheHits.inc(tid);
             return result;
         }
-
-        result = intersectRec(ls1, ls2);
+        cacheMisses.inc(tid);
+
+        // merge the sorted lock arrays.
+        final ShadowLock[] a = ls1.locks;
+        final ShadowLock[] b = ls2.locks;
+        final ShadowLock[] common = new ShadowLock[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length;) {
+            final int ha = a[i].hashCode();
+            final int hb = b[j].hashCode();
+            if (ha < hb) {
+                i++;
+            } else if (ha > hb) {
+                j++;
+            } else {
+                if (a[i] == b[j]) {
+                    common[n++] = a[i];
+                }
+                i++;
+                j++;
+            }
+        }
+        if (n == a.length) {
+            result = ls1;
+        } else if (n == 0) {
+            result = emptySet;
+        } else {
+            result = intern(Arrays.copyOf(common, n));
+        }
 
         ls1.intersect.put(ls2, result);
-
-        // Util.log(ls1 + " /\\ " + ls2 + " ==> " + result);
         return result;
     }
 
@@ -213,47 +276,72 @@ public final class LockSet implements ShadowVar {
         if (this == LockSet.emptySet) {
             return "[ls0]";
         }
-        return "[ls" + id + ": " + Util.objectToIdentityString(lock.getLock()) + " " + rest + "]";
+        String s = "[ls" + id + ":";
+        for (ShadowLock lock : locks) {
+            s += " " + Util.objectToIdentityString(lock.getLock());
+        }
+        return s + "]";
     }
 
     public static String allToString() {
         String s = "<<< ";
-        for (int i = 0; i < TABLE_SIZE; i++) {
-            for (LockSet ls = table[i]; ls != null; ls = ls.next) {
-                s = s + "\n    " + ls;
-            }
+        for (LockSet ls : table.values()) {
+            s = s + "\n    " + ls;
         }
         return s + "\n>>>";
     }
 
-    private class Cache {
+    private static final class Key {
+        final ShadowLock[] locks;
+        final int hashCode;
+
+        Key(ShadowLock[] locks) {
+            this.locks = locks;
+            this.hashCode = Arrays.hashCode(locks);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(locks, ((Key) o).locks);
+        }
+    }
+
+    private static final class Cache {
         private static final int CACHE_SIZE = 16;
-        Object[] key = new Object[CACHE_SIZE];
-        LockSet[] ls = new LockSet[CACHE_SIZE];
-        int insertCursor = 0;
-        int size = 0;
 
-        public void put(Object key, LockSet ls) {
-            synchronized (tableLocks.get(hashcode)) {
-                if (size < CACHE_SIZE)
-                    size++;
-                this.key[insertCursor] = key;
-                this.ls[insertCursor] = ls;
-                insertCursor = (insertCursor + 1) % CACHE_SIZE;
+        private static final class Entry {
+            final Object key;
+            final LockSet ls;
+
+            Entry(Object key, LockSet ls) {
+                this.key = key;
+                this.ls = ls;
             }
         }
 
+        private final Entry[] entries = new Entry[CACHE_SIZE];
+
+        public void put(Object key, LockSet ls) {
+            entries[key.hashCode() & (CACHE_SIZE - 1)] = new Entry(key, ls);
+        }
+
         public LockSet get(Object key) {
-            final Object[] keys = this.key;
-            synchronized (tableLocks.get(hashcode)) {
-                for (int i = 0, x = insertCursor; i < size; i++, insertCursor = (insertCursor + 1)
-                        % CACHE_SIZE) {
-                    if (keys[x] == key) {
-                        return ls[x];
-                    }
-                }
+            final Entry e = entries[key.hashCode() & (CACHE_SIZE - 1)];
+            return e != null && e.key == key ? e.ls : null;
+        }
+
+        public int size() {
+            int size = 0;
+            for (Entry e : entries) {
+                if (e != null)
+                    size++;
             }
-            return null;
+            return size;
         }
     }
 }
@@ -34,16 +34,25 @@ package tools.util;
 
 import java.io.Serializable;
 
+import rr.error.ErrorSnapshot;
 import acme.util.Assert;
 
 /**
  * VectorClock are mutable, extensible functions from ShadowThread ids to epochs.
  *
  * The client is responsible for providing synchronization.
+ *
+ * This class always uses a dense array indexed by tid, and its operations are final, since they
+ * are on the hot paths of the thread and variable clocks. See AdaptiveVectorClock for the separate
+ * class used for lock and volatile clocks, which switches to more compact representations when
+ * only a few entries are non-zero. The copy and max operations below also accept one.
  */
-public class VectorClock implements Serializable {
+public class VectorClock implements Serializable, ErrorSnapshot {
     private static final int FAST = 8;
 
+    // block size for the early-exit check in slowAnyGt
+    private static final int BLOCK = 64;
+
     protected volatile int/* epoch */[] values;
 
     // use for all VCs that start with an empty array
@@ -122,8 +131,24 @@ public class VectorClock implements Serializable {
     final private void slowCopy(VectorClock src) {
         int/* epoch */[] srcValues = src.values;
         int/* epoch */[] thisValues = this.values;
-        for (int i = FAST; i < thisValues.length; i++) {
-            thisValues[i] = srcValues[i];
+        System.arraycopy(srcValues, FAST, thisValues, FAST, srcValues.length - FAST);
+    }
+
+    // requires: exclusive access to this and src
+    final public void copy(AdaptiveVectorClock src) {
+        if (src.isDense()) {
+            copy(src.dense());
+            return;
+        }
+        final int n = src.entryCount();
+        if (n > 0) {
+            ensureCapacity(Epoch.tid(src.entryAt(n - 1)) + 1);
+        }
+        int/* epoch */[] thisValues = this.values;
+        clearFrom(thisValues, 0);
+        for (int i = 0; i < n; i++) {
+            final int/* epoch */ e = src.entryAt(i);
+            thisValues[Epoch.tid(e)] = e;
         }
     }
 
@@ -180,14 +205,38 @@ public class VectorClock implements Serializable {
 
     }
 
+    /*
+     * The slow paths below rely on the fact that values[i] always has tid i, so comparing two raw
+     * epochs at the same index is the same as comparing their clocks. That lets them use
+     * branch-free loops that the JIT can unroll and vectorize for wide clocks.
+     */
+
     // requires: exclusive access to this, other
     // srcValues.length <= dstValues.length
     final private void slowMax(VectorClock src) {
         int/* epoch */[] srcValues = src.values;
         int/* epoch */[] dstValues = this.values;
         for (int i = FAST; i < srcValues.length; i++) {
-            if (Epoch.leq(dstValues[i], srcValues[i]))
-                dstValues[i] = srcValues[i];
+            dstValues[i] = Math.max(dstValues[i], srcValues[i]);
+        }
+    }
+
+    // requires: exclusive access to this and src
+    final public void max(AdaptiveVectorClock src) {
+        if (src.isDense()) {
+            max(src.dense());
+            return;
+        }
+        final int n = src.entryCount();
+        if (n > 0) {
+            ensureCapacity(Epoch.tid(src.entryAt(n - 1)) + 1);
+        }
+        int/* epoch */[] thisValues = this.values;
+        for (int i = 0; i < n; i++) {
+            final int/* epoch */ e = src.entryAt(i);
+            final int tid = Epoch.tid(e);
+            if (Epoch.leq(thisValues[tid], e))
+                thisValues[tid] = e;
         }
     }
 
@@ -255,8 +304,14 @@ public class VectorClock implements Serializable {
      * ca2.length requires: exclusive access to ca1 and ca2
      */
     final private static boolean slowAnyGt(int/* epoch */[] ca1, int/* epoch */[] ca2, int len) {
-        for (int i = FAST; i < len; i++) {
-            if (!Epoch.leq(ca1[i], ca2[i]))
+        // ca2[j] - ca1[j] is negative iff ca1[j] > ca2[j]. OR them together a block at a time.
+        for (int i = FAST; i < len; i += BLOCK) {
+            final int end = Math.min(i + BLOCK, len);
+            int/* epoch */ acc = 0;
+            for (int j = i; j < end; j++) {
+                acc |= ca2[j] - ca1[j];
+            }
+            if (acc < 0)
                 return true;
         }
         return false;
@@ -317,6 +372,11 @@ public class VectorClock implements Serializable {
         values[tid] = v;
     }
 
+    // requires: exclusive access to this
+    public Object snapshot() {
+        return new VectorClock(this);
+    }
+
     // requires: exclusive access to this
     @Override
     public String toString() {